@@ -0,0 +1,259 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import edu.mines.jtk.dsp.Conv;
+import edu.mines.jtk.util.Parallel;
+import static edu.mines.jtk.util.ArrayMath.*;
+import edu.mines.jtk.util.Stopwatch;
+
+/**
+ * Benchmark direct summation for 3D convolution. For kernels with 
+ * sizes from 3^3 to 31^3, compares the serial direct summation that 
+ * {@link Conv} used before its loops were tiled and parallelized with 
+ * the current tiled summation, on one thread and on all threads. Also 
+ * measures the time of Conv.convFft, which chooses between direct 
+ * summation and fast Fourier transforms. Rates are in GFLOP/s, for two
+ * flops per multiply-add in direct summation.
+ * @version 2026.10.16
+ */
+public class ConvBench {
+  public static void main(String[] args) {
+    int n = (args.length>0)?Integer.parseInt(args[0]):48;
+    double maxtime = (args.length>1)?Double.parseDouble(args[1]):2.0;
+    int[] ls = {3,5,7,11,15,21,31};
+    float[][][] y = randfloat(n,n,n);
+    float[][][] z = zerofloat(n,n,n);
+    for (int l:ls) {
+      float[][][] x = randfloat(l,l,l);
+      int k = -(l-1)/2;
+      double gflop = 2.0e-9*pow(count(l,n,k),3);
+      double rold = gflop/timeOld(maxtime,l,k,x,n,y,z);
+      Parallel.setParallel(false);
+      double rone = gflop/timeNew(false,maxtime,l,k,x,n,y,z);
+      Parallel.setParallel(true);
+      double rall = gflop/timeNew(false,maxtime,l,k,x,n,y,z);
+      double rfft = gflop/timeNew(true,maxtime,l,k,x,n,y,z);
+      System.out.printf(
+        "l=%2d n=%3d GFLOP/s: old=%6.2f tiled=%6.2f parallel=%6.2f"+
+        " convFft=%7.2f\n",l,n,rold,rone,rall,rfft);
+    }
+  }
+
+  // Number of multiply-adds in one dimension, for a kernel with length l
+  // and first sample index k, and for input and output with length n.
+  private static double count(int l, int n, int k) {
+    double count = 0.0;
+    for (int i=-k; i<n-k; ++i)
+      count += max(0,min(l-1,i)-max(0,i-n+1)+1);
+    return count;
+  }
+
+  private static double timeNew(
+    boolean fft, double maxtime, int l, int k, float[][][] x, 
+    int n, float[][][] y, float[][][] z) 
+  {
+    Stopwatch sw = new Stopwatch();
+    int count;
+    sw.start();
+    for (count=0; count==0 || sw.time()<maxtime; ++count) {
+      if (fft) {
+        Conv.convFft(l,l,l,k,k,k,x,n,n,n,0,0,0,y,n,n,n,0,0,0,z);
+      } else {
+        Conv.conv(l,l,l,k,k,k,x,n,n,n,0,0,0,y,n,n,n,0,0,0,z);
+      }
+    }
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  private static double timeOld(
+    double maxtime, int l, int k, float[][][] x, 
+    int n, float[][][] y, float[][][] z) 
+  {
+    Stopwatch sw = new Stopwatch();
+    int count;
+    sw.start();
+    for (count=0; count==0 || sw.time()<maxtime; ++count)
+      convOld(l,l,l,k,k,k,x,n,n,n,0,0,0,y,n,n,n,0,0,0,z);
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  // Serial 3D convolution, as in Conv before tiling and parallelization.
+  private static void convOld(
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    zero(z);
+    int ilo2 = kz2-kx2-ky2;
+    int ilo3 = kz3-kx3-ky3;
+    int ihi2 = ilo2+lz2-1;
+    int ihi3 = ilo3+lz3-1;
+    for (int i3=ilo3; i3<=ihi3; ++i3) {
+      int jlo3 = max(0,i3-ly3+1);
+      int jhi3 = min(lx3-1,i3);
+      for (int j3=jlo3; j3<=jhi3; ++j3) {
+        for (int i2=ilo2; i2<=ihi2; ++i2) {
+          int jlo2 = max(0,i2-ly2+1);
+          int jhi2 = min(lx2-1,i2);
+          for (int j2=jlo2; j2<=jhi2; ++j2) {
+            convSum(lx1,kx1,x[j3][j2],
+                    ly1,ky1,y[i3-j3][i2-j2],
+                    lz1,kz1,z[i3-ilo3][i2-ilo2]);
+          }
+        }
+      }
+    }
+  }
+
+  // Accumulates the 1D convolution sum z += x*y, computing output 
+  // samples in pairs, as in Conv before tiling.
+  private static void convSum(
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    // If necessary, swap x and y so that x is the shorter sequence.
+    // This simplifies the logic below.
+    if (lx>ly) {
+      int lt = lx;  lx = ly;  ly = lt;
+      int kt = kx;  kx = ky;  ky = kt;
+      float[] t = x;  x = y;  y = t;
+    }
+
+    // Bounds for index i.
+    int imin = kz-kx-ky;
+    int imax = imin+lz-1;
+
+    // Variables that we expect to reside in registers.
+    int i,ilo,ihi,j,jlo,jhi,iz;
+    float sa,sb,xa,xb,ya,yb;
+
+    // Rolling on: 0 <= i <= lx-2 and 0 <= j <= i
+    ilo = max(0,imin);
+    ihi = min(lx-2,imax);
+    jlo = 0;
+    jhi = ilo;
+    for (i=ilo,iz=i-imin; i<ihi; i+=2,iz+=2,jhi+=2) {
+      sa = z[iz  ];
+      sb = z[iz+1];
+      yb = y[i-jlo+1];
+      for (j=jlo; j<jhi; j+=2) {
+        xa = x[j];
+        sb += xa*yb;
+        ya = y[i-j];
+        sa += xa*ya;
+        xb = x[j+1];
+        sb += xb*ya;
+        yb = y[i-j-1];
+        sa += xb*yb;
+      }
+      xa = x[j];
+      sb += xa*yb;
+      if (j==jhi) {
+        ya = y[i-j];
+        sa += xa*ya;
+        xb = x[j+1];
+        sb += xb*ya;
+      }
+      z[iz  ] = sa;
+      z[iz+1] = sb;
+    }
+    if (i==ihi) {
+      jlo = 0;
+      jhi = i;
+      sa = z[iz];
+      for (j=jlo; j<=jhi; ++j)
+        sa += x[j]*y[i-j];
+      z[iz] = sa;
+    }
+
+    // Middle: lx-1 <= i <= ly-1 and 0 <= j <= lx-1
+    ilo = max(lx-1,imin);
+    ihi = min(ly-1,imax);
+    jlo = 0;
+    jhi = lx-1;
+    for (i=ilo,iz=i-imin; i<ihi; i+=2,iz+=2) {
+      sa = z[iz  ];
+      sb = z[iz+1];
+      yb = y[i-jlo+1];
+      for (j=jlo; j<jhi; j+=2) {
+        xa = x[j];
+        sb += xa*yb;
+        ya = y[i-j];
+        sa += xa*ya;
+        xb = x[j+1];
+        sb += xb*ya;
+        yb = y[i-j-1];
+        sa += xb*yb;
+      }
+      if (j==jhi) {
+        xa = x[j];
+        sb += xa*yb;
+        ya = y[i-j];
+        sa += xa*ya;
+      }
+      z[iz  ] = sa;
+      z[iz+1] = sb;
+    }
+    if (i==ihi) {
+      sa = z[iz];
+      for (j=jlo; j<=jhi; ++j)
+        sa += x[j]*y[i-j];
+      z[iz] = sa;
+    }
+
+    // Rolling off: ly <= i <= lx+ly-2 and i-ly+1 <= j <= lx-1
+    ilo = max(ly,imin);
+    ihi = min(lx+ly-2,imax);
+    jlo = ihi-ly+1;
+    jhi = lx-1;
+    for (i=ihi,iz=i-imin; i>ilo; i-=2,iz-=2,jlo-=2) {
+      sa = z[iz  ];
+      sb = z[iz-1];
+      yb = y[i-jhi-1];
+      for (j=jhi; j>jlo; j-=2) {
+        xa = x[j];
+        sb += xa*yb;
+        ya = y[i-j];
+        sa += xa*ya;
+        xb = x[j-1];
+        sb += xb*ya;
+        yb = y[i-j+1];
+        sa += xb*yb;
+      }
+      xa = x[j];
+      sb += xa*yb;
+      if (j==jlo) {
+        ya = y[i-j];
+        sa += xa*ya;
+        xb = x[j-1];
+        sb += xb*ya;
+      }
+      z[iz  ] = sa;
+      z[iz-1] = sb;
+    }
+    if (i==ilo) {
+      jlo = i-ly+1;
+      jhi = lx-1;
+      sa = z[iz];
+      for (j=jhi; j>=jlo; --j)
+            sa += x[j]*y[i-j];
+      z[iz] = sa;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import edu.mines.jtk.dsp.FftComplex;
+import edu.mines.jtk.dsp.FftReal;
+import static edu.mines.jtk.util.ArrayMath.*;
+import edu.mines.jtk.util.Stopwatch;
+
+/**
+ * Benchmark real-to-complex FFTs with cached twiddle factors. For all
+ * valid FFT lengths, compares the FFT in {@link FftReal}, which uses
+ * precomputed plans and tables of twiddle factors, with an FFT that
+ * computes twiddle factors with a trigonometric recurrence in every
+ * transform. Also measures the cost of constructing a new FFT for
+ * every transform, which is small when tables are cached.
+ * @version 2026.10.16
+ */
+public class FftRealBench {
+  public static void main(String[] args) {
+    double maxtime = (args.length>0)?Double.parseDouble(args[0]):0.5;
+    for (int nfft=2; nfft<=1441440;) {
+      nfft = FftReal.nfftSmall(nfft);
+      double tcached = timeCached(maxtime,nfft);
+      double tcreate = timeCreate(maxtime,nfft);
+      double trecur = timeRecurrence(maxtime,nfft);
+      System.out.printf(
+        "nfft=%7d tcached=%.3e tcreate=%.3e trecur=%.3e speedup=%.2f\n",
+        nfft,tcached,tcreate,trecur,trecur/tcached);
+      nfft += 2;
+    }
+  }
+
+  private static double timeCached(double maxtime, int nfft) {
+    FftReal fft = new FftReal(nfft);
+    float[] rx = randfloat(nfft+2);
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      fft.realToComplex(-1,rx,rx);
+      fft.complexToReal( 1,rx,rx);
+      fft.scale(nfft,rx);
+    }
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  private static double timeCreate(double maxtime, int nfft) {
+    float[] rx = randfloat(nfft+2);
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      FftReal fft = new FftReal(nfft);
+      fft.realToComplex(-1,rx,rx);
+      fft.complexToReal( 1,rx,rx);
+      fft.scale(nfft,rx);
+    }
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  private static double timeRecurrence(double maxtime, int nfft) {
+    FftComplex fft = new FftComplex(nfft/2);
+    float[] rx = randfloat(nfft+2);
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      realToComplex(fft,-1,rx);
+      complexToReal(fft, 1,rx);
+      float s = 1.0f/nfft;
+      for (int i=0; i<nfft; ++i)
+        rx[i] *= s;
+    }
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  // In-place real-to-complex FFT that computes twiddle factors with
+  // a trigonometric recurrence, as FftReal did before tables were cached.
+  private static void realToComplex(FftComplex fft, int sign, float[] cy) {
+    int nfft = 2*fft.getNfft();
+    for (int n=nfft-1; n>=0; --n)
+      cy[n] = 0.5f*cy[n];
+    fft.complexToComplex(sign,cy,cy);
+    cy[nfft] = 2.0f*(cy[0]-cy[1]);
+    cy[0   ] = 2.0f*(cy[0]+cy[1]);
+    cy[nfft+1] = 0.0f;
+    cy[1     ] = 0.0f;
+    double theta = sign*2.0*PI/nfft;
+    double wt = sin(0.5*theta);
+    double wpr = -2.0*wt*wt;
+    double wpi = sin(theta);
+    double wr = 1.0+wpr;
+    double wi = wpi;
+    for (int j=2,k=nfft-2; j<=k; j+=2,k-=2) {
+      float sumr = cy[j  ]+cy[k  ];
+      float sumi = cy[j+1]+cy[k+1];
+      float difr = cy[j  ]-cy[k  ];
+      float difi = cy[j+1]-cy[k+1];
+      float tmpr = (float)(wi*difr+wr*sumi);
+      float tmpi = (float)(wi*sumi-wr*difr);
+      cy[j  ] = sumr+tmpr;
+      cy[j+1] = tmpi+difi;
+      cy[k  ] = sumr-tmpr;
+      cy[k+1] = tmpi-difi;
+      wt = wr;
+      wr += wr*wpr-wi*wpi;
+      wi += wi*wpr+wt*wpi;
+    }
+  }
+
+  // In-place complex-to-real FFT that computes twiddle factors with
+  // a trigonometric recurrence, as FftReal did before tables were cached.
+  private static void complexToReal(FftComplex fft, int sign, float[] ry) {
+    int nfft = 2*fft.getNfft();
+    float cx0 = ry[0];
+    float cxn = ry[nfft];
+    ry[1] = cx0-cxn;
+    ry[0] = cx0+cxn;
+    double theta = -sign*2.0*PI/nfft;
+    double wt = sin(0.5*theta);
+    double wpr = -2.0*wt*wt;
+    double wpi = sin(theta);
+    double wr = 1.0+wpr;
+    double wi = wpi;
+    for (int j=2,k=nfft-2; j<=k; j+=2,k-=2) {
+      float sumr = ry[j  ]+ry[k  ];
+      float sumi = ry[j+1]+ry[k+1];
+      float difr = ry[j  ]-ry[k  ];
+      float difi = ry[j+1]-ry[k+1];
+      float tmpr = (float)(wi*difr-wr*sumi);
+      float tmpi = (float)(wi*sumi+wr*difr);
+      ry[j  ] = sumr+tmpr;
+      ry[j+1] = tmpi+difi;
+      ry[k  ] = sumr-tmpr;
+      ry[k+1] = tmpi-difi;
+      wt = wr;
+      wr += wr*wpr-wi*wpi;
+      wi += wi*wpr+wt*wpi;
+    }
+    fft.complexToComplex(sign,ry,ry);
+  }
+}
@@ -15,6 +15,7 @@ limitations under the License.
 package edu.mines.jtk.bench;
 
 import static edu.mines.jtk.util.ArrayMath.*;
+import edu.mines.jtk.dsp.RecursiveGaussianFilter;
 import edu.mines.jtk.util.Stopwatch;
 
 /**
@@ -36,6 +37,9 @@ public class RecursiveFilterBench {
     float[][] x = rampfloat(0.0f,0.0f,1.0f,n1,n2);
     float[][] y = zerofloat(n1,n2);
     double mflop = 9.0*n1*n2*1.0e-6;
+    RecursiveGaussianFilter rgf = new RecursiveGaussianFilter(4.0,
+      RecursiveGaussianFilter.Method.DERICHE);
+    double mflopg = 32.0*n1*n2*1.0e-6; // causal and anti-causal 4th-order
     double rate,sum;
     int n;
     Stopwatch sw = new Stopwatch();
@@ -63,6 +67,22 @@ public class RecursiveFilterBench {
       sum = sum(y);
       rate = n*mflop/sw.time();
       System.out.println("filter2b: rate="+rate+" sum="+sum);
+
+      sw.restart();
+      for (n=0;  sw.time()<maxtime; ++n)
+        rgf.apply0X(x,y);
+      sw.stop();
+      sum = sum(y);
+      rate = n*mflopg/sw.time();
+      System.out.println("gaussian1: rate="+rate+" sum="+sum);
+
+      sw.restart();
+      for (n=0;  sw.time()<maxtime; ++n)
+        rgf.applyX0(x,y);
+      sw.stop();
+      sum = sum(y);
+      rate = n*mflopg/sw.time();
+      System.out.println("gaussian2: rate="+rate+" sum="+sum);
     }
   }
 
@@ -0,0 +1,37 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+/**
+ * 2D tensors that can be gotten in bulk, one row of tensors at a time.
+ * A row is a sequence of tensors with constant index i2. 
+ * <p>
+ * Consumers that process tensors row by row can use this interface to
+ * avoid one method call per tensor, and implementations can decode
+ * tensors for an entire row in a single tight loop. Tensor elements are
+ * returned in separate arrays, one for each element.
+ *
+ * @version 2026.10.16
+ */
+public interface BulkTensors2 extends Tensors2 {
+
+  /**
+   * Gets tensor elements for one row of tensors with specified index.
+   * The length of each row is the number of tensors in the 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param a array {a11,a12,a22} of arrays of tensor elements.
+   */
+  public void getTensors(int i2, float[][] a);
+}
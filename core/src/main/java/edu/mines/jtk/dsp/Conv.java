@@ -14,6 +14,8 @@ limitations under the License.
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -70,6 +72,22 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * Unlike convolution, cross-correlation is not commutative. In other words,
  * the cross-correlation of x and y does not equal the cross-correlation of 
  * y and x.
+ * <p>
+ * For long sequences, convolution and cross-correlation are computed 
+ * more efficiently with fast Fourier transforms (FFTs) than by direct 
+ * summation. The methods conv and xcor use only direct summation.
+ * For each call, the methods convFft and xcorFft instead estimate the
+ * costs of direct summation and of FFT methods, and use FFT methods if
+ * the cost of direct summation exceeds a crossover times the cost of FFT
+ * methods. That crossover is one by default, so that the method with
+ * the lowest cost is chosen, and may be specified for each call.
+ * FFT methods include overlap-save for 1-D sequences, which is efficient
+ * when one sequence is much shorter than the other, and full FFTs of
+ * both sequences, with lengths chosen by
+ * {@link FftReal#nfftFast(int)} and {@link FftComplex#nfftFast(int)}.
+ * Whichever method is chosen, output samples have the same indices, 
+ * and differ only in rounding errors. For FFT methods, those errors are
+ * proportional to the largest output samples, not to each output sample.
  * @author Dave Hale, Colorado School of Mines
  * @version 2005.08.15
  */
@@ -92,7 +110,9 @@ public class Conv {
     int ly, int ky, float[] y,
     int lz, int kz, float[] z)
   {
-    convFast(lx,kx,x,ly,ky,y,lz,kz,z);
+    conv(DIRECT,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
   }
 
   /**
@@ -118,16 +138,9 @@ public class Conv {
     int ly1, int ly2, int ky1, int ky2, float[][] y,
     int lz1, int lz2, int kz1, int kz2, float[][] z)
   {
-    zero(lz1,lz2,z);
-    int ilo2 = kz2-kx2-ky2;
-    int ihi2 = ilo2+lz2-1;
-    for (int i2=ilo2; i2<=ihi2; ++i2) {
-      int jlo2 = max(0,i2-ly2+1);
-      int jhi2 = min(lx2-1,i2);
-      for (int j2=jlo2; j2<=jhi2; ++j2) {
-        convSum(lx1,kx1,x[j2],ly1,ky1,y[i2-j2],lz1,kz1,z[i2-ilo2]);
-      }
-    }
+    conv(DIRECT,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
   }
 
   /**
@@ -159,26 +172,9 @@ public class Conv {
     int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
     int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
   {
-    zero(lz1,lz2,lz3,z);
-    int ilo2 = kz2-kx2-ky2;
-    int ilo3 = kz3-kx3-ky3;
-    int ihi2 = ilo2+lz2-1;
-    int ihi3 = ilo3+lz3-1;
-    for (int i3=ilo3; i3<=ihi3; ++i3) {
-      int jlo3 = max(0,i3-ly3+1);
-      int jhi3 = min(lx3-1,i3);
-      for (int j3=jlo3; j3<=jhi3; ++j3) {
-        for (int i2=ilo2; i2<=ihi2; ++i2) {
-          int jlo2 = max(0,i2-ly2+1);
-          int jhi2 = min(lx2-1,i2);
-          for (int j2=jlo2; j2<=jhi2; ++j2) {
-            convSum(lx1,kx1,x[j3][j2],
-                    ly1,ky1,y[i3-j3][i2-j2],
-                    lz1,kz1,z[i3-ilo3][i2-ilo2]);
-          }
-        }
-      }
-    }
+    conv(DIRECT,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
   }
 
   /**
@@ -198,12 +194,9 @@ public class Conv {
     int ly, int ky, float[] y,
     int lz, int kz, float[] z)
   {
-    boolean copy = x==y;
-    x = reverse(lx,x,copy);
-    kx = 1-kx-lx;
-    conv(lx,kx,x,ly,ky,y,lz,kz,z);
-    if (!copy)
-      reverse(lx,x,false);
+    xcor(DIRECT,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
   }
 
   /**
@@ -228,41 +221,505 @@ public class Conv {
     int lx1, int lx2, int kx1, int kx2, float[][] x,
     int ly1, int ly2, int ky1, int ky2, float[][] y,
     int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    xcor(DIRECT,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
+  }
+
+  /**
+   * Computes the 3-D cross-correlation of specified sequences x and y.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param lx3 the length of x in 3rd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
+   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
+   * @param x array[lx3][lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ly3 the length of y in 3rd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
+   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
+   * @param y array[ly3][ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param lz3 the length of z in 3rd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
+   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
+   * @param z array[lz3][lz2][lz1] of z values.
+   */
+  public static void xcor(
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    xcor(DIRECT,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  /**
+   * Computes the 1-D convolution of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx the length of x.
+   * @param kx the sample index of x[0].
+   * @param x array[lx] of x values.
+   * @param ly the length of y.
+   * @param ky the sample index of y[0].
+   * @param y array[ly] of y values.
+   * @param lz the length of z.
+   * @param kz the sample index of z[0].
+   * @param z array[lz] of z values.
+   */
+  public static void convFft(
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    conv(FFT,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
+  }
+
+  /**
+   * Computes the 1-D convolution of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx the length of x.
+   * @param kx the sample index of x[0].
+   * @param x array[lx] of x values.
+   * @param ly the length of y.
+   * @param ky the sample index of y[0].
+   * @param y array[ly] of y values.
+   * @param lz the length of z.
+   * @param kz the sample index of z[0].
+   * @param z array[lz] of z values.
+   */
+  public static void convFft(double crossover,
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    conv(crossover,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
+  }
+
+  /**
+   * Computes the 2-D convolution of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0].
+   * @param x array[lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0].
+   * @param y array[ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0].
+   * @param z array[lz2][lz1] of z values.
+   */
+  public static void convFft(
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    conv(FFT,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
+  }
+
+  /**
+   * Computes the 2-D convolution of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0].
+   * @param x array[lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0].
+   * @param y array[ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0].
+   * @param z array[lz2][lz1] of z values.
+   */
+  public static void convFft(double crossover,
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    conv(crossover,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
+  }
+
+  /**
+   * Computes the 3-D convolution of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param lx3 the length of x in 3rd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
+   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
+   * @param x array[lx3][lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ly3 the length of y in 3rd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
+   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
+   * @param y array[ly3][ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param lz3 the length of z in 3rd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
+   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
+   * @param z array[lz3][lz2][lz1] of z values.
+   */
+  public static void convFft(
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    conv(FFT,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  /**
+   * Computes the 3-D convolution of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param lx3 the length of x in 3rd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
+   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
+   * @param x array[lx3][lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ly3 the length of y in 3rd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
+   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
+   * @param y array[ly3][ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param lz3 the length of z in 3rd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
+   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
+   * @param z array[lz3][lz2][lz1] of z values.
+   */
+  public static void convFft(double crossover,
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    conv(crossover,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  /**
+   * Computes the 1-D cross-correlation of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx the length of x.
+   * @param kx the sample index of x[0].
+   * @param x array[lx] of x values.
+   * @param ly the length of y.
+   * @param ky the sample index of y[0].
+   * @param y array[ly] of y values.
+   * @param lz the length of z.
+   * @param kz the sample index of z[0].
+   * @param z array[lz] of z values.
+   */
+  public static void xcorFft(
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    xcor(FFT,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
+  }
+
+  /**
+   * Computes the 1-D cross-correlation of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx the length of x.
+   * @param kx the sample index of x[0].
+   * @param x array[lx] of x values.
+   * @param ly the length of y.
+   * @param ky the sample index of y[0].
+   * @param y array[ly] of y values.
+   * @param lz the length of z.
+   * @param kz the sample index of z[0].
+   * @param z array[lz] of z values.
+   */
+  public static void xcorFft(double crossover,
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    xcor(crossover,lx,kx,x,
+         ly,ky,y,
+         lz,kz,z);
+  }
+
+  /**
+   * Computes the 2-D cross-correlation of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0].
+   * @param x array[lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0].
+   * @param y array[ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0].
+   * @param z array[lz2][lz1] of z values.
+   */
+  public static void xcorFft(
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    xcor(FFT,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
+  }
+
+  /**
+   * Computes the 2-D cross-correlation of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0].
+   * @param x array[lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0].
+   * @param y array[ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0].
+   * @param z array[lz2][lz1] of z values.
+   */
+  public static void xcorFft(double crossover,
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    xcor(crossover,lx1,lx2,kx1,kx2,x,
+         ly1,ly2,ky1,ky2,y,
+         lz1,lz2,kz1,kz2,z);
+  }
+
+  /**
+   * Computes the 3-D cross-correlation of specified sequences x and y,
+   * with FFT methods if they cost less than direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param lx3 the length of x in 3rd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
+   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
+   * @param x array[lx3][lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ly3 the length of y in 3rd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
+   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
+   * @param y array[ly3][ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param lz3 the length of z in 3rd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
+   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
+   * @param z array[lz3][lz2][lz1] of z values.
+   */
+  public static void xcorFft(
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    xcor(FFT,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  /**
+   * Computes the 3-D cross-correlation of specified sequences x and y,
+   * with FFT methods if direct summation costs more than a specified
+   * multiple of their cost.
+   * @param crossover the multiple of the estimated cost of FFT methods
+   *  that the estimated cost of direct summation must exceed for FFT
+   *  methods to be used; must be non-negative. Zero, for FFT methods
+   *  whenever possible; {@link Double#MAX_VALUE}, for direct summation.
+   * @param lx1 the length of x in 1st dimension.
+   * @param lx2 the length of x in 2nd dimension.
+   * @param lx3 the length of x in 3rd dimension.
+   * @param kx1 the sample index in 1st dimension of x[0][0][0].
+   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
+   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
+   * @param x array[lx3][lx2][lx1] of x values.
+   * @param ly1 the length of y in 1st dimension.
+   * @param ly2 the length of y in 2nd dimension.
+   * @param ly3 the length of y in 3rd dimension.
+   * @param ky1 the sample index in 1st dimension of y[0][0][0].
+   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
+   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
+   * @param y array[ly3][ly2][ly1] of y values.
+   * @param lz1 the length of z in 1st dimension.
+   * @param lz2 the length of z in 2nd dimension.
+   * @param lz3 the length of z in 3rd dimension.
+   * @param kz1 the sample index in 1st dimension of z[0][0][0].
+   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
+   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
+   * @param z array[lz3][lz2][lz1] of z values.
+   */
+  public static void xcorFft(double crossover,
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    Check.argument(crossover>=0.0,"crossover>=0.0");
+    xcor(crossover,lx1,lx2,lx3,kx1,kx2,kx3,x,
+         ly1,ly2,ly3,ky1,ky2,ky3,y,
+         lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Crossovers for the choice between direct summation and FFT methods.
+  // FFT methods are used only if the estimated cost of direct summation
+  // exceeds the crossover times the estimated cost of the cheapest FFT
+  // method. Tests use a crossover of zero to force FFT methods.
+  private static final double DIRECT = Double.MAX_VALUE; // never FFTs
+  private static final double FFT = 1.0; // FFTs, if they cost less
+
+  static void conv(double crossover,
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    if (crossover<DIRECT &&
+        convByFft(crossover,lx,x,ly,y,lz,kz-kx-ky,z))
+      return;
+    convFast(lx,kx,x,ly,ky,y,lz,kz,z);
+  }
+
+  static void conv(double crossover,
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    if (crossover<DIRECT &&
+        convByFft(crossover,lx1,lx2,x,ly1,ly2,y,
+                  lz1,lz2,kz1-kx1-ky1,kz2-kx2-ky2,z))
+      return;
+    convDirect(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,z);
+  }
+
+  static void conv(double crossover,
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    if (crossover<DIRECT &&
+        convByFft(crossover,lx1,lx2,lx3,x,ly1,ly2,ly3,y,lz1,lz2,lz3,
+                  kz1-kx1-ky1,kz2-kx2-ky2,kz3-kx3-ky3,z))
+      return;
+    convDirect(lx1,lx2,lx3,kx1,kx2,kx3,x,
+               ly1,ly2,ly3,ky1,ky2,ky3,y,
+               lz1,lz2,lz3,kz1,kz2,kz3,z);
+  }
+
+  static void xcor(double crossover,
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    boolean copy = x==y;
+    x = reverse(lx,x,copy);
+    kx = 1-kx-lx;
+    conv(crossover,lx,kx,x,ly,ky,y,lz,kz,z);
+    if (!copy)
+      reverse(lx,x,false);
+  }
+
+  static void xcor(double crossover,
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
   {
     boolean copy = x==y;
     x = reverse(lx1,lx2,x,copy);
     kx1 = 1-kx1-lx1;
     kx2 = 1-kx2-lx2;
-    conv(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,z);
+    conv(crossover,lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,z);
     if (!copy)
       reverse(lx1,lx2,x,false);
   }
 
-  /**
-   * Computes the 3-D cross-correlation of specified sequences x and y.
-   * @param lx1 the length of x in 1st dimension.
-   * @param lx2 the length of x in 2nd dimension.
-   * @param lx3 the length of x in 3rd dimension.
-   * @param kx1 the sample index in 1st dimension of x[0][0][0].
-   * @param kx2 the sample index in 2nd dimension of x[0][0][0].
-   * @param kx3 the sample index in 3rd dimension of x[0][0][0].
-   * @param x array[lx3][lx2][lx1] of x values.
-   * @param ly1 the length of y in 1st dimension.
-   * @param ly2 the length of y in 2nd dimension.
-   * @param ly3 the length of y in 3rd dimension.
-   * @param ky1 the sample index in 1st dimension of y[0][0][0].
-   * @param ky2 the sample index in 2nd dimension of y[0][0][0].
-   * @param ky3 the sample index in 3rd dimension of y[0][0][0].
-   * @param y array[ly3][ly2][ly1] of y values.
-   * @param lz1 the length of z in 1st dimension.
-   * @param lz2 the length of z in 2nd dimension.
-   * @param lz3 the length of z in 3rd dimension.
-   * @param kz1 the sample index in 1st dimension of z[0][0][0].
-   * @param kz2 the sample index in 2nd dimension of z[0][0][0].
-   * @param kz3 the sample index in 3rd dimension of z[0][0][0].
-   * @param z array[lz3][lz2][lz1] of z values.
-   */
-  public static void xcor(
+  static void xcor(double crossover,
     int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
     int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
     int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
@@ -272,7 +729,7 @@ public class Conv {
     kx1 = 1-kx1-lx1;
     kx2 = 1-kx2-lx2;
     kx3 = 1-kx3-lx3;
-    conv(lx1,lx2,lx3,kx1,kx2,kx3,x,
+    conv(crossover,lx1,lx2,lx3,kx1,kx2,kx3,x,
          ly1,ly2,ly3,ky1,ky2,ky3,y,
          lz1,lz2,lz3,kz1,kz2,kz3,z);
     if (!copy)
@@ -280,7 +737,459 @@ public class Conv {
   }
 
   ///////////////////////////////////////////////////////////////////////////
-  // private
+  // Direct summation for 2-D and 3-D sequences.
+  //
+  // Output arrays z[i2] or z[i3][i2] are computed in parallel. Each is 
+  // the sum of 1-D convolutions of arrays in x and y, and these sums are 
+  // accumulated in the same order as in serial computation, so that 
+  // results do not depend on the number of threads. Output arrays are
+  // computed in chunks large enough that each parallel task performs 
+  // at least NWORK multiply-adds, so that small convolutions are simply
+  // computed on the current thread.
+  ///////////////////////////////////////////////////////////////////////////
+
+  private static final double NWORK = 65536.0;
+
+  private static void convDirect(
+    final int lx1, final int lx2, final int kx1, final int kx2, 
+    final float[][] x,
+    final int ly1, final int ly2, final int ky1, final int ky2, 
+    final float[][] y,
+    final int lz1, final int lz2, final int kz1, final int kz2, 
+    final float[][] z)
+  {
+    final int ilo2 = kz2-kx2-ky2;
+    double cost = costDirect(lx1,ly1,lz1,kz1-kx1-ky1) *
+                  costDirect(lx2,ly2,lz2,ilo2);
+    final Parallel.Unsafe<float[][]> wu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(0,lz2,1,chunk(lz2,cost),new Parallel.LoopInt() {
+      public void compute(int iz2) {
+        int i2 = ilo2+iz2;
+        int jlo2 = max(0,i2-ly2+1);
+        int jhi2 = min(lx2-1,i2);
+        float[][] w = workspace(lz1,wu);
+        zero(lz1,z[iz2]);
+        for (int j2=jlo2; j2<=jhi2; ++j2)
+          convTile(lx1,kx1,x[j2],ly1,ky1,y[i2-j2],lz1,kz1,z[iz2],w);
+      }
+    });
+  }
+
+  private static void convDirect(
+    final int lx1, final int lx2, final int lx3, 
+    final int kx1, final int kx2, final int kx3, final float[][][] x,
+    final int ly1, final int ly2, final int ly3, 
+    final int ky1, final int ky2, final int ky3, final float[][][] y,
+    final int lz1, final int lz2, final int lz3, 
+    final int kz1, final int kz2, final int kz3, final float[][][] z)
+  {
+    final int ilo2 = kz2-kx2-ky2;
+    final int ilo3 = kz3-kx3-ky3;
+    double cost = costDirect(lx1,ly1,lz1,kz1-kx1-ky1) *
+                  costDirect(lx2,ly2,lz2,ilo2) *
+                  costDirect(lx3,ly3,lz3,ilo3);
+    int nz = lz2*lz3;
+    final Parallel.Unsafe<float[][]> wu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(0,nz,1,chunk(nz,cost),new Parallel.LoopInt() {
+      public void compute(int iz) {
+        int iz2 = iz%lz2;
+        int iz3 = iz/lz2;
+        int i2 = ilo2+iz2;
+        int i3 = ilo3+iz3;
+        int jlo2 = max(0,i2-ly2+1);
+        int jhi2 = min(lx2-1,i2);
+        int jlo3 = max(0,i3-ly3+1);
+        int jhi3 = min(lx3-1,i3);
+        float[] z32 = z[iz3][iz2];
+        float[][] w = workspace(lz1,wu);
+        zero(lz1,z32);
+        for (int j3=jlo3; j3<=jhi3; ++j3) {
+          for (int j2=jlo2; j2<=jhi2; ++j2) {
+            convTile(lx1,kx1,x[j3][j2],ly1,ky1,y[i3-j3][i2-j2],lz1,kz1,z32,w);
+          }
+        }
+      }
+    });
+  }
+
+  // Returns the workspace w[4][lz1] for convTile that is reused by the
+  // current thread, or null, if output arrays are too short to copy.
+  private static float[][] workspace(int lz1, Parallel.Unsafe<float[][]> wu) {
+    if (lz1<NCOPY)
+      return null;
+    float[][] w = wu.get();
+    if (w==null) wu.set(w=new float[4][lz1]);
+    return w;
+  }
+
+  // Returns the chunk size for a parallel loop over n output arrays,
+  // for which the total cost of direct summation is as specified.
+  private static int chunk(int n, double cost) {
+    return (int)max(1.0,min(n,NWORK*n/cost));
+  }
+
+  // Like convFast below, but accumulates the convolution sum, as in 
+  // z += x*y, where "*" denotes convolution. Loops over samples of the
+  // shorter sequence x are outside loops over output samples z. Each
+  // inner loop accumulates products for four samples of x and for those
+  // output samples z for which all four indices of y are in bounds, so 
+  // that z is loaded and stored only once for every four multiply-adds.
+  // If the length of x is not a multiple of four, the last four samples 
+  // include zeros beyond the end of x. Products for fewer than four 
+  // samples of x, near the ends of y, are accumulated with simpler loops.
+  //
+  // Iterations of the inner loops are independent, but some compilers 
+  // vectorize them only if all arrays are indexed alike. Therefore, if 
+  // the inner loops are long enough to amortize the cost of copying, and 
+  // if a workspace w[4][lz] is provided, the four shifted parts of y 
+  // required are first copied into w, so that w and z have the same 
+  // indices in those loops.
+  private static void convTile(
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z, float[][] w)
+  {
+    if (lx>ly) {
+      int lt = lx;  lx = ly;  ly = lt;
+      int kt = kx;  kx = ky;  ky = kt;
+      float[] t = x;  x = y;  y = t;
+    }
+    int k = kz-kx-ky;
+    for (int j=0; j<lx; j+=4) {
+      int jn = min(lx,j+4);
+      int izlo = max(0,j+3-k);
+      int izhi = min(lz-1,j+ly-1-k);
+      if (izlo<=izhi) {
+        for (int jt=j; jt<jn; ++jt) {
+          convAxpy(x[jt],jt,ly,y,k,0,izlo-1,z);
+          convAxpy(x[jt],jt,ly,y,k,izhi+1,lz-1,z);
+        }
+        float x0 = x[j];
+        float x1 = (j+1<lx)?x[j+1]:0.0f;
+        float x2 = (j+2<lx)?x[j+2]:0.0f;
+        float x3 = (j+3<lx)?x[j+3]:0.0f;
+        int nz = 1+izhi-izlo;
+        int iy = izlo+k-j;
+        if (w!=null && nz>=NCOPY) {
+          float[] w0 = w[0], w1 = w[1], w2 = w[2], w3 = w[3];
+          System.arraycopy(y,iy  ,w0,izlo,nz);
+          System.arraycopy(y,iy-1,w1,izlo,nz);
+          System.arraycopy(y,iy-2,w2,izlo,nz);
+          System.arraycopy(y,iy-3,w3,izlo,nz);
+          for (int iz=izlo; iz<=izhi; ++iz)
+            z[iz] += x0*w0[iz]+x1*w1[iz]+x2*w2[iz]+x3*w3[iz];
+        } else {
+          for (int iz=izlo; iz<=izhi; ++iz,++iy)
+            z[iz] += x0*y[iy]+x1*y[iy-1]+x2*y[iy-2]+x3*y[iy-3];
+        }
+      } else {
+        for (int jt=j; jt<jn; ++jt)
+          convAxpy(x[jt],jt,ly,y,k,0,lz-1,z);
+      }
+    }
+  }
+
+  // Minimum number of output samples for which shifted parts of y are 
+  // copied into a workspace in convTile.
+  private static final int NCOPY = 256;
+
+  // Accumulates products z[iz] += xj*y[iz+k-j], for all array indices
+  // izlo <= iz <= izhi for which the index iz+k-j is in bounds.
+  private static void convAxpy(
+    float xj, int j, int ly, float[] y, int k, int izlo, int izhi, float[] z)
+  {
+    int ilo = max(izlo,j-k);
+    int ihi = min(izhi,j+ly-1-k);
+    for (int iz=ilo,iy=ilo+k-j; iz<=ihi; ++iz,++iy)
+      z[iz] += xj*y[iy];
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // Convolution with fast Fourier transforms (FFTs).
+  //
+  // Costs are estimated in units of one multiply-add in direct summation.
+  // A real-to-complex or complex-to-real FFT of n real samples costs 
+  // about n*log2(n) of these units, and copying, zeroing, and multiplying
+  // spectra cost a few more units per sample. For 2-D and 3-D sequences,
+  // n is the total number of samples in the arrays transformed.
+  //
+  // Full FFT methods transform both x and y, multiply their spectra, and
+  // inverse transform the product. The FFT lengths are only long enough 
+  // to prevent wraparound for array indices i = ilo, ilo+1, ..., ihi of 
+  // the non-zero output samples. In each dimension, the linear 
+  // convolution has length lc = lx+ly-1, and a circular convolution with 
+  // length nfft is free of wraparound for those indices i if both 
+  // ihi < nfft and lc-1-ilo < nfft. The FFT length must also be not less 
+  // than lx and ly, so that the arrays transformed contain x and y.
+  //
+  // The overlap-save method for 1-D sequences transforms the shorter
+  // sequence x only once. It then computes output samples in blocks. For
+  // each block, nfft samples of the longer sequence y are transformed,
+  // and the last nfft-lx+1 samples of the circular convolution equal
+  // samples of the linear convolution. The FFT length nfft is chosen to
+  // minimize the total cost of all blocks.
+  ///////////////////////////////////////////////////////////////////////////
+
+  private static final double FFT_COST = 1.0; // per n*log2(n)
+  private static final double FFT_COPY = 4.0; // per sample
+  private static final double LOG2 = log(2.0);
+
+  // Uses an FFT method, if cheaper than direct summation, to compute the 
+  // 1-D convolution z = x*y, with shift k = kz-kx-ky. Returns true, if an 
+  // FFT method was used; false, otherwise.
+  private static boolean convByFft(double crossover,
+    int lx, float[] x, int ly, float[] y, int lz, int k, float[] z)
+  {
+    if (lx>ly) {
+      int lt = lx;  lx = ly;  ly = lt;
+      float[] t = x;  x = y;  y = t;
+    }
+    int ilo = max(0,k);
+    int ihi = min(lx+ly-2,k+lz-1);
+    if (ilo>ihi)
+      return false;
+    int nz = 1+ihi-ilo;
+    int nfull = nfftFull(true,lx,ly,lz,k);
+    int nsave = nfftSave(lx,nz);
+    double cfull = (nfull>0)?3.0*costFft(nfull):Double.MAX_VALUE;
+    double csave = (nsave>0)?costSave(nsave,lx,nz):Double.MAX_VALUE;
+    double cfft = min(cfull,csave);
+    if (cfft==Double.MAX_VALUE || 
+        costDirect(lx,ly,lz,k)<=crossover*cfft)
+      return false;
+    if (cfull<=csave) {
+      convFull(nfull,lx,x,ly,y,lz,k,z);
+    } else {
+      convSave(nsave,lx,x,ly,y,lz,k,z);
+    }
+    return true;
+  }
+
+  // Uses an FFT method, if cheaper than direct summation, to compute the 
+  // 2-D convolution z = x*y. Returns true, if an FFT method was used.
+  private static boolean convByFft(double crossover,
+    int lx1, int lx2, float[][] x,
+    int ly1, int ly2, float[][] y,
+    int lz1, int lz2, int k1, int k2, float[][] z)
+  {
+    int nfft1 = nfftFull(true,lx1,ly1,lz1,k1);
+    int nfft2 = nfftFull(false,lx2,ly2,lz2,k2);
+    if (nfft1==0 || nfft2==0)
+      return false;
+    double cfft = 3.0*costFft((double)nfft1*nfft2);
+    double cdirect = costDirect(lx1,ly1,lz1,k1)*costDirect(lx2,ly2,lz2,k2);
+    if (cdirect<=crossover*cfft)
+      return false;
+    FftReal fft1 = new FftReal(nfft1);
+    FftComplex fft2 = new FftComplex(nfft2);
+    int nk1 = nfft1/2+1;
+    float[][] cx = new float[nfft2][nfft1+2];
+    float[][] cy = new float[nfft2][nfft1+2];
+    copy(lx1,lx2,x,cx);
+    copy(ly1,ly2,y,cy);
+    fft1.realToComplex1(-1,lx2,cx,cx);
+    fft1.realToComplex1(-1,ly2,cy,cy);
+    fft2.complexToComplex2(-1,nk1,cx,cx);
+    fft2.complexToComplex2(-1,nk1,cy,cy);
+    float s = (float)(1.0/((double)nfft1*nfft2));
+    for (int i2=0; i2<nfft2; ++i2)
+      mul(nk1,s,cx[i2],cy[i2]);
+    fft2.complexToComplex2(1,nk1,cy,cy);
+    int lc1 = lx1+ly1-1;
+    int lc2 = lx2+ly2-1;
+    for (int iz2=0,i2=k2; iz2<lz2; ++iz2,++i2) {
+      if (0<=i2 && i2<lc2) {
+        fft1.complexToReal(1,cy[i2],cy[i2]);
+        copyOut(lc1,cy[i2],lz1,k1,z[iz2]);
+      } else {
+        zero(lz1,z[iz2]);
+      }
+    }
+    return true;
+  }
+
+  // Uses an FFT method, if cheaper than direct summation, to compute the 
+  // 3-D convolution z = x*y. Returns true, if an FFT method was used.
+  private static boolean convByFft(double crossover,
+    int lx1, int lx2, int lx3, float[][][] x,
+    int ly1, int ly2, int ly3, float[][][] y,
+    int lz1, int lz2, int lz3, int k1, int k2, int k3, float[][][] z)
+  {
+    int nfft1 = nfftFull(true,lx1,ly1,lz1,k1);
+    int nfft2 = nfftFull(false,lx2,ly2,lz2,k2);
+    int nfft3 = nfftFull(false,lx3,ly3,lz3,k3);
+    if (nfft1==0 || nfft2==0 || nfft3==0)
+      return false;
+    double cfft = 3.0*costFft((double)nfft1*nfft2*nfft3);
+    double cdirect = costDirect(lx1,ly1,lz1,k1) *
+                     costDirect(lx2,ly2,lz2,k2) *
+                     costDirect(lx3,ly3,lz3,k3);
+    if (cdirect<=crossover*cfft)
+      return false;
+    FftReal fft1 = new FftReal(nfft1);
+    FftComplex fft2 = new FftComplex(nfft2);
+    FftComplex fft3 = new FftComplex(nfft3);
+    int nk1 = nfft1/2+1;
+    float[][][] cx = new float[nfft3][nfft2][nfft1+2];
+    float[][][] cy = new float[nfft3][nfft2][nfft1+2];
+    copy(lx1,lx2,lx3,x,cx);
+    copy(ly1,ly2,ly3,y,cy);
+    fft1.realToComplex1(-1,lx2,lx3,cx,cx);
+    fft1.realToComplex1(-1,ly2,ly3,cy,cy);
+    fft2.complexToComplex2(-1,nk1,lx3,cx,cx);
+    fft2.complexToComplex2(-1,nk1,ly3,cy,cy);
+    fft3.complexToComplex3(-1,nk1,nfft2,cx,cx);
+    fft3.complexToComplex3(-1,nk1,nfft2,cy,cy);
+    float s = (float)(1.0/((double)nfft1*nfft2*nfft3));
+    for (int i3=0; i3<nfft3; ++i3)
+      for (int i2=0; i2<nfft2; ++i2)
+        mul(nk1,s,cx[i3][i2],cy[i3][i2]);
+    fft3.complexToComplex3(1,nk1,nfft2,cy,cy);
+    int lc1 = lx1+ly1-1;
+    int lc2 = lx2+ly2-1;
+    int lc3 = lx3+ly3-1;
+    for (int iz3=0,i3=k3; iz3<lz3; ++iz3,++i3) {
+      if (0<=i3 && i3<lc3) {
+        fft2.complexToComplex2(1,nk1,cy[i3],cy[i3]);
+        for (int iz2=0,i2=k2; iz2<lz2; ++iz2,++i2) {
+          if (0<=i2 && i2<lc2) {
+            fft1.complexToReal(1,cy[i3][i2],cy[i3][i2]);
+            copyOut(lc1,cy[i3][i2],lz1,k1,z[iz3][iz2]);
+          } else {
+            zero(lz1,z[iz3][iz2]);
+          }
+        }
+      } else {
+        zero(lz1,lz2,z[iz3]);
+      }
+    }
+    return true;
+  }
+
+  // Full FFT method for the 1-D convolution z = x*y.
+  private static void convFull(
+    int nfft, int lx, float[] x, int ly, float[] y, int lz, int k, float[] z)
+  {
+    FftReal fft = new FftReal(nfft);
+    float[] cx = new float[nfft+2];
+    float[] cy = new float[nfft+2];
+    copy(lx,x,cx);
+    copy(ly,y,cy);
+    fft.realToComplex(-1,cx,cx);
+    fft.realToComplex(-1,cy,cy);
+    mul(nfft/2+1,1.0f/nfft,cx,cy);
+    fft.complexToReal(1,cy,cy);
+    copyOut(lx+ly-1,cy,lz,k,z);
+  }
+
+  // Overlap-save method for the 1-D convolution z = x*y, where the 
+  // sequence x is not longer than the sequence y.
+  private static void convSave(
+    int nfft, int lx, float[] x, int ly, float[] y, int lz, int k, float[] z)
+  {
+    FftReal fft = new FftReal(nfft);
+    int nk = nfft/2+1;
+    float s = 1.0f/nfft;
+    float[] cx = new float[nfft+2];
+    float[] cy = new float[nfft+2];
+    copy(lx,x,cx);
+    fft.realToComplex(-1,cx,cx);
+    int ilo = max(0,k);
+    int ihi = min(lx+ly-2,k+lz-1);
+    for (int iz=0,i=k; iz<lz; ++iz,++i) {
+      if (i<ilo || ihi<i)
+        z[iz] = 0.0f;
+    }
+    int mb = nfft-lx+1;
+    for (int i=ilo; i<=ihi; i+=mb) {
+      int j = i-lx+1;
+      int jlo = max(0,j);
+      int jhi = min(ly,j+nfft);
+      for (int jc=0; jc<jlo-j; ++jc)
+        cy[jc] = 0.0f;
+      System.arraycopy(y,jlo,cy,jlo-j,jhi-jlo);
+      for (int jc=jhi-j; jc<nfft; ++jc)
+        cy[jc] = 0.0f;
+      fft.realToComplex(-1,cy,cy);
+      mul(nk,s,cx,cy);
+      fft.complexToReal(1,cy,cy);
+      System.arraycopy(cy,lx-1,z,i-k,min(mb,1+ihi-i));
+    }
+  }
+
+  // Returns the number of multiply-adds in direct summation for output
+  // samples with array indices i = k, k+1, ..., k+lz-1.
+  private static double costDirect(int lx, int ly, int lz, int k) {
+    double cost = 0.0;
+    for (int i=max(0,k),ihi=min(lx+ly-2,k+lz-1); i<=ihi; ++i)
+      cost += min(lx-1,i)-max(0,i-ly+1)+1;
+    return cost;
+  }
+
+  // Returns the estimated cost of an FFT of n real samples.
+  private static double costFft(double n) {
+    return FFT_COST*n*log(n)/LOG2+FFT_COPY*n;
+  }
+
+  // Returns the estimated cost of the overlap-save method for nz output
+  // samples, where lx is the length of the shorter sequence.
+  private static double costSave(int nfft, int lx, int nz) {
+    int nb = 1+(nz-1)/(nfft-lx+1);
+    return (1+2*nb)*costFft(nfft);
+  }
+
+  // Returns the FFT length for a full FFT method in one dimension, or 
+  // zero, if all output samples are zero or if that length is too long.
+  // If real, the length is valid for FftReal; else, for FftComplex.
+  private static int nfftFull(boolean real, int lx, int ly, int lz, int k) {
+    int ilo = max(0,k);
+    int ihi = min(lx+ly-2,k+lz-1);
+    if (ilo>ihi)
+      return 0;
+    int n = max(max(1+ihi,lx+ly-1-ilo),max(lx,ly));
+    if (real) {
+      return (n<=1441440)?FftReal.nfftFast(n):0;
+    } else {
+      return (n<=720720)?FftComplex.nfftFast(n):0;
+    }
+  }
+
+  // Returns the FFT length with lowest cost for the overlap-save method, 
+  // or zero, if the shorter sequence is too long for that method.
+  private static int nfftSave(int lx, int nz) {
+    int nbest = 0;
+    double cbest = 0.0;
+    for (int n=2*lx; n<=1441440; n*=2) {
+      int nfft = FftReal.nfftFast(n);
+      double cost = costSave(nfft,lx,nz);
+      if (nbest==0 || cost<cbest) {
+        nbest = nfft;
+        cbest = cost;
+      }
+      if (nfft-lx+1>=nz)
+        break;
+    }
+    return nbest;
+  }
+
+  // Multiplies n complex numbers in cy by scaled complex numbers s*cx.
+  private static void mul(int n, float s, float[] cx, float[] cy) {
+    for (int ir=0,ii=1,nn=2*n; ir<nn; ir+=2,ii+=2) {
+      float xr = s*cx[ir];
+      float xi = s*cx[ii];
+      float yr = cy[ir];
+      float yi = cy[ii];
+      cy[ir] = xr*yr-xi*yi;
+      cy[ii] = xr*yi+xi*yr;
+    }
+  }
+
+  // Copies to z the samples with array indices i = k, k+1, ..., k+lz-1 
+  // of a linear convolution c with length lc, and zeros for other i.
+  private static void copyOut(int lc, float[] c, int lz, int k, float[] z) {
+    for (int iz=0,i=k; iz<lz; ++iz,++i)
+      z[iz] = (0<=i && i<lc)?c[i]:0.0f;
+  }
 
   ///////////////////////////////////////////////////////////////////////////
   // Convolution with only (slightly more than) one load per multiply-add. 
@@ -496,144 +1405,6 @@ public class Conv {
       z[iz] = 0.0f;
   }
 
-  // Like convFast above, but accumulates the convolution sum, as in 
-  // z += x*y, ,where "*" denotes convolution. This method is used in 
-  // convolution of 2-D and 3-D sequences.
-  private static void convSum(
-    int lx, int kx, float[] x,
-    int ly, int ky, float[] y,
-    int lz, int kz, float[] z)
-  {
-    // If necessary, swap x and y so that x is the shorter sequence.
-    // This simplifies the logic below.
-    if (lx>ly) {
-      int lt = lx;  lx = ly;  ly = lt;
-      int kt = kx;  kx = ky;  ky = kt;
-      float[] t = x;  x = y;  y = t;
-    }
-
-    // Bounds for index i.
-    int imin = kz-kx-ky;
-    int imax = imin+lz-1;
-
-    // Variables that we expect to reside in registers.
-    int i,ilo,ihi,j,jlo,jhi,iz;
-    float sa,sb,xa,xb,ya,yb;
-
-    // Rolling on: 0 <= i <= lx-2 and 0 <= j <= i
-    ilo = max(0,imin);
-    ihi = min(lx-2,imax);
-    jlo = 0;
-    jhi = ilo;
-    for (i=ilo,iz=i-imin; i<ihi; i+=2,iz+=2,jhi+=2) {
-      sa = z[iz  ];
-      sb = z[iz+1];
-      yb = y[i-jlo+1];
-      for (j=jlo; j<jhi; j+=2) {
-        xa = x[j];
-        sb += xa*yb;
-        ya = y[i-j];
-        sa += xa*ya;
-        xb = x[j+1];
-        sb += xb*ya;
-        yb = y[i-j-1];
-        sa += xb*yb;
-      }
-      xa = x[j];
-      sb += xa*yb;
-      if (j==jhi) {
-        ya = y[i-j];
-        sa += xa*ya;
-        xb = x[j+1];
-        sb += xb*ya;
-      }
-      z[iz  ] = sa;
-      z[iz+1] = sb;
-    }
-    if (i==ihi) {
-      jlo = 0;
-      jhi = i;
-      sa = z[iz];
-      for (j=jlo; j<=jhi; ++j)
-        sa += x[j]*y[i-j];
-      z[iz] = sa;
-    }
-
-    // Middle: lx-1 <= i <= ly-1 and 0 <= j <= lx-1
-    ilo = max(lx-1,imin);
-    ihi = min(ly-1,imax);
-    jlo = 0;
-    jhi = lx-1;
-    for (i=ilo,iz=i-imin; i<ihi; i+=2,iz+=2) {
-      sa = z[iz  ];
-      sb = z[iz+1];
-      yb = y[i-jlo+1];
-      for (j=jlo; j<jhi; j+=2) {
-        xa = x[j];
-        sb += xa*yb;
-        ya = y[i-j];
-        sa += xa*ya;
-        xb = x[j+1];
-        sb += xb*ya;
-        yb = y[i-j-1];
-        sa += xb*yb;
-      }
-      if (j==jhi) {
-        xa = x[j];
-        sb += xa*yb;
-        ya = y[i-j];
-        sa += xa*ya;
-      }
-      z[iz  ] = sa;
-      z[iz+1] = sb;
-    }
-    if (i==ihi) {
-      sa = z[iz];
-      for (j=jlo; j<=jhi; ++j)
-        sa += x[j]*y[i-j];
-      z[iz] = sa;
-    }
-
-    // Rolling off: ly <= i <= lx+ly-2 and i-ly+1 <= j <= lx-1
-    ilo = max(ly,imin);
-    ihi = min(lx+ly-2,imax);
-    jlo = ihi-ly+1;
-    jhi = lx-1;
-    for (i=ihi,iz=i-imin; i>ilo; i-=2,iz-=2,jlo-=2) {
-      sa = z[iz  ];
-      sb = z[iz-1];
-      yb = y[i-jhi-1];
-      for (j=jhi; j>jlo; j-=2) {
-        xa = x[j];
-        sb += xa*yb;
-        ya = y[i-j];
-        sa += xa*ya;
-        xb = x[j-1];
-        sb += xb*ya;
-        yb = y[i-j+1];
-        sa += xb*yb;
-      }
-      xa = x[j];
-      sb += xa*yb;
-      if (j==jlo) {
-        ya = y[i-j];
-        sa += xa*ya;
-        xb = x[j-1];
-        sb += xb*ya;
-      }
-      z[iz  ] = sa;
-      z[iz-1] = sb;
-    }
-    if (i==ilo) {
-      jlo = i-ly+1;
-      jhi = lx-1;
-      sa = z[iz];
-      for (j=jhi; j>=jlo; --j)
-    	sa += x[j]*y[i-j];
-      z[iz] = sa;
-    }
-  }
-
   private static void zero(int n1, float[] z) {
     for (int i1=0; i1<n1; ++i1)
       z[i1] = 0.0f;
@@ -0,0 +1,636 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Discrete cosine transforms of types II and III, computed with FFTs.
+ * For an array x of n real numbers, the type-II transform (DCT-II) is
+ * <pre><code>
+ *   y[k] = 2*sum x[j]*cos(pi*(j+1/2)*k/n), for j = 0, 1, ..., n-1,
+ * </code></pre>
+ * and the type-III transform (DCT-III) is
+ * <pre><code>
+ *   y[k] = x[0]+2*sum x[j]*cos(pi*j*(k+1/2)/n), for j = 1, 2, ..., n-1,
+ * </code></pre>
+ * for k = 0, 1, ..., n-1. These are the definitions used by FFTW. Each
+ * transform is the transpose of the other, and a DCT-III of a DCT-II
+ * multiplies an array by 2*n, for each transformed dimension of length n.
+ * The methods scale divide by this factor.
+ * <p>
+ * The DCT-II of each dimension of a 2-D or 3-D array diagonalizes the
+ * finite-difference Laplacian with Neumann (zero-slope) boundary
+ * conditions located halfway between samples. A Poisson equation with
+ * such boundary conditions may therefore be solved with one DCT-II, a
+ * division by eigenvalues, and one DCT-III, without the mirrored arrays
+ * and complex FFTs that would otherwise be required. For Dirichlet
+ * boundary conditions, see {@link Dst}.
+ * <p>
+ * Transformed dimensions may have any valid FFT length n for
+ * {@link FftReal}, such as those returned by {@link FftReal#nfftSmall(int)}
+ * and {@link FftReal#nfftFast(int)}. Each 1-D transform of such a length
+ * is computed with one real-to-complex or complex-to-real FFT of length n.
+ * Other lengths, such as 1000, must not be greater than 360360. For them,
+ * the DFT of length n required by each 1-D transform is computed as a
+ * chirp-z (Bluestein) convolution, with complex FFTs of length no less
+ * than 2*n-1. Those transforms are slower, but arrays must not be padded
+ * with zeros to a valid FFT length, because padding would move the
+ * boundaries.
+ * <p>
+ * Transforms of 2-D and 3-D arrays are passes of 1-D transforms along
+ * each dimension. If parallel, each pass is split into independent parts
+ * that are computed in parallel. Those parts are blocks of rows for the
+ * 1st dimension, and blocks of columns copied to small contiguous arrays
+ * for the 2nd and 3rd dimensions. Because every 1D transform of a row
+ * or column is independent of the others, dividing them among threads
+ * does not change the result.
+ * <p>
+ * Input and output arrays may be the same array.
+ * @version 2026.10.16
+ */
+public class Dct {
+
+  /**
+   * Constructs a discrete cosine transform.
+   */
+  public Dct() {
+  }
+
+  /**
+   * Sets the use of multiple threads in transforms of 2-D and 3-D arrays.
+   * The default is false.
+   * @param parallel true, for parallel transforms; false, otherwise.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
+  /**
+   * Computes the DCT-II of a 1-D array.
+   * @param x input array[n1].
+   * @param y output array[n1].
+   */
+  public void applyII(float[] x, float[] y) {
+    int n1 = x.length;
+    checkArray(n1,y,"y");
+    Axis a1 = axis(n1);
+    dct2(a1,x,y,new float[n1+2]);
+  }
+
+  /**
+   * Computes the DCT-II of a 2-D array.
+   * @param x input array[n2][n1].
+   * @param y output array[n2][n1].
+   */
+  public void applyII(float[][] x, float[][] y) {
+    apply(true,x,y);
+  }
+
+  /**
+   * Computes the DCT-II of a 3-D array.
+   * @param x input array[n3][n2][n1].
+   * @param y output array[n3][n2][n1].
+   */
+  public void applyII(float[][][] x, float[][][] y) {
+    apply(true,x,y);
+  }
+
+  /**
+   * Computes the DCT-III of a 1-D array.
+   * @param x input array[n1].
+   * @param y output array[n1].
+   */
+  public void applyIII(float[] x, float[] y) {
+    int n1 = x.length;
+    checkArray(n1,y,"y");
+    Axis a1 = axis(n1);
+    dct3(a1,x,y,new float[n1+2]);
+  }
+
+  /**
+   * Computes the DCT-III of a 2-D array.
+   * @param x input array[n2][n1].
+   * @param y output array[n2][n1].
+   */
+  public void applyIII(float[][] x, float[][] y) {
+    apply(false,x,y);
+  }
+
+  /**
+   * Computes the DCT-III of a 3-D array.
+   * @param x input array[n3][n2][n1].
+   * @param y output array[n3][n2][n1].
+   */
+  public void applyIII(float[][][] x, float[][][] y) {
+    apply(false,x,y);
+  }
+
+  /**
+   * Scales the specified 1-D array by 1/(2*n1). The inverse of a DCT-II
+   * is a DCT-III followed by this scaling, and vice versa.
+   * @param x input/output array[n1].
+   */
+  public void scale(float[] x) {
+    mul(0.5f/x.length,x,x);
+  }
+
+  /**
+   * Scales the specified 2-D array by 1/(4*n1*n2). The inverse of a
+   * DCT-II is a DCT-III followed by this scaling, and vice versa.
+   * @param x input/output array[n2][n1].
+   */
+  public void scale(float[][] x) {
+    mul(0.25f/x[0].length/x.length,x,x);
+  }
+
+  /**
+   * Scales the specified 3-D array by 1/(8*n1*n2*n3). The inverse of a
+   * DCT-II is a DCT-III followed by this scaling, and vice versa.
+   * @param x input/output array[n3][n2][n1].
+   */
+  public void scale(float[][][] x) {
+    mul(0.125f/x[0][0].length/x[0].length/x.length,x,x);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final int NBLOCK = 64; // rows or columns per part
+  private boolean _parallel;
+
+  // An FFT and tables of cosines and sines for 1-D transforms of length
+  // n, with c[k] = cos(pi*k/(2*n)) and s[k] = sin(pi*k/(2*n)), for k = 0,
+  // 1, ..., n/2. If n is not a valid length for FftReal, a chirp replaces
+  // the FFT. Axes are never modified after construction, so that they
+  // may be shared by many threads.
+  private static class Axis {
+    int n;
+    FftReal fft; // null, if n is not a valid FFT length
+    Chirp chirp; // null, if n is a valid FFT length
+    float[] c,s;
+    Axis(int n) {
+      Check.argument(0<n,"0 < n");
+      this.n = n;
+      if (n%2==0 && Pfacc.nfftValid(n/2)) {
+        fft = new FftReal(n);
+      } else {
+        Check.argument(n<=360360,"n <= 360360 or n is valid FFT length");
+        chirp = new Chirp(n);
+      }
+      int h = n/2;
+      c = new float[h+1];
+      s = new float[h+1];
+      for (int k=0; k<=h; ++k) {
+        double theta = 0.5*DBL_PI*k/n;
+        c[k] = (float)cos(theta);
+        s[k] = (float)sin(theta);
+      }
+    }
+    // Real-to-complex DFT, with sign -1, of w[n] to w[n+2], in place.
+    void realToComplex(float[] w) {
+      if (fft!=null) {
+        fft.realToComplex(-1,w,w);
+      } else {
+        chirp.realToComplex(w);
+      }
+    }
+    // Complex-to-real DFT, with sign 1, of w[n+2] to w[n], in place.
+    void complexToReal(float[] w) {
+      if (fft!=null) {
+        fft.complexToReal(1,w,w);
+      } else {
+        chirp.complexToReal(w);
+      }
+    }
+  }
+
+  // A complex DFT with sign -1 of any length n, computed as a chirp-z
+  // (Bluestein) convolution. With b[j] = exp(i*pi*j*j/n), the DFT is
+  // Z[k] = conj(b[k])*sum z[j]*conj(b[j])*b[k-j], and the sum is a cyclic
+  // convolution computed with complex FFTs of length nfft &gt;= 2*n-1.
+  // Tabulated are the chirp b and the FFT g of b, scaled by 1/nfft.
+  // Workspace arrays a[2*nfft] and z[2*n] are allocated once per thread.
+  private static class Chirp {
+    int n,nfft;
+    FftComplex fft;
+    float[] b,g;
+    Parallel.Unsafe<float[][]> wu = new Parallel.Unsafe<float[][]>();
+    Chirp(int n) {
+      this.n = n;
+      nfft = FftComplex.nfftSmall(2*n-1);
+      fft = new FftComplex(nfft);
+      b = new float[2*n];
+      g = new float[2*nfft];
+      for (int j=0; j<n; ++j) {
+        double theta = DBL_PI*(((long)j*j)%(2*n))/n;
+        float br = (float)cos(theta);
+        float bi = (float)sin(theta);
+        b[2*j  ] = br;
+        b[2*j+1] = bi;
+        g[2*j  ] = br;
+        g[2*j+1] = bi;
+        if (j>0) {
+          g[2*(nfft-j)  ] = br;
+          g[2*(nfft-j)+1] = bi;
+        }
+      }
+      fft.complexToComplex(-1,g,g);
+      mul(1.0f/nfft,g,g);
+    }
+    // Returns the workspace {a,z} for the current thread.
+    float[][] workspace() {
+      float[][] w = wu.get();
+      if (w==null)
+        wu.set(w=new float[][]{new float[2*nfft],new float[2*n]});
+      return w;
+    }
+    // DFT of z[2*n], in place, with workspace a[2*nfft].
+    void dft(float[] z, float[] a) {
+      for (int j=0; j<n; ++j) {
+        float zr = z[2*j], zi = z[2*j+1];
+        float br = b[2*j], bi = b[2*j+1];
+        a[2*j  ] = zr*br+zi*bi;
+        a[2*j+1] = zi*br-zr*bi;
+      }
+      for (int j=2*n; j<2*nfft; ++j)
+        a[j] = 0.0f;
+      fft.complexToComplex(-1,a,a);
+      for (int k=0; k<nfft; ++k) {
+        float ar = a[2*k], ai = a[2*k+1];
+        float gr = g[2*k], gi = g[2*k+1];
+        a[2*k  ] = ar*gr-ai*gi;
+        a[2*k+1] = ar*gi+ai*gr;
+      }
+      fft.complexToComplex(1,a,a);
+      for (int k=0; k<n; ++k) {
+        float ar = a[2*k], ai = a[2*k+1];
+        float br = b[2*k], bi = b[2*k+1];
+        z[2*k  ] = ar*br+ai*bi;
+        z[2*k+1] = ai*br-ar*bi;
+      }
+    }
+    void realToComplex(float[] w) {
+      float[][] ws = workspace();
+      float[] z = ws[1];
+      for (int j=0; j<n; ++j) {
+        z[2*j  ] = w[j];
+        z[2*j+1] = 0.0f;
+      }
+      dft(z,ws[0]);
+      System.arraycopy(z,0,w,0,2*(n/2+1));
+    }
+    // The inverse DFT of a Hermitian W is the real part of the DFT of
+    // conj(W), where conj(W[k]) = W[n-k].
+    void complexToReal(float[] w) {
+      float[][] ws = workspace();
+      float[] z = ws[1];
+      for (int k=0; k<=n/2; ++k) {
+        z[2*k  ] =  w[2*k  ];
+        z[2*k+1] = -w[2*k+1];
+        if (k>0 && n-k>n/2) {
+          z[2*(n-k)  ] = w[2*k  ];
+          z[2*(n-k)+1] = w[2*k+1];
+        }
+      }
+      dft(z,ws[0]);
+      for (int j=0; j<n; ++j)
+        w[j] = z[2*j];
+    }
+  }
+  private static final ConcurrentHashMap<Integer,Axis> _axes =
+    new ConcurrentHashMap<Integer,Axis>();
+  private static Axis axis(int n) {
+    Axis a = _axes.get(n);
+    if (a==null) {
+      a = new Axis(n);
+      Axis b = _axes.putIfAbsent(n,a);
+      if (b!=null)
+        a = b;
+    }
+    return a;
+  }
+
+  private void apply(boolean ii, float[][] x, float[][] y) {
+    int n1 = x[0].length;
+    int n2 = x.length;
+    checkArray(n1,n2,x,"x");
+    checkArray(n1,n2,y,"y");
+    Axis a1 = axis(n1);
+    Axis a2 = axis(n2);
+    apply1(ii,a1,n2,x,y);
+    apply2(ii,a2,n1,y);
+  }
+
+  private void apply(boolean ii, float[][][] x, float[][][] y) {
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    checkArray(n1,n2,n3,x,"x");
+    checkArray(n1,n2,n3,y,"y");
+    Axis a1 = axis(n1);
+    Axis a2 = axis(n2);
+    Axis a3 = axis(n3);
+    apply1(ii,a1,n2,n3,x,y);
+    apply2(ii,a2,n1,n3,y);
+    apply3(ii,a3,n1,n2,y);
+  }
+
+  // Passes of 1-D transforms along one dimension of 2-D and 3-D arrays.
+  // For the 1st dimension, each part is a block of rows that share one
+  // workspace. For the 2nd and 3rd dimensions, each part is a block of
+  // columns, transformed in place.
+
+  private void apply1(
+    final boolean ii, final Axis a1, final int n2,
+    final float[][] x, final float[][] y)
+  {
+    final int nb = (n2+NBLOCK-1)/NBLOCK;
+    loop(nb,new Parallel.LoopInt() {
+      public void compute(int ib) {
+        float[] w = new float[a1.n+2];
+        for (int i2=ib*NBLOCK,j2=min(i2+NBLOCK,n2); i2<j2; ++i2)
+          apply(ii,a1,x[i2],y[i2],w);
+      }
+    });
+  }
+  private void apply1(
+    final boolean ii, final Axis a1, final int n2, int n3,
+    final float[][][] x, final float[][][] y)
+  {
+    final int nb = (n2+NBLOCK-1)/NBLOCK;
+    loop(nb*n3,new Parallel.LoopInt() {
+      public void compute(int ib3) {
+        int i3 = ib3/nb;
+        int ib = ib3%nb;
+        float[] w = new float[a1.n+2];
+        for (int i2=ib*NBLOCK,j2=min(i2+NBLOCK,n2); i2<j2; ++i2)
+          apply(ii,a1,x[i3][i2],y[i3][i2],w);
+      }
+    });
+  }
+  private void apply2(
+    final boolean ii, final Axis a2, final int n1, final float[][] y)
+  {
+    final int nb = (n1+NBLOCK-1)/NBLOCK;
+    loop(nb,new Parallel.LoopInt() {
+      public void compute(int ib) {
+        int j1 = ib*NBLOCK;
+        apply(ii,a2,j1,min(NBLOCK,n1-j1),y);
+      }
+    });
+  }
+  private void apply2(
+    final boolean ii, final Axis a2, final int n1, int n3,
+    final float[][][] y)
+  {
+    final int nb = (n1+NBLOCK-1)/NBLOCK;
+    loop(nb*n3,new Parallel.LoopInt() {
+      public void compute(int ib3) {
+        int j1 = (ib3%nb)*NBLOCK;
+        apply(ii,a2,j1,min(NBLOCK,n1-j1),y[ib3/nb]);
+      }
+    });
+  }
+  private void apply3(
+    final boolean ii, final Axis a3, final int n1, int n2,
+    final float[][][] y)
+  {
+    final int nb = (n1+NBLOCK-1)/NBLOCK;
+    final int n3 = a3.n;
+    loop(nb*n2,new Parallel.LoopInt() {
+      public void compute(int ib2) {
+        int i2 = ib2/nb;
+        int j1 = (ib2%nb)*NBLOCK;
+        float[][] y2 = new float[n3][];
+        for (int i3=0; i3<n3; ++i3)
+          y2[i3] = y[i3][i2];
+        apply(ii,a3,j1,min(NBLOCK,n1-j1),y2);
+      }
+    });
+  }
+  private void loop(int n, Parallel.LoopInt body) {
+    if (_parallel) {
+      Parallel.loop(n,body);
+    } else {
+      for (int i=0; i<n; ++i)
+        body.compute(i);
+    }
+  }
+
+  private static void apply(
+    boolean ii, Axis a, float[] x, float[] y, float[] w)
+  {
+    if (ii) {
+      dct2(a,x,y,w);
+    } else {
+      dct3(a,x,y,w);
+    }
+  }
+  private static void apply(
+    boolean ii, Axis a, int j1, int m1, float[][] y)
+  {
+    if (a.fft==null) {
+      applyColumns(ii,a,j1,m1,y);
+    } else if (ii) {
+      dct2(a,j1,m1,y);
+    } else {
+      dct3(a,j1,m1,y);
+    }
+  }
+  private static void applyColumns(
+    boolean ii, Axis a, int j1, int m1, float[][] y)
+  {
+    int n = a.n;
+    float[] x = new float[n];
+    float[] w = new float[n+2];
+    for (int i1=j1; i1<j1+m1; ++i1) {
+      for (int j=0; j<n; ++j)
+        x[j] = y[j][i1];
+      apply(ii,a,x,x,w);
+      for (int j=0; j<n; ++j)
+        y[j][i1] = x[j];
+    }
+  }
+
+  /**
+   * DCT-II of x[n] to y[n], with workspace w[n+2]. Samples with even
+   * and odd indices are reordered to v[j] = x[2*j] and v[n-1-j] = x[2*j+1],
+   * for j = 0, 1, ..., n/2-1, and then y[k] = 2*Re(exp(-i*pi*k/(2*n))*V[k]),
+   * where V is the DFT of v. For 0 &lt; k &lt; n-k, the outputs y[k] and
+   * y[n-k] are the real and (negated) imaginary parts of one product. If
+   * n is odd, the last sample x[n-1] is v[n/2].
+   */
+  private static void dct2(Axis a, float[] x, float[] y, float[] w) {
+    int n = a.n;
+    int h = n/2;
+    for (int j=0; j<h; ++j) {
+      w[j    ] = x[2*j  ];
+      w[n-1-j] = x[2*j+1];
+    }
+    if (n%2==1)
+      w[h] = x[n-1];
+    a.realToComplex(w);
+    float[] c = a.c;
+    float[] s = a.s;
+    y[0] = 2.0f*w[0];
+    if (n%2==0)
+      y[h] = 2.0f*c[h]*w[n];
+    for (int k=1; k<n-h; ++k) {
+      float ck = 2.0f*c[k];
+      float sk = 2.0f*s[k];
+      float vr = w[2*k  ];
+      float vi = w[2*k+1];
+      y[k  ] = ck*vr+sk*vi;
+      y[n-k] = sk*vr-ck*vi;
+    }
+  }
+
+  /**
+   * DCT-III of x[n] to y[n], with workspace w[n+2]. This is the transpose
+   * of the DCT-II above. Each V[k] = exp(i*pi*k/(2*n))*(x[k]-i*x[n-k]) is
+   * computed from two inputs, and the inverse DFT of V is reordered.
+   */
+  private static void dct3(Axis a, float[] x, float[] y, float[] w) {
+    int n = a.n;
+    int h = n/2;
+    float[] c = a.c;
+    float[] s = a.s;
+    w[0] = x[0];
+    w[1] = 0.0f;
+    if (n%2==0) {
+      w[n  ] = 2.0f*c[h]*x[h];
+      w[n+1] = 0.0f;
+    }
+    for (int k=1; k<n-h; ++k) {
+      float xk = x[k  ];
+      float xn = x[n-k];
+      w[2*k  ] = c[k]*xk+s[k]*xn;
+      w[2*k+1] = s[k]*xk-c[k]*xn;
+    }
+    a.complexToReal(w);
+    for (int j=0; j<h; ++j) {
+      y[2*j  ] = w[j    ];
+      y[2*j+1] = w[n-1-j];
+    }
+    if (n%2==1)
+      y[n-1] = w[h];
+  }
+
+  /**
+   * DCT-II along the 2nd dimension of m1 columns, beginning with column
+   * j1, of an array y[n][n1]. The columns are copied to and from small
+   * contiguous arrays, so that they are transformed in cache.
+   */
+  private static void dct2(Axis a, int j1, int m1, float[][] y) {
+    int n = a.n;
+    int h = n/2;
+    float[][] g = new float[n][m1];
+    float[][] f = new float[h+1][2*m1];
+    for (int j=0; j<h; ++j) {
+      System.arraycopy(y[2*j  ],j1,g[j    ],0,m1);
+      System.arraycopy(y[2*j+1],j1,g[n-1-j],0,m1);
+    }
+    a.fft.realToComplex2(-1,m1,g,f);
+    float[] c = a.c;
+    float[] s = a.s;
+    float ch = 2.0f*c[h];
+    float[] f0 = f[0], y0 = y[0];
+    float[] fh = f[h], yh = y[h];
+    for (int i1=0; i1<m1; ++i1) {
+      y0[j1+i1] = 2.0f*f0[2*i1];
+      yh[j1+i1] = ch*fh[2*i1];
+    }
+    for (int k=1; k<h; ++k) {
+      float ck = 2.0f*c[k];
+      float sk = 2.0f*s[k];
+      float[] fk = f[k];
+      float[] yk = y[k];
+      float[] yn = y[n-k];
+      for (int i1=0; i1<m1; ++i1) {
+        float vr = fk[2*i1  ];
+        float vi = fk[2*i1+1];
+        yk[j1+i1] = ck*vr+sk*vi;
+        yn[j1+i1] = sk*vr-ck*vi;
+      }
+    }
+  }
+
+  /**
+   * DCT-III along the 2nd dimension of m1 columns, beginning with column
+   * j1, of an array y[n][n1].
+   */
+  private static void dct3(Axis a, int j1, int m1, float[][] y) {
+    int n = a.n;
+    int h = n/2;
+    float[][] g = new float[n][m1];
+    float[][] f = new float[h+1][2*m1];
+    float[] c = a.c;
+    float[] s = a.s;
+    float ch = 2.0f*c[h];
+    float[] f0 = f[0], y0 = y[0];
+    float[] fh = f[h], yh = y[h];
+    for (int i1=0; i1<m1; ++i1) {
+      f0[2*i1] = y0[j1+i1];
+      fh[2*i1] = ch*yh[j1+i1];
+    }
+    for (int k=1; k<h; ++k) {
+      float ck = c[k];
+      float sk = s[k];
+      float[] fk = f[k];
+      float[] yk = y[k];
+      float[] yn = y[n-k];
+      for (int i1=0; i1<m1; ++i1) {
+        float xk = yk[j1+i1];
+        float xn = yn[j1+i1];
+        fk[2*i1  ] = ck*xk+sk*xn;
+        fk[2*i1+1] = sk*xk-ck*xn;
+      }
+    }
+    a.fft.complexToReal2(1,m1,f,g);
+    for (int j=0; j<h; ++j) {
+      System.arraycopy(g[j    ],0,y[2*j  ],j1,m1);
+      System.arraycopy(g[n-1-j],0,y[2*j+1],j1,m1);
+    }
+  }
+
+  private static void checkArray(int n, float[] a, String name) {
+    Check.argument(a.length>=n,"dimensions of "+name+" are valid");
+  }
+
+  private static void checkArray(int n1, int n2, float[][] a, String name) {
+    boolean ok = a.length>=n2;
+    for (int i2=0; i2<n2 && ok; ++i2)
+      ok = a[i2].length>=n1;
+    Check.argument(ok,"dimensions of "+name+" are valid");
+  }
+
+  private static void checkArray(
+    int n1, int n2, int n3, float[][][] a, String name)
+  {
+    boolean ok = a.length>=n3;
+    for (int i3=0; i3<n3 && ok; ++i3) {
+      ok = a[i3].length>=n2;
+      for (int i2=0; i2<n2 && ok; ++i2) {
+        ok = a[i3][i2].length>=n1;
+      }
+    }
+    Check.argument(ok,"dimensions of "+name+" are valid");
+  }
+}
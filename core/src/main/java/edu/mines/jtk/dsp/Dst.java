@@ -0,0 +1,273 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import edu.mines.jtk.util.Check;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Discrete sine transforms of types II and III, computed with FFTs.
+ * For an array x of n real numbers, the type-II transform (DST-II) is
+ * <pre><code>
+ *   y[k] = 2*sum x[j]*sin(pi*(j+1/2)*(k+1)/n), for j = 0, 1, ..., n-1,
+ * </code></pre>
+ * and the type-III transform (DST-III) is
+ * <pre><code>
+ *   y[k] = (-1)^k*x[n-1]+2*sum x[j]*sin(pi*(j+1)*(k+1/2)/n),
+ *          for j = 0, 1, ..., n-2,
+ * </code></pre>
+ * for k = 0, 1, ..., n-1. These are the definitions used by FFTW. As for
+ * the discrete cosine transforms in {@link Dct}, a DST-III of a DST-II
+ * multiplies an array by 2*n, for each transformed dimension of length n.
+ * <p>
+ * The DST-II of each dimension of a 2-D or 3-D array diagonalizes the
+ * finite-difference Laplacian with Dirichlet (zero-value) boundary
+ * conditions located halfway between samples.
+ * <p>
+ * Each DST is computed with a DCT of the same type. The DST-II of x is
+ * the DCT-II of x with signs of odd-indexed samples negated, in reverse
+ * order; the DST-III is the transpose of that. Lengths of transformed
+ * dimensions and the use of multiple threads are as described for
+ * {@link Dct}.
+ * <p>
+ * Input and output arrays may be the same array.
+ * @version 2026.10.16
+ */
+public class Dst {
+
+  /**
+   * Constructs a discrete sine transform.
+   */
+  public Dst() {
+    _dct = new Dct();
+  }
+
+  /**
+   * Sets the use of multiple threads in transforms of 2-D and 3-D arrays.
+   * The default is false.
+   * @param parallel true, for parallel transforms; false, otherwise.
+   */
+  public void setParallel(boolean parallel) {
+    _dct.setParallel(parallel);
+  }
+
+  /**
+   * Computes the DST-II of a 1-D array.
+   * @param x input array[n1].
+   * @param y output array[n1].
+   */
+  public void applyII(float[] x, float[] y) {
+    checkArrays(x,y);
+    negateOdd(x,y);
+    _dct.applyII(y,y);
+    reverse(y);
+  }
+
+  /**
+   * Computes the DST-II of a 2-D array.
+   * @param x input array[n2][n1].
+   * @param y output array[n2][n1].
+   */
+  public void applyII(float[][] x, float[][] y) {
+    checkArrays(x,y);
+    negateOdd(x,y);
+    _dct.applyII(y,y);
+    reverse(y);
+  }
+
+  /**
+   * Computes the DST-II of a 3-D array.
+   * @param x input array[n3][n2][n1].
+   * @param y output array[n3][n2][n1].
+   */
+  public void applyII(float[][][] x, float[][][] y) {
+    checkArrays(x,y);
+    negateOdd(x,y);
+    _dct.applyII(y,y);
+    reverse(y);
+  }
+
+  /**
+   * Computes the DST-III of a 1-D array.
+   * @param x input array[n1].
+   * @param y output array[n1].
+   */
+  public void applyIII(float[] x, float[] y) {
+    checkArrays(x,y);
+    copyReversed(x,y);
+    _dct.applyIII(y,y);
+    negateOdd(y,y);
+  }
+
+  /**
+   * Computes the DST-III of a 2-D array.
+   * @param x input array[n2][n1].
+   * @param y output array[n2][n1].
+   */
+  public void applyIII(float[][] x, float[][] y) {
+    checkArrays(x,y);
+    copyReversed(x,y);
+    _dct.applyIII(y,y);
+    negateOdd(y,y);
+  }
+
+  /**
+   * Computes the DST-III of a 3-D array.
+   * @param x input array[n3][n2][n1].
+   * @param y output array[n3][n2][n1].
+   */
+  public void applyIII(float[][][] x, float[][][] y) {
+    checkArrays(x,y);
+    copyReversed(x,y);
+    _dct.applyIII(y,y);
+    negateOdd(y,y);
+  }
+
+  /**
+   * Scales the specified 1-D array by 1/(2*n1). The inverse of a DST-II
+   * is a DST-III followed by this scaling, and vice versa.
+   * @param x input/output array[n1].
+   */
+  public void scale(float[] x) {
+    _dct.scale(x);
+  }
+
+  /**
+   * Scales the specified 2-D array by 1/(4*n1*n2). The inverse of a
+   * DST-II is a DST-III followed by this scaling, and vice versa.
+   * @param x input/output array[n2][n1].
+   */
+  public void scale(float[][] x) {
+    _dct.scale(x);
+  }
+
+  /**
+   * Scales the specified 3-D array by 1/(8*n1*n2*n3). The inverse of a
+   * DST-II is a DST-III followed by this scaling, and vice versa.
+   * @param x input/output array[n3][n2][n1].
+   */
+  public void scale(float[][][] x) {
+    _dct.scale(x);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private Dct _dct;
+
+  // Checks that x and y are regular arrays with the same dimensions,
+  // before any samples are copied from x to y.
+  private static void checkArrays(float[] x, float[] y) {
+    Check.argument(x.length==y.length,"x and y have same dimensions");
+  }
+  private static void checkArrays(float[][] x, float[][] y) {
+    int n1 = x[0].length;
+    int n2 = x.length;
+    boolean ok = y.length==n2;
+    for (int i2=0; i2<n2 && ok; ++i2)
+      ok = x[i2].length==n1 && y[i2].length==n1;
+    Check.argument(ok,"x and y have same dimensions");
+  }
+  private static void checkArrays(float[][][] x, float[][][] y) {
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    boolean ok = y.length==n3;
+    for (int i3=0; i3<n3 && ok; ++i3) {
+      ok = x[i3].length==n2 && y[i3].length==n2;
+      for (int i2=0; i2<n2 && ok; ++i2)
+        ok = x[i3][i2].length==n1 && y[i3][i2].length==n1;
+    }
+    Check.argument(ok,"x and y have same dimensions");
+  }
+
+  // Copies x to y, negating samples for which the sum of indices is odd.
+  private static void negateOdd(float[] x, float[] y) {
+    negateOdd(x,y,false);
+  }
+  private static void negateOdd(float[][] x, float[][] y) {
+    for (int i2=0; i2<x.length; ++i2)
+      negateOdd(x[i2],y[i2],i2%2==1);
+  }
+  private static void negateOdd(float[][][] x, float[][][] y) {
+    for (int i3=0; i3<x.length; ++i3) {
+      for (int i2=0; i2<x[i3].length; ++i2)
+        negateOdd(x[i3][i2],y[i3][i2],(i2+i3)%2==1);
+    }
+  }
+  private static void negateOdd(float[] x, float[] y, boolean odd) {
+    int n1 = x.length;
+    for (int i1=0; i1<n1; i1+=2) {
+      y[i1] = odd?-x[i1]:x[i1];
+      if (i1+1<n1)
+        y[i1+1] = odd?x[i1+1]:-x[i1+1];
+    }
+  }
+
+  // Reverses the order of samples in every dimension, in place.
+  private static void reverse(float[] x) {
+    reverse(x,x);
+  }
+  private static void reverse(float[][] x) {
+    reverse(x.length,x);
+  }
+  private static void reverse(float[][][] x) {
+    int n2 = x[0].length;
+    int n3 = x.length;
+    float[][] xr = new float[n2*n3][];
+    for (int i3=0,ir=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2,++ir)
+        xr[ir] = x[i3][i2];
+    }
+    reverse(n2*n3,xr);
+  }
+  private static void reverse(int nr, float[][] xr) {
+    for (int ir=0,jr=nr-1; ir<=jr; ++ir,--jr)
+      reverse(xr[ir],xr[jr]);
+  }
+
+  // Exchanges x and y, each with samples in reverse order. If x and y
+  // are the same array, simply reverses the order of its samples.
+  private static void reverse(float[] x, float[] y) {
+    int n1 = x.length;
+    if (x==y) {
+      for (int i1=0,j1=n1-1; i1<j1; ++i1,--j1) {
+        float xi = x[i1];
+        x[i1] = x[j1];
+        x[j1] = xi;
+      }
+    } else {
+      for (int i1=0,j1=n1-1; i1<n1; ++i1,--j1) {
+        float xi = x[i1];
+        x[i1] = y[j1];
+        y[j1] = xi;
+      }
+    }
+  }
+
+  // Copies x to y, with samples in reverse order in every dimension.
+  private static void copyReversed(float[] x, float[] y) {
+    copy(x,y);
+    reverse(y);
+  }
+  private static void copyReversed(float[][] x, float[][] y) {
+    copy(x,y);
+    reverse(y);
+  }
+  private static void copyReversed(float[][][] x, float[][][] y) {
+    copy(x,y);
+    reverse(y);
+  }
+}
@@ -50,6 +50,8 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * is likely to be too large for the temporary array to fit in random-
  * access memory (RAM). In this case, shifts u are obtained by blending 
  * together shifts computed from overlapping subsets of the 3D image.
+ * Alignment errors for those subsets may also be quantized to 8 or 16
+ * bits, so that larger subsets fit in memory.
  * <p>
  * Estimated shifts u can be smoothed, and the extent of smoothing 
  * along each dimension is inversely proportional to the strain limit 
@@ -264,6 +266,54 @@ public class DynamicWarping {
     _owf3 = f3;
   }
 
+  /**
+   * Sets the number of bits used to store alignment errors for 3D images.
+   * By default, alignment errors for 3D image windows are stored in a 
+   * temporary array[l3][l2][n1][nl] of floats (32 bits). If 8 or 16 bits,
+   * errors are instead quantized, with a minimum and maximum error for 
+   * each image sample. Errors are then computed, smoothed, accumulated 
+   * and backtracked for one or a few arrays[n1][nl] at a time, and only 
+   * quantized errors are stored for an entire window.
+   * <p>
+   * Quantization reduces the memory required by factors of 4 (8 bits) or
+   * 2 (16 bits), so that larger windows may be used, at the cost of some 
+   * additional computation. Errors quantized to 8 bits may yield shifts
+   * that differ slightly from those computed without quantization.
+   * @param nbits number of bits per error; must be 8, 16 or 32.
+   */
+  public void setErrorPrecision(int nbits) {
+    Check.argument(nbits==8 || nbits==16 || nbits==32,
+      "nbits is 8, 16 or 32");
+    _ebits = nbits;
+  }
+
+  /**
+   * Sets the number of levels and band of lags for coarse-to-fine warping.
+   * For each coarser level, sequences f and g are low-pass filtered and
+   * decimated by a factor of two in the 1st dimension, and bounds on 
+   * shifts are halved. Shifts found for the coarsest level are then 
+   * upsampled to the next finer level, where only lags in a band near 
+   * the upsampled shifts are searched, and so on, for each finer level.
+   * <p>
+   * Because each finer level searches only a band of lags, the cost of 
+   * coarse-to-fine warping grows with the width of that band, not with 
+   * the number of lags nl. Coarse-to-fine warping is most effective when
+   * nl is large. It may, however, fail to find shifts that vary too 
+   * rapidly to be resolved at coarser levels.
+   * <p>
+   * Coarse-to-fine warping is used only in the methods that find shifts 
+   * for 1D sequences and 2D images. The default number of levels is zero,
+   * for a search of all lags.
+   * @param nlevel number of coarser levels; zero for none.
+   * @param lhalf half-width of band of lags searched for finer levels.
+   */
+  public void setMultiResolution(int nlevel, int lhalf) {
+    Check.argument(nlevel>=0,"nlevel>=0");
+    Check.argument(lhalf>0,"lhalf>0");
+    _mrlevel = nlevel;
+    _mrhalf = lhalf;
+  }
+
   /**
    * Computes and returns shifts for specified sequences.
    * @param f array for the sequence f.
@@ -335,6 +385,11 @@ public class DynamicWarping {
    * @param u output array of shifts u.
    */
   public void findShifts(float[] f, float[] g, float[] u) {
+    if (_mrlevel>0) {
+      findShiftsMr(new float[][]{f},new float[][]{g},new float[][]{u});
+      smoothShifts(u,u);
+      return;
+    }
     float[][] e = computeErrors(f,g);
     for (int is=0; is<_esmooth; ++is)
       smoothErrors(e,e);
@@ -350,21 +405,11 @@ public class DynamicWarping {
    * @param u output array of shifts u.
    */
   public void findShifts(float[][] f, float[][] g, float[][] u) {
-    final float[][][] e = computeErrors(f,g);
-    final int nl = e[0][0].length;
-    final int n1 = e[0].length;
-    final int n2 = e.length;
-    final float[][] uf = u;
-    for (int is=0; is<_esmooth; ++is)
-      smoothErrors(e,e);
-    final Parallel.Unsafe<float[][]> du = new Parallel.Unsafe<float[][]>();
-    Parallel.loop(n2,new Parallel.LoopInt() {
-    public void compute(int i2) {
-      float[][] d = du.get();
-      if (d==null) du.set(d=new float[n1][nl]);
-      accumulateForward(e[i2],d);
-      backtrackReverse(d,e[i2],uf[i2]);
-    }});
+    if (_mrlevel>0) {
+      findShiftsMr(f,g,u);
+    } else {
+      findShiftsAll(f,g,u);
+    }
     smoothShifts(u,u);
   }
 
@@ -387,7 +432,9 @@ public class DynamicWarping {
     float[][][] fw = new float[l3][l2][];
     float[][][] gw = new float[l3][l2][];
     float[][][] uw = new float[l3][l2][n1];
-    float[][][][] ew = new float[l3][l2][n1][_nl];
+    float[][][][] ew = (_ebits==32)?new float[l3][l2][n1][_nl]:null;
+    QuantizedErrors qw = (_ebits<32)?
+      new QuantizedErrors(_ebits,n1,_nl,l2,l3):null;
     for (int k3=0; k3<m3; ++k3) {
       int i3 = ow.getI2(k3);
       for (int k2=0; k2<m2; ++k2) {
@@ -398,11 +445,18 @@ public class DynamicWarping {
             gw[j3][j2] = g[i3+j3][i2+j2];
           }
         }
-        computeErrors(fw,gw,ew);
-        normalizeErrors(ew);
-        for (int is=0; is<_esmooth; ++is)
-          smoothErrors(ew);
-        computeShifts(ew,uw);
+        if (ew!=null) {
+          computeErrors(fw,gw,ew);
+          normalizeErrors(ew);
+          for (int is=0; is<_esmooth; ++is)
+            smoothErrors(ew);
+          computeShifts(ew,uw);
+        } else {
+          computeErrors(fw,gw,qw);
+          for (int is=0; is<_esmooth; ++is)
+            smoothErrors(qw);
+          computeShifts(qw,uw);
+        }
         for (int j3=0; j3<l3; ++j3) {
           for (int j2=0; j2<l2; ++j2) {
             float wij = ow.getWeight(i2,i3,j2,j3);
@@ -839,9 +893,13 @@ public class DynamicWarping {
    * @param d output array of accumulated errors.
    */
   public void accumulateForward1(float[][][] e, float[][][] d) {
-    int n2 = e.length;
-    for (int i2=0; i2<n2; ++i2)
-      accumulateForward(e[i2],d[i2]);
+    final int n2 = e.length;
+    final float[][][] ef = e;
+    final float[][][] df = d;
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      accumulateForward(ef[i2],df[i2]);
+    }});
   }
 
   /**
@@ -850,9 +908,13 @@ public class DynamicWarping {
    * @param d output array of accumulated errors.
    */
   public void accumulateReverse1(float[][][] e, float[][][] d) {
-    int n2 = e.length;
-    for (int i2=0; i2<n2; ++i2)
-      accumulateReverse(e[i2],d[i2]);
+    final int n2 = e.length;
+    final float[][][] ef = e;
+    final float[][][] df = d;
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      accumulateReverse(ef[i2],df[i2]);
+    }});
   }
 
   /**
@@ -861,17 +923,20 @@ public class DynamicWarping {
    * @param d output array of accumulated errors.
    */
   public void accumulateForward2(float[][][] e, float[][][] d) {
-    int n1 = e[0].length;
-    int n2 = e.length;
-    float[][]  ei1 = new float[n2][];
-    float[][] di1 = new float[n2][];
-    for (int i1=0; i1<n1; ++i1) {
+    final int n1 = e[0].length;
+    final int n2 = e.length;
+    final float[][][] ef = e;
+    final float[][][] df = d;
+    Parallel.loop(n1,new Parallel.LoopInt() {
+    public void compute(int i1) {
+      float[][] ei1 = new float[n2][];
+      float[][] di1 = new float[n2][];
       for (int i2=0; i2<n2; ++i2) {
-        ei1[i2] = e[i2][i1];
-        di1[i2] = d[i2][i1];
+        ei1[i2] = ef[i2][i1];
+        di1[i2] = df[i2][i1];
       }
       accumulate( 1,_bstrain2,ei1,di1);
-    }
+    }});
   }
 
   /**
@@ -880,17 +945,20 @@ public class DynamicWarping {
    * @param d output array of accumulated errors.
    */
   public void accumulateReverse2(float[][][] e, float[][][] d) {
-    int n1 = e[0].length;
-    int n2 = e.length;
-    float[][]  ei1 = new float[n2][];
-    float[][] di1 = new float[n2][];
-    for (int i1=0; i1<n1; ++i1) {
+    final int n1 = e[0].length;
+    final int n2 = e.length;
+    final float[][][] ef = e;
+    final float[][][] df = d;
+    Parallel.loop(n1,new Parallel.LoopInt() {
+    public void compute(int i1) {
+      float[][] ei1 = new float[n2][];
+      float[][] di1 = new float[n2][];
       for (int i2=0; i2<n2; ++i2) {
-        ei1[i2] = e[i2][i1];
-        di1[i2] = d[i2][i1];
+        ei1[i2] = ef[i2][i1];
+        di1[i2] = df[i2][i1];
       }
       accumulate(-1,_bstrain2,ei1,di1);
-    }
+    }});
   }
 
   /**
@@ -946,9 +1014,14 @@ public class DynamicWarping {
    * @param u output array of shifts.
    */
   public void backtrackReverse1(float[][][] d, float[][][] e, float[][] u) {
-    int n2 = d.length;
-    for (int i2=0; i2<n2; ++i2)
-      backtrackReverse(d[i2],e[i2],u[i2]);
+    final int n2 = d.length;
+    final float[][][] df = d;
+    final float[][][] ef = e;
+    final float[][] uf = u;
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      backtrackReverse(df[i2],ef[i2],uf[i2]);
+    }});
   }
 
   /**
@@ -958,20 +1031,24 @@ public class DynamicWarping {
    * @param u output array of shifts.
    */
   public void backtrackReverse2(float[][][] d, float[][][] e, float[][] u) {
-    int n1 = d[0].length;
-    int n2 = d.length;
-    float[][] di1 = new float[n2][];
-    float[][] ei1 = new float[n2][];
-    float[] ui1 = new float[n2];
-    for (int i1=0; i1<n1; ++i1) {
+    final int n1 = d[0].length;
+    final int n2 = d.length;
+    final float[][][] df = d;
+    final float[][][] ef = e;
+    final float[][] uf = u;
+    Parallel.loop(n1,new Parallel.LoopInt() {
+    public void compute(int i1) {
+      float[][] di1 = new float[n2][];
+      float[][] ei1 = new float[n2][];
+      float[] ui1 = new float[n2];
       for (int i2=0; i2<n2; ++i2) {
-        di1[i2] = d[i2][i1];
-        ei1[i2] = e[i2][i1];
+        di1[i2] = df[i2][i1];
+        ei1[i2] = ef[i2][i1];
       }
       backtrack(-1,_bstrain2,_lmin,di1,ei1,ui1);
       for (int i2=0; i2<n2; ++i2)
-        u[i2][i1] = ui1[i2];
-    }
+        uf[i2][i1] = ui1[i2];
+    }});
   }
 
   /**
@@ -1117,6 +1194,9 @@ public class DynamicWarping {
   private int _owl3 = 50; // window size in 3rd dimension for 3D images
   private double _owf2 = 0.5; // fraction of window overlap in 2nd dimension
   private double _owf3 = 0.5; // fraction of window overlap in 3rd dimension
+  private int _ebits = 32; // number of bits per error for 3D image warping
+  private int _mrlevel = 0; // number of coarser levels for coarse-to-fine
+  private int _mrhalf = 2; // half-width of band of lags for finer levels
 
   private float error(float f, float g) {
     return pow(abs(f-g),_epow);
@@ -1229,21 +1309,43 @@ public class DynamicWarping {
     int is = (dir>0)?1:-1;
     for (int il=0; il<nl; ++il)
       d[ib][il] = 0.0f;
-    for (int ii=ib; ii!=ie; ii+=is) {
+
+    // The first sample accumulates in place, from the zeros above.
+    float[] db = d[ib];
+    float[] eb = e[ib];
+    for (int il=0; il<nl; ++il) {
+      int ilm1 = il-1; if (ilm1==-1) ilm1 = 0;
+      int ilp1 = il+1; if (ilp1==nl) ilp1 = nlm1;
+      db[il] = min3(db[ilm1],db[il],db[ilp1])+eb[il];
+    }
+
+    // For all other samples, accumulated errors for all lags depend only
+    // on those for previous samples, so that the loop over lags has no
+    // dependencies and, except for the first and last lags, no branches.
+    // Errors summed for lags il-1 and il+1 are computed once for all lags.
+    float[] ds = new float[nl];
+    for (int ii=ib+is; ii!=ie; ii+=is) {
       int ji = max(0,min(nim1,ii-is));
       int jb = max(0,min(nim1,ii-is*b));
-      for (int il=0; il<nl; ++il) {
-        int ilm1 = il-1; if (ilm1==-1) ilm1 = 0;
-        int ilp1 = il+1; if (ilp1==nl) ilp1 = nlm1;
-        float dm = d[jb][ilm1];
-        float di = d[ji][il  ];
-        float dp = d[jb][ilp1];
+      float[] dj = d[ji];
+      float[] dm = d[jb];
+      if (ji!=jb) {
+        for (int il=0; il<nl; ++il)
+          ds[il] = dm[il];
         for (int kb=ji; kb!=jb; kb-=is) {
-          dm += e[kb][ilm1];
-          dp += e[kb][ilp1];
+          float[] ek = e[kb];
+          for (int il=0; il<nl; ++il)
+            ds[il] += ek[il];
         }
-        d[ii][il] = min3(dm,di,dp)+e[ii][il];
+        dm = ds;
       }
+      float[] di = d[ii];
+      float[] ei = e[ii];
+      for (int il=1; il<nlm1; ++il)
+        di[il] = min3(dm[il-1],dj[il],dm[il+1])+ei[il];
+      di[0] = min3(dm[0],dj[0],dm[min(1,nlm1)])+ei[0];
+      if (nlm1>0)
+        di[nlm1] = min3(dm[nlm1-1],dj[nlm1],dm[nlm1])+ei[nlm1];
     }
   }
 
@@ -1432,6 +1534,310 @@ public class DynamicWarping {
     }});
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  // for coarse-to-fine warping of sequences and 2D images
+
+  /**
+   * Finds shifts, without smoothing, by searching all lags.
+   */
+  private void findShiftsAll(float[][] f, float[][] g, float[][] u) {
+    final float[][][] e = computeErrors(f,g);
+    final int nl = e[0][0].length;
+    final int n1 = e[0].length;
+    final int n2 = e.length;
+    final float[][] uf = u;
+    for (int is=0; is<_esmooth; ++is) {
+      if (n2>1) {
+        smoothErrors(e,e);
+      } else {
+        smoothErrors(e[0],e[0]);
+      }
+    }
+    final Parallel.Unsafe<float[][]> du = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      float[][] d = du.get();
+      if (d==null) du.set(d=new float[n1][nl]);
+      accumulateForward(e[i2],d);
+      backtrackReverse(d,e[i2],uf[i2]);
+    }});
+  }
+
+  /**
+   * Finds shifts, without smoothing, from coarse to fine. Shifts are 
+   * first found for sequences decimated in the 1st dimension, and are 
+   * then used to limit the band of lags searched for these sequences.
+   * The band begins with lag c[i1] for each sample i1, and has the 
+   * same number of lags nk for all samples.
+   */
+  private void findShiftsMr(
+    final float[][] f, final float[][] g, final float[][] u) 
+  {
+    final int n1 = f[0].length;
+    final int n2 = f.length;
+    int n1c = 1+(n1-1)/2;
+    int lminc = (int)floor(0.5*_lmin);
+    int lmaxc = (int)ceil(0.5*_lmax);
+    if (_mrlevel==0 || n1c<2 || lmaxc-lminc<2) {
+      findShiftsAll(f,g,u);
+      return;
+    }
+
+    // Shifts for the next coarser level, with the same bounds on strain.
+    DynamicWarping dwc = new DynamicWarping(lminc,lmaxc);
+    dwc._extrap = _extrap;
+    dwc._epow = _epow;
+    dwc._esmooth = _esmooth;
+    dwc._bstrain1 = _bstrain1;
+    dwc._bstrain2 = _bstrain2;
+    dwc._mrlevel = _mrlevel-1;
+    dwc._mrhalf = _mrhalf;
+    float[][] uc = new float[n2][n1c];
+    dwc.findShiftsMr(decimate(f),decimate(g),uc);
+
+    // Band of lags that includes upsampled shifts for all i2.
+    final int[] c = new int[n1];
+    int nk = 0;
+    for (int i1=0; i1<n1; ++i1) {
+      int j1 = i1/2;
+      int k1 = min(n1c-1,(i1+1)/2);
+      int lmin =  Integer.MAX_VALUE;
+      int lmax = -Integer.MAX_VALUE;
+      for (int i2=0; i2<n2; ++i2) {
+        int l = round(uc[i2][j1]+uc[i2][k1]);
+        if (l<lmin) lmin = l;
+        if (l>lmax) lmax = l;
+      }
+      c[i1] = lmin-_mrhalf;
+      nk = max(nk,1+lmax-lmin+2*_mrhalf);
+    }
+    if (nk>=_nl) {
+      findShiftsAll(f,g,u);
+      return;
+    }
+    for (int i1=0; i1<n1; ++i1)
+      c[i1] = max(_lmin,min(_lmax-nk+1,c[i1]));
+
+    // Errors, accumulated errors and shifts for lags in the band.
+    final float[][][] e = new float[n2][n1][nk];
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      computeErrors(c,f[i2],g[i2],e[i2]);
+    }});
+    normalizeErrors(e);
+    for (int is=0; is<_esmooth; ++is) {
+      Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        smoothErrors1(_bstrain1,c,e[i2],e[i2]);
+      }});
+      normalizeErrors(e);
+      if (n2>1) {
+        smoothErrors2(_bstrain2,e,e);
+        normalizeErrors(e);
+      }
+    }
+    final int nkf = nk;
+    final Parallel.Unsafe<float[][]> du = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      float[][] d = du.get();
+      if (d==null) du.set(d=new float[n1][nkf]);
+      accumulate( 1,_bstrain1,c,e[i2],d);
+      backtrack(-1,_bstrain1,c,d,e[i2],u[i2]);
+    }});
+  }
+
+  /**
+   * Computes alignment errors, not normalized, for a band of lags.
+   * Errors are extrapolated as for all lags, except that the average 
+   * error for a lag is computed from only errors in the band.
+   * @param c input array[ni] of first lags in the band.
+   * @param f input array[ni] for sequence f.
+   * @param g input array[ni] for sequence g.
+   * @param e output array[ni][nk] of alignment errors.
+   */
+  private void computeErrors(int[] c, float[] f, float[] g, float[][] e) {
+    int nk = e[0].length;
+    int n1 = f.length;
+    int n1m = n1-1;
+    boolean average = _extrap==ErrorExtrapolation.AVERAGE;
+    boolean reflect = _extrap==ErrorExtrapolation.REFLECT;
+    float[] eavg = average?new float[_nl]:null; 
+    int[] navg = average?new int[_nl]:null;
+    float emax = 0.0f;
+    for (int i1=0; i1<n1; ++i1) {
+      for (int ik=0,l=c[i1]; ik<nk; ++ik,++l) {
+        int j1 = i1+l;
+        if (0<=j1 && j1<n1) {
+          float ei = error(f[i1],g[j1]);
+          e[i1][ik] = ei;
+          if (average) {
+            eavg[l-_lmin] += ei;
+            navg[l-_lmin] += 1;
+          }
+          if (ei>emax) 
+            emax = ei;
+        }
+      }
+    }
+    for (int i1=0; i1<n1; ++i1) {
+      for (int ik=0,l=c[i1]; ik<nk; ++ik,++l) {
+        int j1 = i1+l;
+        if (j1<0 || j1>=n1) {
+          if (average) {
+            int il = l-_lmin;
+            e[i1][ik] = (navg[il]>0)?eavg[il]/navg[il]:emax;
+          } else {
+            int k1 = (j1<0)?-l:n1m-l;
+            if (reflect)
+              k1 += k1-i1;
+            int m1 = k1+l;
+            if (0<=k1 && k1<n1 && 0<=m1 && m1<n1) {
+              e[i1][ik] = error(f[k1],g[m1]);
+            } else {
+              e[i1][ik] = emax;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Smooths alignment errors for a band of lags in 1st dimension.
+   */
+  private static void smoothErrors1(
+    int b, int[] c, float[][] e, float[][] es) 
+  {
+    int nk = e[0].length;
+    int n1 = e.length;
+    float[][] ef = new float[n1][nk];
+    float[][] er = new float[n1][nk];
+    accumulate( 1,b,c,e,ef);
+    accumulate(-1,b,c,e,er);
+    for (int i1=0; i1<n1; ++i1)
+      for (int ik=0; ik<nk; ++ik)
+        es[i1][ik] = ef[i1][ik]+er[i1][ik]-e[i1][ik];
+  }
+
+  /**
+   * Non-linear accumulation of alignment errors for a band of lags.
+   * Like the band itself, lags il-1, il and il+1 are bounded for each 
+   * sample, just as they are bounded by shiftMin and shiftMax when all
+   * lags are searched.
+   * @param dir accumulation direction, positive or negative.
+   * @param b sample offset used to constrain changes in lag.
+   * @param c input array[ni] of first lags in the band.
+   * @param e input array[ni][nk] of alignment errors.
+   * @param d output array[ni][nk] of accumulated errors.
+   */
+  private static void accumulate(
+    int dir, int b, int[] c, float[][] e, float[][] d) 
+  {
+    int nk = e[0].length;
+    int ni = e.length;
+    int nkm1 = nk-1;
+    int nim1 = ni-1;
+    int ib = (dir>0)?0:nim1;
+    int ie = (dir>0)?ni:-1;
+    int is = (dir>0)?1:-1;
+    for (int ik=0; ik<nk; ++ik)
+      d[ib][ik] = e[ib][ik];
+    for (int ii=ib+is; ii!=ie; ii+=is) {
+      int ji = ii-is;
+      int jb = max(0,min(nim1,ii-is*b));
+      for (int ik=0,l=c[ii]; ik<nk; ++ik,++l) {
+        float dm = d[jb][max(0,min(nkm1,l-1-c[jb]))];
+        float di = d[ji][max(0,min(nkm1,l  -c[ji]))];
+        float dp = d[jb][max(0,min(nkm1,l+1-c[jb]))];
+        for (int kb=ji; kb!=jb; kb-=is) {
+          dm += e[kb][max(0,min(nkm1,l-1-c[kb]))];
+          dp += e[kb][max(0,min(nkm1,l+1-c[kb]))];
+        }
+        d[ii][ik] = min3(dm,di,dp)+e[ii][ik];
+      }
+    }
+  }
+
+  /**
+   * Finds shifts by backtracking in accumulated errors for a band of lags.
+   * @param dir backtrack direction, positive or negative.
+   * @param b sample offset used to constrain changes in lag.
+   * @param c input array[ni] of first lags in the band.
+   * @param d input array[ni][nk] of accumulated errors.
+   * @param e input array[ni][nk] of alignment errors.
+   * @param u output array[ni] of computed shifts.
+   */
+  private static void backtrack(
+    int dir, int b, int[] c, float[][] d, float[][] e, float[] u) 
+  {
+    float ob = 1.0f/b;
+    int nk = d[0].length;
+    int ni = d.length;
+    int nkm1 = nk-1;
+    int nim1 = ni-1;
+    int ib = (dir>0)?0:nim1;
+    int ie = (dir>0)?nim1:0;
+    int is = (dir>0)?1:-1;
+    int ii = ib;
+    int ik = max(0,min(nkm1,-c[ii]));
+    float dl = d[ii][ik];
+    for (int jk=1; jk<nk; ++jk) {
+      if (d[ii][jk]<dl) {
+        dl = d[ii][jk];
+        ik = jk;
+      }
+    }
+    int l = c[ii]+ik;
+    u[ii] = l;
+    while (ii!=ie) {
+      int ji = ii+is;
+      int jb = max(0,min(nim1,ii+is*b));
+      int km = max(0,min(nkm1,l-1-c[jb]));
+      int ki = max(0,min(nkm1,l  -c[ji]));
+      int kp = max(0,min(nkm1,l+1-c[jb]));
+      float dm = d[jb][km];
+      float di = d[ji][ki];
+      float dp = d[jb][kp];
+      for (int kb=ji; kb!=jb; kb+=is) {
+        dm += e[kb][max(0,min(nkm1,l-1-c[kb]))];
+        dp += e[kb][max(0,min(nkm1,l+1-c[kb]))];
+      }
+      dl = min3(dm,di,dp);
+      if (dl!=di) {
+        l = c[jb]+((dl==dm)?km:kp);
+        float du = (l-u[ii])*ob;
+        for (; ii!=jb; ii+=is)
+          u[ii+is] = u[ii]+du;
+      } else {
+        l = c[ji]+ki;
+        ii = ji;
+        u[ii] = l;
+      }
+    }
+  }
+
+  /**
+   * Returns sequences low-pass filtered and decimated in 1st dimension.
+   */
+  private static float[][] decimate(float[][] x) {
+    int n1 = x[0].length;
+    int n2 = x.length;
+    int m1 = 1+(n1-1)/2;
+    int n1m = n1-1;
+    float[][] y = new float[n2][m1];
+    for (int i2=0; i2<n2; ++i2) {
+      float[] x2 = x[i2];
+      float[] y2 = y[i2];
+      for (int j1=0,i1=0; j1<m1; ++j1,i1+=2) {
+        float xm = x2[max(0,i1-1)];
+        float xp = x2[min(n1m,i1+1)];
+        y2[j1] = 0.25f*(xm+xp)+0.5f*x2[i1];
+      }
+    }
+    return y;
+  }
+
   private static float min3(float a, float b, float c) {
     return b<=a?(b<=c?b:c):(a<=c?a:c); // if equal, choose b
   }
@@ -1549,6 +1955,118 @@ public class DynamicWarping {
       }
     }});
   }
+
+  private void computeErrors(
+    final float[][][] f, final float[][][] g, final QuantizedErrors e) 
+  {
+    final int nl = e.getNL();
+    final int n1 = e.getN1();
+    final int n2 = e.getN2();
+    final int n3 = e.getN3();
+    final Parallel.Unsafe<float[][]> eu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[][] ei = eu.get();
+      if (ei==null) eu.set(ei=new float[n1][nl]);
+      for (int i2=0; i2<n2; ++i2) {
+        computeErrors(f[i3][i2],g[i3][i2],ei);
+        e.set(i2,i3,ei);
+      }
+    }});
+    e.normalize();
+  }
+  private void smoothErrors(final QuantizedErrors e) {
+    final int nl = e.getNL();
+    final int n1 = e.getN1();
+    final int n2 = e.getN2();
+    final int n3 = e.getN3();
+    final Parallel.Unsafe<float[][]> eu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[][] ei = eu.get();
+      if (ei==null) eu.set(ei=new float[n1][nl]);
+      for (int i2=0; i2<n2; ++i2) {
+        e.get(i2,i3,ei);
+        smoothErrors1(_bstrain1,ei,ei);
+        e.set(i2,i3,ei);
+      }
+    }});
+    e.normalize();
+    // Errors for different i1 are smoothed independently in the 2nd and
+    // 3rd dimensions, so those smoothings are done for blocks of m1
+    // samples in i1. The per-thread workspace for one block then holds
+    // about as many errors as that for one slice i3 above, not all errors
+    // for a slice i3 or i2.
+    final int m1 = min(n1,max(16,n1/max(n2,n3)));
+    final int nb = (n1+m1-1)/m1;
+    final Parallel.Unsafe<float[][][]> e2u = 
+      new Parallel.Unsafe<float[][][]>();
+    Parallel.loop(n3*nb,new Parallel.LoopInt() {
+    public void compute(int ib3) {
+      int i3 = ib3/nb;
+      int j1 = (ib3%nb)*m1;
+      float[][][] ei = e2u.get();
+      if (ei==null) e2u.set(ei=new float[n2][m1][nl]);
+      ei = block(n1,j1,ei);
+      for (int i2=0; i2<n2; ++i2)
+        e.get(i2,i3,j1,ei[i2]);
+      smoothErrors2(_bstrain2,ei,ei);
+      for (int i2=0; i2<n2; ++i2)
+        e.set(i2,i3,j1,ei[i2]);
+    }});
+    e.normalize();
+    final Parallel.Unsafe<float[][][]> e3u = 
+      new Parallel.Unsafe<float[][][]>();
+    Parallel.loop(n2*nb,new Parallel.LoopInt() {
+    public void compute(int ib2) {
+      int i2 = ib2/nb;
+      int j1 = (ib2%nb)*m1;
+      float[][][] ei = e3u.get();
+      if (ei==null) e3u.set(ei=new float[n3][m1][nl]);
+      ei = block(n1,j1,ei);
+      for (int i3=0; i3<n3; ++i3)
+        e.get(i2,i3,j1,ei[i3]);
+      smoothErrors2(_bstrain3,ei,ei);
+      for (int i3=0; i3<n3; ++i3)
+        e.set(i2,i3,j1,ei[i3]);
+    }});
+    e.normalize();
+  }
+
+  // Returns the workspace e[n][m1][nl] for a block of samples beginning
+  // at j1, or, for a last block with fewer than m1 samples, a view of the
+  // first n1-j1 samples in that workspace.
+  private static float[][][] block(int n1, int j1, float[][][] e) {
+    int m1 = min(e[0].length,n1-j1);
+    if (m1==e[0].length)
+      return e;
+    int n = e.length;
+    float[][][] eb = new float[n][m1][];
+    for (int i=0; i<n; ++i)
+      for (int i1=0; i1<m1; ++i1)
+        eb[i][i1] = e[i][i1];
+    return eb;
+  }
+  private void computeShifts(final QuantizedErrors e, final float[][][] u) {
+    final int nl = e.getNL();
+    final int n1 = e.getN1();
+    final int n2 = e.getN2();
+    final int n3 = e.getN3();
+    final Parallel.Unsafe<float[][][]> edu =
+      new Parallel.Unsafe<float[][][]>();
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[][][] ed = edu.get();
+      if (ed==null) edu.set(ed=new float[2][n1][nl]);
+      float[][] ei = ed[0];
+      float[][] di = ed[1];
+      for (int i2=0; i2<n2; ++i2) {
+        e.get(i2,i3,ei);
+        accumulateForward(ei,di);
+        backtrackReverse(di,ei,u[i3][i2]);
+      }
+    }});
+  }
   private void smoothShifts(float[][][] u) {
     if (_ref1!=null) _ref1.apply1(u,u);
     if (_ref2!=null) _ref2.apply2(u,u);
@@ -1561,6 +2079,109 @@ public class DynamicWarping {
       this.emax = emax;
     }
   }
+
+  /**
+   * Alignment errors for 3D image windows, quantized to 8 or 16 bits.
+   * Shifts are determined by differences among errors for lags near the
+   * minimum error, and these differences, especially for smoothed errors,
+   * may be small relative to the range of errors. Therefore, errors for 
+   * each sample are quantized with their own minimum and maximum errors,
+   * and the square roots of errors are quantized, so that quantization 
+   * is finest for errors near the minimum. Errors for all samples are 
+   * normalized to be in the range [0,1] by changing only the minimum and 
+   * maximum errors.
+   */
+  private static class QuantizedErrors {
+    QuantizedErrors(int nbits, int n1, int nl, int n2, int n3) {
+      _n1 = n1;
+      _nl = nl;
+      _n2 = n2;
+      _n3 = n3;
+      _qmax = (nbits==8)?0xff:0xffff;
+      _b = (nbits==8)?new byte[n3][n2][n1*nl]:null;
+      _s = (nbits==8)?null:new short[n3][n2][n1*nl];
+      _emin = new float[n3][n2][n1];
+      _emax = new float[n3][n2][n1];
+    }
+    int getN1() { return _n1; }
+    int getNL() { return _nl; }
+    int getN2() { return _n2; }
+    int getN3() { return _n3; }
+    void get(int i2, int i3, float[][] e) {
+      get(i2,i3,0,e);
+    }
+    void set(int i2, int i3, float[][] e) {
+      set(i2,i3,0,e);
+    }
+    // Gets or sets errors e[m1][nl] for samples j1, j1+1, ..., j1+m1-1.
+    // Different threads may get or set different blocks of samples.
+    void get(int i2, int i3, int j1, float[][] e) {
+      float[] emin = _emin[i3][i2];
+      float[] emax = _emax[i3][i2];
+      float oqmax = 1.0f/_qmax;
+      for (int i1=j1,k=j1*_nl; i1<j1+e.length; ++i1) {
+        float[] e1 = e[i1-j1];
+        float emin1 = emin[i1];
+        float escale = (emax[i1]-emin1)*oqmax*oqmax;
+        if (_b!=null) {
+          byte[] b = _b[i3][i2];
+          for (int il=0; il<_nl; ++il,++k) {
+            float q = b[k]&0xff;
+            e1[il] = emin1+escale*q*q;
+          }
+        } else {
+          short[] s = _s[i3][i2];
+          for (int il=0; il<_nl; ++il,++k) {
+            float q = s[k]&0xffff;
+            e1[il] = emin1+escale*q*q;
+          }
+        }
+      }
+    }
+    void set(int i2, int i3, int j1, float[][] e) {
+      float[] emin = _emin[i3][i2];
+      float[] emax = _emax[i3][i2];
+      for (int i1=j1,k=j1*_nl; i1<j1+e.length; ++i1) {
+        float[] e1 = e[i1-j1];
+        float emin1 = min(e1);
+        float emax1 = max(e1);
+        float escale = (emax1>emin1)?1.0f/(emax1-emin1):0.0f;
+        emin[i1] = emin1;
+        emax[i1] = emax1;
+        if (_b!=null) {
+          byte[] b = _b[i3][i2];
+          for (int il=0; il<_nl; ++il,++k)
+            b[k] = (byte)quantize((e1[il]-emin1)*escale);
+        } else {
+          short[] s = _s[i3][i2];
+          for (int il=0; il<_nl; ++il,++k)
+            s[k] = (short)quantize((e1[il]-emin1)*escale);
+        }
+      }
+    }
+    void normalize() {
+      float eshift = min(_emin);
+      float emax = max(_emax);
+      float escale = (emax>eshift)?1.0f/(emax-eshift):1.0f;
+      for (int i3=0; i3<_n3; ++i3) {
+        for (int i2=0; i2<_n2; ++i2) {
+          for (int i1=0; i1<_n1; ++i1) {
+            _emin[i3][i2][i1] = (_emin[i3][i2][i1]-eshift)*escale;
+            _emax[i3][i2][i1] = (_emax[i3][i2][i1]-eshift)*escale;
+          }
+        }
+      }
+    }
+    private int quantize(float e) {
+      return (int)(_qmax*sqrt(e)+0.5f);
+    }
+    private int _n1,_nl,_n2,_n3; // array dimensions
+    private int _qmax; // maximum quantized error
+    private byte[][][] _b; // errors quantized to 8 bits, or null
+    private short[][][] _s; // errors quantized to 16 bits, or null
+    private float[][][] _emin,_emax; // min,max errors for each sample
+  }
+
   private static class OverlappingWindows2 {
     public OverlappingWindows2(
       int n1, int n2, int l1, int l2, double f1, double f2) 
@@ -16,6 +16,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Special-purpose eigensolvers for digital signal processing.
@@ -184,6 +185,38 @@ public class Eigen {
     solveSymmetric33Hybrid(a,v,d);
   }
 
+  /**
+   * Computes eigenvalues and eigenvectors for many symmetric 3x3 matrices.
+   * Elements of the matrices, eigenvalues and eigenvectors are stored in
+   * arrays, with one array element for each matrix. For example, the 
+   * element a[1][i] is the element A01 of the i'th matrix A, and the
+   * element v[2][0][i] is the 1st component of the eigenvector for the
+   * smallest eigenvalue d[2][i] of that matrix.
+   * <p>
+   * This method is much faster than calling a method for each matrix. 
+   * Eigenvalues are computed analytically and eigenvectors are computed 
+   * with vector cross products, for blocks of matrices in parallel.
+   * Eigenvalues and eigenvectors are computed in double precision, so
+   * that errors are comparable to those for rounding to single precision.
+   * Eigenvalues are sorted in descending order, and the eigenvectors 
+   * are orthonormal, even for matrices with repeated eigenvalues.
+   * @param a array {A00,A01,A02,A11,A12,A22} of arrays of matrix elements.
+   * @param v array {v0,v1,v2} of arrays {x,y,z} of arrays of eigenvectors.
+   * @param d array {d0,d1,d2} of arrays of eigenvalues.
+   */
+  public static void solveSymmetric33(
+    final float[][] a, final float[][][] v, final float[][] d) 
+  {
+    final int n = a[0].length;
+    final int nb = 1+(n-1)/BATCH;
+    Parallel.loop(nb,new Parallel.LoopInt() {
+      public void compute(int ib) {
+        int i = ib*BATCH;
+        solveSymmetric33Batch(i,min(BATCH,n-i),a,v,d);
+      }
+    });
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -203,6 +236,157 @@ public class Eigen {
     }
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  // Batch method for arrays of symmetric 3x3 matrices. Matrices are 
+  // processed in batches, with separate loops for each step. Loops that
+  // shift and scale matrices and that compute cross products of rows 
+  // have no calls and no branches other than selects, so that they may
+  // be vectorized. The loop with trigonometric functions for eigenvalues
+  // and the loop with tests for repeated eigenvalues are not vectorized.
+
+  private static final int BATCH = 256; // number of matrices per batch
+  private static final double ONE_SIXTH = 1.0/6.0;
+  private static final double SQRT3 = sqrt(3.0);
+
+  /**
+   * Solves eigen-problems for m matrices beginning with the j'th matrix.
+   */
+  private static void solveSymmetric33Batch(
+    int j, int m, float[][] a, float[][][] v, float[][] d) 
+  {
+    float[] a00 = a[0], a01 = a[1], a02 = a[2];
+    float[] a11 = a[3], a12 = a[4], a22 = a[5];
+    double[] mm = new double[m]; // one third of trace
+    double[] pp = new double[m]; // scale factor
+    double[] rr = new double[m]; // half determinant of scaled A-mI
+    double[] e0 = new double[m]; // largest eigenvalues
+    double[] e1 = new double[m]; // middle eigenvalues
+    double[] e2 = new double[m]; // smallest eigenvalues
+
+    // Shift and scale matrices. The shift avoids cancellation for
+    // eigenvalues that are large relative to their differences.
+    for (int i=0,k=j; i<m; ++i,++k) {
+      double b01 = a01[k], b02 = a02[k], b12 = a12[k];
+      double mk = ONE_THIRD*((double)a00[k]+(double)a11[k]+(double)a22[k]);
+      double b00 = a00[k]-mk, b11 = a11[k]-mk, b22 = a22[k]-mk;
+      double pk = sqrt(ONE_SIXTH*(b00*b00+b11*b11+b22*b22+
+                                  2.0*(b01*b01+b02*b02+b12*b12)));
+      double sk = (pk>0.0)?1.0/pk:0.0;
+      double sk3 = sk*sk*sk;
+      double det = b00*(b11*b22-b12*b12)-
+                   b01*(b01*b22-b12*b02)+
+                   b02*(b01*b12-b11*b02);
+      double rk = 0.5*det*sk3;
+      mm[i] = mk;
+      pp[i] = pk;
+      rr[i] = (rk<-1.0)?-1.0:(rk>1.0)?1.0:rk;
+    }
+
+    // Eigenvalues, in descending order, by the trigonometric method.
+    float[] d0 = d[0], d1 = d[1], d2 = d[2];
+    for (int i=0,k=j; i<m; ++i,++k) {
+      double phi = ONE_THIRD*acos(rr[i]);
+      double mk = mm[i], pk = pp[i];
+      double c = cos(phi);
+      double s = sqrt(1.0-c*c);
+      e0[i] = mk+2.0*pk*c;
+      e2[i] = mk-pk*(c+SQRT3*s);
+      e1[i] = 3.0*mk-e0[i]-e2[i];
+      d0[k] = (float)e0[i];
+      d1[k] = (float)e1[i];
+      d2[k] = (float)e2[i];
+    }
+
+    // Eigenvectors u and w for the largest and smallest eigenvalues, 
+    // computed as the largest cross product of rows of A-d*I. 
+    double[] x0 = mm, x1 = pp, x2 = rr; // u, reusing arrays from above
+    double[] y0 = new double[m], y1 = new double[m], y2 = new double[m];
+    crossRows33(j,m,a,e0,x0,x1,x2);
+    crossRows33(j,m,a,e2,y0,y1,y2);
+
+    // Of u and w, the vector for the eigenvalue with the larger gap is
+    // more accurate, and the other is made orthogonal to it. Where that
+    // is impossible, A has repeated eigenvalues, and any orthogonal 
+    // vector will do. The 2nd eigenvector v is w cross u.
+    float[] u0 = v[0][0], u1 = v[0][1], u2 = v[0][2];
+    float[] v0 = v[1][0], v1 = v[1][1], v2 = v[1][2];
+    float[] w0 = v[2][0], w1 = v[2][1], w2 = v[2][2];
+    for (int i=0,k=j; i<m; ++i,++k) {
+      boolean uw = e0[i]-e1[i]>=e1[i]-e2[i]; // true, if u is more accurate
+      double r0 = uw?x0[i]:y0[i], r1 = uw?x1[i]:y1[i], r2 = uw?x2[i]:y2[i];
+      double o0 = uw?y0[i]:x0[i], o1 = uw?y1[i]:x1[i], o2 = uw?y2[i]:x2[i];
+      double rs = r0*r0+r1*r1+r2*r2;
+      if (rs==0.0) { // if A = d*I, use any orthonormal vectors
+        r0 = 1.0; r1 = 0.0; r2 = 0.0; 
+        rs = 1.0;
+      }
+      rs = 1.0/sqrt(rs);
+      r0 *= rs; r1 *= rs; r2 *= rs;
+      double os = o0*o0+o1*o1+o2*o2;
+      os = (os>0.0)?1.0/sqrt(os):0.0;
+      o0 *= os; o1 *= os; o2 *= os;
+      double ro = r0*o0+r1*o1+r2*o2;
+      o0 -= ro*r0; o1 -= ro*r1; o2 -= ro*r2;
+      os = o0*o0+o1*o1+o2*o2;
+      if (os<0.01) { // if o is nearly parallel to r, use r cross an axis
+        double ar0 = abs(r0), ar1 = abs(r1), ar2 = abs(r2);
+        if (ar0<=ar1 && ar0<=ar2) {
+          o0 = 0.0; o1 = r2; o2 = -r1;
+        } else if (ar1<=ar2) {
+          o0 = -r2; o1 = 0.0; o2 = r0;
+        } else {
+          o0 = r1; o1 = -r0; o2 = 0.0;
+        }
+        os = o0*o0+o1*o1+o2*o2;
+      }
+      os = 1.0/sqrt(os);
+      o0 *= os; o1 *= os; o2 *= os;
+      double ux = uw?r0:o0, uy = uw?r1:o1, uz = uw?r2:o2;
+      double wx = uw?o0:r0, wy = uw?o1:r1, wz = uw?o2:r2;
+      u0[k] = (float)ux; u1[k] = (float)uy; u2[k] = (float)uz;
+      w0[k] = (float)wx; w1[k] = (float)wy; w2[k] = (float)wz;
+      v0[k] = (float)(wy*uz-wz*uy);
+      v1[k] = (float)(wz*ux-wx*uz);
+      v2[k] = (float)(wx*uy-wy*ux);
+    }
+  }
+
+  /**
+   * Computes for m matrices A the largest of cross products of rows of
+   * A-e*I, where e is a specified eigenvalue of A.
+   */
+  private static void crossRows33(
+    int j, int m, float[][] a, double[] e, 
+    double[] x0, double[] x1, double[] x2)
+  {
+    float[] a00 = a[0], a01 = a[1], a02 = a[2];
+    float[] a11 = a[3], a12 = a[4], a22 = a[5];
+    for (int i=0,k=j; i<m; ++i,++k) {
+      double ek = e[i];
+      double b00 = a00[k]-ek, b01 = a01[k], b02 = a02[k];
+      double b11 = a11[k]-ek, b12 = a12[k], b22 = a22[k]-ek;
+      double p0 = b01*b12-b02*b11; // row 0 cross row 1
+      double p1 = b02*b01-b00*b12;
+      double p2 = b00*b11-b01*b01;
+      double q0 = b01*b22-b02*b12; // row 0 cross row 2
+      double q1 = b02*b02-b00*b22;
+      double q2 = b00*b12-b01*b02;
+      double r0 = b11*b22-b12*b12; // row 1 cross row 2
+      double r1 = b12*b02-b01*b22;
+      double r2 = b01*b12-b11*b02;
+      double ps = p0*p0+p1*p1+p2*p2;
+      double qs = q0*q0+q1*q1+q2*q2;
+      double rs = r0*r0+r1*r1+r2*r2;
+      boolean pq = ps>=qs;
+      double s0 = pq?p0:q0, s1 = pq?p1:q1, s2 = pq?p2:q2;
+      double ss = pq?ps:qs;
+      boolean sr = ss>=rs;
+      x0[i] = sr?s0:r0;
+      x1[i] = sr?s1:r1;
+      x2[i] = sr?s2:r2;
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // Kopp's hybrid method. (See Kopp, J., 2008, Efficient numerical
   // diagonalization of hermitian 3x3 matrices: International Journal
@@ -39,7 +39,7 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * @author Dave Hale, Colorado School of Mines
  * @version 2008.06.09
  */
-public class EigenTensors2 implements Tensors2 {
+public class EigenTensors2 implements BulkTensors2 {
 
   /**
    * Constructs tensors for specified array dimensions. All eigenvalues 
@@ -121,6 +121,26 @@ public class EigenTensors2 implements Tensors2 {
     a[2] = au*u2*u2+av; // a22
   }
 
+  /**
+   * Gets tensor elements for one row of tensors with specified index.
+   * @param i2 index for 2nd dimension.
+   * @param a array {a11,a12,a22} of arrays of tensor elements.
+   */
+  public void getTensors(int i2, float[][] a) {
+    float[] a11 = a[0], a12 = a[1], a22 = a[2];
+    float[] aua = _au[i2], ava = _av[i2];
+    float[] u1a = _u1[i2], u2a = _u2[i2];
+    for (int i1=0; i1<_n1; ++i1) {
+      float av = ava[i1];
+      float au = aua[i1]-av;
+      float u1 = u1a[i1];
+      float u2 = u2a[i1];
+      a11[i1] = au*u1*u1+av;
+      a12[i1] = au*u1*u2;
+      a22[i1] = au*u2*u2+av;
+    }
+  }
+
   /**
    * Gets tensor elements for specified indices.
    * @param i1 index for 1st dimension.
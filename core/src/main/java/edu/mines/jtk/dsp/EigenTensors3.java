@@ -59,7 +59,7 @@ import edu.mines.jtk.util.UnitSphereSampling;
  * @author Dave Hale, Colorado School of Mines
  * @version 2008.06.07
  */
-public class EigenTensors3 implements Tensors3,Serializable {
+public class EigenTensors3 implements BulkTensors3,Serializable {
   private static final long serialVersionUID = 1L;
 
   /**
@@ -80,8 +80,7 @@ public class EigenTensors3 implements Tensors3,Serializable {
       _bw = new short[n3][n2][n1];
       _iu = new short[n3][n2][n1];
       _iw = new short[n3][n2][n1];
-      if (_uss==null) 
-        _uss = new UnitSphereSampling(16);
+      initPoints();
     } else {
       _au = new float[n3][n2][n1];
       _aw = new float[n3][n2][n1];
@@ -219,6 +218,61 @@ public class EigenTensors3 implements Tensors3,Serializable {
     a[5] = au*u3*u3+aw*w3*w3+av; // a33
   }
 
+  /**
+   * Gets tensor elements for one row of tensors with specified indices.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {a11,a12,a13,a22,a23,a33} of arrays of tensor elements.
+   */
+  public void getTensors(int i2, int i3, float[][] a) {
+    float[] a11 = a[0], a12 = a[1], a13 = a[2];
+    float[] a22 = a[3], a23 = a[4], a33 = a[5];
+    float[] as = _as[i3][i2];
+    if (_compressed) {
+      short[] bu = _bu[i3][i2], bw = _bw[i3][i2];
+      short[] iu = _iu[i3][i2], iw = _iw[i3][i2];
+      float[] p = _p;
+      for (int i1=0; i1<_n1; ++i1) {
+        float asum = as[i1];
+        float ascale = asum*AS_GET;
+        float au = ascale*bu[i1];
+        float aw = ascale*bw[i1];
+        int ju = 3*(iu[i1]&0xffff), jw = 3*(iw[i1]&0xffff);
+        float u1 = p[ju], u2 = p[ju+1], u3 = p[ju+2];
+        float w1 = p[jw], w2 = p[jw+1], w3 = p[jw+2];
+        float av = asum-au-aw;
+        au -= av;
+        aw -= av;
+        a11[i1] = au*u1*u1+aw*w1*w1+av;
+        a12[i1] = au*u1*u2+aw*w1*w2;
+        a13[i1] = au*u1*u3+aw*w1*w3;
+        a22[i1] = au*u2*u2+aw*w2*w2+av;
+        a23[i1] = au*u2*u3+aw*w2*w3;
+        a33[i1] = au*u3*u3+aw*w3*w3+av;
+      }
+    } else {
+      float[] aua = _au[i3][i2], awa = _aw[i3][i2];
+      float[] u1a = _u1[i3][i2], u2a = _u2[i3][i2];
+      float[] w1a = _w1[i3][i2], w2a = _w2[i3][i2];
+      for (int i1=0; i1<_n1; ++i1) {
+        float asum = as[i1];
+        float au = aua[i1];
+        float aw = awa[i1];
+        float u1 = u1a[i1], u2 = u2a[i1], u3 = c3(u1,u2);
+        float w1 = w1a[i1], w2 = w2a[i1], w3 = c3(w1,w2);
+        float av = asum-au-aw;
+        au -= av;
+        aw -= av;
+        a11[i1] = au*u1*u1+aw*w1*w1+av;
+        a12[i1] = au*u1*u2+aw*w1*w2;
+        a13[i1] = au*u1*u3+aw*w1*w3;
+        a22[i1] = au*u2*u2+aw*w2*w2+av;
+        a23[i1] = au*u2*u3+aw*w2*w3;
+        a33[i1] = au*u3*u3+aw*w3*w3+av;
+      }
+    }
+  }
+
   /**
    * Gets tensor elements for specified indices.
    * @param i1 index for 1st dimension.
@@ -720,6 +774,7 @@ public class EigenTensors3 implements Tensors3,Serializable {
   private static final float AS_SET = (float)Short.MAX_VALUE;
   private static final float AS_GET = 1.0f/AS_SET;
   private static UnitSphereSampling _uss; // for compressing unit vectors
+  private static float[] _p; // {x,y,z} of points for unsigned indices
 
   private boolean _compressed; // true if tensors compressed
   private int _n1,_n2,_n3; // array dimensions
@@ -735,6 +790,39 @@ public class EigenTensors3 implements Tensors3,Serializable {
   private float[][][] _w1; // w1 not compressed
   private float[][][] _w2; // w2 not compressed
 
+  // Initializes the sampling of the unit sphere, and a table of sampled 
+  // points that is indexed by unsigned 16-bit indices, so that points 
+  // can be decoded without branches or checks for valid indices. The 
+  // coordinates x, y and z of each point are adjacent in this table.
+  private static synchronized void initPoints() {
+    if (_uss==null) {
+      UnitSphereSampling uss = new UnitSphereSampling(16);
+      int mindex = uss.getMaxIndex();
+      float[] p = new float[3*65536];
+      for (int index=-mindex; index<=mindex; ++index) {
+        if (index!=0) {
+          float[] q = uss.getPoint(index);
+          int j = 3*(index&0xffff);
+          p[j  ] = q[0];
+          p[j+1] = q[1];
+          p[j+2] = q[2];
+        }
+      }
+      _p = p;
+      _uss = uss;
+    }
+  }
+
+  // Sampling and table of points, shared with other tensors in this package.
+  static UnitSphereSampling getUnitSphereSampling() {
+    initPoints();
+    return _uss;
+  }
+  static float[] getPoints() {
+    initPoints();
+    return _p;
+  }
+
   private static float c3(float c1, float c2) {
     float c3s = 1.0f-c1*c1-c2*c2;
     return (c3s>0.0f)?(float)Math.sqrt(c3s):0.0f;
@@ -760,8 +848,7 @@ public class EigenTensors3 implements Tensors3,Serializable {
         ais.readShorts(_bw);
         ais.readShorts(_iu);
         ais.readShorts(_iw);
-        if (_uss==null)
-          _uss = new UnitSphereSampling(16);
+        initPoints();
       } else {
         _au = new float[n3][n2][n1];
         _aw = new float[n3][n2][n1];
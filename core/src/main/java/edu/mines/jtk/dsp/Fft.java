@@ -15,6 +15,7 @@ limitations under the License.
 package edu.mines.jtk.dsp;
 
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -81,6 +82,16 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * transforms may be specified. The opposite signs are used for inverse 
  * transforms. The default signs are -1 for forward transforms and 1 for 
  * inverse transforms.
+ * <p>
+ * Each apply method that returns a transformed array constructs a new
+ * array. For loops with many transforms, other apply methods instead
+ * write transformed values into specified output arrays, and use an
+ * internal workspace that is reused from one transform to the next.
+ * After the first call, those methods construct no new arrays, except
+ * for small arrays of pointers and objects used to schedule parallel
+ * transforms. Because of that workspace, a single transform should not
+ * be used concurrently by multiple threads that call those methods.
+ * Methods that return transformed arrays share no such workspace.
  *
  * @author Dave Hale, Colorado School of Mines
  * @version 2009.12.04
@@ -429,6 +440,21 @@ public class Fft {
     }
   }
 
+  /**
+   * Sets the use of multiple threads in transforms of 2D and 3D arrays.
+   * If true, each pass of 1D transforms along one array dimension is 
+   * split into independent parts that are computed in parallel. For the
+   * 2nd and 3rd dimensions, those parts are blocks of columns that are 
+   * copied into small contiguous arrays, so that they are transformed 
+   * in cache. Each column is transformed by the same sequence of 
+   * operations in either case, so results do not depend on this setting. 
+   * The default is false.
+   * @param parallel true, for parallel transforms; false, otherwise.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
   /**
    * Applies a forward space-to-frequency transform of a 1D array.
    * @param f the array to be transformed, a sampled function of space.
@@ -436,15 +462,20 @@ public class Fft {
    */
   public float[] applyForward(float[] f) {
     ensureSamplingX1(f);
-    float[] fpad = pad(f);
-    if (_complex) {
-      _fft1c.complexToComplex(_sign1,fpad,fpad);
-    } else {
-      _fft1r.realToComplex(_sign1,fpad,fpad);
-    }
-    phase(fpad);
-    center(fpad);
-    return fpad;
+    float[] g = new float[2*_sk1.getCount()];
+    forward(f,g);
+    return g;
+  }
+
+  /**
+   * Applies a forward space-to-frequency transform of a 1D array.
+   * @param f the array to be transformed, a sampled function of space.
+   * @param g the transformed array, a sampled function of frequency.
+   */
+  public void applyForward(float[] f, float[] g) {
+    ensureSamplingX1(f);
+    ensureSamplingK1(g);
+    forward(f,g);
   }
 
   /**
@@ -454,18 +485,28 @@ public class Fft {
    */
   public float[][] applyForward(float[][] f) {
     ensureSamplingX2(f);
-    float[][] fpad = pad(f);
-    int nx2 = _sx2.getCount();
-    if (_complex) {
-      _fft1c.complexToComplex1(_sign1,nx2,fpad,fpad);
-      _fft2.complexToComplex2(_sign2,_nfft1,fpad,fpad);
+    float[][] g = new float[_sk2.getCount()][2*_sk1.getCount()];
+    forward(f,g);
+    return g;
+  }
+
+  /**
+   * Applies a forward space-to-frequency transform of a 2D array.
+   * @param f the array to be transformed, a sampled function of space.
+   * @param g the transformed array, a sampled function of frequency.
+   */
+  public void applyForward(float[][] f, float[][] g) {
+    ensureSamplingX2(f);
+    ensureSamplingK2(g);
+    // Centering exchanges rows (or slices) of arrays, not their values,
+    // so that centered transforms are computed in the workspace.
+    if (_center2) {
+      float[][] w = workspace2();
+      forward(f,w);
+      copy(w,g);
     } else {
-      _fft1r.realToComplex1(_sign1,nx2,fpad,fpad);
-      _fft2.complexToComplex2(_sign2,_nfft1/2+1,fpad,fpad);
+      forward(f,g);
     }
-    phase(fpad);
-    center(fpad);
-    return fpad;
   }
 
   /**
@@ -475,21 +516,31 @@ public class Fft {
    */
   public float[][][] applyForward(float[][][] f) {
     ensureSamplingX3(f);
-    float[][][] fpad = pad(f);
-    int nx2 = _sx2.getCount();
-    int nx3 = _sx3.getCount();
-    if (_complex) {
-      _fft1c.complexToComplex1(_sign1,nx2,nx3,fpad,fpad);
-      _fft2.complexToComplex2(_sign2,_nfft1,nx3,fpad,fpad);
-      _fft3.complexToComplex3(_sign3,_nfft1,_nfft2,fpad,fpad);
+    int nk1 = _sk1.getCount();
+    int nk2 = _sk2.getCount();
+    int nk3 = _sk3.getCount();
+    float[][][] g = new float[nk3][nk2][2*nk1];
+    forward(f,g);
+    return g;
+  }
+
+  /**
+   * Applies a forward space-to-frequency transform of a 3D array.
+   * @param f the array to be transformed, a sampled function of space.
+   * @param g the transformed array, a sampled function of frequency.
+   */
+  public void applyForward(float[][][] f, float[][][] g) {
+    ensureSamplingX3(f);
+    ensureSamplingK3(g);
+    // Centering exchanges rows (or slices) of arrays, not their values,
+    // so that centered transforms are computed in the workspace.
+    if (_center2 || _center3) {
+      float[][][] w = workspace3();
+      forward(f,w);
+      copy(w,g);
     } else {
-      _fft1r.realToComplex1(_sign1,nx2,nx3,fpad,fpad);
-      _fft2.complexToComplex2(_sign2,_nfft1/2+1,nx3,fpad,fpad);
-      _fft3.complexToComplex3(_sign3,_nfft1/2+1,_nfft2,fpad,fpad);
+      forward(f,g);
     }
-    phase(fpad);
-    center(fpad);
-    return fpad;
   }
 
   /**
@@ -501,16 +552,29 @@ public class Fft {
     ensureSamplingK1(g);
     int nx1 = _sx1.getCount();
     float[] gpad = (_overwrite)?g:copy(g);
-    uncenter(gpad);
-    unphase(gpad);
+    inverse(gpad);
+    return (_complex)?ccopy(nx1,gpad):copy(nx1,gpad);
+  }
+
+  /**
+   * Applies an inverse frequency-to-space transform of a 1D array.
+   * @param g the array to be transformed, a sampled function of frequency.
+   * @param h the transformed array, a sampled function of space.
+   */
+  public void applyInverse(float[] g, float[] h) {
+    ensureSamplingK1(g);
+    ensureSamplingX1(h);
+    int nx1 = _sx1.getCount();
+    float[] gpad = g;
+    if (!_overwrite) {
+      gpad = workspace1();
+      copy(g,gpad);
+    }
+    inverse(gpad);
     if (_complex) {
-      _fft1c.complexToComplex(-_sign1,gpad,gpad);
-      _fft1c.scale(nx1,gpad);
-      return ccopy(nx1,gpad);
+      ccopy(nx1,gpad,h);
     } else {
-      _fft1r.complexToReal(-_sign1,gpad,gpad);
-      _fft1r.scale(nx1,gpad);
-      return copy(nx1,gpad);
+      copy(nx1,gpad,h);
     }
   }
 
@@ -524,20 +588,30 @@ public class Fft {
     float[][] gpad = (_overwrite)?g:copy(g);
     int nx1 = _sx1.getCount();
     int nx2 = _sx2.getCount();
-    uncenter(gpad);
-    unphase(gpad);
+    inverse(gpad);
+    return (_complex)?ccopy(nx1,nx2,gpad):copy(nx1,nx2,gpad);
+  }
+
+  /**
+   * Applies an inverse frequency-to-space transform of a 2D array.
+   * @param g the array to be transformed, a sampled function of frequency.
+   * @param h the transformed array, a sampled function of space.
+   */
+  public void applyInverse(float[][] g, float[][] h) {
+    ensureSamplingK2(g);
+    ensureSamplingX2(h);
+    int nx1 = _sx1.getCount();
+    int nx2 = _sx2.getCount();
+    float[][] gpad = g;
+    if (!_overwrite) {
+      gpad = workspace2();
+      copy(g,gpad);
+    }
+    inverse(gpad);
     if (_complex) {
-      _fft2.complexToComplex2(-_sign2,_nfft1,gpad,gpad);
-      _fft2.scale(_nfft1,nx2,gpad);
-      _fft1c.complexToComplex1(-_sign1,nx2,gpad,gpad);
-      _fft1c.scale(nx1,nx2,gpad);
-      return ccopy(nx1,nx2,gpad);
+      ccopy(nx1,nx2,gpad,h);
     } else {
-      _fft2.complexToComplex2(-_sign2,_nfft1/2+1,gpad,gpad);
-      _fft2.scale(_nfft1/2+1,nx2,gpad);
-      _fft1r.complexToReal1(-_sign1,nx2,gpad,gpad);
-      _fft1r.scale(nx1,nx2,gpad);
-      return copy(nx1,nx2,gpad);
+      copy(nx1,nx2,gpad,h);
     }
   }
 
@@ -552,24 +626,31 @@ public class Fft {
     int nx1 = _sx1.getCount();
     int nx2 = _sx2.getCount();
     int nx3 = _sx3.getCount();
-    uncenter(gpad);
-    unphase(gpad);
+    inverse(gpad);
+    return (_complex)?ccopy(nx1,nx2,nx3,gpad):copy(nx1,nx2,nx3,gpad);
+  }
+
+  /**
+   * Applies an inverse frequency-to-space transform of a 3D array.
+   * @param g the array to be transformed, a sampled function of frequency.
+   * @param h the transformed array, a sampled function of space.
+   */
+  public void applyInverse(float[][][] g, float[][][] h) {
+    ensureSamplingK3(g);
+    ensureSamplingX3(h);
+    int nx1 = _sx1.getCount();
+    int nx2 = _sx2.getCount();
+    int nx3 = _sx3.getCount();
+    float[][][] gpad = g;
+    if (!_overwrite) {
+      gpad = workspace3();
+      copy(g,gpad);
+    }
+    inverse(gpad);
     if (_complex) {
-      _fft3.complexToComplex3(-_sign3,_nfft1,_nfft2,gpad,gpad);
-      _fft3.scale(_nfft1,_nfft2,nx3,gpad);
-      _fft2.complexToComplex2(-_sign2,_nfft1,nx3,gpad,gpad);
-      _fft2.scale(_nfft1,nx2,nx3,gpad);
-      _fft1c.complexToComplex1(-_sign1,nx2,nx3,gpad,gpad);
-      _fft1c.scale(nx1,nx2,nx3,gpad);
-      return ccopy(nx1,nx2,nx3,gpad);
+      ccopy(nx1,nx2,nx3,gpad,h);
     } else {
-      _fft3.complexToComplex3(-_sign3,_nfft1/2+1,_nfft2,gpad,gpad);
-      _fft3.scale(_nfft1/2+1,_nfft2,nx3,gpad);
-      _fft2.complexToComplex2(-_sign2,_nfft1/2+1,nx3,gpad,gpad);
-      _fft2.scale(_nfft1/2+1,nx2,nx3,gpad);
-      _fft1r.complexToReal1(-_sign1,nx2,nx3,gpad,gpad);
-      _fft1r.scale(nx1,nx2,nx3,gpad);
-      return copy(nx1,nx2,nx3,gpad);
+      copy(nx1,nx2,nx3,gpad,h);
     }
   }
 
@@ -586,6 +667,142 @@ public class Fft {
   private boolean _center1,_center2,_center3;
   private boolean _complex;
   private boolean _overwrite;
+  private boolean _parallel;
+
+  // Workspace reused by apply methods with specified output arrays.
+  private float[] _w1;
+  private float[][] _w2;
+  private float[][][] _w3;
+
+  // Per-thread pointer arrays and blocks of columns for parallel
+  // transforms along the 3rd dimension.
+  private Parallel.Unsafe<float[][]> _pointers =
+    new Parallel.Unsafe<float[][]>();
+  private Parallel.Unsafe<float[][]> _blocks =
+    new Parallel.Unsafe<float[][]>();
+
+  // Number of complex columns in blocks transformed in parallel along
+  // the 2nd and 3rd dimensions. Rows of such blocks fit easily in cache.
+  private static final int NBLOCK = 64;
+
+  // Forward transforms of arrays f into padded arrays g.
+  private void forward(float[] f, float[] g) {
+    pad(f,g);
+    if (_complex) {
+      _fft1c.complexToComplex(_sign1,g,g);
+    } else {
+      _fft1r.realToComplex(_sign1,g,g);
+    }
+    phase(g);
+    center(g);
+  }
+  private void forward(float[][] f, float[][] g) {
+    pad(f,g);
+    int nx2 = _sx2.getCount();
+    if (_complex) {
+      complexToComplex1(_fft1c,_sign1,nx2,g);
+      complexToComplex2(_fft2,_sign2,_nfft1,g);
+    } else {
+      realToComplex1(_fft1r,_sign1,nx2,g);
+      complexToComplex2(_fft2,_sign2,_nfft1/2+1,g);
+    }
+    phase(g);
+    center(g);
+  }
+  private void forward(float[][][] f, float[][][] g) {
+    pad(f,g);
+    int nx2 = _sx2.getCount();
+    int nx3 = _sx3.getCount();
+    if (_complex) {
+      complexToComplex1(_fft1c,_sign1,nx2,nx3,g);
+      complexToComplex2(_fft2,_sign2,_nfft1,nx3,g);
+      complexToComplex3(_fft3,_sign3,_nfft1,_nfft2,g);
+    } else {
+      realToComplex1(_fft1r,_sign1,nx2,nx3,g);
+      complexToComplex2(_fft2,_sign2,_nfft1/2+1,nx3,g);
+      complexToComplex3(_fft3,_sign3,_nfft1/2+1,_nfft2,g);
+    }
+    phase(g);
+    center(g);
+  }
+
+  // Inverse transforms of padded arrays g, in place.
+  private void inverse(float[] g) {
+    int nx1 = _sx1.getCount();
+    uncenter(g);
+    unphase(g);
+    if (_complex) {
+      _fft1c.complexToComplex(-_sign1,g,g);
+      _fft1c.scale(nx1,g);
+    } else {
+      _fft1r.complexToReal(-_sign1,g,g);
+      _fft1r.scale(nx1,g);
+    }
+  }
+  private void inverse(float[][] g) {
+    int nx1 = _sx1.getCount();
+    int nx2 = _sx2.getCount();
+    uncenter(g);
+    unphase(g);
+    if (_complex) {
+      complexToComplex2(_fft2,-_sign2,_nfft1,g);
+      _fft2.scale(_nfft1,nx2,g);
+      complexToComplex1(_fft1c,-_sign1,nx2,g);
+      _fft1c.scale(nx1,nx2,g);
+    } else {
+      complexToComplex2(_fft2,-_sign2,_nfft1/2+1,g);
+      _fft2.scale(_nfft1/2+1,nx2,g);
+      complexToReal1(_fft1r,-_sign1,nx2,g);
+      _fft1r.scale(nx1,nx2,g);
+    }
+  }
+  private void inverse(float[][][] g) {
+    int nx1 = _sx1.getCount();
+    int nx2 = _sx2.getCount();
+    int nx3 = _sx3.getCount();
+    uncenter(g);
+    unphase(g);
+    if (_complex) {
+      complexToComplex3(_fft3,-_sign3,_nfft1,_nfft2,g);
+      _fft3.scale(_nfft1,_nfft2,nx3,g);
+      complexToComplex2(_fft2,-_sign2,_nfft1,nx3,g);
+      _fft2.scale(_nfft1,nx2,nx3,g);
+      complexToComplex1(_fft1c,-_sign1,nx2,nx3,g);
+      _fft1c.scale(nx1,nx2,nx3,g);
+    } else {
+      complexToComplex3(_fft3,-_sign3,_nfft1/2+1,_nfft2,g);
+      _fft3.scale(_nfft1/2+1,_nfft2,nx3,g);
+      complexToComplex2(_fft2,-_sign2,_nfft1/2+1,nx3,g);
+      _fft2.scale(_nfft1/2+1,nx2,nx3,g);
+      complexToReal1(_fft1r,-_sign1,nx2,nx3,g);
+      _fft1r.scale(nx1,nx2,nx3,g);
+    }
+  }
+
+  // Workspace arrays with the dimensions of frequency samplings. These
+  // are constructed only when those dimensions change.
+  private float[] workspace1() {
+    int n1 = 2*_sk1.getCount();
+    if (_w1==null || _w1.length!=n1)
+      _w1 = new float[n1];
+    return _w1;
+  }
+  private float[][] workspace2() {
+    int n1 = 2*_sk1.getCount();
+    int n2 = _sk2.getCount();
+    if (_w2==null || _w2.length!=n2 || _w2[0].length!=n1)
+      _w2 = new float[n2][n1];
+    return _w2;
+  }
+  private float[][][] workspace3() {
+    int n1 = 2*_sk1.getCount();
+    int n2 = _sk2.getCount();
+    int n3 = _sk3.getCount();
+    if (_w3==null || _w3.length!=n3 || 
+        _w3[0].length!=n2 || _w3[0][0].length!=n1)
+      _w3 = new float[n3][n2][n1];
+    return _w3;
+  }
 
   private void updateSampling1() {
     if (_sx1==null)
@@ -681,38 +898,199 @@ public class Fft {
     //trace("sk3: nfft="+nfft+" nk="+nk+" dk="+dk+" fk="+fk);
   }
 
-  private float[] pad(float[] f) {
-    int nk1 = _sk1.getCount();
-    float[] fpad = new float[2*nk1];
-    if (_complex) {
-      ccopy(f.length/2,f,fpad);
+  // Passes of 1D transforms along one dimension of 2D and 3D arrays.
+  // Each pass is either serial or split into independent parallel parts.
+  // Either way, the same floating-point operations are performed for
+  // each sample, so that parallel and serial results are the same.
+
+  private void complexToComplex1(
+    final FftComplex fft, final int sign, int n2, final float[][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2,new Parallel.LoopInt() {
+        public void compute(int i2) {
+          fft.complexToComplex(sign,f[i2],f[i2]);
+        }
+      });
     } else {
-      copy(f.length,f,fpad);
+      fft.complexToComplex1(sign,n2,f,f);
     }
-    return fpad;
   }
-  private float[][] pad(float[][] f) {
-    int nk1 = _sk1.getCount();
-    int nk2 = _sk2.getCount();
-    float[][] fpad = new float[nk2][2*nk1];
-    if (_complex) {
-      ccopy(f[0].length/2,f.length,f,fpad);
+  private void realToComplex1(
+    final FftReal fft, final int sign, int n2, final float[][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2,new Parallel.LoopInt() {
+        public void compute(int i2) {
+          fft.realToComplex(sign,f[i2],f[i2]);
+        }
+      });
     } else {
-      copy(f[0].length,f.length,f,fpad);
+      fft.realToComplex1(sign,n2,f,f);
     }
-    return fpad;
   }
-  private float[][][] pad(float[][][] f) {
-    int nk1 = _sk1.getCount();
-    int nk2 = _sk2.getCount();
-    int nk3 = _sk3.getCount();
-    float[][][] fpad = new float[nk3][nk2][2*nk1];
-    if (_complex) {
-      ccopy(f[0][0].length/2,f[0].length,f.length,f,fpad);
+  private void complexToReal1(
+    final FftReal fft, final int sign, int n2, final float[][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2,new Parallel.LoopInt() {
+        public void compute(int i2) {
+          fft.complexToReal(sign,f[i2],f[i2]);
+        }
+      });
+    } else {
+      fft.complexToReal1(sign,n2,f,f);
+    }
+  }
+  private void complexToComplex2(
+    final FftComplex fft, final int sign, final int n1, final float[][] f)
+  {
+    if (_parallel) {
+      final int nb = (n1+NBLOCK-1)/NBLOCK;
+      Parallel.loop(nb,new Parallel.LoopInt() {
+        public void compute(int ib) {
+          complexToComplex2(fft,sign,n1,ib,nb,f);
+        }
+      });
+    } else {
+      fft.complexToComplex2(sign,n1,f,f);
+    }
+  }
+  private void complexToComplex1(
+    final FftComplex fft, final int sign, 
+    final int n2, int n3, final float[][][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2*n3,new Parallel.LoopInt() {
+        public void compute(int i23) {
+          float[] f32 = f[i23/n2][i23%n2];
+          fft.complexToComplex(sign,f32,f32);
+        }
+      });
+    } else {
+      fft.complexToComplex1(sign,n2,n3,f,f);
+    }
+  }
+  private void realToComplex1(
+    final FftReal fft, final int sign, 
+    final int n2, int n3, final float[][][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2*n3,new Parallel.LoopInt() {
+        public void compute(int i23) {
+          float[] f32 = f[i23/n2][i23%n2];
+          fft.realToComplex(sign,f32,f32);
+        }
+      });
+    } else {
+      fft.realToComplex1(sign,n2,n3,f,f);
+    }
+  }
+  private void complexToReal1(
+    final FftReal fft, final int sign, 
+    final int n2, int n3, final float[][][] f)
+  {
+    if (_parallel) {
+      Parallel.loop(n2*n3,new Parallel.LoopInt() {
+        public void compute(int i23) {
+          float[] f32 = f[i23/n2][i23%n2];
+          fft.complexToReal(sign,f32,f32);
+        }
+      });
     } else {
-      copy(f[0][0].length,f[0].length,f.length,f,fpad);
+      fft.complexToReal1(sign,n2,n3,f,f);
     }
-    return fpad;
+  }
+  private void complexToComplex2(
+    final FftComplex fft, final int sign, 
+    final int n1, int n3, final float[][][] f)
+  {
+    if (_parallel) {
+      final int nb = (n1+NBLOCK-1)/NBLOCK;
+      Parallel.loop(nb*n3,new Parallel.LoopInt() {
+        public void compute(int ib3) {
+          complexToComplex2(fft,sign,n1,ib3%nb,nb,f[ib3/nb]);
+        }
+      });
+    } else {
+      fft.complexToComplex2(sign,n1,n3,f,f);
+    }
+  }
+  private void complexToComplex3(
+    final FftComplex fft, final int sign, 
+    final int n1, int n2, final float[][][] f)
+  {
+    final int n3 = fft.getNfft();
+    if (_parallel) {
+      final int nb = (n1+NBLOCK-1)/NBLOCK;
+      Parallel.loop(nb*n2,new Parallel.LoopInt() {
+        public void compute(int ib2) {
+          int i2 = ib2/nb;
+          float[][] f2 = _pointers.get();
+          if (f2==null || f2.length<n3)
+            _pointers.set(f2=new float[n3][]);
+          for (int i3=0; i3<n3; ++i3)
+            f2[i3] = f[i3][i2];
+          complexToComplex2(fft,sign,n1,ib2%nb,nb,f2);
+        }
+      });
+    } else {
+      float[][] f3 = new float[n3][];
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i3=0; i3<n3; ++i3)
+          f3[i3] = f[i3][i2];
+        fft.complexToComplex2(sign,n1,f3,f3);
+      }
+    }
+  }
+
+  /**
+   * Transforms along the 2nd dimension one block of complex columns in 
+   * a 2D array f[nfft][2*n1]. If more than one block, the columns of the 
+   * block are copied to and from a contiguous array, so that the block 
+   * is transformed in cache. That array is reused by the current thread.
+   */
+  private void complexToComplex2(
+    FftComplex fft, int sign, int n1, int ib, int nb, float[][] f) 
+  {
+    if (nb==1) {
+      fft.complexToComplex2(sign,n1,f,f);
+    } else {
+      int n2 = fft.getNfft();
+      int j1 = ib*NBLOCK;
+      int m1 = min(NBLOCK,n1-j1);
+      float[][] g = _blocks.get();
+      if (g==null || g.length<n2)
+        _blocks.set(g=new float[n2][2*NBLOCK]);
+      for (int i2=0; i2<n2; ++i2)
+        System.arraycopy(f[i2],2*j1,g[i2],0,2*m1);
+      fft.complexToComplex2(sign,m1,g,g);
+      for (int i2=0; i2<n2; ++i2)
+        System.arraycopy(g[i2],0,f[i2],2*j1,2*m1);
+    }
+  }
+
+  // Copies arrays f into padded arrays fpad, with zeros beyond f.
+  private void pad(float[] f, float[] fpad) {
+    int n1 = f.length;
+    int m1 = fpad.length;
+    copy(n1,f,fpad);
+    for (int i1=n1; i1<m1; ++i1)
+      fpad[i1] = 0.0f;
+  }
+  private void pad(float[][] f, float[][] fpad) {
+    int n2 = f.length;
+    for (int i2=0; i2<n2; ++i2)
+      pad(f[i2],fpad[i2]);
+    for (int i2=n2; i2<fpad.length; ++i2)
+      zero(fpad[i2]);
+  }
+  private void pad(float[][][] f, float[][][] fpad) {
+    int n3 = f.length;
+    for (int i3=0; i3<n3; ++i3)
+      pad(f[i3],fpad[i3]);
+    for (int i3=n3; i3<fpad.length; ++i3)
+      zero(fpad[i3]);
   }
 
   private void ensureSamplingX1(float[] f) {
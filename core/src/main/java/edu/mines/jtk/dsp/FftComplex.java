@@ -213,6 +213,38 @@ public class FftComplex {
     }
   }
 
+  /**
+   * Computes complex-to-complex fast Fourier transforms of many signals.
+   * Transforms n2 signals, each with nfft complex numbers, stored in a 
+   * 1-D input array cx, to n2 signals stored in a 1-D output array cy.
+   * Signal i2 begins at array index i2*sx in cx, and at index i2*sy in 
+   * cy. For each signal, nfft complex numbers are packed into 2*nfft 
+   * consecutive floats, so the strides sx and sy must be not less than 
+   * 2*nfft. If cx and cy are the same array, then sx and sy must be equal.
+   * <p>
+   * Signals are transformed where they lie in the output array, without
+   * copying them to or from any other arrays.
+   * @param sign the sign (1 or -1) of the exponent used in the FFT.
+   * @param n2 the number of signals.
+   * @param cx the input array.
+   * @param sx the stride between signals in the input array.
+   * @param cy the output array.
+   * @param sy the stride between signals in the output array.
+   */
+  public void complexToComplexBatch(
+    int sign, int n2, float[] cx, int sx, float[] cy, int sy) 
+  {
+    checkSign(sign);
+    checkBatch(2*_nfft,n2,sx,cx,"cx");
+    checkBatch(2*_nfft,n2,sy,cy,"cy");
+    Check.argument(cx!=cy || sx==sy,"sx equals sy for in-place transforms");
+    for (int i2=0,jx=0,jy=0; i2<n2; ++i2,jx+=sx,jy+=sy) {
+      if (cx!=cy)
+        System.arraycopy(cx,jx,cy,jy,2*_nfft);
+      Pfacc.transform(sign,_nfft,cy,jy);
+    }
+  }
+
   /**
    * Scales n1 complex numbers in the specified array by 1/nfft. 
    * The inverse of a complex-to-complex FFT is a complex-to-complex 
@@ -263,15 +295,25 @@ public class FftComplex {
     Check.argument(sign==1 || sign==-1,"sign equals 1 or -1");
   }
 
+  private static void checkBatch(
+    int n1, int n2, int stride, float[] a, String name) 
+  {
+    Check.argument(stride>=n1,"stride for "+name+" is valid");
+    Check.argument(n2<=0 || a.length>=(long)(n2-1)*stride+n1,
+      "dimensions of "+name+" are valid");
+  }
+
   private static void checkArray(int n, float[] a, String name) {
-    Check.argument(a.length>=n,"dimensions of "+name+" are valid");
+    if (a.length<n)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 
   private static void checkArray(int n1, int n2, float[][] a, String name) {
     boolean ok = a.length>=n2;
     for (int i2=0; i2<n2 && ok; ++i2)
       ok = a[i2].length>=n1;
-    Check.argument(ok,"dimensions of "+name+" are valid");
+    if (!ok)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 
   private static void checkArray(
@@ -284,6 +326,7 @@ public class FftComplex {
         ok = a[i3][i2].length>=n1;
       }
     }
-    Check.argument(ok,"dimensions of "+name+" are valid");
+    if (!ok)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 }
@@ -57,6 +57,11 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * of a cached filter is recomputed only when the lengths of the input 
  * and output arrays have changed. Because this caching consumes memory,
  * it is disabled by default.
+ * <p>
+ * Input arrays too large for memory may be filtered in chunks, in one 
+ * pass, by a {@link FftFilter.Stream}. The stream is unbounded in its 
+ * last dimension, and extrapolates values beyond the ends of the input
+ * sequence in the same way as this filter.
  *
  * @author Dave Hale, Colorado School of Mines
  * @version 2009.12.14
@@ -314,6 +319,416 @@ public class FftFilter {
     copy(nx1,nx2,nx3,xfft,y);
   }
 
+  /**
+   * Returns a stream that applies this 1D filter to consecutive chunks
+   * of a 1D input sequence. The stream uses the extrapolation method
+   * of this filter at the time the stream is constructed.
+   * @param m1 the maximum number of samples in any chunk.
+   * @return the stream.
+   */
+  public Stream stream(int m1) {
+    Check.state(_h1!=null,"1D filter is available");
+    return new Stream(1,1,1,m1);
+  }
+
+  /**
+   * Returns a stream that applies this 2D filter to consecutive chunks
+   * of a 2D input sequence. Each chunk is a slab of up to m2 arrays of 
+   * n1 samples, and the sequence is unbounded in the 2nd dimension.
+   * The stream uses the extrapolation method of this filter at the time 
+   * the stream is constructed.
+   * @param n1 the number of samples in the 1st dimension.
+   * @param m2 the maximum number of arrays in any chunk.
+   * @return the stream.
+   */
+  public Stream stream(int n1, int m2) {
+    Check.state(_h2!=null,"2D filter is valid");
+    return new Stream(2,n1,1,m2);
+  }
+
+  /**
+   * Returns a stream that applies this 3D filter to consecutive chunks
+   * of a 3D input sequence. Each chunk is a slab of up to m3 arrays of 
+   * n2*n1 samples, and the sequence is unbounded in the 3rd dimension.
+   * The stream uses the extrapolation method of this filter at the time 
+   * the stream is constructed.
+   * @param n1 the number of samples in the 1st dimension.
+   * @param n2 the number of samples in the 2nd dimension.
+   * @param m3 the maximum number of arrays in any chunk.
+   * @return the stream.
+   */
+  public Stream stream(int n1, int n2, int m3) {
+    Check.state(_h3!=null,"3D filter is valid");
+    return new Stream(3,n1,n2,m3);
+  }
+
+  /**
+   * Applies an FFT filter to a sequence that is input in chunks. The 
+   * sequence is unbounded in its last (1st, 2nd or 3rd) dimension, so 
+   * that sequences too large for memory can be filtered in one pass.
+   * Output samples equal those computed by applying the filter to the 
+   * entire sequence, except for rounding errors.
+   * <p>
+   * Because an output sample depends on input samples as many as kh 
+   * samples ahead of it, where kh is the index of the filter's origin 
+   * in the last dimension, output lags input by kh samples. After 
+   * each chunk is input, the stream outputs all samples that can be 
+   * computed, and the last kh output samples are computed only after 
+   * the end of the sequence is signalled with a call to a method finish.
+   * For example, to filter a long 1D sequence:
+   * <pre><code>
+   *  FftFilter.Stream fs = ff.stream(m); // chunks with up to m samples
+   *  float[] x = new float[m]; // input chunk
+   *  float[] y = new float[max(m,fs.getLatency())]; // output chunk
+   *  for (int n=read(x); n&gt;0; n=read(x)) // read up to m samples
+   *    write(y,fs.apply(n,x,y)); // write all samples output so far
+   *  write(y,fs.finish(y)); // write the last samples
+   * </code></pre>
+   * Internally, the stream uses the overlap-save method. Each chunk 
+   * is transformed together with the last nh-1 input samples of the
+   * previous chunks, where nh is the filter length in the last 
+   * dimension, so that longer chunks are more efficient.
+   * <p>
+   * After a call to finish, a stream may be used to filter another 
+   * sequence.
+   */
+  public class Stream {
+
+    /**
+     * Gets the latency of this stream. This latency is the number of 
+     * samples in the last dimension by which output lags input.
+     * @return the latency.
+     */
+    public int getLatency() {
+      return _kh;
+    }
+
+    /**
+     * Inputs the next chunk of a 1D sequence, and outputs all samples 
+     * that can be computed. Input and output arrays may be the same.
+     * @param m1 the number of samples in the input chunk.
+     * @param x input array[m1] of samples.
+     * @param y output array with length not less than m1.
+     * @return the number of samples output to y.
+     */
+    public int apply(int m1, float[] x, float[] y) {
+      Check.state(_b1!=null,"1D stream");
+      Check.argument(0<m1 && m1<=_m,"0 < m1 <= maximum chunk size");
+      if (_nin==0)
+        begin1(x[0]);
+      _nin += m1;
+      return filter1(m1,x,y);
+    }
+
+    /**
+     * Inputs the next chunk of a 2D sequence, and outputs all arrays 
+     * that can be computed. Input and output arrays may be the same.
+     * @param m2 the number of arrays in the input chunk.
+     * @param x input array[m2][n1] of samples.
+     * @param y output array with length not less than m2.
+     * @return the number of arrays output to y.
+     */
+    public int apply(int m2, float[][] x, float[][] y) {
+      Check.state(_b2!=null,"2D stream");
+      Check.argument(0<m2 && m2<=_m,"0 < m2 <= maximum chunk size");
+      if (_nin==0)
+        begin2(x[0]);
+      _nin += m2;
+      return filter2(m2,x,y);
+    }
+
+    /**
+     * Inputs the next chunk of a 3D sequence, and outputs all arrays 
+     * that can be computed. Input and output arrays may be the same.
+     * @param m3 the number of arrays in the input chunk.
+     * @param x input array[m3][n2][n1] of samples.
+     * @param y output array with length not less than m3.
+     * @return the number of arrays output to y.
+     */
+    public int apply(int m3, float[][][] x, float[][][] y) {
+      Check.state(_b3!=null,"3D stream");
+      Check.argument(0<m3 && m3<=_m,"0 < m3 <= maximum chunk size");
+      if (_nin==0)
+        begin3(x[0]);
+      _nin += m3;
+      return filter3(m3,x,y);
+    }
+
+    /**
+     * Ends a 1D sequence, and outputs the remaining samples.
+     * @param y output array with length not less than the latency.
+     * @return the number of samples output to y.
+     */
+    public int finish(float[] y) {
+      Check.state(_b1!=null,"1D stream");
+      int ny = 0;
+      if (_nin>0) {
+        float[] x = new float[_m];
+        if (_zeroSlope && _nh>1)
+          fill(_x1[_nh-2],x);
+        while (_nout<_nin)
+          ny += filter1(_m,x,y,ny);
+      }
+      reset();
+      return ny;
+    }
+
+    /**
+     * Ends a 2D sequence, and outputs the remaining arrays.
+     * @param y output array with length not less than the latency.
+     * @return the number of arrays output to y.
+     */
+    public int finish(float[][] y) {
+      Check.state(_b2!=null,"2D stream");
+      int ny = 0;
+      if (_nin>0) {
+        float[][] x = new float[_m][_n1];
+        if (_zeroSlope && _nh>1) {
+          for (int i2=0; i2<_m; ++i2)
+            copy(_x2[_nh-2],x[i2]);
+        }
+        while (_nout<_nin)
+          ny += filter2(_m,x,y,ny);
+      }
+      reset();
+      return ny;
+    }
+
+    /**
+     * Ends a 3D sequence, and outputs the remaining arrays.
+     * @param y output array with length not less than the latency.
+     * @return the number of arrays output to y.
+     */
+    public int finish(float[][][] y) {
+      Check.state(_b3!=null,"3D stream");
+      int ny = 0;
+      if (_nin>0) {
+        float[][][] x = new float[_m][_n2][_n1];
+        if (_zeroSlope && _nh>1) {
+          for (int i3=0; i3<_m; ++i3)
+            copy(_x3[_nh-2],x[i3]);
+        }
+        while (_nout<_nin)
+          ny += filter3(_m,x,y,ny);
+      }
+      reset();
+      return ny;
+    }
+
+    private int _n1,_n2; // numbers of samples in 1st and 2nd dimensions
+    private int _m; // maximum number of samples in last dimension of chunks
+    private int _nh,_kh; // filter length and origin in last dimension
+    private long _nin; // number of samples input
+    private long _nout; // number of samples output
+    private long _nx; // number of samples filtered, including extrapolated
+    private boolean _zeroSlope; // true, if extrapolating with zero slope
+    private int _nfft1,_nfft2,_nfft3;
+    private FftReal _fft1;
+    private FftComplex _fft2,_fft3;
+    private float[] _x1,_b1,_h1fft; // for 1D: history, buffer and filter
+    private float[][] _x2,_b2,_h2fft; // for 2D
+    private float[][][] _x3,_b3,_h3fft; // for 3D
+
+    private Stream(int ndim, int n1, int n2, int m) {
+      Check.argument(m>0,"maximum chunk size is positive");
+      _n1 = n1;
+      _n2 = n2;
+      _m = m;
+      _zeroSlope = _extrapolation==Extrapolation.ZERO_SLOPE;
+      if (ndim==1) {
+        _nh = _nh1;
+        _kh = _kh1;
+        _nfft1 = FftReal.nfftFast(m+_nh-1);
+        _fft1 = new FftReal(_nfft1);
+        _x1 = new float[_nh-1];
+        _b1 = new float[_nfft1+2];
+        _h1fft = new float[_nfft1+2];
+        float scale = 1.0f/(float)_nfft1;
+        for (int ih1=0; ih1<_nh; ++ih1)
+          _h1fft[ih1] = scale*_h1[ih1];
+        _fft1.realToComplex(-1,_h1fft,_h1fft);
+      } else if (ndim==2) {
+        _nh = _nh2;
+        _kh = _kh2;
+        _nfft1 = FftReal.nfftFast(n1+_nh1);
+        _nfft2 = FftComplex.nfftFast(m+_nh-1);
+        _fft1 = new FftReal(_nfft1);
+        _fft2 = new FftComplex(_nfft2);
+        _x2 = new float[_nh-1][n1];
+        _b2 = new float[_nfft2][_nfft1+2];
+        _h2fft = new float[_nfft2][_nfft1+2];
+        float scale = 1.0f/(float)_nfft1/(float)_nfft2;
+        for (int ih2=0; ih2<_nh2; ++ih2) {
+          for (int ih1=0; ih1<_nh1; ++ih1) {
+            int jh1 = ih1-_kh1;
+            if (jh1<0) jh1 += _nfft1;
+            _h2fft[ih2][jh1] = scale*_h2[ih2][ih1];
+          }
+        }
+        _fft1.realToComplex1(-1,_nfft2,_h2fft,_h2fft);
+        _fft2.complexToComplex2(-1,_nfft1/2+1,_h2fft,_h2fft);
+      } else {
+        _nh = _nh3;
+        _kh = _kh3;
+        _nfft1 = FftReal.nfftFast(n1+_nh1);
+        _nfft2 = FftComplex.nfftFast(n2+_nh2);
+        _nfft3 = FftComplex.nfftFast(m+_nh-1);
+        _fft1 = new FftReal(_nfft1);
+        _fft2 = new FftComplex(_nfft2);
+        _fft3 = new FftComplex(_nfft3);
+        _x3 = new float[_nh-1][n2][n1];
+        _b3 = new float[_nfft3][_nfft2][_nfft1+2];
+        _h3fft = new float[_nfft3][_nfft2][_nfft1+2];
+        float scale = 1.0f/(float)_nfft1/(float)_nfft2/(float)_nfft3;
+        for (int ih3=0; ih3<_nh3; ++ih3) {
+          for (int ih2=0; ih2<_nh2; ++ih2) {
+            int jh2 = ih2-_kh2;
+            if (jh2<0) jh2 += _nfft2;
+            for (int ih1=0; ih1<_nh1; ++ih1) {
+              int jh1 = ih1-_kh1;
+              if (jh1<0) jh1 += _nfft1;
+              _h3fft[ih3][jh2][jh1] = scale*_h3[ih3][ih2][ih1];
+            }
+          }
+        }
+        _fft1.realToComplex1(-1,_nfft2,_nfft3,_h3fft,_h3fft);
+        _fft2.complexToComplex2(-1,_nfft1/2+1,_nfft3,_h3fft,_h3fft);
+        _fft3.complexToComplex3(-1,_nfft1/2+1,_nfft2,_h3fft,_h3fft);
+      }
+    }
+
+    private void reset() {
+      _nin = 0;
+      _nout = 0;
+      _nx = 0;
+    }
+
+    // Initializes the history of input samples before the first chunk.
+    private void begin1(float x0) {
+      fill(_zeroSlope?x0:0.0f,_x1);
+    }
+    private void begin2(float[] x0) {
+      for (int i2=0; i2<_nh-1; ++i2) {
+        if (_zeroSlope) {
+          copy(x0,_x2[i2]);
+        } else {
+          zero(_x2[i2]);
+        }
+      }
+    }
+    private void begin3(float[][] x0) {
+      for (int i3=0; i3<_nh-1; ++i3) {
+        if (_zeroSlope) {
+          copy(x0,_x3[i3]);
+        } else {
+          zero(_x3[i3]);
+        }
+      }
+    }
+
+    // Filters m samples of input x, which may be extrapolated values, 
+    // and outputs to y all samples that can be computed. Returns the 
+    // number of samples output.
+    private int filter1(int m, float[] x, float[] y) {
+      return filter1(m,x,y,0);
+    }
+    private int filter1(int m, float[] x, float[] y, int jy) {
+      int mh = _nh-1;
+      int nb = mh+m;
+      float[] b = _b1;
+      System.arraycopy(_x1,0,b,0,mh);
+      System.arraycopy(x,0,b,mh,m);
+      for (int ib=nb; ib<_nfft1; ++ib)
+        b[ib] = 0.0f;
+      System.arraycopy(b,m,_x1,0,mh);
+      _fft1.realToComplex(-1,b,b);
+      multiply(_nfft1/2+1,_h1fft,b);
+      _fft1.complexToReal(1,b,b);
+      int ny = 0;
+      for (int ib=mh; ib<nb; ++ib,++_nx) {
+        long i = _nx-_kh;
+        if (0<=i && i<_nin)
+          y[jy+ny++] = b[ib];
+      }
+      _nout += ny;
+      return ny;
+    }
+    private int filter2(int m, float[][] x, float[][] y) {
+      return filter2(m,x,y,0);
+    }
+    private int filter2(int m, float[][] x, float[][] y, int jy) {
+      int mh = _nh-1;
+      int nb = mh+m;
+      float[][] b = _b2;
+      for (int ib=0; ib<nb; ++ib) {
+        float[] xi = (ib<mh)?_x2[ib]:x[ib-mh];
+        copy(_n1,xi,b[ib]);
+        for (int i1=_n1; i1<_nfft1+2; ++i1)
+          b[ib][i1] = 0.0f;
+        if (_zeroSlope)
+          extrapolate(_n1,_kh1,_nh1,_nfft1,b[ib]);
+      }
+      for (int ib=nb; ib<_nfft2; ++ib)
+        zero(b[ib]);
+      for (int ih=0; ih<mh; ++ih)
+        copy(_n1,b[m+ih],_x2[ih]);
+      int nk1 = _nfft1/2+1;
+      _fft1.realToComplex1(-1,nb,b,b);
+      _fft2.complexToComplex2(-1,nk1,b,b);
+      for (int ib=0; ib<_nfft2; ++ib)
+        multiply(nk1,_h2fft[ib],b[ib]);
+      _fft2.complexToComplex2(1,nk1,b,b);
+      int ny = 0;
+      for (int ib=mh; ib<nb; ++ib,++_nx) {
+        long i = _nx-_kh;
+        if (0<=i && i<_nin) {
+          _fft1.complexToReal(1,b[ib],b[ib]);
+          copy(_n1,b[ib],y[jy+ny++]);
+        }
+      }
+      _nout += ny;
+      return ny;
+    }
+    private int filter3(int m, float[][][] x, float[][][] y) {
+      return filter3(m,x,y,0);
+    }
+    private int filter3(int m, float[][][] x, float[][][] y, int jy) {
+      int mh = _nh-1;
+      int nb = mh+m;
+      float[][][] b = _b3;
+      for (int ib=0; ib<nb; ++ib) {
+        float[][] xi = (ib<mh)?_x3[ib]:x[ib-mh];
+        zero(b[ib]);
+        copy(_n1,_n2,xi,b[ib]);
+        if (_zeroSlope)
+          extrapolate(_n1,_kh1,_nh1,_nfft1,_n2,_kh2,_nh2,_nfft2,b[ib]);
+      }
+      for (int ib=nb; ib<_nfft3; ++ib)
+        zero(b[ib]);
+      for (int ih=0; ih<mh; ++ih)
+        copy(_n1,_n2,b[m+ih],_x3[ih]);
+      int nk1 = _nfft1/2+1;
+      _fft1.realToComplex1(-1,_nfft2,nb,b,b);
+      _fft2.complexToComplex2(-1,nk1,nb,b,b);
+      _fft3.complexToComplex3(-1,nk1,_nfft2,b,b);
+      for (int ib=0; ib<_nfft3; ++ib)
+        for (int i2=0; i2<_nfft2; ++i2)
+          multiply(nk1,_h3fft[ib][i2],b[ib][i2]);
+      _fft3.complexToComplex3(1,nk1,_nfft2,b,b);
+      int ny = 0;
+      for (int ib=mh; ib<nb; ++ib,++_nx) {
+        long i = _nx-_kh;
+        if (0<=i && i<_nin) {
+          _fft2.complexToComplex2(1,nk1,b[ib],b[ib]);
+          _fft1.complexToReal1(1,_n2,b[ib],b[ib]);
+          copy(_n1,_n2,b[ib],y[jy+ny++]);
+        }
+      }
+      _nout += ny;
+      return ny;
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -414,37 +829,19 @@ public class FftFilter {
   }
 
   private void extrapolate(float[] xfft) {
-    if (_extrapolation==Extrapolation.ZERO_SLOPE) {
-      int mr1 = _nx1+_kh1;
-      float xr1 = xfft[_nx1-1];
-      for (int i1=_nx1; i1<mr1; ++i1)
-        xfft[i1] = xr1;
-      int ml1 = _nfft1+_kh1-_nh1+1;
-      float xl1 = xfft[0];
-      for (int i1=ml1; i1<_nfft1; ++i1)
-        xfft[i1] = xl1;
-    }
+    if (_extrapolation==Extrapolation.ZERO_SLOPE)
+      extrapolate(_nx1,_kh1,_nh1,_nfft1,xfft);
   }
 
   private void extrapolate(float[][] xfft) {
-    if (_extrapolation==Extrapolation.ZERO_SLOPE) {
-      for (int i2=0; i2<_nx2; ++i2)
-        extrapolate(xfft[i2]);
-      int mr2 = _nx2+_kh2;
-      float[] xr2 = xfft[_nx2-1];
-      for (int i2=_nx2; i2<mr2; ++i2)
-        copy(xr2,xfft[i2]);
-      int ml2 = _nfft2+_kh2-_nh2+1;
-      float[] xl2 = xfft[0];
-      for (int i2=ml2; i2<_nfft2; ++i2)
-        copy(xl2,xfft[i2]);
-    }
+    if (_extrapolation==Extrapolation.ZERO_SLOPE)
+      extrapolate(_nx1,_kh1,_nh1,_nfft1,_nx2,_kh2,_nh2,_nfft2,xfft);
   }
 
   private void extrapolate(float[][][] xfft) {
     if (_extrapolation==Extrapolation.ZERO_SLOPE) {
       for (int i3=0; i3<_nx3; ++i3)
-        extrapolate(xfft[i3]);
+        extrapolate(_nx1,_kh1,_nh1,_nfft1,_nx2,_kh2,_nh2,_nfft2,xfft[i3]);
       int mr3 = _nx3+_kh3;
       float[][] xr3 = xfft[_nx3-1];
       for (int i3=_nx3; i3<mr3; ++i3)
@@ -455,4 +852,45 @@ public class FftFilter {
         copy(xl3,xfft[i3]);
     }
   }
+
+  private static void extrapolate(
+    int nx1, int kh1, int nh1, int nfft1, float[] xfft) 
+  {
+    int mr1 = nx1+kh1;
+    float xr1 = xfft[nx1-1];
+    for (int i1=nx1; i1<mr1; ++i1)
+      xfft[i1] = xr1;
+    int ml1 = nfft1+kh1-nh1+1;
+    float xl1 = xfft[0];
+    for (int i1=ml1; i1<nfft1; ++i1)
+      xfft[i1] = xl1;
+  }
+
+  private static void extrapolate(
+    int nx1, int kh1, int nh1, int nfft1, 
+    int nx2, int kh2, int nh2, int nfft2, float[][] xfft) 
+  {
+    for (int i2=0; i2<nx2; ++i2)
+      extrapolate(nx1,kh1,nh1,nfft1,xfft[i2]);
+    int mr2 = nx2+kh2;
+    float[] xr2 = xfft[nx2-1];
+    for (int i2=nx2; i2<mr2; ++i2)
+      copy(xr2,xfft[i2]);
+    int ml2 = nfft2+kh2-nh2+1;
+    float[] xl2 = xfft[0];
+    for (int i2=ml2; i2<nfft2; ++i2)
+      copy(xl2,xfft[i2]);
+  }
+
+  // Multiplies n complex numbers in cx by complex numbers in hfft.
+  private static void multiply(int n, float[] hfft, float[] cx) {
+    for (int ik=0,kr=0,ki=1; ik<n; ++ik,kr+=2,ki+=2) {
+      float xr = cx[kr];
+      float xi = cx[ki];
+      float hr = hfft[kr];
+      float hi = hfft[ki];
+      cx[kr] = xr*hr-xi*hi;
+      cx[ki] = xr*hi+xi*hr;
+    }
+  }
 }
@@ -14,6 +14,8 @@ limitations under the License.
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import static java.lang.Math.PI;
 import static java.lang.Math.sin;
 
@@ -70,6 +72,9 @@ public class FftReal {
       nfft%2==0 && Pfacc.nfftValid(nfft/2),
       "nfft="+nfft+" is valid FFT length");
     _nfft = nfft;
+    double[][] w = twiddles(nfft);
+    _wr = w[0];
+    _wi = w[1];
   }
 
   /**
@@ -120,21 +125,98 @@ public class FftReal {
     checkSign(sign);
     checkArray(_nfft,rx,"rx");
     checkArray(_nfft+2,cy,"cy");
+    realToComplex(sign,rx,0,cy,0);
+  }
+
+  /**
+   * Computes a complex-to-real fast Fourier transform. 
+   * Transforms a 1-D input array cx[nfft+2] of nfft/2+1 complex numbers 
+   * to a 1-D output array ry[nfft] of nfft real numbers.
+   * @param sign the sign (1 or -1) of the exponent used in the FFT.
+   * @param cx the input array.
+   * @param ry the output array.
+   */
+  public void complexToReal(int sign, float[] cx, float[] ry) {
+    checkSign(sign);
+    checkArray(_nfft+2,cx,"cx");
+    checkArray(_nfft,ry,"ry");
+    complexToReal(sign,cx,0,ry,0);
+  }
+
+  /**
+   * Computes real-to-complex fast Fourier transforms of many signals.
+   * Transforms n2 signals, each with nfft real numbers, stored in a 1-D
+   * input array rx, to n2 signals, each with nfft/2+1 complex numbers, 
+   * stored in a 1-D output array cy. Signal i2 begins at array index 
+   * i2*sx in rx, and at index i2*sy in cy. The stride sx must be not 
+   * less than nfft, and the stride sy must be not less than nfft+2.
+   * If rx and cy are the same array, then sx and sy must be equal.
+   * <p>
+   * Signals are transformed where they lie in the output array, without
+   * copying them to or from any other arrays.
+   * @param sign the sign (1 or -1) of the exponent used in the FFT.
+   * @param n2 the number of signals.
+   * @param rx the input array.
+   * @param sx the stride between signals in the input array.
+   * @param cy the output array.
+   * @param sy the stride between signals in the output array.
+   */
+  public void realToComplexBatch(
+    int sign, int n2, float[] rx, int sx, float[] cy, int sy) 
+  {
+    checkSign(sign);
+    checkBatch(_nfft,n2,sx,rx,"rx");
+    checkBatch(_nfft+2,n2,sy,cy,"cy");
+    Check.argument(rx!=cy || sx==sy,"sx equals sy for in-place transforms");
+    for (int i2=0,jx=0,jy=0; i2<n2; ++i2,jx+=sx,jy+=sy)
+      realToComplex(sign,rx,jx,cy,jy);
+  }
+
+  /**
+   * Computes complex-to-real fast Fourier transforms of many signals.
+   * Transforms n2 signals, each with nfft/2+1 complex numbers, stored in 
+   * a 1-D input array cx, to n2 signals, each with nfft real numbers, 
+   * stored in a 1-D output array ry. Signal i2 begins at array index 
+   * i2*sx in cx, and at index i2*sy in ry. The stride sx must be not 
+   * less than nfft+2, and the stride sy must be not less than nfft.
+   * If cx and ry are the same array, then sx and sy must be equal.
+   * @param sign the sign (1 or -1) of the exponent used in the FFT.
+   * @param n2 the number of signals.
+   * @param cx the input array.
+   * @param sx the stride between signals in the input array.
+   * @param ry the output array.
+   * @param sy the stride between signals in the output array.
+   */
+  public void complexToRealBatch(
+    int sign, int n2, float[] cx, int sx, float[] ry, int sy) 
+  {
+    checkSign(sign);
+    checkBatch(_nfft+2,n2,sx,cx,"cx");
+    checkBatch(_nfft,n2,sy,ry,"ry");
+    Check.argument(cx!=ry || sx==sy,"sx equals sy for in-place transforms");
+    for (int i2=0,jx=0,jy=0; i2<n2; ++i2,jx+=sx,jy+=sy)
+      complexToReal(sign,cx,jx,ry,jy);
+  }
+
+  /**
+   * Real-to-complex FFT of nfft real numbers beginning at index jx
+   * in the array rx, to nfft/2+1 complex numbers beginning at index 
+   * jy in the array cy.
+   */
+  private void realToComplex(
+    int sign, float[] rx, int jx, float[] cy, int jy) 
+  {
     int n = _nfft;
     while (--n>=0)
-      cy[n] = 0.5f*rx[n];
-    Pfacc.transform(sign,_nfft/2,cy);
-    cy[_nfft] = 2.0f*(cy[0]-cy[1]);
-    cy[0    ] = 2.0f*(cy[0]+cy[1]);
-    cy[_nfft+1] = 0.0f;
-    cy[1      ] = 0.0f;
-    double theta = sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j=2,k=_nfft-2; j<=k; j+=2,k-=2) {
+      cy[jy+n] = 0.5f*rx[jx+n];
+    Pfacc.transform(sign,_nfft/2,cy,jy);
+    cy[jy+_nfft] = 2.0f*(cy[jy]-cy[jy+1]);
+    cy[jy      ] = 2.0f*(cy[jy]+cy[jy+1]);
+    cy[jy+_nfft+1] = 0.0f;
+    cy[jy+1      ] = 0.0f;
+    for (int j=jy+2,k=jy+_nfft-2,l=0; j<=k; j+=2,k-=2,++l) {
+      double wr = _wr[l];
+      double wi = sign*_wi[l];
       float sumr = cy[j  ]+cy[k  ];
       float sumi = cy[j+1]+cy[k+1];
       float difr = cy[j  ]-cy[k  ];
@@ -145,38 +227,27 @@ public class FftReal {
       cy[j+1] = tmpi+difi;
       cy[k  ] = sumr-tmpr;
       cy[k+1] = tmpi-difi;
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
   }
 
   /**
-   * Computes a complex-to-real fast Fourier transform. 
-   * Transforms a 1-D input array cx[nfft+2] of nfft/2+1 complex numbers 
-   * to a 1-D output array ry[nfft] of nfft real numbers.
-   * @param sign the sign (1 or -1) of the exponent used in the FFT.
-   * @param cx the input array.
-   * @param ry the output array.
+   * Complex-to-real FFT of nfft/2+1 complex numbers beginning at index 
+   * jx in the array cx, to nfft real numbers beginning at index jy in 
+   * the array ry.
    */
-  public void complexToReal(int sign, float[] cx, float[] ry) {
-    checkSign(sign);
-    checkArray(_nfft+2,cx,"cx");
-    checkArray(_nfft,ry,"ry");
-    if (cx!=ry) {
+  private void complexToReal(
+    int sign, float[] cx, int jx, float[] ry, int jy) 
+  {
+    if (cx!=ry || jx!=jy) {
       int n = _nfft;
       while (--n>=2)
-        ry[n] = cx[n];
+        ry[jy+n] = cx[jx+n];
     }
-    ry[1] = cx[0]-cx[_nfft];
-    ry[0] = cx[0]+cx[_nfft];
-    double theta = -sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j=2,k=_nfft-2; j<=k; j+=2,k-=2) {
+    ry[jy+1] = cx[jx]-cx[jx+_nfft];
+    ry[jy  ] = cx[jx]+cx[jx+_nfft];
+    for (int j=jy+2,k=jy+_nfft-2,l=0; j<=k; j+=2,k-=2,++l) {
+      double wr = _wr[l];
+      double wi = -sign*_wi[l];
       float sumr = ry[j  ]+ry[k  ];
       float sumi = ry[j+1]+ry[k+1];
       float difr = ry[j  ]-ry[k  ];
@@ -187,11 +258,8 @@ public class FftReal {
       ry[j+1] = tmpi+difi;
       ry[k  ] = sumr-tmpr;
       ry[k+1] = tmpi-difi;
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
-    Pfacc.transform(sign,_nfft/2,ry);
+    Pfacc.transform(sign,_nfft/2,ry,jy);
   }
 
   /**
@@ -263,13 +331,9 @@ public class FftReal {
       cyn[i1+1] = 0.0f;
       cy0[i1+1] = 0.0f;
     }
-    double theta = sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
     for (int j2=1,k2=_nfft/2-1; j2<=k2; ++j2,--k2) {
+      double wr = _wr[j2-1];
+      double wi = sign*_wi[j2-1];
       float[] cyj2 = cy[j2];
       float[] cyk2 = cy[k2];
       for (int i1=0,j1=0; i1<n1; ++i1,j1+=2) {
@@ -284,9 +348,6 @@ public class FftReal {
         cyk2[j1  ] = sumr-tmpr;
         cyk2[j1+1] = tmpi-difi;
       }
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
   }
 
@@ -318,13 +379,9 @@ public class FftReal {
     }
 
     // Begin transform.
-    double theta = -sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j2=2,k2=_nfft-2; j2<=k2; j2+=2,k2-=2) {
+    for (int j2=2,k2=_nfft-2,l=0; j2<=k2; j2+=2,k2-=2,++l) {
+      double wr = _wr[l];
+      double wi = -sign*_wi[l];
       float[] ryj2r = ry[j2  ];
       float[] ryj2i = ry[j2+1];
       float[] ryk2r = ry[k2  ];
@@ -341,9 +398,6 @@ public class FftReal {
         ryk2r[i1] = sumr-tmpr;
         ryk2i[i1] = tmpi-difi;
       }
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
 
     // Dimension-2 complex-to-complex transform.
@@ -436,20 +490,73 @@ public class FftReal {
   // private
 
   private int _nfft; // FFT length (number of real numbers to transform)
+  private double[] _wr; // real parts of twiddle factors, for sign = 1
+  private double[] _wi; // imaginary parts of twiddle factors, for sign = 1
+
+  // Twiddle factors, cached by FFT length, shared by all FFTs. The tables 
+  // are never modified, so they may be used concurrently by many threads.
+  private static final ConcurrentHashMap<Integer,double[][]> _twiddles =
+    new ConcurrentHashMap<Integer,double[][]>();
+
+  private static double[][] twiddles(int nfft) {
+    double[][] w = _twiddles.get(nfft);
+    if (w==null) {
+      w = makeTwiddles(nfft);
+      double[][] v = _twiddles.putIfAbsent(nfft,w);
+      if (v!=null)
+        w = v;
+    }
+    return w;
+  }
+
+  /**
+   * Makes tables of twiddle factors exp(i*2*pi*k/nfft), for k = 1, 2, 
+   * ..., nfft/4, using a trigonometric recurrence in double precision.
+   * For sign = -1, the imaginary parts of these factors are negated.
+   */
+  private static double[][] makeTwiddles(int nfft) {
+    int nw = nfft/4;
+    double[] wrs = new double[nw];
+    double[] wis = new double[nw];
+    double theta = 2.0*PI/nfft;
+    double wt = sin(0.5*theta);
+    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
+    double wpi = sin(theta); // = sin(theta)
+    double wr = 1.0+wpr;
+    double wi = wpi;
+    for (int l=0; l<nw; ++l) {
+      wrs[l] = wr;
+      wis[l] = wi;
+      wt = wr;
+      wr += wr*wpr-wi*wpi;
+      wi += wi*wpr+wt*wpi;
+    }
+    return new double[][]{wrs,wis};
+  }
 
   private static void checkSign(int sign) {
     Check.argument(sign==1 || sign==-1,"sign equals 1 or -1");
   }
 
+  private static void checkBatch(
+    int n1, int n2, int stride, float[] a, String name) 
+  {
+    Check.argument(stride>=n1,"stride for "+name+" is valid");
+    Check.argument(n2<=0 || a.length>=(long)(n2-1)*stride+n1,
+      "dimensions of "+name+" are valid");
+  }
+
   private static void checkArray(int n, float[] a, String name) {
-    Check.argument(a.length>=n,"dimensions of "+name+" are valid");
+    if (a.length<n)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 
   private static void checkArray(int n1, int n2, float[][] a, String name) {
     boolean ok = a.length>=n2;
     for (int i2=0; i2<n2 && ok; ++i2)
       ok = a[i2].length>=n1;
-    Check.argument(ok,"dimensions of "+name+" are valid");
+    if (!ok)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 
   private static void checkArray(
@@ -462,6 +569,7 @@ public class FftReal {
         ok = a[i3][i2].length>=n1;
       }
     }
-    Check.argument(ok,"dimensions of "+name+" are valid");
+    if (!ok)
+      Check.argument(false,"dimensions of "+name+" are valid");
   }
 }
@@ -16,6 +16,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Local cross-correlation of two arrays with seamless overlapping windows.
@@ -336,43 +337,44 @@ public class LocalCorrelationFilter {
    * @param lag3 the lag in the 3rd dimension.
    * @param c the cross-correlation to be modified.
    */
-  public void normalize(int lag1, int lag2, int lag3, float[][][] c) {
+  public void normalize(
+    final int lag1, final int lag2, final int lag3, final float[][][] c) 
+  {
     checkDimensions(c);
     if (_s==null)
       updateNormalize();
-    int n1 = _n1;
-    int n2 = _n2;
-    int n3 = _n3;
-    int l1 = lag1;
-    int l2 = lag2;
-    int l3 = lag3;
+    final int n1 = _n1;
+    final int n2 = _n2;
+    final int n3 = _n3;
     if (_type==Type.SIMPLE) {
-      float[][][] sf = _s[0];
-      float[][][] sg = _s[1];
-      int i1min = max(0,-l1);
-      int i1max = min(n1,n1-l1);
-      for (int i3=0; i3<n3; ++i3) {
+      final float[][][] sf = _s[0];
+      final float[][][] sg = _s[1];
+      final int i1min = max(0,-lag1);
+      final int i1max = min(n1,n1-lag1);
+      Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
         float[][] c3 = c[i3];
         float[][] sf3 = sf[i3];
-        float[][] sg3 = sg[max(0,min(n3-1,i3+l3))];
+        float[][] sg3 = sg[max(0,min(n3-1,i3+lag3))];
         for (int i2=0; i2<n2; ++i2) {
           float[] c32 = c3[i2];
           float[] sf32 = sf3[i2];
-          float[] sg32 = sg3[max(0,min(n2-1,i2+l2))];
+          float[] sg32 = sg3[max(0,min(n2-1,i2+lag2))];
           for (int i1=0; i1<i1min; ++i1) {
             c32[i1] *= sf32[i1]*sg32[0];
           }
           for (int i1=i1min; i1<i1max; ++i1) {
-            c32[i1] *= sf32[i1]*sg32[i1+l1];
+            c32[i1] *= sf32[i1]*sg32[i1+lag1];
           }
           for (int i1=i1max; i1<n1; ++i1) {
             c32[i1] *= sf32[i1]*sg32[n1-1];
           }
         }
-      }
+      }});
     } else if (_type==Type.SYMMETRIC) {
-      float[][][] s = _s[0];
-      for (int i3=0; i3<n3; ++i3) {
+      final float[][][] s = _s[0];
+      Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
         float[][] c3 = c[i3];
         float[][] s3 = s[i3];
         for (int i2=0; i2<n2; ++i2) {
@@ -382,10 +384,90 @@ public class LocalCorrelationFilter {
             c32[i1] *= s32[i1];
           }
         }
-      }
+      }});
     }
   }
 
+  /**
+   * Correlates and normalizes the current inputs for a range of lags.
+   * Correlations for different lags are computed in parallel, and are
+   * normalized with scale factors computed only once for the current 
+   * inputs. (For 3D inputs, lags are correlated in sequence, with 
+   * computations for each lag in parallel, so that only one 3D work 
+   * array is required.)
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n1] of output correlations, such that c[k]
+   *  is the normalized correlation for lag min+k; arrays c[k] cannot be 
+   *  the same as inputs f or g.
+   */
+  public void correlateLags(final int min, int max, final float[][] c) {
+    Check.argument(c.length==1+max-min,"c.length==1+max-min");
+    checkDimension(1);
+    if (_s==null)
+      updateNormalize();
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+    public void compute(int k) {
+      correlate(min+k,c[k]);
+      normalize(min+k,c[k]);
+    }});
+  }
+
+  /**
+   * Correlates and normalizes the current inputs for a range of lags 
+   * in the 1st dimension. Lags in the 2nd dimension are zero.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n2][n1] of output correlations.
+   */
+  public void correlateLags1(int min, int max, float[][][] c) {
+    correlateLags(1,min,max,c);
+  }
+
+  /**
+   * Correlates and normalizes the current inputs for a range of lags 
+   * in the 2nd dimension. Lags in the 1st dimension are zero.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n2][n1] of output correlations.
+   */
+  public void correlateLags2(int min, int max, float[][][] c) {
+    correlateLags(2,min,max,c);
+  }
+
+  /**
+   * Correlates and normalizes the current inputs for a range of lags 
+   * in the 1st dimension. Lags in the 2nd and 3rd dimensions are zero.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n3][n2][n1] of output correlations.
+   */
+  public void correlateLags1(int min, int max, float[][][][] c) {
+    correlateLags(1,min,max,c);
+  }
+
+  /**
+   * Correlates and normalizes the current inputs for a range of lags 
+   * in the 2nd dimension. Lags in the 1st and 3rd dimensions are zero.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n3][n2][n1] of output correlations.
+   */
+  public void correlateLags2(int min, int max, float[][][][] c) {
+    correlateLags(2,min,max,c);
+  }
+
+  /**
+   * Correlates and normalizes the current inputs for a range of lags 
+   * in the 3rd dimension. Lags in the 1st and 2nd dimensions are zero.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n3][n2][n1] of output correlations.
+   */
+  public void correlateLags3(int min, int max, float[][][][] c) {
+    correlateLags(3,min,max,c);
+  }
+
   /** 
    * Removes bias by subtracting local means from the specified array.
    * @param f the input array.
@@ -674,25 +756,7 @@ public class LocalCorrelationFilter {
 
     // Correlation product.
     float[][][] h = new float[n3][n2][n1];
-    int i1min = max(0,l1f,-l1g);
-    int i1max = min(n1,n1+l1f,n1-l1g);
-    int i2min = max(0,l2f,-l2g);
-    int i2max = min(n2,n2+l2f,n2-l2g);
-    int i3min = max(0,l3f,-l3g);
-    int i3max = min(n3,n3+l3f,n3-l3g);
-    for (int i3=i3min; i3<i3max; ++i3) {
-      float[][] f3 = f[i3-l3f];
-      float[][] g3 = g[i3+l3g];
-      float[][] h3 = h[i3];
-      for (int i2=i2min; i2<i2max; ++i2) {
-        float[] f32 = f3[i2-l2f];
-        float[] g32 = g3[i2+l2g];
-        float[] h32 = h3[i2];
-        for (int i1=i1min; i1<i1max; ++i1) {
-          h32[i1] = scale*f32[i1-l1f]*g32[i1+l1g];
-        }
-      }
-    }
+    multiply(scale,l1f,l1g,l2f,l2g,l3f,l3g,f,g,h);
 
     // If Gaussian and symmetric and odd lag, delay (shift) by 1/2 sample.
     if (_window==Window.GAUSSIAN && _type==Type.SYMMETRIC) {
@@ -728,6 +792,73 @@ public class LocalCorrelationFilter {
     f3.apply3(h,c);
   }
 
+  // Computes the correlation product h = scale*f*g, for f and g shifted
+  // by the specified lags, in parallel for slices i3.
+  private static void multiply(
+    final float scale, 
+    final int l1f, final int l1g, final int l2f, final int l2g, 
+    final int l3f, final int l3g,
+    final float[][][] f, final float[][][] g, final float[][][] h)
+  {
+    int n1 = h[0][0].length;
+    int n2 = h[0].length;
+    int n3 = h.length;
+    final int i1min = max(0,l1f,-l1g);
+    final int i1max = min(n1,n1+l1f,n1-l1g);
+    final int i2min = max(0,l2f,-l2g);
+    final int i2max = min(n2,n2+l2f,n2-l2g);
+    int i3min = max(0,l3f,-l3g);
+    int i3max = min(n3,n3+l3f,n3-l3g);
+    if (i3min>=i3max)
+      return;
+    Parallel.loop(i3min,i3max,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[][] f3 = f[i3-l3f];
+      float[][] g3 = g[i3+l3g];
+      float[][] h3 = h[i3];
+      for (int i2=i2min; i2<i2max; ++i2) {
+        float[] f32 = f3[i2-l2f];
+        float[] g32 = g3[i2+l2g];
+        float[] h32 = h3[i2];
+        for (int i1=i1min; i1<i1max; ++i1) {
+          h32[i1] = scale*f32[i1-l1f]*g32[i1+l1g];
+        }
+      }
+    }});
+  }
+
+  private void correlateLags(
+    final int dim, final int min, int max, final float[][][] c) 
+  {
+    Check.argument(c.length==1+max-min,"c.length==1+max-min");
+    checkDimension(2);
+    if (_s==null)
+      updateNormalize();
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+    public void compute(int k) {
+      int lag1 = (dim==1)?min+k:0;
+      int lag2 = (dim==2)?min+k:0;
+      correlate(lag1,lag2,c[k]);
+      normalize(lag1,lag2,c[k]);
+    }});
+  }
+
+  private void correlateLags(
+    final int dim, final int min, int max, final float[][][][] c) 
+  {
+    Check.argument(c.length==1+max-min,"c.length==1+max-min");
+    checkDimension(3);
+    if (_s==null)
+      updateNormalize();
+    for (int k=0; k<c.length; ++k) {
+      int lag1 = (dim==1)?min+k:0;
+      int lag2 = (dim==2)?min+k:0;
+      int lag3 = (dim==3)?min+k:0;
+      correlate(lag1,lag2,lag3,c[k]);
+      normalize(lag1,lag2,lag3,c[k]);
+    }
+  }
+
   private void updateNormalize() {
     if (_dimension==0)
       return;
@@ -314,15 +314,20 @@ public class LocalDiffusionKernel {
   ///////////////////////////////////////////////////////////////////////////
   // private
 
-  private static Tensors2 IDENTITY_TENSORS2 = new Tensors2() {
+  private static Tensors2 IDENTITY_TENSORS2 = new BulkTensors2() {
     public void getTensor(int i1, int i2, float[] d) {
       d[0] = 1.0f;
       d[1] = 0.0f;
       d[2] = 1.0f;
     }
+    public void getTensors(int i2, float[][] d) {
+      fill(1.0f,d[0]);
+      fill(0.0f,d[1]);
+      fill(1.0f,d[2]);
+    }
   };
 
-  private static Tensors3 IDENTITY_TENSORS3 = new Tensors3() {
+  private static Tensors3 IDENTITY_TENSORS3 = new BulkTensors3() {
     public void getTensor(int i1, int i2, int i3, float[] d) {
       d[0] = 1.0f;
       d[1] = 0.0f;
@@ -331,8 +336,50 @@ public class LocalDiffusionKernel {
       d[4] = 0.0f;
       d[5] = 1.0f;
     }
+    public void getTensors(int i2, int i3, float[][] d) {
+      fill(1.0f,d[0]);
+      fill(0.0f,d[1]);
+      fill(0.0f,d[2]);
+      fill(1.0f,d[3]);
+      fill(0.0f,d[4]);
+      fill(1.0f,d[5]);
+    }
   };
 
+  // Gets tensor elements for one row of tensors, in bulk if possible.
+  // Also used by other classes in this package.
+  static void getTensors(Tensors2 d, int i2, float[][] a) {
+    if (d instanceof BulkTensors2) {
+      ((BulkTensors2)d).getTensors(i2,a);
+    } else {
+      float[] ai = new float[3];
+      int n1 = a[0].length;
+      for (int i1=0; i1<n1; ++i1) {
+        d.getTensor(i1,i2,ai);
+        a[0][i1] = ai[0];
+        a[1][i1] = ai[1];
+        a[2][i1] = ai[2];
+      }
+    }
+  }
+  static void getTensors(Tensors3 d, int i2, int i3, float[][] a) {
+    if (d instanceof BulkTensors3) {
+      ((BulkTensors3)d).getTensors(i2,i3,a);
+    } else {
+      float[] ai = new float[6];
+      int n1 = a[0].length;
+      for (int i1=0; i1<n1; ++i1) {
+        d.getTensor(i1,i2,i3,ai);
+        a[0][i1] = ai[0];
+        a[1][i1] = ai[1];
+        a[2][i1] = ai[2];
+        a[3][i1] = ai[3];
+        a[4][i1] = ai[4];
+        a[5][i1] = ai[5];
+      }
+    }
+  }
+
   private Stencil _stencil;
   private int _npass = 1;
   private boolean _parallel = true;
@@ -452,18 +499,18 @@ public class LocalDiffusionKernel {
     c *= 0.25f;
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     for (int i2=1; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       float[] x0 = x[i2 ];
       float[] xm = x[i2-1];
       float[] y0 = y[i2 ];
       float[] ym = y[i2-1];
       for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float x00 = x0[i1];
         float x0m = x0[m1];
         float xm0 = xm[i1];
@@ -490,8 +537,9 @@ public class LocalDiffusionKernel {
     c *= 0.25f;
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     for (int i2=1; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       float[] xp = x[i2 ];
       float[] xm = x[i2-1];
       float[] yp = y[i2 ];
@@ -501,11 +549,10 @@ public class LocalDiffusionKernel {
       for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
         xmm = xmp; xpm = xpp; xmp = xm[i1]; xpp = xp[i1];
         ymm = ymp; ypm = ypp; ymp = ym[i1]; ypp = yp[i1];
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float xa = xpp-xmm;
         float xb = xpm-xmp;
         float x1 = xa-xb;
@@ -530,8 +577,9 @@ public class LocalDiffusionKernel {
     c *= 0.0625f;
     int n1 = x[0][0].length;
     int n2 = x[0].length;
-    float[] di = new float[6];
+    float[][] di = new float[6][n1];
     for (int i2=1; i2<n2; ++i2) {
+      getTensors(d,i2,i3,di);
       float[] x00 = x[i3  ][i2  ];
       float[] x0m = x[i3  ][i2-1];
       float[] xm0 = x[i3-1][i2  ];
@@ -541,14 +589,13 @@ public class LocalDiffusionKernel {
       float[] ym0 = y[i3-1][i2  ];
       float[] ymm = y[i3-1][i2-1];
       for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
-        d.getTensor(i1,i2,i3,di);
         float csi = (s!=null)?c*s[i3][i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d13 = di[2]*csi;
-        float d22 = di[3]*csi;
-        float d23 = di[4]*csi;
-        float d33 = di[5]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d13 = di[2][i1]*csi;
+        float d22 = di[3][i1]*csi;
+        float d23 = di[4][i1]*csi;
+        float d33 = di[5][i1]*csi;
         float xa = x00[i1]-xmm[m1];
         float xb = x00[m1]-xmm[i1];
         float xc = x0m[i1]-xm0[m1];
@@ -580,9 +627,10 @@ public class LocalDiffusionKernel {
     c *= a*a;
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     int i2m2, i2m1 = 0, i2p0 = 0, i2p1 = 1;
     for (int i2=1; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       i2m2 = i2m1; i2m1 = i2p0; i2p0 = i2p1; ++i2p1; 
       if (i2p1>=n1) i2p1 = n1-1;
       float[] xm2=x[i2m2], xm1=x[i2m1], xp0=x[i2p0], xp1=x[i2p1];
@@ -591,11 +639,10 @@ public class LocalDiffusionKernel {
       for (int i1=1; i1<n1; ++i1) {
         m2 = m1; m1 = p0; p0 = p1; ++p1; 
         if (p1>=n1) p1 = n1-1;
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float xa = xp0[p0]-xm1[m1];
         float xb = xm1[p0]-xp0[m1];
         float x1 = xa+xb+b*(xp1[p0]+xm2[p0]-xp1[m1]-xm2[m1]);
@@ -629,8 +676,9 @@ public class LocalDiffusionKernel {
     c *= a*a;
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     for (int i2=1; i2<n2-1; ++i2) {
+      getTensors(d,i2,di);
       float[] xm = x[i2-1], x0 = x[i2], xp = x[i2+1];
       float[] ym = y[i2-1], y0 = y[i2], yp = y[i2+1];
       float xmm, xm0 = xm[0], xmp = xm[1];
@@ -646,11 +694,10 @@ public class LocalDiffusionKernel {
         ymm = ym0; ym0 = ymp; ymp = ym[i1p];
         y0m = y00; y00 = y0p; y0p = y0[i1p];
         ypm = yp0; yp0 = ypp; ypp = yp[i1p];
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float xa = b*(xpp-xmm);
         float xb = b*(xmp-xpm);
         float x1 = x0p-x0m+xa+xb;
@@ -683,16 +730,16 @@ public class LocalDiffusionKernel {
     c *= a*a;
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     for (int i2=1; i2<n2-1; ++i2) {
+      getTensors(d,i2,di);
       float[] xm = x[i2-1], x0 = x[i2], xp = x[i2+1];
       float[] ym = y[i2-1], y0 = y[i2], yp = y[i2+1];
       for (int m1=0,i1=1,p1=2; p1<n1; ++m1,++i1,++p1) {
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float xa = b*(xp[p1]-xm[m1]);
         float xb = b*(xm[p1]-xp[m1]);
         float x1 = x0[p1]-x0[m1]+xa+xb;
@@ -720,8 +767,9 @@ public class LocalDiffusionKernel {
     float bb = 0.5f*b*b;
     int n1 = x[0][0].length;
     int n2 = x[0].length;
-    float[] di = new float[6];
+    float[][] di = new float[6][n1];
     for (int i2=1; i2<n2-1; ++i2) {
+      getTensors(d,i2,i3,di);
       float[] xmm = x[i3-1][i2-1], xm0 = x[i3-1][i2  ], xmp = x[i3-1][i2+1];
       float[] x0m = x[i3  ][i2-1], x00 = x[i3  ][i2  ], x0p = x[i3  ][i2+1];
       float[] xpm = x[i3+1][i2-1], xp0 = x[i3+1][i2  ], xpp = x[i3+1][i2+1];
@@ -729,14 +777,13 @@ public class LocalDiffusionKernel {
       float[] y0m = y[i3  ][i2-1], y00 = y[i3  ][i2  ], y0p = y[i3  ][i2+1];
       float[] ypm = y[i3+1][i2-1], yp0 = y[i3+1][i2  ], ypp = y[i3+1][i2+1];
       for (int m1=0,i1=1,p1=2; p1<n1; ++m1,++i1,++p1) {
-        d.getTensor(i1,i2,i3,di);
         float csi = (s!=null)?c*s[i3][i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d13 = di[2]*csi;
-        float d22 = di[3]*csi;
-        float d23 = di[4]*csi;
-        float d33 = di[5]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d13 = di[2][i1]*csi;
+        float d22 = di[3][i1]*csi;
+        float d23 = di[4][i1]*csi;
+        float d33 = di[5][i1]*csi;
         float xmmm = xmm[m1], xmm0 = xmm[i1], xmmp = xmm[p1];
         float xm0m = xm0[m1], xm00 = xm0[i1], xm0p = xm0[p1];
         float xmpm = xmp[m1], xmp0 = xmp[i1], xmpp = xmp[p1];
@@ -807,9 +854,10 @@ public class LocalDiffusionKernel {
     final float c1 =  C71[1], c2 = C71[2], c3 = C71[3];
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     float[] g1 = new float[n1];
     for (int i2=0; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       int i2m3 = max(0,i2-3), i2p3 = min(n2-1,i2+3);
       int i2m2 = max(0,i2-2), i2p2 = min(n2-1,i2+2);
       int i2m1 = max(0,i2-1), i2p1 = min(n2-1,i2+1);
@@ -819,11 +867,10 @@ public class LocalDiffusionKernel {
       float[] yp1 = y[i2p1], yp2 = y[i2p2], yp3 = y[i2p3];
       gf(C71,x[i2],g1);
       for (int i1=0; i1<n1; ++i1) {
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float x1 = g1[i1];
         float x2 = c1*(xp1[i1]-xm1[i1]) +
                    c2*(xp2[i1]-xm2[i1]) +
@@ -845,9 +892,10 @@ public class LocalDiffusionKernel {
     final float c1 =  C71[1], c2 = C71[2], c3 = C71[3];
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     int i2m3,i2m2=0,i2m1=0,i2p0=0,i2p1=0,i2p2=1,i2p3=2;
     for (int i2=0; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       i2m3 = i2m2; i2m2 = i2m1; i2m1 = i2p0;
       i2p0 = i2p1; i2p1 = i2p2; i2p2 = i2p3; ++i2p3;
       if (i2p1>=n2) i2p1 = n2-1;
@@ -866,11 +914,10 @@ public class LocalDiffusionKernel {
         if (p1>=n1) p1 = n1-1;
         if (p2>=n1) p2 = n1-1;
         if (p3>=n1) p3 = n1-1;
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float x1 = c1*(xp0[p1]-xp0[m1]) +
                    c2*(xp0[p2]-xp0[m2]) +
                    c3*(xp0[p3]-xp0[m3]);
@@ -896,7 +943,7 @@ public class LocalDiffusionKernel {
     int n1 = x[0][0].length;
     int n2 = x[0].length;
     int n3 = x.length;
-    float[] di = new float[6];
+    float[][] di = new float[6][n1];
     int i3m3 = max(0,i3-3), i3p3 = min(n3-1,i3+3);
     int i3m2 = max(0,i3-2), i3p2 = min(n3-1,i3+2);
     int i3m1 = max(0,i3-1), i3p1 = min(n3-1,i3+1);
@@ -904,6 +951,7 @@ public class LocalDiffusionKernel {
     float[][] g2 = new float[n2][n1];
     gf(C71,x[i3],g1,g2);
     for (int i2=0; i2<n2; ++i2) {
+      getTensors(d,i2,i3,di);
       float[] xm1 = x[i3m1][i2], xm2 = x[i3m2][i2], xm3 = x[i3m3][i2];
       float[] xp1 = x[i3p1][i2], xp2 = x[i3p2][i2], xp3 = x[i3p3][i2];
       float[] ym1 = y[i3m1][i2], ym2 = y[i3m2][i2], ym3 = y[i3m3][i2];
@@ -911,14 +959,13 @@ public class LocalDiffusionKernel {
       float[] g1i = g1[i2];
       float[] g2i = g2[i2];
       for (int i1=0; i1<n1; ++i1) {
-        d.getTensor(i1,i2,i3,di);
         float csi = (s!=null)?c*s[i3][i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d13 = di[2]*csi;
-        float d22 = di[3]*csi;
-        float d23 = di[4]*csi;
-        float d33 = di[5]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d13 = di[2][i1]*csi;
+        float d22 = di[3][i1]*csi;
+        float d23 = di[4][i1]*csi;
+        float d33 = di[5][i1]*csi;
         float x1 = g1i[i1];
         float x2 = g2i[i1];
         float x3 = c1*(xp1[i1]-xm1[i1]) +
@@ -944,7 +991,7 @@ public class LocalDiffusionKernel {
     int n1 = x[0][0].length;
     int n2 = x[0].length;
     int n3 = x.length;
-    float[] di = new float[6];
+    float[][] di = new float[6][n1];
     int i3m3 = i3-3; if (i3m3<0) i3m3 = 0;
     int i3m2 = i3-2; if (i3m2<0) i3m2 = 0;
     int i3m1 = i3-1; if (i3m1<0) i3m1 = 0;
@@ -954,6 +1001,7 @@ public class LocalDiffusionKernel {
     int i3p3 = i3+3; if (i3p3>=n3) i3p3 = n3-1;
     int i2m3,i2m2=0,i2m1=0,i2p0=0,i2p1=0,i2p2=1,i2p3=2;
     for (int i2=0; i2<n2; ++i2) {
+      getTensors(d,i2,i3,di);
       i2m3 = i2m2; i2m2 = i2m1; i2m1 = i2p0;
       i2p0 = i2p1; i2p1 = i2p2; i2p2 = i2p3; ++i2p3;
       if (i2p1>=n2) i2p1 = n2-1;
@@ -979,14 +1027,13 @@ public class LocalDiffusionKernel {
         if (p1>=n1) p1 = n1-1;
         if (p2>=n1) p2 = n1-1;
         if (p3>=n1) p3 = n1-1;
-        d.getTensor(i1,i2,i3,di);
         float csi = (s!=null)?c*s[i3][i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d13 = di[2]*csi;
-        float d22 = di[3]*csi;
-        float d23 = di[4]*csi;
-        float d33 = di[5]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d13 = di[2][i1]*csi;
+        float d22 = di[3][i1]*csi;
+        float d23 = di[4][i1]*csi;
+        float d33 = di[5][i1]*csi;
         float x1  = c1*(xp0p0[p1]-xp0p0[m1]) +
                     c2*(xp0p0[p2]-xp0p0[m2]) +
                     c3*(xp0p0[p3]-xp0p0[m3]);
@@ -1025,9 +1072,10 @@ public class LocalDiffusionKernel {
     float c1 =  C91[1], c2 = C91[2], c3 = C91[3], c4 = C91[4];
     int n1 = x[0].length;
     int n2 = x.length;
-    float[] di = new float[3];
+    float[][] di = new float[3][n1];
     int i2m4,i2m3=0,i2m2=0,i2m1=0,i2p0=0,i2p1=0,i2p2=1,i2p3=2,i2p4=3;
     for (int i2=0; i2<n2; ++i2) {
+      getTensors(d,i2,di);
       i2m4 = i2m3; i2m3 = i2m2; i2m2 = i2m1; i2m1 = i2p0;
       i2p0 = i2p1; i2p1 = i2p2; i2p2 = i2p3; i2p3 = i2p4; ++i2p4;
       if (i2p1>=n2) i2p1 = n2-1;
@@ -1048,11 +1096,10 @@ public class LocalDiffusionKernel {
         if (p2>=n1) p2 = n1-1;
         if (p3>=n1) p3 = n1-1;
         if (p4>=n1) p4 = n1-1;
-        d.getTensor(i1,i2,di);
         float csi = (s!=null)?c*s[i2][i1]:c;
-        float d11 = di[0]*csi;
-        float d12 = di[1]*csi;
-        float d22 = di[2]*csi;
+        float d11 = di[0][i1]*csi;
+        float d12 = di[1][i1]*csi;
+        float d22 = di[2][i1]*csi;
         float x1 = c1*(xp0[p1]-xp0[m1]) +
                    c2*(xp0[p2]-xp0[m2]) +
                    c3*(xp0[p3]-xp0[m3]) +
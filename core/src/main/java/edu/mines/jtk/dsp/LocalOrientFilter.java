@@ -14,7 +14,12 @@ limitations under the License.
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.Arrays;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Float3;
 import edu.mines.jtk.util.Parallel;
+import edu.mines.jtk.util.SimpleFloat3;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -99,6 +104,7 @@ public class LocalOrientFilter {
     } else {
       _rgfSmoother3 = (sigma3>=1.0)?new RecursiveGaussianFilter(sigma3):null;
     }
+    _sigmaSmoother3 = (sigma3>=1.0)?sigma3:0.0;
     setGradientSmoothing(1.0);
   }
 
@@ -151,6 +157,21 @@ public class LocalOrientFilter {
     } else {
       _rgfGradient3 = new RecursiveGaussianFilter(sigma3);
     }
+    _sigmaGradient3 = sigma3;
+  }
+
+  /**
+   * Sets the number of samples in the 3rd dimension of slabs, for 3-D 
+   * images that are processed slab by slab. Each slab is padded with
+   * halos of extra samples, with widths proportional to half-widths of
+   * the Gaussian derivative and window in the 3rd dimension. Larger
+   * slabs require more memory, but less computation for halos.
+   * The default slab size is 64.
+   * @param m3 number of samples in 3rd dimension of slabs.
+   */
+  public void setSlabSize(int m3) {
+    Check.argument(m3>0,"m3>0");
+    _m3 = m3;
   }
   
   /**
@@ -482,6 +503,57 @@ public class LocalOrientFilter {
     return new EigenTensors3(u1,u2,w1,w2,eu,ev,ew,compressed);
   }
 
+  /**
+   * Applies this filter to estimate 3-D structure tensors, and writes 
+   * them to specified mapped tensors. The image is processed slab by 
+   * slab, as for an image not in memory, so that neither arrays of
+   * eigenvectors and eigenvalues nor full arrays of gradient products 
+   * are required. Tensors differ negligibly from those computed by 
+   * {@link #applyForTensors(float[][][])}.
+   * @param x input array for 3-D image; not modified.
+   * @param t output mapped tensors with dimensions of the image.
+   * @see #setSlabSize(int)
+   */
+  public void applyForTensors(float[][][] x, MappedEigenTensors3 t) {
+    applyForTensors(new SimpleFloat3(x),t);
+  }
+
+  /**
+   * Applies this filter slab by slab to estimate 3-D structure tensors,
+   * and writes them to specified mapped tensors. The image is read one
+   * slab at a time, so that neither it nor the tensors need be in
+   * memory. Tensors differ negligibly from those computed for an image 
+   * in memory.
+   * @param x input image.
+   * @param t output mapped tensors with dimensions of the image.
+   * @see #setSlabSize(int)
+   */
+  public void applyForTensors(Float3 x, MappedEigenTensors3 t) {
+    int n1 = x.getN1();
+    int n2 = x.getN2();
+    int n3 = x.getN3();
+    Check.argument(t.getN1()==n1,"t.getN1()==n1");
+    Check.argument(t.getN2()==n2,"t.getN2()==n2");
+    Check.argument(t.getN3()==n3,"t.getN3()==n3");
+    int h3 = getHalo3();
+    for (int j3=0; j3<n3; j3+=_m3) {
+      int m3 = min(_m3,n3-j3);
+      int l3 = max(0,j3-h3); // index of first sample in slab with halos
+      int k3 = j3-l3; // index in slab of first sample without halos
+      int ml3 = min(n3,j3+m3+h3)-l3; // number of samples in slab with halos
+      float[][][] xs = new float[ml3][n2][n1];
+      x.get123(n1,n2,ml3,0,0,l3,xs);
+      float[][][] g11 = new float[ml3][n2][n1];
+      float[][][] g12 = new float[ml3][n2][n1];
+      float[][][] g13 = new float[ml3][n2][n1];
+      float[][][] g22 = new float[ml3][n2][n1];
+      float[][][] g23 = new float[ml3][n2][n1];
+      float[][][] g33 = new float[ml3][n2][n1];
+      computeStructureTensors(xs,g11,g12,g13,g22,g23,g33,xs);
+      solveEigenproblems(g11,g12,g13,g22,g23,g33,k3,m3,t,j3);
+    }
+  }
+
   /**
    * Applies this filter for the specified image and outputs. All
    * outputs are optional and are computed for only non-null arrays.
@@ -531,64 +603,18 @@ public class LocalOrientFilter {
     if (ep!=null) t[nt++] = ep;
     if (el!=null) t[nt++] = el;
 
-    // Gradient.
+    // Smoothed gradient products comprise the structure tensor.
     int n1 = x[0][0].length;
     int n2 = x[0].length;
     int n3 = x.length;
-    float[][][] g1 = (nt>0)?t[0]:new float[n3][n2][n1];
-    float[][][] g2 = (nt>1)?t[1]:new float[n3][n2][n1];
-    float[][][] g3 = (nt>2)?t[2]:new float[n3][n2][n1];
-    _rgfGradient1.apply100(x,g1);
-    _rgfGradient2.apply010(x,g2);
-    _rgfGradient3.apply001(x,g3);
-
-    // Gradient products.
-    float[][][] g11 = g1;
-    float[][][] g22 = g2;
-    float[][][] g33 = g3;
+    float[][][] g11 = (nt>0)?t[0]:new float[n3][n2][n1];
+    float[][][] g22 = (nt>1)?t[1]:new float[n3][n2][n1];
+    float[][][] g33 = (nt>2)?t[2]:new float[n3][n2][n1];
     float[][][] g12 = (nt>3)?t[3]:new float[n3][n2][n1];
     float[][][] g13 = (nt>4)?t[4]:new float[n3][n2][n1];
     float[][][] g23 = (nt>5)?t[5]:new float[n3][n2][n1];
-    computeGradientProducts(g1,g2,g3,g11,g12,g13,g22,g23,g33);
-    /*
-    for (int i3=0; i3<n3; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float g1i = g1[i3][i2][i1];
-          float g2i = g2[i3][i2][i1];
-          float g3i = g3[i3][i2][i1];
-          g11[i3][i2][i1] = g1i*g1i;
-          g22[i3][i2][i1] = g2i*g2i;
-          g33[i3][i2][i1] = g3i*g3i;
-          g12[i3][i2][i1] = g1i*g2i;
-          g13[i3][i2][i1] = g1i*g3i;
-          g23[i3][i2][i1] = g2i*g3i;
-        }
-      }
-    }
-    */
-    
-    // Smoothed gradient products comprise the structure tensor.
-    if (_rgfSmoother1!=null || _rgfSmoother2!=null || _rgfSmoother3!=null) {
-      float[][][] h = (nt>6)?t[6]:new float[n3][n2][n1];
-      float[][][][] gs = {g11,g22,g33,g12,g13,g23};
-      for (float[][][] g:gs) {
-        if (_rgfSmoother1!=null) {
-          _rgfSmoother1.apply0XX(g,h);
-        } else {
-          copy(g,h);
-        }
-        if (_rgfSmoother2!=null) {
-          _rgfSmoother2.applyX0X(h,g);
-        } else {
-          copy(h,g);
-        }
-        if (_rgfSmoother3!=null) {
-          _rgfSmoother3.applyXX0(g,h);
-          copy(h,g);
-        }
-      }
-    }
+    float[][][] h = (nt>6)?t[6]:null;
+    computeStructureTensors(x,g11,g12,g13,g22,g23,g33,h);
 
     // Compute eigenvectors, eigenvalues, and outputs that depend on them.
     solveEigenproblems(g11,g12,g13,g22,g23,g33,
@@ -660,15 +686,137 @@ public class LocalOrientFilter {
     */
   }
 
+  /**
+   * Applies this filter slab by slab for the specified image and outputs. 
+   * This method is like the method for 3-D arrays, but neither the image
+   * nor the outputs need be in memory. The image is read and outputs are
+   * written one slab at a time, and outputs differ negligibly from those 
+   * computed for an image in memory. All outputs are optional and are 
+   * computed for only non-null arrays.
+   * @param x input image.
+   * @param theta orientation dip angle; 0 &lt;= theta &lt;= pi/2.
+   * @param phi orientation azimuthal angle; -pi &lt;= phi &lt;= pi.
+   * @param u1 1st component of 1st eigenvector.
+   * @param u2 2nd component of 1st eigenvector.
+   * @param u3 3rd component of 1st eigenvector.
+   * @param v1 1st component of 2nd eigenvector.
+   * @param v2 2nd component of 2nd eigenvector.
+   * @param v3 3rd component of 2nd eigenvector.
+   * @param w1 1st component of 3rd eigenvector.
+   * @param w2 2nd component of 3rd eigenvector.
+   * @param w3 3rd component of 3rd eigenvector.
+   * @param eu largest eigenvalue corresponding to the eigenvector u.
+   * @param ev middle eigenvalue corresponding to the eigenvector v.
+   * @param ew smallest eigenvalue corresponding to the eigenvector w.
+   * @param ep (eu-ev)/eu, a measure of planarity.
+   * @param el (ev-ew)/eu, a measure of linearity.
+   * @see #setSlabSize(int)
+   */
+  public void apply(Float3 x,
+    Float3 theta, Float3 phi,
+    Float3 u1, Float3 u2, Float3 u3, 
+    Float3 v1, Float3 v2, Float3 v3, 
+    Float3 w1, Float3 w2, Float3 w3, 
+    Float3 eu, Float3 ev, Float3 ew, 
+    Float3 ep, Float3 el)
+  {
+    int n1 = x.getN1();
+    int n2 = x.getN2();
+    int n3 = x.getN3();
+    Float3[] y = {theta,phi,u1,u2,u3,v1,v2,v3,w1,w2,w3,eu,ev,ew,ep,el};
+    int ny = y.length;
+    int h3 = getHalo3();
+    for (int j3=0; j3<n3; j3+=_m3) {
+      int m3 = min(_m3,n3-j3);
+      int l3 = max(0,j3-h3); // index of first sample in slab with halos
+      int k3 = j3-l3; // index in slab of first sample without halos
+      int ml3 = min(n3,j3+m3+h3)-l3; // number of samples in slab with halos
+      float[][][] xs = new float[ml3][n2][n1];
+      x.get123(n1,n2,ml3,0,0,l3,xs);
+      float[][][][] ys = new float[ny][][][];
+      for (int iy=0; iy<ny; ++iy) {
+        if (y[iy]!=null)
+          ys[iy] = new float[ml3][n2][n1];
+      }
+      apply(xs,
+        ys[ 0],ys[ 1],
+        ys[ 2],ys[ 3],ys[ 4],
+        ys[ 5],ys[ 6],ys[ 7],
+        ys[ 8],ys[ 9],ys[10],
+        ys[11],ys[12],ys[13],
+        ys[14],ys[15]);
+      for (int iy=0; iy<ny; ++iy) {
+        if (y[iy]!=null)
+          y[iy].set123(n1,n2,m3,0,0,j3,Arrays.copyOfRange(ys[iy],k3,k3+m3));
+      }
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
+  // Halos are this many half-widths of Gaussian derivatives and windows.
+  private static final double HALO = 4.0;
+
   private RecursiveGaussianFilter _rgfGradient1;
   private RecursiveGaussianFilter _rgfGradient2;
   private RecursiveGaussianFilter _rgfGradient3;
   private RecursiveGaussianFilter _rgfSmoother1;
   private RecursiveGaussianFilter _rgfSmoother2;
   private RecursiveGaussianFilter _rgfSmoother3;
+  private double _sigmaGradient3; // half-width of derivative in 3rd dim
+  private double _sigmaSmoother3; // half-width of window in 3rd dim, or 0
+  private int _m3 = 64; // number of samples in 3rd dimension of slabs
+
+  // Returns the width of halos for slabs of 3-D images.
+  private int getHalo3() {
+    return (int)ceil(HALO*_sigmaGradient3)+(int)ceil(HALO*_sigmaSmoother3);
+  }
+
+  // Computes smoothed gradient products, the elements of structure 
+  // tensors. The array h is workspace for smoothing, and may be the
+  // image x; if null and if required, that workspace is allocated here.
+  private void computeStructureTensors(float[][][] x,
+    float[][][] g11, float[][][] g12, float[][][] g13,
+    float[][][] g22, float[][][] g23, float[][][] g33,
+    float[][][] h)
+  {
+    // Gradient.
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    float[][][] g1 = g11;
+    float[][][] g2 = g22;
+    float[][][] g3 = g33;
+    _rgfGradient1.apply100(x,g1);
+    _rgfGradient2.apply010(x,g2);
+    _rgfGradient3.apply001(x,g3);
+
+    // Gradient products.
+    computeGradientProducts(g1,g2,g3,g11,g12,g13,g22,g23,g33);
+    
+    // Smoothed gradient products comprise the structure tensor.
+    if (_rgfSmoother1!=null || _rgfSmoother2!=null || _rgfSmoother3!=null) {
+      if (h==null) h = new float[n3][n2][n1];
+      float[][][][] gs = {g11,g22,g33,g12,g13,g23};
+      for (float[][][] g:gs) {
+        if (_rgfSmoother1!=null) {
+          _rgfSmoother1.apply0XX(g,h);
+        } else {
+          copy(g,h);
+        }
+        if (_rgfSmoother2!=null) {
+          _rgfSmoother2.applyX0X(h,g);
+        } else {
+          copy(h,g);
+        }
+        if (_rgfSmoother3!=null) {
+          _rgfSmoother3.applyXX0(g,h);
+          copy(h,g);
+        }
+      }
+    }
+  }
 
   private void computeGradientProducts(
     final float[][][] g1, final float[][][] g2, final float[][][] g3,
@@ -721,30 +869,23 @@ public class LocalOrientFilter {
     final int n3 = g11.length;
     Parallel.loop(n3,new Parallel.LoopInt() {
       public void compute(int i3) {
-        double[][] a = new double[3][3];
-        double[][] z = new double[3][3];
-        double[] e = new double[3];
+        float[][] a = new float[6][];
+        float[][][] z = new float[3][3][n1];
+        float[][] e = new float[3][n1];
         for (int i2=0; i2<n2; ++i2) {
+          a[0] = g11[i3][i2]; a[1] = g12[i3][i2]; a[2] = g13[i3][i2];
+          a[3] = g22[i3][i2]; a[4] = g23[i3][i2]; a[5] = g33[i3][i2];
+          Eigen.solveSymmetric33(a,z,e);
           for (int i1=0; i1<n1; ++i1) {
-            a[0][0] = g11[i3][i2][i1];
-            a[0][1] = g12[i3][i2][i1];
-            a[0][2] = g13[i3][i2][i1];
-            a[1][0] = g12[i3][i2][i1];
-            a[1][1] = g22[i3][i2][i1];
-            a[1][2] = g23[i3][i2][i1];
-            a[2][0] = g13[i3][i2][i1];
-            a[2][1] = g23[i3][i2][i1];
-            a[2][2] = g33[i3][i2][i1];
-            Eigen.solveSymmetric33(a,z,e);
-            float u1i = (float)z[0][0];
-            float u2i = (float)z[0][1];
-            float u3i = (float)z[0][2];
-            float v1i = (float)z[1][0];
-            float v2i = (float)z[1][1];
-            float v3i = (float)z[1][2];
-            float w1i = (float)z[2][0];
-            float w2i = (float)z[2][1];
-            float w3i = (float)z[2][2];
+            float u1i = z[0][0][i1];
+            float u2i = z[0][1][i1];
+            float u3i = z[0][2][i1];
+            float v1i = z[1][0][i1];
+            float v2i = z[1][1][i1];
+            float v3i = z[1][2][i1];
+            float w1i = z[2][0][i1];
+            float w2i = z[2][1][i1];
+            float w3i = z[2][2][i1];
             if (u1i<0.0f) {
               u1i = -u1i;
               u2i = -u2i;
@@ -760,9 +901,9 @@ public class LocalOrientFilter {
               w2i = -w2i;
               w3i = -w3i;
             }
-            float eui = (float)e[0];
-            float evi = (float)e[1];
-            float ewi = (float)e[2];
+            float eui = e[0][i1];
+            float evi = e[1][i1];
+            float ewi = e[2][i1];
             if (ewi<0.0f) ewi = 0.0f;
             if (evi<ewi) evi = ewi;
             if (eui<evi) eui = evi;
@@ -790,4 +931,38 @@ public class LocalOrientFilter {
       }
     });
   }
+
+  private void solveEigenproblems(
+    final float[][][] g11, final float[][][] g12, final float[][][] g13,
+    final float[][][] g22, final float[][][] g23, final float[][][] g33,
+    final int k3, final int m3, final MappedEigenTensors3 t, final int j3)
+  {
+    final int n1 = g11[0][0].length;
+    final int n2 = g11[0].length;
+    Parallel.loop(m3,new Parallel.LoopInt() {
+      public void compute(int i) {
+        int i3 = k3+i; // index in arrays g
+        int it = j3+i; // index in tensors t
+        float[][] a = new float[6][];
+        float[][][] z = new float[3][3][n1];
+        float[][] e = new float[3][n1];
+        for (int i2=0; i2<n2; ++i2) {
+          a[0] = g11[i3][i2]; a[1] = g12[i3][i2]; a[2] = g13[i3][i2];
+          a[3] = g22[i3][i2]; a[4] = g23[i3][i2]; a[5] = g33[i3][i2];
+          Eigen.solveSymmetric33(a,z,e);
+          for (int i1=0; i1<n1; ++i1) {
+            float eui = e[0][i1];
+            float evi = e[1][i1];
+            float ewi = e[2][i1];
+            if (ewi<0.0f) ewi = 0.0f;
+            if (evi<ewi) evi = ewi;
+            if (eui<evi) eui = evi;
+            t.setEigenvectorU(i1,i2,it,z[0][0][i1],z[0][1][i1],z[0][2][i1]);
+            t.setEigenvectorW(i1,i2,it,z[2][0][i1],z[2][1][i1],z[2][2][i1]);
+            t.setEigenvalues(i1,i2,it,eui,evi,ewi);
+          }
+        }
+      }
+    });
+  }
 }
@@ -15,9 +15,11 @@ limitations under the License.
 package edu.mines.jtk.dsp;
 
 import java.util.ArrayList;
+import java.util.logging.Logger;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Local prediction filtering.
@@ -40,152 +42,78 @@ public class LocalPredictionFilter {
       sigma);
   }
 
+  /**
+   * Applies local prediction filters with specified lags to a 2-D image.
+   * Filters are computed for each sample, in parallel for all traces.
+   * @param lag1 array of lags in 1st dimension.
+   * @param lag2 array of lags in 2nd dimension.
+   * @param f input image.
+   * @param g output image of predicted values.
+   * @return array[m][n2][n1] of filter coefficients, for m lags.
+   */
   public float[][][] apply(int[] lag1, int[] lag2, float[][] f, float[][] g) {
-    Check.argument(lag1.length==lag2.length,"lag1.length==lag2.length");
     Check.argument(f!=g,"f!=g");
-
-    // Compute local auto-correlation for all necessary lags.
-    R2Cache rcache = new R2Cache(f);
-    int m = lag1.length;
-    float[][][][] rkj = new float[m][m][][];
-    float[][][] rk0 = new float[m][][];
-    for (int k=0; k<m; ++k) {
-      int k1 = lag1[k];
-      int k2 = lag2[k];
-      for (int j=0; j<m; ++j) {
-        int j1 = lag1[j];
-        int j2 = lag2[j];
-        rkj[k][j] = rcache.get(j1-k1,j2-k2);
-      }
-      rk0[k] = rcache.get(k1,k2);
-    }
-
-    // Compute prediction filters.
-    int n1 = f[0].length;
-    int n2 = f.length;
-    double[][] rkjt = new double[m][m];
-    double[] rk0t = new double[m];
-    double[] at = new double[m];
-    float[][][] a = new float[m][n2][n1];
-    CgSolver cgs = new CgSolver(m,100);
-    //DirectSolver ds = new DirectSolver(m);
-    double niter = 0.0;
-    for (int i2=0; i2<n2; ++i2) {
-      int i1b = (i2%2==0)?0:n1-1;
-      int i1e = (i2%2==0)?n1:-1;
-      int i1s = (i2%2==0)?1:-1;
-      for (int i1=i1b; i1!=i1e; i1+=i1s) {
-        for (int k=0; k<m; ++k) {
-          for (int j=0; j<m; ++j)
-            rkjt[k][j] = rkj[k][j][i2][i1];
-          rk0t[k] = rk0[k][i2][i1];
-        }
-        niter += cgs.solve(rkjt,rk0t,at);
-        //boolean bad = ds.solve(rkjt,rk0t,at);
-        //if (bad)
-        //  System.out.println("bad for i1="+i1+" i2="+i2);
-        for (int i=0; i<m; ++i)
-          a[i][i2][i1] = (float)at[i];
-      }
-    }
-    niter /= n1;
-    niter /= n2;
-    System.out.println("Average number of CG iterations = "+niter);
-
-    // Apply prediction filters.
-    zero(g);
-    for (int j=0; j<m; ++j) {
-      int j1 = lag1[j];
-      int j2 = lag2[j];
-      float[][] aj = a[j];
-      int i1min = max(0,j1);
-      int i1max = min(n1,n1+j1);
-      int i2min = max(0,j2);
-      int i2max = min(n2,n2+j2);
-      for (int i2=i2min; i2<i2max; ++i2) {
-        for (int i1=i1min; i1<i1max; ++i1) {
-          g[i2][i1] += aj[i2][i1]*f[i2-j2][i1-j1];
-        }
-      }
-    }
-
+    float[][][] a = computeFilters(lag1,lag2,f);
+    applyFilters(false,lag1,lag2,a,f,g);
     return a;
-    //return rcache.get();
-    
-    //copy(div(rcache.get(1,1),rcache.get(0,0)),g);
-    //copy(a[0],g);
-    //copy(a[m-1],f);
   }
 
+  /**
+   * Applies local prediction-error filters with specified lags to a 2-D 
+   * image. Filters are computed for each sample, in parallel for all traces.
+   * @param lag1 array of lags in 1st dimension.
+   * @param lag2 array of lags in 2nd dimension.
+   * @param f input image.
+   * @param g output image of prediction errors.
+   */
   public void applyPef(int[] lag1, int[] lag2, float[][] f, float[][] g) {
-    Check.argument(lag1.length==lag2.length,"lag1.length==lag2.length");
     Check.argument(f!=g,"f!=g");
+    float[][][] a = computeFilters(lag1,lag2,f);
+    applyFilters(true,lag1,lag2,a,f,g);
+  }
 
-    // Compute local auto-correlation for all necessary lags.
-    R2Cache rcache = new R2Cache(f);
-    int m = lag1.length;
-    float[][][][] rkj = new float[m][m][][];
-    float[][][] rk0 = new float[m][][];
-    for (int k=0; k<m; ++k) {
-      int k1 = lag1[k];
-      int k2 = lag2[k];
-      for (int j=0; j<m; ++j) {
-        int j1 = lag1[j];
-        int j2 = lag2[j];
-        rkj[k][j] = rcache.get(j1-k1,j2-k2);
-      }
-      rk0[k] = rcache.get(k1,k2);
-    }
-
-    // Compute prediction filters.
-    int n1 = f[0].length;
-    int n2 = f.length;
-    double[][] rkjt = new double[m][m];
-    double[] rk0t = new double[m];
-    double[] at = new double[m];
-    float[][][] a = new float[m][n2][n1];
-    CgSolver cgs = new CgSolver(m,100);
-    double niter = 0.0;
-    for (int i2=0; i2<n2; ++i2) {
-      int i1b = (i2%2==0)?0:n1-1;
-      int i1e = (i2%2==0)?n1:-1;
-      int i1s = (i2%2==0)?1:-1;
-      for (int i1=i1b; i1!=i1e; i1+=i1s) {
-        for (int k=0; k<m; ++k) {
-          for (int j=0; j<m; ++j)
-            rkjt[k][j] = rkj[k][j][i2][i1];
-          rk0t[k] = rk0[k][i2][i1];
-        }
-        niter += cgs.solve(rkjt,rk0t,at);
-        for (int i=0; i<m; ++i)
-          a[i][i2][i1] = (float)at[i];
-      }
-    }
-    niter /= n1;
-    niter /= n2;
-    System.out.println("Average number of CG iterations = "+niter);
+  /**
+   * Applies local prediction filters with specified lags to a 3-D image.
+   * Filters are computed for each sample, in parallel for all traces.
+   * @param lag1 array of lags in 1st dimension.
+   * @param lag2 array of lags in 2nd dimension.
+   * @param lag3 array of lags in 3rd dimension.
+   * @param f input image.
+   * @param g output image of predicted values.
+   * @return array[m][n3][n2][n1] of filter coefficients, for m lags.
+   */
+  public float[][][][] apply(
+    int[] lag1, int[] lag2, int[] lag3, float[][][] f, float[][][] g) 
+  {
+    Check.argument(f!=g,"f!=g");
+    float[][][][] a = computeFilters(lag1,lag2,lag3,f);
+    applyFilters(false,lag1,lag2,lag3,a,f,g);
+    return a;
+  }
 
-    // Apply prediction error filters.
-    copy(f,g);
-    for (int j=0; j<m; ++j) {
-      int j1 = lag1[j];
-      int j2 = lag2[j];
-      float[][] aj = a[j];
-      int i1min = max(0,j1);
-      int i1max = min(n1,n1+j1);
-      int i2min = max(0,j2);
-      int i2max = min(n2,n2+j2);
-      for (int i2=i2min; i2<i2max; ++i2) {
-        for (int i1=i1min; i1<i1max; ++i1) {
-          g[i2][i1] -= aj[i2][i1]*f[i2-j2][i1-j1];
-        }
-      }
-    }
+  /**
+   * Applies local prediction-error filters with specified lags to a 3-D 
+   * image. Filters are computed for each sample, in parallel for all traces.
+   * @param lag1 array of lags in 1st dimension.
+   * @param lag2 array of lags in 2nd dimension.
+   * @param lag3 array of lags in 3rd dimension.
+   * @param f input image.
+   * @param g output image of prediction errors.
+   */
+  public void applyPef(
+    int[] lag1, int[] lag2, int[] lag3, float[][][] f, float[][][] g) 
+  {
+    Check.argument(f!=g,"f!=g");
+    float[][][][] a = computeFilters(lag1,lag2,lag3,f);
+    applyFilters(true,lag1,lag2,lag3,a,f,g);
   }
 
   ///////////////////////////////////////////////////////////////////////////
   // private
 
+  private static Logger log = 
+    Logger.getLogger(LocalPredictionFilter.class.getName());
+
   /*
   private static class DirectSolver {
     DirectSolver(int m) {
@@ -303,51 +231,248 @@ public class LocalPredictionFilter {
     private double[] p,q,r;
   }
 
-  private class R2 {
-    int l1,l2;
-    float[][] r;
-    R2(int l1, int l2, float[][] f) {
-      int n1 = f[0].length;
-      int n2 = f.length;
-      this.l1 = l1;
-      this.l2 = l2;
-      this.r = new float[n2][n1];
-      _lcf.setInputs(f,f);
-      _lcf.correlate(l1,l2,r);
-      if (l1==0 && l2==0) {
-        for (int i2=0; i2<n2; ++i2) {
-          for (int i1=0; i1<n1; ++i1) {
-            r[i2][i1] *= 1.01f;
-          }
-        }
+  // Distinct lags (up to sign) of the local auto-correlations required 
+  // for filters with specified lags, and indices of those lags for the 
+  // elements of the m-by-m systems of equations solved for each sample. 
+  // Each auto-correlation is computed only once, for all samples, and 
+  // systems are then assembled by reference to those auto-correlations.
+  // Systems are not updated incrementally from one sample to the next.
+  // The Gaussian window has no such sliding update, and auto-correlations
+  // are smoothed by recursive filtering of whole arrays, so that filling
+  // a system costs only m*m loads.
+  private static class Lags {
+    Lags(int[] lag1, int[] lag2, int[] lag3) {
+      m = lag1.length;
+      ikj = new int[m][m];
+      ik0 = new int[m];
+      for (int k=0; k<m; ++k) {
+        for (int j=0; j<m; ++j)
+          ikj[k][j] = index(lag1[j]-lag1[k],lag2[j]-lag2[k],lag3[j]-lag3[k]);
+        ik0[k] = index(lag1[k],lag2[k],lag3[k]);
+      }
+      nr = _rlist.size();
+      r1 = new int[nr];
+      r2 = new int[nr];
+      r3 = new int[nr];
+      for (int ir=0; ir<nr; ++ir) {
+        int[] l = _rlist.get(ir);
+        r1[ir] = l[0];
+        r2[ir] = l[1];
+        r3[ir] = l[2];
       }
     }
-  }
-  private class R2Cache {
-    R2Cache(float[][] f) {
-      _f = f;
+    int m; // number of filter coefficients
+    int nr; // number of distinct lags
+    int[] r1,r2,r3; // distinct lags
+    int[][] ikj; // indices of lags for system matrices
+    int[] ik0; // indices of lags for right-hand sides
+    private ArrayList<int[]> _rlist = new ArrayList<int[]>();
+    private int index(int l1, int l2, int l3) {
+      int nr = _rlist.size();
+      for (int ir=0; ir<nr; ++ir) {
+        int[] l = _rlist.get(ir);
+        if (l1==l[0] && l2==l[1] && l3==l[2] || 
+            -l1==l[0] && -l2==l[1] && -l3==l[2])
+          return ir;
+      }
+      _rlist.add(new int[]{l1,l2,l3});
+      return nr;
     }
-    float[][][] get() {
-      int n = _rlist.size();
-      float[][][] r = new float[n][][];
-      int i = 0;
-      for (R2 r2 : _rlist) {
-        r[i] = r2.r;
-        ++i;
+  }
+
+  private float[][][] computeFilters(int[] lag1, int[] lag2, float[][] f) {
+    Check.argument(lag1.length==lag2.length,"lag1.length==lag2.length");
+    final int n1 = f[0].length;
+    final int n2 = f.length;
+
+    // Compute local auto-correlations for all necessary lags.
+    final Lags lags = new Lags(lag1,lag2,zeroint(lag1.length));
+    final float[][][] r = new float[lags.nr][n2][n1];
+    _lcf.setInputs(f,f);
+    Parallel.loop(lags.nr,new Parallel.LoopInt() {
+    public void compute(int ir) {
+      _lcf.correlate(lags.r1[ir],lags.r2[ir],r[ir]);
+      if (lags.r1[ir]==0 && lags.r2[ir]==0)
+        mul(1.01f,r[ir],r[ir]);
+    }});
+
+    // Compute prediction filters, in parallel for blocks of traces.
+    final int m = lags.m;
+    final float[][][] a = new float[m][n2][n1];
+    final int nb = (n2+NTRACE-1)/NTRACE;
+    final double[] niter = new double[nb];
+    final Parallel.Unsafe<CgSolver> cgsu = new Parallel.Unsafe<CgSolver>();
+    Parallel.loop(nb,new Parallel.LoopInt() {
+    public void compute(int ib) {
+      CgSolver cgs = cgsu.get();
+      if (cgs==null) cgsu.set(cgs=new CgSolver(m,100));
+      double[] as = new double[m];
+      float[][] rt = new float[lags.nr][];
+      float[][] at = new float[m][];
+      int i2e = min(n2,(ib+1)*NTRACE);
+      for (int i2=ib*NTRACE; i2<i2e; ++i2) {
+        for (int ir=0; ir<lags.nr; ++ir)
+          rt[ir] = r[ir][i2];
+        for (int i=0; i<m; ++i)
+          at[i] = a[i][i2];
+        niter[ib] += computeFilters(lags,rt,cgs,i2%2==1,as,at);
       }
-      return r;
+    }});
+    log.fine("Average number of CG iterations = "+sum(niter)/n1/n2);
+    return a;
+  }
+
+  private float[][][][] computeFilters(
+    int[] lag1, int[] lag2, int[] lag3, float[][][] f) 
+  {
+    Check.argument(lag1.length==lag2.length,"lag1.length==lag2.length");
+    Check.argument(lag1.length==lag3.length,"lag1.length==lag3.length");
+    final int n1 = f[0][0].length;
+    final int n2 = f[0].length;
+    final int n3 = f.length;
+
+    // Compute local auto-correlations for all necessary lags.
+    final Lags lags = new Lags(lag1,lag2,lag3);
+    final float[][][][] r = new float[lags.nr][n3][n2][n1];
+    _lcf.setInputs(f,f);
+    Parallel.loop(lags.nr,new Parallel.LoopInt() {
+    public void compute(int ir) {
+      _lcf.correlate(lags.r1[ir],lags.r2[ir],lags.r3[ir],r[ir]);
+      if (lags.r1[ir]==0 && lags.r2[ir]==0 && lags.r3[ir]==0)
+        mul(1.01f,r[ir],r[ir]);
+    }});
+
+    // Compute prediction filters, in parallel for blocks of traces.
+    final int m = lags.m;
+    final float[][][][] a = new float[m][n3][n2][n1];
+    final int nb = (n2+NTRACE-1)/NTRACE;
+    final double[] niter = new double[nb*n3];
+    final Parallel.Unsafe<CgSolver> cgsu = new Parallel.Unsafe<CgSolver>();
+    Parallel.loop(nb*n3,new Parallel.LoopInt() {
+    public void compute(int ib3) {
+      int ib = ib3%nb;
+      int i3 = ib3/nb;
+      CgSolver cgs = cgsu.get();
+      if (cgs==null) cgsu.set(cgs=new CgSolver(m,100));
+      double[] as = new double[m];
+      float[][] rt = new float[lags.nr][];
+      float[][] at = new float[m][];
+      int i2e = min(n2,(ib+1)*NTRACE);
+      for (int i2=ib*NTRACE; i2<i2e; ++i2) {
+        for (int ir=0; ir<lags.nr; ++ir)
+          rt[ir] = r[ir][i3][i2];
+        for (int i=0; i<m; ++i)
+          at[i] = a[i][i3][i2];
+        niter[ib3] += computeFilters(lags,rt,cgs,i2%2==1,as,at);
+      }
+    }});
+    log.fine("Average number of CG iterations = "+sum(niter)/n1/n2/n3);
+    return a;
+  }
+
+  // Number of traces in blocks for which filters are computed serially.
+  // Within each block, traces are visited in serpentine order, so that
+  // every solution is the initial solution for an adjacent sample. Blocks
+  // are fixed, so that filters do not depend on the number of threads.
+  private static final int NTRACE = 16;
+
+  // Computes filters a[m][n1] for one trace, for which r[nr][n1] are the 
+  // local auto-correlations, with samples in reverse order if reverse is
+  // true. For each sample, the solution computed for the previous sample
+  // is the initial solution for the CG solver. That solution is in at[m],
+  // which initially holds the solution for the previous trace, if any.
+  // Returns the total number of CG iterations.
+  private static double computeFilters(
+    Lags lags, float[][] r, CgSolver cgs,
+    boolean reverse, double[] at, float[][] a)
+  {
+    int m = lags.m;
+    int n1 = a[0].length;
+    int[][] ikj = lags.ikj;
+    int[] ik0 = lags.ik0;
+    double[][] rkjt = new double[m][m];
+    double[] rk0t = new double[m];
+    double niter = 0.0;
+    int i1b = (reverse)?n1-1:0;
+    int i1e = (reverse)?-1:n1;
+    int i1s = (reverse)?-1:1;
+    for (int i1=i1b; i1!=i1e; i1+=i1s) {
+      for (int k=0; k<m; ++k) {
+        for (int j=0; j<m; ++j)
+          rkjt[k][j] = r[ikj[k][j]][i1];
+        rk0t[k] = r[ik0[k]][i1];
+      }
+      niter += cgs.solve(rkjt,rk0t,at);
+      for (int i=0; i<m; ++i)
+        a[i][i1] = (float)at[i];
     }
-    float[][] get(int l1, int l2) {
-      for (R2 r2 : _rlist) {
-        if (l1==r2.l1 && l2==r2.l2 || -l1==r2.l1 && -l2==r2.l2)
-          return r2.r;
+    return niter;
+  }
+
+  // Applies prediction filters, or prediction-error filters if pef is true.
+  private static void applyFilters(
+    boolean pef, final int[] lag1, final int[] lag2, 
+    final float[][][] a, final float[][] f, final float[][] g)
+  {
+    final int n1 = f[0].length;
+    final int n2 = f.length;
+    final int m = lag1.length;
+    final float s = (pef)?-1.0f:1.0f;
+    if (pef) {
+      copy(f,g);
+    } else {
+      zero(g);
+    }
+    Parallel.loop(n2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      float[] g2 = g[i2];
+      for (int j=0; j<m; ++j) {
+        int j1 = lag1[j];
+        int j2 = lag2[j];
+        if (0<=i2-j2 && i2-j2<n2) {
+          float[] aj2 = a[j][i2];
+          float[] f2 = f[i2-j2];
+          int i1min = max(0,j1);
+          int i1max = min(n1,n1+j1);
+          for (int i1=i1min; i1<i1max; ++i1)
+            g2[i1] += s*aj2[i1]*f2[i1-j1];
+        }
       }
-      R2 r2 = new R2(l1,l2,_f);
-      _rlist.add(r2);
-      return r2.r;
+    }});
+  }
+  private static void applyFilters(
+    boolean pef, final int[] lag1, final int[] lag2, final int[] lag3,
+    final float[][][][] a, final float[][][] f, final float[][][] g)
+  {
+    final int n1 = f[0][0].length;
+    final int n2 = f[0].length;
+    final int n3 = f.length;
+    final int m = lag1.length;
+    final float s = (pef)?-1.0f:1.0f;
+    if (pef) {
+      copy(f,g);
+    } else {
+      zero(g);
     }
-    float[][] _f;
-    ArrayList<R2> _rlist = new ArrayList<R2>();
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        float[] g32 = g[i3][i2];
+        for (int j=0; j<m; ++j) {
+          int j1 = lag1[j];
+          int j2 = lag2[j];
+          int j3 = lag3[j];
+          if (0<=i2-j2 && i2-j2<n2 && 0<=i3-j3 && i3-j3<n3) {
+            float[] aj32 = a[j][i3][i2];
+            float[] f32 = f[i3-j3][i2-j2];
+            int i1min = max(0,j1);
+            int i1max = min(n1,n1+j1);
+            for (int i1=i1min; i1<i1max; ++i1)
+              g32[i1] += s*aj32[i1]*f32[i1-j1];
+          }
+        }
+      }
+    }});
   }
 
   private LocalCorrelationFilter _lcf;
@@ -16,6 +16,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Threads;
 
 /**
  * Estimates displacement vector fields for two images. For example, given 
@@ -666,6 +667,16 @@ public class LocalShiftFinder {
   private SincInterpolator _si;
   private boolean _interpolateDisplacements = true;
 
+  // Returns the number of lags in blocks correlated in parallel. For each
+  // lag in a block, correlations require two arrays of n samples, one in
+  // the ring and one for work. Blocks are limited so that those arrays
+  // require no more than 1/8 of the maximum memory.
+  private static int lagBlockSize(int nlag, long n) {
+    long nmax = Runtime.getRuntime().maxMemory()/8/(8*n);
+    int mlag = (int)min(nlag,Threads.getAvailableProcessors(),nmax);
+    return max(1,mlag);
+  }
+
   private void findShifts(
     int min, int max, float[] f, float[] g, float[] u, float[] c, float[] d) 
   {
@@ -680,36 +691,42 @@ public class LocalShiftFinder {
     if (d!=null) 
       zero(d);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][] c3 = new float[3][n1];
-
-    // Correlate for min lag.
+    // Ring of normalized cross-correlations for lags. For each lag, the 
+    // ring contains cross-correlations for lags lag-1, lag and lag+1.
+    // Cross-correlations for blocks of consecutive lags are computed in
+    // parallel, and a block of lags is correlated only when needed.
+    int mlag = lagBlockSize(1+max-min,n1);
+    int mring = mlag+2;
+    float[][] cr = new float[mring][n1];
+    int lnext = min;
     LocalCorrelationFilter lcf = _lcfSimple;
     lcf.setInputs(f,g);
-    int lag1 = min;
-    lcf.correlate(lag1,c3[1]);
-    lcf.normalize(lag1,c3[1]);
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // If necessary, correlate for the next block(s) of lags.
+      while (lnext<=min(max,lag+1)) {
+        int lb = lnext;
+        int le = min(max,lb+mlag-1);
+        float[][] cl = new float[1+le-lb][];
+        for (int l=lb; l<=le; ++l)
+          cl[l-lb] = cr[(l-min)%mring];
+        lcf.correlateLags(lb,le,cl);
+        lnext = le+1;
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
       // lags scanned. This assumption enables local maxima to occur at the 
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
-      int i = lag-min;
-      float[] ca = (lag>min)?c3[(i  )%3]:c3[(i+2)%3];
-      float[] cb =           c3[(i+1)%3];
-      float[] cc = (lag<max)?c3[(i+2)%3]:c3[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = lag+1;
-        lcf.correlate(lag1,cc);
-        lcf.normalize(lag1,cc);
-      }
+      int la = (lag>min)?lag-1:lag+1;
+      int lc = (lag<max)?lag+1:lag-1;
+      float[] ca = cr[(mring+la -min)%mring];
+      float[] cb = cr[(mring+lag-min)%mring];
+      float[] cc = cr[(mring+lc -min)%mring];
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -742,39 +759,45 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][] c = new float[3][n1];
-
     // Array for current correlation maximum values.
     float[] cmax = new float[n1];
 
-    // Correlate for min lag.
+    // Ring of normalized cross-correlations for lags. For each lag, the 
+    // ring contains cross-correlations for lags lag-1, lag and lag+1.
+    // Cross-correlations for blocks of consecutive lags are computed in
+    // parallel, and a block of lags is correlated only when needed.
+    int mlag = lagBlockSize(1+max-min,n1);
+    int mring = mlag+2;
+    float[][] cr = new float[mring][n1];
+    int lnext = min;
     LocalCorrelationFilter lcf = _lcfSimple;
     lcf.setInputs(f,g);
-    int lag1 = min;
-    lcf.correlate(lag1,c[1]);
-    lcf.normalize(lag1,c[1]);
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // If necessary, correlate for the next block(s) of lags.
+      while (lnext<=min(max,lag+1)) {
+        int lb = lnext;
+        int le = min(max,lb+mlag-1);
+        float[][] cl = new float[1+le-lb][];
+        for (int l=lb; l<=le; ++l)
+          cl[l-lb] = cr[(l-min)%mring];
+        lcf.correlateLags(lb,le,cl);
+        lnext = le+1;
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
       // lags scanned. This assumption enables local maxima to occur at the 
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
-      int i = lag-min;
-      float[] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[] cb =           c[(i+1)%3];
-      float[] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = lag+1;
-        lcf.correlate(lag1,cc);
-        lcf.normalize(lag1,cc);
-      }
+      int la = (lag>min)?lag-1:lag+1;
+      int lc = (lag<max)?lag+1:lag-1;
+      float[] ca = cr[(mring+la -min)%mring];
+      float[] cb = cr[(mring+lag-min)%mring];
+      float[] cc = cr[(mring+lc -min)%mring];
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -807,41 +830,49 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][][] c = new float[3][n2][n1];
-
     // Array for current correlation maximum values.
     float[][] cmax = new float[n2][n1];
 
-    // Correlate for min lag.
+    // Ring of normalized cross-correlations for lags. For each lag, the 
+    // ring contains cross-correlations for lags lag-1, lag and lag+1.
+    // Cross-correlations for blocks of consecutive lags are computed in
+    // parallel, and a block of lags is correlated only when needed.
+    int mlag = lagBlockSize(1+max-min,(long)n1*n2);
+    int mring = mlag+2;
+    float[][][] cr = new float[mring][n2][n1];
+    int lnext = min;
     LocalCorrelationFilter lcf = _lcfSimple;
     lcf.setInputs(f,g);
-    int lag1 = (dim==1)?min:0;
-    int lag2 = (dim==2)?min:0;
-    lcf.correlate(lag1,lag2,c[1]);
-    lcf.normalize(lag1,lag2,c[1]);
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // If necessary, correlate for the next block(s) of lags.
+      while (lnext<=min(max,lag+1)) {
+        int lb = lnext;
+        int le = min(max,lb+mlag-1);
+        float[][][] cl = new float[1+le-lb][][];
+        for (int l=lb; l<=le; ++l)
+          cl[l-lb] = cr[(l-min)%mring];
+        if (dim==1) {
+          lcf.correlateLags1(lb,le,cl);
+        } else {
+          lcf.correlateLags2(lb,le,cl);
+        }
+        lnext = le+1;
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
       // lags scanned. This assumption enables local maxima to occur at the 
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
-      int i = lag-min;
-      float[][] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[][] cb =           c[(i+1)%3];
-      float[][] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = (dim==1)?lag+1:0;
-        lag2 = (dim==2)?lag+1:0;
-        lcf.correlate(lag1,lag2,cc);
-        lcf.normalize(lag1,lag2,cc);
-      }
+      int la = (lag>min)?lag-1:lag+1;
+      int lc = (lag<max)?lag+1:lag-1;
+      float[][] ca = cr[(mring+la -min)%mring];
+      float[][] cb = cr[(mring+lag-min)%mring];
+      float[][] cc = cr[(mring+lc -min)%mring];
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -880,43 +911,52 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][][][] c = new float[3][n3][n2][n1];
-
     // Array for current correlation maximum values.
     float[][][] cmax = new float[n3][n2][n1];
 
-    // Correlate for min lag.
+    // Ring of normalized cross-correlations for lags. For each lag, the 
+    // ring contains cross-correlations for lags lag-1, lag and lag+1.
+    // For 3D images, lags are correlated one at a time, when needed, so 
+    // that the ring contains only three arrays. (Computations for each 
+    // lag are parallel.)
+    int mlag = 1;
+    int mring = mlag+2;
+    float[][][][] cr = new float[mring][n3][n2][n1];
+    int lnext = min;
     LocalCorrelationFilter lcf = _lcfSimple;
     lcf.setInputs(f,g);
-    int lag1 = (dim==1)?min:0;
-    int lag2 = (dim==2)?min:0;
-    int lag3 = (dim==3)?min:0;
-    lcf.correlate(lag1,lag2,lag3,c[1]);
-    lcf.normalize(lag1,lag2,lag3,c[1]);
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // If necessary, correlate for the next block(s) of lags.
+      while (lnext<=min(max,lag+1)) {
+        int lb = lnext;
+        int le = min(max,lb+mlag-1);
+        float[][][][] cl = new float[1+le-lb][][][];
+        for (int l=lb; l<=le; ++l)
+          cl[l-lb] = cr[(l-min)%mring];
+        if (dim==1) {
+          lcf.correlateLags1(lb,le,cl);
+        } else if (dim==2) {
+          lcf.correlateLags2(lb,le,cl);
+        } else {
+          lcf.correlateLags3(lb,le,cl);
+        }
+        lnext = le+1;
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
       // lags scanned. This assumption enables local maxima to occur at the 
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
-      int i = lag-min;
-      float[][][] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[][][] cb =           c[(i+1)%3];
-      float[][][] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = (dim==1)?lag+1:0;
-        lag2 = (dim==2)?lag+1:0;
-        lag3 = (dim==3)?lag+1:0;
-        lcf.correlate(lag1,lag2,lag3,cc);
-        lcf.normalize(lag1,lag2,lag3,cc);
-      }
+      int la = (lag>min)?lag-1:lag+1;
+      int lc = (lag<max)?lag+1:lag-1;
+      float[][][] ca = cr[(mring+la -min)%mring];
+      float[][][] cb = cr[(mring+lag-min)%mring];
+      float[][][] cc = cr[(mring+lc -min)%mring];
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -14,9 +14,11 @@ limitations under the License.
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 import edu.mines.jtk.util.Parallel;
+import edu.mines.jtk.util.Stopwatch;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -108,6 +110,53 @@ public class LocalSmoothingFilter {
     _pc = pc;
   }
 
+  /**
+   * Sets recording of residuals in this local smoothing filter.
+   * When recording, each application of this filter to a 2D or 3D 
+   * array records residuals and the times at which they were computed.
+   * The default is to not record residuals.
+   * @param record true, to record residuals; false, otherwise.
+   */
+  public void setRecordResiduals(boolean record) {
+    _record = record;
+  }
+
+  /**
+   * Returns the number of iterations performed in the most recent 
+   * application of this filter to a 2D or 3D array.
+   * @return the number of iterations.
+   */
+  public int getIterationCount() {
+    return _niterLast;
+  }
+
+  /**
+   * Gets the initial residual and one residual for each iteration 
+   * performed in the most recent application of this filter to a 2D or 
+   * 3D array. Residuals are recorded only if enabled with the method
+   * {@link #setRecordResiduals(boolean)}; otherwise, this array is empty.
+   * <p>
+   * Residuals are norms of differences between the left and right sides 
+   * of the equations (I+G'DG)y = x, divided by the norm of the input 
+   * array x. Iterations stop when this ratio is less than the parameter 
+   * small specified when constructing this filter.
+   * @return array of residuals.
+   */
+  public float[] getResiduals() {
+    return copy(_residuals);
+  }
+
+  /**
+   * Gets the times at which the residuals returned by the method 
+   * {@link #getResiduals()} were computed. Times are in seconds, measured 
+   * from the beginning of the iterative solution. Differences between 
+   * consecutive times are the times required for each iteration.
+   * @return array of times.
+   */
+  public float[] getResidualTimes() {
+    return copy(_times);
+  }
+
   /**
    * Applies this filter for specified constant scale factor.
    * Local smoothing for 1D arrays is a special case that requires no tensors. 
@@ -227,7 +276,7 @@ public class LocalSmoothingFilter {
   public void apply(
     Tensors2 d, float c, float[][] s, float[][] x, float[][] y) 
   {
-    Operator2 a = new A2(_ldk,d,c,s);
+    A2 a = new A2(_ldk,d,c,s);
     scopy(x,y);
     if (_pc) {
       Operator2 m = new M2(d,c,s,x);
@@ -301,7 +350,7 @@ public class LocalSmoothingFilter {
   public void apply(
     Tensors3 d, float c, float[][][] s, float[][][] x, float[][][] y) 
   {
-    Operator3 a = new A3(_ldk,d,c,s);
+    A3 a = new A3(_ldk,d,c,s);
     scopy(x,y);
     if (_pc) {
       Operator3 m = new M3(d,c,s,x);
@@ -367,6 +416,10 @@ public class LocalSmoothingFilter {
   private LocalDiffusionKernel _ldk; // computes y += (I+G'DG)x
   private BandPassFilter _lpf; // lowpass filter, null until applied
   private double _kmax; // maximum wavenumber for lowpass filter
+  private boolean _record; // true, to record residuals and times
+  private volatile int _niterLast; // iterations in most recent solution
+  private volatile float[] _residuals = new float[0]; // recorded residuals
+  private volatile float[] _times = new float[0]; // recorded times
 
   /*
    * A symmetric positive-definite operator.
@@ -387,6 +440,9 @@ public class LocalSmoothingFilter {
     }
     public void apply(float[][] x, float[][] y) {
       scopy(x,y);
+      accumulate(x,y);
+    }
+    public void accumulate(float[][] x, float[][] y) {
       _ldk.apply(_d,_c,_s,x,y);
     }
     private LocalDiffusionKernel _ldk;
@@ -401,8 +457,10 @@ public class LocalSmoothingFilter {
       int n2 = x.length;
       _p = fillfloat(1.0f,n1,n2);
       c *= 0.25f;
-      float[] di = new float[3];
+      float[][] di = (d!=null)?new float[3][n1]:null;
       for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+        if (d!=null)
+          LocalDiffusionKernel.getTensors(d,i2,di);
         for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
           float si = s!=null?s[i2][i1]:1.0f;
           float csi = c*si;
@@ -410,10 +468,9 @@ public class LocalSmoothingFilter {
           float d12 = 0.0f;
           float d22 = csi;
           if (d!=null) {
-            d.getTensor(i1,i2,di);
-            d11 = di[0]*csi;
-            d12 = di[1]*csi;
-            d22 = di[2]*csi;
+            d11 = di[0][i1]*csi;
+            d12 = di[1][i1]*csi;
+            d22 = di[2][i1]*csi;
           }
           _p[i2][i1] += (d11+d12)+( d12+d22);
           _p[m2][m1] += (d11+d12)+( d12+d22);
@@ -438,6 +495,9 @@ public class LocalSmoothingFilter {
     }
     public void apply(float[][][] x, float[][][] y) {
       scopy(x,y);
+      accumulate(x,y);
+    }
+    public void accumulate(float[][][] x, float[][][] y) {
       _ldk.apply(_d,_c,_s,x,y);
     }
     private LocalDiffusionKernel _ldk;
@@ -453,9 +513,11 @@ public class LocalSmoothingFilter {
       int n3 = x.length;
       _p = fillfloat(1.0f,n1,n2,n3);
       c *= 0.0625f;
-      float[] di = new float[6];
+      float[][] di = (d!=null)?new float[6][n1]:null;
       for (int i3=1,m3=0; i3<n3; ++i3,++m3) {
         for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+          if (d!=null)
+            LocalDiffusionKernel.getTensors(d,i2,i3,di);
           for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
             float si = s!=null?s[i3][i2][i1]:1.0f;
             float csi = c*si;
@@ -466,13 +528,12 @@ public class LocalSmoothingFilter {
             float d23 = 0.0f;
             float d33 = csi;
             if (d!=null) {
-              d.getTensor(i1,i2,i3,di);
-              d11 = di[0]*csi;
-              d12 = di[1]*csi;
-              d13 = di[2]*csi;
-              d22 = di[3]*csi;
-              d23 = di[4]*csi;
-              d33 = di[5]*csi;
+              d11 = di[0][i1]*csi;
+              d12 = di[1][i1]*csi;
+              d13 = di[2][i1]*csi;
+              d22 = di[3][i1]*csi;
+              d23 = di[4][i1]*csi;
+              d33 = di[5][i1]*csi;
             }
             _p[i3][i2][i1] += ( d11+d12+d13)+( d12+d22+d23)+( d13+d23+d33);
             _p[m3][m2][m1] += ( d11+d12+d13)+( d12+d22+d23)+( d13+d23+d33);
@@ -608,111 +669,116 @@ public class LocalSmoothingFilter {
 
   // Conjugate-gradient solution of Ax = b, with no preconditioner.
   // Uses the initial values of x; does not assume they are zero.
-  private void solve(Operator2 a, float[][] b, float[][] x) {
+  private void solve(A2 a, float[][] b, float[][] x) {
     int n1 = b[0].length;
     int n2 = b.length;
     float[][] d = new float[n2][n1];
     float[][] q = new float[n2][n1];
     float[][] r = new float[n2][n1];
-    scopy(b,r);
-    a.apply(x,q);
-    saxpy(-1.0f,q,r); // r = b-Ax
-    scopy(r,d); // d = r
-    float delta = sdot(r,r); // delta = r'r
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    a.apply(x,q); // q = Ax
+    float delta = sresid(b,q,r); // r = b-Ax; delta = r'r
+    sdirect(0.0f,r,d,q); // d = r; q = d
     float bnorm = sqrt(sdot(b,b));
     float rnorm = sqrt(delta);
     float rnormBegin = rnorm;
     float rnormSmall = bnorm*_small;
     int iter;
     log.fine("solve: bnorm="+bnorm+" rnorm="+rnorm);
+    Residuals h = beginResiduals(bnorm,rnorm,sw);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
-      a.apply(d,q); // q = Ad
-      float dq = sdot(d,q); // d'q = d'Ad
-      float alpha = delta/dq; // alpha = r'r/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
-      saxpy(-alpha,q,r); // r = r-alpha*q
+      a.accumulate(d,q); // q = d+G'DGd = Ad
+      float alpha = delta/sdot(d,q); // alpha = r'r/d'Ad
       float deltaOld = delta;
-      delta = sdot(r,r); // delta = r'r
+      delta = supdate(alpha,d,q,x,r); // x += alpha*d; r -= alpha*q
       float beta = delta/deltaOld;
-      sxpay(beta,r,d); // d = r+beta*d
+      sdirect(beta,r,d,q); // d = r+beta*d; q = d
       rnorm = sqrt(delta);
+      addResidual(h,rnorm,sw);
     }
+    endResiduals(h,iter);
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
   }
-  private void solve(Operator3 a, float[][][] b, float[][][] x) {
+  private void solve(A3 a, float[][][] b, float[][][] x) {
     int n1 = b[0][0].length;
     int n2 = b[0].length;
     int n3 = b.length;
     float[][][] d = new float[n3][n2][n1];
     float[][][] q = new float[n3][n2][n1];
-    float[][][] r = new float[n3][n2][n1];
-    scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
-    scopy(r,d);
-    float delta = sdot(r,r);
-    float bnorm = sqrt(sdot(b,b));
+    float[][] b2 = rows(b), x2 = rows(x);
+    float[][] d2 = rows(d), q2 = rows(q), r2 = new float[n2*n3][n1];
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    a.apply(x,q);
+    float delta = sresid(b2,q2,r2);
+    sdirect(0.0f,r2,d2,q2);
+    float bnorm = sqrt(sdot(b2,b2));
     float rnorm = sqrt(delta);
     float rnormBegin = rnorm;
     float rnormSmall = bnorm*_small;
     int iter;
     log.fine("solve: bnorm="+bnorm+" rnorm="+rnorm);
+    Residuals h = beginResiduals(bnorm,rnorm,sw);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
-      a.apply(d,q);
-      float dq = sdot(d,q);
-      float alpha = delta/dq;
-      saxpy( alpha,d,x);
-      if (iter%100<99) {
-        saxpy(-alpha,q,r);
-      } else {
-        scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r);
-      }
+      a.accumulate(d,q);
+      float alpha = delta/sdot(d2,q2);
       float deltaOld = delta;
-      delta = sdot(r,r);
+      delta = supdate(alpha,d2,q2,x2,r2);
+      if (iter%100==99) {
+        a.apply(x,q); delta = sresid(b2,q2,r2);
+      }
       float beta = delta/deltaOld;
-      sxpay(beta,r,d);
+      sdirect(beta,r2,d2,q2);
       rnorm = sqrt(delta);
+      addResidual(h,rnorm,sw);
     }
+    endResiduals(h,iter);
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
   }
 
   // Conjugate-gradient solution of Ax = b, with preconditioner M.
   // Uses the initial values of x; does not assume they are zero.
-  private void solve(Operator2 a, Operator2 m, float[][] b, float[][] x) {
+  private void solve(A2 a, Operator2 m, float[][] b, float[][] x) {
     int n1 = b[0].length;
     int n2 = b.length;
     float[][] d = new float[n2][n1];
     float[][] q = new float[n2][n1];
     float[][] r = new float[n2][n1];
     float[][] s = new float[n2][n1];
-    scopy(b,r);
-    a.apply(x,q);
-    saxpy(-1.0f,q,r); // r = b-Ax
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    a.apply(x,q); // q = Ax
+    float rr = sresid(b,q,r); // r = b-Ax; rr = r'r
     float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(sdot(r,r));
+    float rnorm = sqrt(rr);
     float rnormBegin = rnorm;
     float rnormSmall = bnorm*_small;
     m.apply(r,s); // s = Mr
-    scopy(s,d); // d = s
+    sdirect(0.0f,s,d,q); // d = s; q = d
     float delta = sdot(r,s); // r's = r'Mr
     int iter;
     log.fine("msolve: bnorm="+bnorm+" rnorm="+rnorm);
+    Residuals h = beginResiduals(bnorm,rnorm,sw);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
-      a.apply(d,q); // q = Ad
+      a.accumulate(d,q); // q = d+G'DGd = Ad
       float alpha = delta/sdot(d,q); // alpha = r'Mr/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
-      saxpy(-alpha,q,r); // r = r-alpha*q
+      rr = supdate(alpha,d,q,x,r); // x += alpha*d; r -= alpha*q
       m.apply(r,s); // s = Mr
       float deltaOld = delta;
       delta = sdot(r,s); // delta = r's = r'Mr
       float beta = delta/deltaOld;
-      sxpay(beta,s,d); // d = s+beta*d
-      rnorm  = sqrt(sdot(r,r));
+      sdirect(beta,s,d,q); // d = s+beta*d; q = d
+      rnorm = sqrt(rr);
+      addResidual(h,rnorm,sw);
     }
+    endResiduals(h,iter);
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
   }
-  private void solve(Operator3 a, Operator3 m, float[][][] b, float[][][] x) {
+  private void solve(A3 a, Operator3 m, float[][][] b, float[][][] x) {
     int n1 = b[0][0].length;
     int n2 = b[0].length;
     int n3 = b.length;
@@ -720,135 +786,224 @@ public class LocalSmoothingFilter {
     float[][][] q = new float[n3][n2][n1];
     float[][][] r = new float[n3][n2][n1];
     float[][][] s = new float[n3][n2][n1];
-    scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
-    float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(sdot(r,r));
+    float[][] b2 = rows(b), x2 = rows(x);
+    float[][] d2 = rows(d), q2 = rows(q), r2 = rows(r), s2 = rows(s);
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    a.apply(x,q);
+    float rr = sresid(b2,q2,r2);
+    float bnorm = sqrt(sdot(b2,b2));
+    float rnorm = sqrt(rr);
     float rnormBegin = rnorm;
     float rnormSmall = bnorm*_small;
-    m.apply(r,s); // s = Mr
-    scopy(s,d); // d = s
-    float delta = sdot(r,s); // r's = r'Mr
+    m.apply(r,s);
+    sdirect(0.0f,s2,d2,q2);
+    float delta = sdot(r2,s2);
     int iter;
     log.fine("msolve: bnorm="+bnorm+" rnorm="+rnorm);
+    Residuals h = beginResiduals(bnorm,rnorm,sw);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
-      a.apply(d,q); // q = Ad
-      float alpha = delta/sdot(d,q); // alpha = r'Mr/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
-      if (iter%100<99) {
-        saxpy(-alpha,q,r); // r = r-alpha*q
-      } else {
-        scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
+      a.accumulate(d,q);
+      float alpha = delta/sdot(d2,q2);
+      rr = supdate(alpha,d2,q2,x2,r2);
+      if (iter%100==99) {
+        a.apply(x,q); rr = sresid(b2,q2,r2);
       }
-      m.apply(r,s); // s = Mr
+      m.apply(r,s);
       float deltaOld = delta;
-      delta = sdot(r,s); // delta = r's = r'Mr
+      delta = sdot(r2,s2);
       float beta = delta/deltaOld;
-      sxpay(beta,s,d); // d = s+beta*d
-      rnorm  = sqrt(sdot(r,r));
+      sdirect(beta,s2,d2,q2);
+      rnorm = sqrt(rr);
+      addResidual(h,rnorm,sw);
     }
+    endResiduals(h,iter);
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
   }
 
-  // Zeros array x.
-  private static void szero(float[] x) {
-    zero(x);
+  // Residuals and times recorded for one solution. Each solution has its
+  // own, so that a filter may be applied concurrently by multiple threads.
+  private static class Residuals {
+    float bnorm;
+    ArrayList<Float> residuals = new ArrayList<Float>();
+    ArrayList<Float> times = new ArrayList<Float>();
   }
-  private static void szero(float[][] x) {
-    zero(x);
+
+  // Returns residuals for the current solution with the initial residual
+  // recorded, or null, if not recording residuals.
+  private Residuals beginResiduals(float bnorm, float rnorm, Stopwatch sw) {
+    if (!_record)
+      return null;
+    Residuals h = new Residuals();
+    h.bnorm = bnorm;
+    addResidual(h,rnorm,sw);
+    return h;
   }
-  private static void szero(final float[][][] x) {
-    final int n3 = x.length;
-    Parallel.loop(n3,new Parallel.LoopInt() {
-      public void compute(int i3) {
-        szero(x[i3]);
-      }
-    });
+
+  // Records a residual and the time at which it was computed.
+  private static void addResidual(Residuals h, float rnorm, Stopwatch sw) {
+    if (h!=null) {
+      h.residuals.add((h.bnorm>0.0f)?rnorm/h.bnorm:0.0f);
+      h.times.add((float)sw.time());
+    }
   }
 
-  // Copys array x to array y.
-  private static void scopy(float[] x, float[] y) {
-    copy(x,y);
+  // Publishes the iteration count and any residuals recorded for the
+  // most recent solution.
+  private void endResiduals(Residuals h, int niter) {
+    _niterLast = niter;
+    if (h!=null) {
+      _residuals = toArray(h.residuals);
+      _times = toArray(h.times);
+    } else {
+      _residuals = new float[0];
+      _times = new float[0];
+    }
   }
-  private static void scopy(float[][] x, float[][] y) {
-    copy(x,y);
+
+  // Fused kernels for conjugate-gradient iterations. Each kernel makes a
+  // single parallel sweep through its 2D arrays, in blocks of rows. (For
+  // 3D arrays, kernels sweep through arrays of rows.) Partial sums for 
+  // each block are added in order, so that dot products computed with 
+  // these kernels do not depend on the number of threads.
+
+  // Minimum number of samples in blocks of rows swept in parallel.
+  private static final int NSWEEP = 16384;
+
+  // A kernel that computes (and optionally sums) over a block of rows.
+  private static abstract class Sweep {
+    abstract float compute(int i2, int j2);
+    float apply(int n1, int n2) {
+      final int m2 = max(1,NSWEEP/max(1,n1));
+      final int nb = (n2+m2-1)/m2;
+      final int n2f = n2;
+      final float[] sb = new float[nb];
+      Parallel.loop(nb,new Parallel.LoopInt() {
+        public void compute(int ib) {
+          int i2 = ib*m2;
+          sb[ib] = Sweep.this.compute(i2,min(i2+m2,n2f));
+        }
+      });
+      double s = 0.0;
+      for (int ib=0; ib<nb; ++ib)
+        s += sb[ib];
+      return (float)s;
+    }
   }
-  private static void scopy(final float[][][] x, final float[][][] y) {
-    final int n3 = x.length;
-    Parallel.loop(n3,new Parallel.LoopInt() {
-      public void compute(int i3) {
-        scopy(x[i3],y[i3]);
-      }
-    });
+
+  // Returns an array with the values in a list.
+  private static float[] toArray(ArrayList<Float> list) {
+    int n = list.size();
+    float[] a = new float[n];
+    for (int i=0; i<n; ++i)
+      a[i] = list.get(i);
+    return a;
+  }
+
+  // Returns an array of the rows of a 3D array.
+  private static float[][] rows(float[][][] x) {
+    int n2 = x[0].length;
+    int n3 = x.length;
+    float[][] y = new float[n2*n3][];
+    for (int i3=0,j=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2,++j)
+        y[j] = x[i3][i2];
+    return y;
   }
 
   // Returns the dot product x'y.
-  private static float sdot(float[][] x, float[][] y) {
-    int n1 = x[0].length;
-    int n2 = x.length;
-    float d = 0.0f;
-    for (int i2=0; i2<n2; ++i2) {
-      float[] x2 = x[i2], y2 = y[i2];
-      for (int i1=0; i1<n1; ++i1) {
-        d += x2[i1]*y2[i1];
+  private static float sdot(final float[][] x, final float[][] y) {
+    return new Sweep() {
+      float compute(int i2, int j2) {
+        int n1 = x[i2].length;
+        float s = 0.0f;
+        for (; i2<j2; ++i2) {
+          float[] x2 = x[i2], y2 = y[i2];
+          for (int i1=0; i1<n1; ++i1)
+            s += x2[i1]*y2[i1];
+        }
+        return s;
       }
-    }
-    return d;
+    }.apply(x[0].length,x.length);
   }
-  private static float sdot(final float[][][] x, final float[][][] y) {
-    final int n3 = x.length;
-    final float[] d3 = new float[n3];
-    Parallel.loop(n3,new Parallel.LoopInt() {
-      public void compute(int i3) {
-        d3[i3] = sdot(x[i3],y[i3]);
+
+  // Computes r = b-q; returns r'r.
+  private static float sresid(
+    final float[][] b, final float[][] q, final float[][] r) 
+  {
+    return new Sweep() {
+      float compute(int i2, int j2) {
+        int n1 = b[i2].length;
+        float s = 0.0f;
+        for (; i2<j2; ++i2) {
+          float[] b2 = b[i2], q2 = q[i2], r2 = r[i2];
+          for (int i1=0; i1<n1; ++i1) {
+            float ri = b2[i1]-q2[i1];
+            r2[i1] = ri;
+            s += ri*ri;
+          }
+        }
+        return s;
       }
-    });
-    float d = 0.0f;
-    for (int i3=0; i3<n3; ++i3)
-      d += d3[i3];
-    return d;
+    }.apply(b[0].length,b.length);
   }
 
-  // Computes y = y + a*x.
-  private static void saxpy(float a, float[][] x, float[][] y) {
-    int n1 = x[0].length;
-    int n2 = x.length;
-    for (int i2=0; i2<n2; ++i2) {
-      float[] x2 = x[i2], y2 = y[i2];
-      for (int i1=0; i1<n1; ++i1) {
-        y2[i1] += a*x2[i1];
+  // Computes x = x+a*d and r = r-a*q; returns r'r.
+  private static float supdate(
+    final float a, final float[][] d, final float[][] q, 
+    final float[][] x, final float[][] r) 
+  {
+    return new Sweep() {
+      float compute(int i2, int j2) {
+        int n1 = d[i2].length;
+        float s = 0.0f;
+        for (; i2<j2; ++i2) {
+          float[] d2 = d[i2], q2 = q[i2], x2 = x[i2], r2 = r[i2];
+          for (int i1=0; i1<n1; ++i1) {
+            float ri = r2[i1]-a*q2[i1];
+            x2[i1] += a*d2[i1];
+            r2[i1] = ri;
+            s += ri*ri;
+          }
+        }
+        return s;
       }
-    }
+    }.apply(d[0].length,d.length);
   }
-  private static void saxpy(
-    final float a, final float[][][] x, final float[][][] y)
+
+  // Computes d = s+a*d and q = d.
+  private static void sdirect(
+    final float a, final float[][] s, final float[][] d, final float[][] q) 
   {
-    final int n3 = x.length;
-    Parallel.loop(n3,new Parallel.LoopInt() {
-      public void compute(int i3) {
-        saxpy(a,x[i3],y[i3]);
+    new Sweep() {
+      float compute(int i2, int j2) {
+        int n1 = s[i2].length;
+        for (; i2<j2; ++i2) {
+          float[] s2 = s[i2], d2 = d[i2], q2 = q[i2];
+          for (int i1=0; i1<n1; ++i1) {
+            float di = s2[i1]+a*d2[i1];
+            d2[i1] = di;
+            q2[i1] = di;
+          }
+        }
+        return 0.0f;
       }
-    });
+    }.apply(s[0].length,s.length);
   }
 
-  // Computes y = x + a*y.
-  private static void sxpay(float a, float[][] x, float[][] y) {
-    int n1 = x[0].length;
-    int n2 = x.length;
-    for (int i2=0; i2<n2; ++i2) {
-      float[] x2 = x[i2], y2 = y[i2];
-      for (int i1=0; i1<n1; ++i1) {
-        y2[i1] = a*y2[i1]+x2[i1];
-      }
-    }
+  // Copys array x to array y.
+  private static void scopy(float[] x, float[] y) {
+    copy(x,y);
   }
-  private static void sxpay(
-    final float a, final float[][][] x, final float[][][] y)
-  {
+  private static void scopy(float[][] x, float[][] y) {
+    copy(x,y);
+  }
+  private static void scopy(final float[][][] x, final float[][][] y) {
     final int n3 = x.length;
     Parallel.loop(n3,new Parallel.LoopInt() {
       public void compute(int i3) {
-        sxpay(a,x[i3],y[i3]);
+        scopy(x[i3],y[i3]);
       }
     });
   }
@@ -0,0 +1,609 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import edu.mines.jtk.io.ArrayFile;
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
+import edu.mines.jtk.util.UnitSphereSampling;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * An array of eigen-decompositions of tensors, stored in a file that is
+ * mapped into memory. These tensors are like compressed
+ * {@link EigenTensors3}, but their storage is not limited by the size
+ * of the Java heap. They may therefore be used for images too large
+ * for tensors in memory.
+ * <p>
+ * The file contains a small header with array dimensions, followed by
+ * one slab of tensors for each index i3. Each slab is contiguous in the
+ * file and contains 12 bytes per tensor, the same compressed eigenvalues
+ * and eigenvectors stored by compressed {@link EigenTensors3}. Slabs are
+ * mapped in groups of at most 1 GB, and pages of those slabs are read
+ * and written by the operating system as they are used. Tensors are
+ * therefore best accessed slab by slab, with the index i3 in the
+ * outer-most loop.
+ * <p>
+ * Tensors with different indices i3 may be set in parallel. When writing
+ * is complete, this file should be flushed or closed; mapped tensors
+ * remain accessible after the file is closed.
+ *
+ * @version 2026.10.16
+ */
+public class MappedEigenTensors3 implements BulkTensors3,Closeable {
+
+  /**
+   * Constructs tensors stored in a new file with specified name. If the
+   * file exists, its contents are replaced. All eigenvalues and
+   * eigenvectors u and w are initially zero.
+   * @param name the file name.
+   * @param n1 number of tensors in 1st dimension.
+   * @param n2 number of tensors in 2nd dimension.
+   * @param n3 number of tensors in 3rd dimension.
+   */
+  public MappedEigenTensors3(String name, int n1, int n2, int n3)
+    throws IOException
+  {
+    this(new File(name),n1,n2,n3);
+  }
+
+  /**
+   * Constructs tensors stored in a new file. If the file exists, its
+   * contents are replaced. All eigenvalues and eigenvectors u and w are
+   * initially zero.
+   * @param file the file.
+   * @param n1 number of tensors in 1st dimension.
+   * @param n2 number of tensors in 2nd dimension.
+   * @param n3 number of tensors in 3rd dimension.
+   */
+  public MappedEigenTensors3(File file, int n1, int n2, int n3)
+    throws IOException
+  {
+    Check.argument(n1>0 && n2>0 && n3>0,"dimensions are positive");
+    _af = new ArrayFile(file,"rw");
+    _af.setLength(0);
+    _af.writeInt(FORMAT);
+    _af.writeInt(n1);
+    _af.writeInt(n2);
+    _af.writeInt(n3);
+    init(n1,n2,n3,true);
+  }
+
+  /**
+   * Constructs tensors stored in an existing file with specified name.
+   * @param name the file name.
+   * @param writable true, if tensors may be set; false, otherwise.
+   */
+  public MappedEigenTensors3(String name, boolean writable)
+    throws IOException
+  {
+    this(new File(name),writable);
+  }
+
+  /**
+   * Constructs tensors stored in an existing file.
+   * @param file the file.
+   * @param writable true, if tensors may be set; false, otherwise.
+   */
+  public MappedEigenTensors3(File file, boolean writable)
+    throws IOException
+  {
+    _af = new ArrayFile(file,writable?"rw":"r");
+    if (_af.readInt()!=FORMAT) {
+      _af.close();
+      throw new IOException("invalid format");
+    }
+    int n1 = _af.readInt();
+    int n2 = _af.readInt();
+    int n3 = _af.readInt();
+    if (_af.length()<HEADER+12L*n1*n2*n3) {
+      _af.close();
+      throw new IOException("file is too short");
+    }
+    init(n1,n2,n3,writable);
+  }
+
+  /**
+   * Gets the number of tensors in the 1st dimension.
+   * @return the number of tensors in the 1st dimension.
+   */
+  public int getN1() {
+    return _n1;
+  }
+
+  /**
+   * Gets the number of tensors in the 2nd dimension.
+   * @return the number of tensors in the 2nd dimension.
+   */
+  public int getN2() {
+    return _n2;
+  }
+
+  /**
+   * Gets the number of tensors in the 3rd dimension.
+   * @return the number of tensors in the 3rd dimension.
+   */
+  public int getN3() {
+    return _n3;
+  }
+
+  /**
+   * Gets tensor elements for one row of tensors with specified indices.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {a11,a12,a13,a22,a23,a33} of arrays of tensor elements.
+   */
+  public void getTensors(int i2, int i3, float[][] a) {
+    float[] a11 = a[0], a12 = a[1], a13 = a[2];
+    float[] a22 = a[3], a23 = a[4], a33 = a[5];
+    FloatBuffer as = _as[i3];
+    ShortBuffer bu = _bu[i3], bw = _bw[i3];
+    ShortBuffer iu = _iu[i3], iw = _iw[i3];
+    float[] p = _p;
+    for (int i1=0,k=i2*_n1; i1<_n1; ++i1,++k) {
+      float asum = as.get(k);
+      float ascale = asum*AS_GET;
+      float au = ascale*bu.get(k);
+      float aw = ascale*bw.get(k);
+      int ju = 3*(iu.get(k)&0xffff), jw = 3*(iw.get(k)&0xffff);
+      float u1 = p[ju], u2 = p[ju+1], u3 = p[ju+2];
+      float w1 = p[jw], w2 = p[jw+1], w3 = p[jw+2];
+      float av = asum-au-aw;
+      au -= av;
+      aw -= av;
+      a11[i1] = au*u1*u1+aw*w1*w1+av;
+      a12[i1] = au*u1*u2+aw*w1*w2;
+      a13[i1] = au*u1*u3+aw*w1*w3;
+      a22[i1] = au*u2*u2+aw*w2*w2+av;
+      a23[i1] = au*u2*u3+aw*w2*w3;
+      a33[i1] = au*u3*u3+aw*w3*w3+av;
+    }
+  }
+
+  /**
+   * Gets tensor elements for specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {a11,a12,a13,a22,a23,a33} of tensor elements.
+   */
+  public void getTensor(int i1, int i2, int i3, float[] a) {
+    int k = i1+i2*_n1;
+    float asum = _as[i3].get(k);
+    float ascale = asum*AS_GET;
+    float au = ascale*_bu[i3].get(k);
+    float aw = ascale*_bw[i3].get(k);
+    int ju = 3*(_iu[i3].get(k)&0xffff), jw = 3*(_iw[i3].get(k)&0xffff);
+    float u1 = _p[ju], u2 = _p[ju+1], u3 = _p[ju+2];
+    float w1 = _p[jw], w2 = _p[jw+1], w3 = _p[jw+2];
+    float av = asum-au-aw;
+    au -= av;
+    aw -= av;
+    a[0] = au*u1*u1+aw*w1*w1+av; // a11
+    a[1] = au*u1*u2+aw*w1*w2   ; // a12
+    a[2] = au*u1*u3+aw*w1*w3   ; // a13
+    a[3] = au*u2*u2+aw*w2*w2+av; // a22
+    a[4] = au*u2*u3+aw*w2*w3   ; // a23
+    a[5] = au*u3*u3+aw*w3*w3+av; // a33
+  }
+
+  /**
+   * Gets tensor elements for specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @return a array {a11,a12,a13,a22,a23,a33} of tensor elements.
+   */
+  public float[] getTensor(int i1, int i2, int i3) {
+    float[] a = new float[6];
+    getTensor(i1,i2,i3,a);
+    return a;
+  }
+
+  /**
+   * Gets eigenvalues for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {au,av,aw} of eigenvalues.
+   */
+  public void getEigenvalues(int i1, int i2, int i3, float[] a) {
+    int k = i1+i2*_n1;
+    float asum = _as[i3].get(k);
+    float ascale = asum*AS_GET;
+    float au = ascale*_bu[i3].get(k);
+    float aw = ascale*_bw[i3].get(k);
+    a[0] = au;
+    a[1] = asum-au-aw;
+    a[2] = aw;
+  }
+
+  /**
+   * Gets eigenvalues for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @return array {au,av,aw} of eigenvalues.
+   */
+  public float[] getEigenvalues(int i1, int i2, int i3) {
+    float[] a = new float[3];
+    getEigenvalues(i1,i2,i3,a);
+    return a;
+  }
+
+  /**
+   * Gets the eigenvector u for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param u array {u1,u2,u3} of eigenvector components.
+   */
+  public void getEigenvectorU(int i1, int i2, int i3, float[] u) {
+    int j = 3*(_iu[i3].get(i1+i2*_n1)&0xffff);
+    u[0] = _p[j  ];
+    u[1] = _p[j+1];
+    u[2] = _p[j+2];
+  }
+
+  /**
+   * Gets the eigenvector u for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @return array {u1,u2,u3} of eigenvector components.
+   */
+  public float[] getEigenvectorU(int i1, int i2, int i3) {
+    float[] u = new float[3];
+    getEigenvectorU(i1,i2,i3,u);
+    return u;
+  }
+
+  /**
+   * Gets the eigenvector v for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param v array {v1,v2,v3} of eigenvector components.
+   */
+  public void getEigenvectorV(int i1, int i2, int i3, float[] v) {
+    float[] u = getEigenvectorU(i1,i2,i3);
+    float[] w = getEigenvectorW(i1,i2,i3);
+    v[0] = w[1]*u[2]-w[2]*u[1]; // v = w cross u
+    v[1] = w[2]*u[0]-w[0]*u[2];
+    v[2] = w[0]*u[1]-w[1]*u[0];
+  }
+
+  /**
+   * Gets the eigenvector v for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @return array {v1,v2,v3} of eigenvector components.
+   */
+  public float[] getEigenvectorV(int i1, int i2, int i3) {
+    float[] v = new float[3];
+    getEigenvectorV(i1,i2,i3,v);
+    return v;
+  }
+
+  /**
+   * Gets the eigenvector w for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param w array {w1,w2,w3} of eigenvector components.
+   */
+  public void getEigenvectorW(int i1, int i2, int i3, float[] w) {
+    int j = 3*(_iw[i3].get(i1+i2*_n1)&0xffff);
+    w[0] = _p[j  ];
+    w[1] = _p[j+1];
+    w[2] = _p[j+2];
+  }
+
+  /**
+   * Gets the eigenvector w for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @return array {w1,w2,w3} of eigenvector components.
+   */
+  public float[] getEigenvectorW(int i1, int i2, int i3) {
+    float[] w = new float[3];
+    getEigenvectorW(i1,i2,i3,w);
+    return w;
+  }
+
+  /**
+   * Sets tensor elements for specified indices.
+   * This method first computes an eigen-decomposition of the specified
+   * tensor, and then stores the computed eigenvectors and eigenvalues.
+   * The eigenvalues are ordered such that au &gt;= av &gt;= aw &gt;= 0.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {a11,a12,a13,a22,a23,a33} of tensor elements.
+   */
+  public void setTensor(int i1, int i2, int i3, float[] a) {
+    double[][] aa = {
+      {a[0],a[1],a[2]},
+      {a[1],a[3],a[4]},
+      {a[2],a[4],a[5]}
+    };
+    double[][] vv = new double[3][3];
+    double[] ev = new double[3];
+    Eigen.solveSymmetric33(aa,vv,ev);
+    double[] u = vv[0];
+    double[] w = vv[2];
+    float au = (float)ev[0]; if (au<0.0f) au = 0.0f;
+    float av = (float)ev[1]; if (av<0.0f) av = 0.0f;
+    float aw = (float)ev[2]; if (aw<0.0f) aw = 0.0f;
+    setEigenvectorU(i1,i2,i3,(float)u[0],(float)u[1],(float)u[2]);
+    setEigenvectorW(i1,i2,i3,(float)w[0],(float)w[1],(float)w[2]);
+    setEigenvalues(i1,i2,i3,au,av,aw);
+  }
+
+  /**
+   * Sets eigenvalues for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param au eigenvalue au.
+   * @param av eigenvalue av.
+   * @param aw eigenvalue aw.
+   */
+  public void setEigenvalues(
+    int i1, int i2, int i3, float au, float av, float aw)
+  {
+    int k = i1+i2*_n1;
+    float asum = au+av+aw;
+    float ascale = (asum>0.0f)?AS_SET/asum:0.0f;
+    _bu[i3].put(k,(short)(au*ascale+0.5f));
+    _bw[i3].put(k,(short)(aw*ascale+0.5f));
+    _as[i3].put(k,asum);
+  }
+
+  /**
+   * Sets eigenvalues for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param a array {au,av,aw} of eigenvalues.
+   */
+  public void setEigenvalues(int i1, int i2, int i3, float[] a) {
+    setEigenvalues(i1,i2,i3,a[0],a[1],a[2]);
+  }
+
+  /**
+   * Sets the eigenvector u for the tensor with specified indices.
+   * The specified vector is assumed to have length one. If the 3rd
+   * component is negative, this method stores the negative of the
+   * specified vector, so that the 3rd component is positive.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param u1 1st component of u.
+   * @param u2 2nd component of u.
+   * @param u3 3nd component of u.
+   */
+  public void setEigenvectorU(
+    int i1, int i2, int i3, float u1, float u2, float u3)
+  {
+    if (u3<0.0f) {
+      u1 = -u1;
+      u2 = -u2;
+      u3 = -u3;
+    }
+    _iu[i3].put(i1+i2*_n1,(short)_uss.getIndex(u1,u2,u3));
+  }
+
+  /**
+   * Sets the eigenvector u for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param u {u1,u2,u3} of eigenvector components.
+   */
+  public void setEigenvectorU(int i1, int i2, int i3, float[] u) {
+    setEigenvectorU(i1,i2,i3,u[0],u[1],u[2]);
+  }
+
+  /**
+   * Sets the eigenvector w for the tensor with specified indices.
+   * The specified vector is assumed to have length one. If the 3rd
+   * component is negative, this method stores the negative of the
+   * specified vector, so that the 3rd component is positive.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param w1 1st component of w.
+   * @param w2 2nd component of w.
+   * @param w3 3nd component of w.
+   */
+  public void setEigenvectorW(
+    int i1, int i2, int i3, float w1, float w2, float w3)
+  {
+    if (w3<0.0f) {
+      w1 = -w1;
+      w2 = -w2;
+      w3 = -w3;
+    }
+    _iw[i3].put(i1+i2*_n1,(short)_uss.getIndex(w1,w2,w3));
+  }
+
+  /**
+   * Sets the eigenvector w for the tensor with specified indices.
+   * @param i1 index for 1st dimension.
+   * @param i2 index for 2nd dimension.
+   * @param i3 index for 3rd dimension.
+   * @param w {w1,w2,w3} of eigenvector components.
+   */
+  public void setEigenvectorW(int i1, int i2, int i3, float[] w) {
+    setEigenvectorW(i1,i2,i3,w[0],w[1],w[2]);
+  }
+
+  /**
+   * Inverts these tensors, assumed to be structure tensors.
+   * This method is equivalent to that of {@link EigenTensors3}, and
+   * makes two passes, slab by slab, over the tensors in this file.
+   * @param p0 power for amplitude.
+   * @param p1 power for linearity.
+   * @param p2 power for planarity.
+   * @see EigenTensors3#invertStructure(double,double,double)
+   */
+  public void invertStructure(double p0, double p1, double p2) {
+    float[] aminmax = Parallel.reduce(_n3,new Parallel.ReduceInt<float[]>() {
+      public float[] compute(int i3) {
+        float[] a = new float[3];
+        float amin = FLT_MAX;
+        float amax = 0.0f;
+        for (int i2=0; i2<_n2; ++i2) {
+          for (int i1=0; i1<_n1; ++i1) {
+            getEigenvalues(i1,i2,i3,a);
+            float aui = a[0], avi = a[1], awi = a[2];
+            if (awi<0.0f) awi = 0.0f;
+            if (avi< awi) avi = awi;
+            if (aui< avi) aui = avi;
+            if (awi<amin) amin = awi;
+            if (aui>amax) amax = aui;
+            setEigenvalues(i1,i2,i3,aui,avi,awi);
+          }
+        }
+        return new float[]{amin,amax};
+      }
+      public float[] combine(float[] a, float[] b) {
+        return new float[]{min(a[0],b[0]),max(a[1],b[1])};
+      }
+    });
+    final float aeps = max(FLT_MIN*100.0f,FLT_EPSILON*aminmax[1]);
+    final float amin = aminmax[0]+aeps;
+    final float fp0 = (float)p0;
+    final float fp1 = (float)p1;
+    final float fp2 = (float)p2;
+    Parallel.loop(_n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        float[] a = new float[3];
+        for (int i2=0; i2<_n2; ++i2) {
+          for (int i1=0; i1<_n1; ++i1) {
+            getEigenvalues(i1,i2,i3,a);
+            float aui = a[0]+aeps;
+            float avi = a[1]+aeps;
+            float awi = a[2]+aeps;
+            float a0i = pow(amin/awi,fp0);
+            float a1i = pow( awi/avi,fp1);
+            float a2i = pow( avi/aui,fp2);
+            aui = a0i*a1i*a2i;
+            avi = a0i*a1i;
+            awi = a0i;
+            setEigenvalues(i1,i2,i3,aui,avi,awi);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Forces any changes to these tensors to be written to the file.
+   */
+  public void flush() {
+    for (MappedByteBuffer mbb:_mbb)
+      mbb.force();
+  }
+
+  /**
+   * Forces any changes to be written and closes the file. Tensors
+   * remain accessible after the file is closed.
+   */
+  public void close() throws IOException {
+    if (_af!=null) {
+      if (_writable)
+        flush();
+      _af.close();
+      _af = null;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final int FORMAT = 1; // file format
+  private static final int HEADER = 16; // bytes in header
+  private static final long MAP_MAX = 1L<<30; // max bytes in one mapping
+  private static final float AS_SET = (float)Short.MAX_VALUE;
+  private static final float AS_GET = 1.0f/AS_SET;
+
+  private ArrayFile _af; // file with mapped tensors; null, if closed
+  private boolean _writable; // true if tensors may be set
+  private int _n1,_n2,_n3; // array dimensions
+  private MappedByteBuffer[] _mbb; // mapped groups of slabs
+  private FloatBuffer[] _as; // sum a1+a2+a3, for each slab
+  private ShortBuffer[] _bu; // au compressed, for each slab
+  private ShortBuffer[] _bw; // aw compressed, for each slab
+  private ShortBuffer[] _iu; // (u1,u2,u3) compressed, for each slab
+  private ShortBuffer[] _iw; // (w1,w2,w3) compressed, for each slab
+  private UnitSphereSampling _uss = EigenTensors3.getUnitSphereSampling();
+  private float[] _p = EigenTensors3.getPoints(); // {x,y,z} of points
+
+  private void init(int n1, int n2, int n3, boolean writable)
+    throws IOException
+  {
+    long n12 = (long)n1*(long)n2;
+    long nslab = 12L*n12;
+    if (nslab>MAP_MAX) {
+      _af.close();
+      throw new IOException("slabs of tensors exceed 1 GB");
+    }
+    _n1 = n1;
+    _n2 = n2;
+    _n3 = n3;
+    _writable = writable;
+    FileChannel.MapMode mode = writable ?
+      FileChannel.MapMode.READ_WRITE :
+      FileChannel.MapMode.READ_ONLY;
+    int m3 = (int)Math.min(n3,MAP_MAX/nslab); // number of slabs per mapping
+    int nm = 1+(n3-1)/m3; // number of mappings
+    int na = (int)(4*n12), nb = (int)(2*n12);
+    _mbb = new MappedByteBuffer[nm];
+    _as = new FloatBuffer[n3];
+    _bu = new ShortBuffer[n3];
+    _bw = new ShortBuffer[n3];
+    _iu = new ShortBuffer[n3];
+    _iw = new ShortBuffer[n3];
+    for (int im=0,j3=0; im<nm; ++im,j3+=m3) {
+      int l3 = min(m3,n3-j3);
+      _mbb[im] = _af.map(mode,HEADER+j3*nslab,l3*nslab);
+      for (int i3=j3,k=0; i3<j3+l3; ++i3) {
+        _as[i3] = slice(_mbb[im],k,na).asFloatBuffer(); k += na;
+        _bu[i3] = slice(_mbb[im],k,nb).asShortBuffer(); k += nb;
+        _bw[i3] = slice(_mbb[im],k,nb).asShortBuffer(); k += nb;
+        _iu[i3] = slice(_mbb[im],k,nb).asShortBuffer(); k += nb;
+        _iw[i3] = slice(_mbb[im],k,nb).asShortBuffer(); k += nb;
+      }
+    }
+  }
+
+  private static ByteBuffer slice(ByteBuffer b, int k, int n) {
+    ByteBuffer c = b.duplicate();
+    c.limit(k+n);
+    c.position(k);
+    return c.slice().order(b.order());
+  }
+}
@@ -16,6 +16,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * A minimum-phase filter is a causal stable filter with a causal stable 
@@ -32,6 +33,11 @@ import edu.mines.jtk.util.Check;
  * <p>
  * Minimum-phase filters may be obtained through Wilson-Burg factorization
  * of specified auto-correlations.
+ * <p>
+ * For 3-D arrays, traces are filtered in parallel. For the recursive 
+ * inverse and inverse-transpose filters, traces are filtered in parallel 
+ * along wavefronts, such that every trace depends only on traces for 
+ * wavefronts already filtered.
  * @author Dave Hale, Colorado School of Mines
  * @version 2006.12.30
  */
@@ -390,30 +396,31 @@ public class MinimumPhaseFilter {
     int k2 = n2-1-_max2;
     int k3 = n3-1-_max3;
 
-    // Workspace.
-    float[][][] s = new float[n3][n2][n1];
+    // Workspace. Inverse filters are applied in place, so that only two
+    // arrays are required.
     float[][][] t = new float[n3][n2][n1];
     float[][][] u = new float[n3][n2][n1];
 
-    // S is R padded with zeros to reduce truncation of R/(AA').
-    copy(r[0][0].length,r[0].length,r.length,0,0,0,r,k1-l1,k2-l2,k3-l3,s);
-
     // Initial factor is minimum-phase and matches lag zero of R.
     zero(_a);
-    _a[0] = sqrt(s[k3][k2][k1]);
+    _a[0] = sqrt(r[l3][l2][l1]);
     _a0 = _a[0];
     _a0i = 1.0f/_a[0];
 
     // Loop for maximum iterations or until converged.
     int niter;
     boolean converged = false;
-    float eemax = s[k3][k2][k1]*epsilon;
+    float eemax = r[l3][l2][l1]*epsilon;
     for (niter=0; niter<maxiter && !converged; ++niter) {
       //dump(_a); // for debugging only
 
+      // S is R padded with zeros to reduce truncation of R/(AA').
+      zero(u);
+      copy(r[0][0].length,r[0].length,r.length,0,0,0,r,k1-l1,k2-l2,k3-l3,u);
+
       // U(z) + U(1/z) = 1 + S(z)/(A(z)*A(1/z))
-      this.applyInverseTranspose(s,t);
-      this.applyInverse(t,u);
+      this.applyInverseTranspose(u,u);
+      this.applyInverse(u,u);
       u[k3][k2][k1] += 1.0f;
 
       // U(z) is the causal part we want; zero the anti-causal part.
@@ -539,91 +546,15 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void apply(float[][][] x, float[][][] y) {
-    int n1 = y[0][0].length;
-    int n2 = y[0].length;
-    int n3 = y.length;
-    int i1lo = max(0,_max1);
-    int i1hi = min(n1,n1+_min1);
-    int i2lo = max(0,_max2);
-    int i2hi = min(n2,n2+_min2);
-    int i3lo = (i1lo<=i1hi && i2lo<=i2hi)?min(_max3,n3):n3;
-    for (int i3=0; i3<i3lo; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k1 && k1<n1 && 0<=k2 &&  k2<n2 && 0<=k3)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-    }
-    for (int i3=i3lo; i3<n3; ++i3) {
-      for (int i2=0; i2<i2lo; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k2 && 0<=k1 && k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-      for (int i2=i2lo; i2<i2hi; ++i2) {
-        for (int i1=0; i1<i1lo; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-        for (int i1=i1lo; i1<i1hi; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-        for (int i1=i1hi; i1<n1; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-      for (int i2=i2hi; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (k2<n2 && 0<=k1 && k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-    }
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final float[][][] xf = x;
+    final float[][][] yf = y;
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      for (int i2=0; i2<n2; ++i2)
+        applyTrace(i2,i3,xf,yf);
+    }});
   }
 
   /**
@@ -786,91 +717,15 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyTranspose(float[][][] x, float[][][] y) {
-    int n1 = y[0][0].length;
-    int n2 = y[0].length;
-    int n3 = y.length;
-    int i1lo = max(0,-_min1);
-    int i1hi = min(n1,n1-_max1);
-    int i2lo = max(0,-_min2);
-    int i2hi = min(n2,n2-_max2);
-    int i3hi = (i1lo<=i1hi && i2lo<=i2hi)?max(n3-_max3,0):0;
-    for (int i3=n3-1; i3>=i3hi; --i3) {
-      for (int i2=n2-1; i2>=0; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && k3<n3)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-    }
-    for (int i3=i3hi-1; i3>=0; --i3) {
-      for (int i2=n2-1; i2>=i2hi; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (k2<n2 && 0<=k1 && k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-      for (int i2=i2hi-1; i2>=i2lo; --i2) {
-        for (int i1=n1-1; i1>=i1hi; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-        for (int i1=i1hi-1; i1>=i1lo; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-        for (int i1=i1lo-1; i1>=0; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-      for (int i2=i2lo-1; i2>=0; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = _a0*x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k2 && 0<=k1 && k1<n1)
-              yi += _a[j]*x[k3][k2][k1];
-          }
-          y[i3][i2][i1] = yi;
-        }
-      }
-    }
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final float[][][] xf = x;
+    final float[][][] yf = y;
+    Parallel.loop(n3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      for (int i2=0; i2<n2; ++i2)
+        applyTransposeTrace(i2,i3,xf,yf);
+    }});
   }
 
   /**
@@ -1034,89 +889,24 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverse(float[][][] x, float[][][] y) {
-    int n1 = y[0][0].length;
-    int n2 = y[0].length;
-    int n3 = y.length;
-    int i1lo = max(0,_max1);
-    int i1hi = min(n1,n1+_min1);
-    int i2lo = max(0,_max2);
-    int i2hi = min(n2,n2+_min2);
-    int i3lo = (i1lo<=i1hi && i2lo<=i2hi)?min(_max3,n3):n3;
-    for (int i3=0; i3<i3lo; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k1 && k1<n1 && 0<=k2 &&  k2<n2 && 0<=k3)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-    }
-    for (int i3=i3lo; i3<n3; ++i3) {
-      for (int i2=0; i2<i2lo; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k2 && 0<=k1 && k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-      for (int i2=i2lo; i2<i2hi; ++i2) {
-        for (int i1=0; i1<i1lo; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (0<=k1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-        for (int i1=i1lo; i1<i1hi; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-        for (int i1=i1hi; i1<n1; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-      for (int i2=i2hi; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1-_lag1[j];
-            int k2 = i2-_lag2[j];
-            int k3 = i3-_lag3[j];
-            if (k2<n2 && 0<=k1 && k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final float[][][] xf = x;
+    final float[][][] yf = y;
+
+    // Traces (i2,i3) on a wavefront iw = ns*i3+i2 depend only on traces
+    // on previous wavefronts, so they are filtered in parallel.
+    final int ns = max(1,1-_min2);
+    int nw = ns*(n3-1)+n2;
+    for (int iw=0; iw<nw; ++iw) {
+      final int jw = iw;
+      int i3lo = max(0,(iw-n2+ns)/ns);
+      int i3hi = min(n3-1,iw/ns);
+      if (i3lo<=i3hi) {
+        Parallel.loop(i3lo,i3hi+1,new Parallel.LoopInt() {
+        public void compute(int i3) {
+          applyInverseTrace(jw-ns*i3,i3,xf,yf);
+        }});
       }
     }
   }
@@ -1282,89 +1072,24 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverseTranspose(float[][][] x, float[][][] y) {
-    int n1 = y[0][0].length;
-    int n2 = y[0].length;
-    int n3 = y.length;
-    int i1lo = max(0,-_min1);
-    int i1hi = min(n1,n1-_max1);
-    int i2lo = max(0,-_min2);
-    int i2hi = min(n2,n2-_max2);
-    int i3hi = (i1lo<=i1hi && i2lo<=i2hi)?max(n3-_max3,0):0;
-    for (int i3=n3-1; i3>=i3hi; --i3) {
-      for (int i2=n2-1; i2>=0; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && k3<n3)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-    }
-    for (int i3=i3hi-1; i3>=0; --i3) {
-      for (int i2=n2-1; i2>=i2hi; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (k2<n2 && 0<=k1 && k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-      for (int i2=i2hi-1; i2>=i2lo; --i2) {
-        for (int i1=n1-1; i1>=i1hi; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-        for (int i1=i1hi-1; i1>=i1lo; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-        for (int i1=i1lo-1; i1>=0; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
-      }
-      for (int i2=i2lo-1; i2>=0; --i2) {
-        for (int i1=n1-1; i1>=0; --i1) {
-          float yi = x[i3][i2][i1];
-          for (int j=1; j<_m; ++j) {
-            int k1 = i1+_lag1[j];
-            int k2 = i2+_lag2[j];
-            int k3 = i3+_lag3[j];
-            if (0<=k2 && 0<=k1 && k1<n1)
-              yi -= _a[j]*y[k3][k2][k1];
-          }
-          y[i3][i2][i1] = _a0i*yi;
-        }
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final float[][][] xf = x;
+    final float[][][] yf = y;
+
+    // Traces (i2,i3) on a wavefront iw = ns*i3+i2 depend only on traces
+    // on subsequent wavefronts, so they are filtered in parallel.
+    final int ns = max(1,1-_min2);
+    int nw = ns*(n3-1)+n2;
+    for (int iw=nw-1; iw>=0; --iw) {
+      final int jw = iw;
+      int i3lo = max(0,(iw-n2+ns)/ns);
+      int i3hi = min(n3-1,iw/ns);
+      if (i3lo<=i3hi) {
+        Parallel.loop(i3lo,i3hi+1,new Parallel.LoopInt() {
+        public void compute(int i3) {
+          applyInverseTransposeTrace(jw-ns*i3,i3,xf,yf);
+        }});
       }
     }
   }
@@ -1450,6 +1175,204 @@ public class MinimumPhaseFilter {
   private float[][] _ai;
   private float[] _ai0,_ai0i;
 
+  // Filters one trace (i2,i3) of a 3-D array. For traces with all lagged 
+  // traces inside the array, tests of lags are required only near the 
+  // ends of the traces.
+  private void applyTrace(int i2, int i3, float[][][] x, float[][][] y) {
+    int n1 = y[0][0].length;
+    int n2 = y[0].length;
+    int n3 = y.length;
+    int i1lo = max(0,_max1);
+    int i1hi = min(n1,n1+_min1);
+    float[] xi = x[i3][i2];
+    float[] yi = y[i3][i2];
+    if (i3<_max3 || i2<_max2 || n2+_min2<=i2 || i1hi<i1lo) {
+      for (int i1=0; i1<n1; ++i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          int k2 = i2-_lag2[j];
+          int k3 = i3-_lag3[j];
+          if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3 && k3<n3)
+            yi1 += _a[j]*x[k3][k2][k1];
+        }
+        yi[i1] = yi1;
+      }
+    } else {
+      for (int i1=0; i1<i1lo; ++i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          if (0<=k1)
+            yi1 += _a[j]*x[i3-_lag3[j]][i2-_lag2[j]][k1];
+        }
+        yi[i1] = yi1;
+      }
+      for (int i1=i1lo; i1<i1hi; ++i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j)
+          yi1 += _a[j]*x[i3-_lag3[j]][i2-_lag2[j]][i1-_lag1[j]];
+        yi[i1] = yi1;
+      }
+      for (int i1=i1hi; i1<n1; ++i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          if (k1<n1)
+            yi1 += _a[j]*x[i3-_lag3[j]][i2-_lag2[j]][k1];
+        }
+        yi[i1] = yi1;
+      }
+    }
+  }
+  private void applyTransposeTrace(
+    int i2, int i3, float[][][] x, float[][][] y) 
+  {
+    int n1 = y[0][0].length;
+    int n2 = y[0].length;
+    int n3 = y.length;
+    int i1lo = max(0,-_min1);
+    int i1hi = min(n1,n1-_max1);
+    float[] xi = x[i3][i2];
+    float[] yi = y[i3][i2];
+    if (n3-_max3<=i3 || i2<-_min2 || n2-_max2<=i2 || i1hi<i1lo) {
+      for (int i1=n1-1; i1>=0; --i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          int k2 = i2+_lag2[j];
+          int k3 = i3+_lag3[j];
+          if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3 && k3<n3)
+            yi1 += _a[j]*x[k3][k2][k1];
+        }
+        yi[i1] = yi1;
+      }
+    } else {
+      for (int i1=n1-1; i1>=i1hi; --i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          if (k1<n1)
+            yi1 += _a[j]*x[i3+_lag3[j]][i2+_lag2[j]][k1];
+        }
+        yi[i1] = yi1;
+      }
+      for (int i1=i1hi-1; i1>=i1lo; --i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j)
+          yi1 += _a[j]*x[i3+_lag3[j]][i2+_lag2[j]][i1+_lag1[j]];
+        yi[i1] = yi1;
+      }
+      for (int i1=i1lo-1; i1>=0; --i1) {
+        float yi1 = _a0*xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          if (0<=k1)
+            yi1 += _a[j]*x[i3+_lag3[j]][i2+_lag2[j]][k1];
+        }
+        yi[i1] = yi1;
+      }
+    }
+  }
+  private void applyInverseTrace(
+    int i2, int i3, float[][][] x, float[][][] y) 
+  {
+    int n1 = y[0][0].length;
+    int n2 = y[0].length;
+    int n3 = y.length;
+    int i1lo = max(0,_max1);
+    int i1hi = min(n1,n1+_min1);
+    float[] xi = x[i3][i2];
+    float[] yi = y[i3][i2];
+    if (i3<_max3 || i2<_max2 || n2+_min2<=i2 || i1hi<i1lo) {
+      for (int i1=0; i1<n1; ++i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          int k2 = i2-_lag2[j];
+          int k3 = i3-_lag3[j];
+          if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3 && k3<n3)
+            yi1 -= _a[j]*y[k3][k2][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+    } else {
+      for (int i1=0; i1<i1lo; ++i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          if (0<=k1)
+            yi1 -= _a[j]*y[i3-_lag3[j]][i2-_lag2[j]][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+      for (int i1=i1lo; i1<i1hi; ++i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j)
+          yi1 -= _a[j]*y[i3-_lag3[j]][i2-_lag2[j]][i1-_lag1[j]];
+        yi[i1] = _a0i*yi1;
+      }
+      for (int i1=i1hi; i1<n1; ++i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1-_lag1[j];
+          if (k1<n1)
+            yi1 -= _a[j]*y[i3-_lag3[j]][i2-_lag2[j]][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+    }
+  }
+  private void applyInverseTransposeTrace(
+    int i2, int i3, float[][][] x, float[][][] y) 
+  {
+    int n1 = y[0][0].length;
+    int n2 = y[0].length;
+    int n3 = y.length;
+    int i1lo = max(0,-_min1);
+    int i1hi = min(n1,n1-_max1);
+    float[] xi = x[i3][i2];
+    float[] yi = y[i3][i2];
+    if (n3-_max3<=i3 || i2<-_min2 || n2-_max2<=i2 || i1hi<i1lo) {
+      for (int i1=n1-1; i1>=0; --i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          int k2 = i2+_lag2[j];
+          int k3 = i3+_lag3[j];
+          if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3 && k3<n3)
+            yi1 -= _a[j]*y[k3][k2][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+    } else {
+      for (int i1=n1-1; i1>=i1hi; --i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          if (k1<n1)
+            yi1 -= _a[j]*y[i3+_lag3[j]][i2+_lag2[j]][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+      for (int i1=i1hi-1; i1>=i1lo; --i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j)
+          yi1 -= _a[j]*y[i3+_lag3[j]][i2+_lag2[j]][i1+_lag1[j]];
+        yi[i1] = _a0i*yi1;
+      }
+      for (int i1=i1lo-1; i1>=0; --i1) {
+        float yi1 = xi[i1];
+        for (int j=1; j<_m; ++j) {
+          int k1 = i1+_lag1[j];
+          if (0<=k1)
+            yi1 -= _a[j]*y[i3+_lag3[j]][i2+_lag2[j]][k1];
+        }
+        yi[i1] = _a0i*yi1;
+      }
+    }
+  }
+
   private static float[] impulse(int nlag) {
     float[] a = new float[nlag];
     a[0] = 1.0f;
@@ -22,6 +22,10 @@ import edu.mines.jtk.util.Check;
  * of mutually prime factors from the set {2,3,4,5,7,8,9,11,13,16}. This
  * restriction implies that n cannot exceed 720720 = 5*7*9*11*13*16.
  * <p>
+ * Power-of-two FFT lengths up to 1048576 are also valid. Transforms for
+ * those lengths that are not composed of mutually prime factors (those
+ * greater than 16) are computed by the radix-8 FFT in {@link Pow2cc}.
+ * <p>
  * References: 
  * <ul><li>
  * Temperton, C., 1985, Implementation of a self-sorting in-place prime 
@@ -42,7 +46,7 @@ class Pfacc {
    * @return true, if valid; false, otherwise.
    */
   static boolean nfftValid(int nfft) {
-    return binarySearch(_ntable,nfft)>=0;
+    return binarySearch(_ntable,nfft)>=0 || Pow2cc.nfftValid(nfft);
   }
 
   /**
@@ -58,12 +62,15 @@ class Pfacc {
     Check.argument(n<=720720,"n does not exceed 720720");
     int itable = binarySearch(_ntable,n);
     if (itable<0) itable = -(itable+1);
-    return _ntable[itable];
+    return min(_ntable[itable],nfftPow2(n));
   }
 
   /**
    * Returns an FFT length optimized for speed. The FFT length will be the 
    * fastest valid length that is not less than the specified length n.
+   * Candidate lengths, both prime-factor and power-of-two lengths less 
+   * than twice the smallest valid length, are compared by their measured
+   * costs.
    * @param n the lower bound on FFT length.
    * @return the FFT length.
    * @exception IllegalArgumentException if the specified length n exceeds
@@ -75,17 +82,45 @@ class Pfacc {
     int ifast = binarySearch(_ntable,n);
     if (ifast<0) ifast = -(ifast+1);
     int nfast = _ntable[ifast];
-    int nstop = 2*nfast;
     double cfast = _ctable[ifast];
+    int npow2 = nfftPow2(n);
+    if (npow2<nfast) {
+      nfast = npow2;
+      cfast = cost2(npow2);
+    }
+    int nstop = 2*nfast;
     for (int i=ifast+1; i<NTABLE && _ntable[i]<nstop; ++i) {
       if (_ctable[i]<cfast) {
         cfast = _ctable[i];
         nfast = _ntable[i];
       }
     }
+    for (int m=npow2; m<nstop; m*=2) {
+      if (cost2(m)<cfast) {
+        cfast = cost2(m);
+        nfast = m;
+      }
+    }
     return nfast;
   }
 
+  /**
+   * Returns the plan for prime-factor FFTs of the specified length. 
+   * For each mutually prime factor of nfft, from largest to smallest, 
+   * the plan contains four integers: the factor, nfft divided by that 
+   * factor, the rotation factor mu for a positive sign of the exponent, 
+   * and the stride (in complex numbers) between elements to transform.
+   * <p>
+   * Plans for all valid FFT lengths are computed only once, and are 
+   * never modified, so that they may be shared by multiple threads.
+   * @param nfft the FFT length.
+   * @return array of factors, lengths, rotation factors, and strides.
+   */
+  static int[] plan(int nfft) {
+    int itable = binarySearch(_ntable,nfft);
+    return (itable>=0)?_ptable[itable]:makePlan(nfft);
+  }
+
   /**
    * Prime-factor complex-to-complex FFT for 1-D arrays.
    * @param sign the sign of the exponent in the Fourier transform.
@@ -93,37 +128,42 @@ class Pfacc {
    * @param z array[2*nfft] of nfft packed complex numbers.
    */
   static void transform(int sign, int nfft, float[] z) {
+    transform(sign,nfft,z,0);
+  }
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
+  /**
+   * Prime-factor complex-to-complex FFT for 1-D arrays, with offset.
+   * Transforms nfft packed complex numbers that begin at array index jz.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param nfft the FFT length.
+   * @param z array[jz+2*nfft] of nfft packed complex numbers.
+   * @param jz the index of the first float in z to transform.
+   */
+  static void transform(int sign, int nfft, float[] z, int jz) {
 
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
+    // Power-of-two lengths not composed of mutually prime factors.
+    if (nfft>16 && Pow2cc.nfftValid(nfft)) {
+      Pow2cc.transform(sign,nfft,z,jz);
+      return;
+    }
 
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
+    // Loop over mutually prime factors of n, from largest to smallest.
+    int[] plan = plan(nfft);
+    for (int jplan=0; jplan<plan.length; jplan+=NPLAN) {
 
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
+      // The current factor, n divided by that factor (m), rotation 
+      // factor mu, and stride mm, all precomputed in the plan.
+      int ifac = plan[jplan  ];
+      int m    = plan[jplan+1];
+      int mu   = plan[jplan+2];
+      int mm   = plan[jplan+3];
       if (sign<0)
         mu = ifac-mu;
 
       // Array stride, bound, and indices.
       int jinc = 2*mm;
       int jmax = 2*nfft;
-      int j0 = 0;
+      int j0 = jz;
       int j1 = j0+jinc;
 
       // Factor 2.
@@ -131,68 +171,68 @@ class Pfacc {
         pfa2(z,m,j0,j1);
         continue;
       }
-      int j2 = (j1+jinc)%jmax;
+      int j2 = jz+(j1-jz+jinc)%jmax;
 
       // Factor 3.
       if (ifac==3) {
         pfa3(z,mu,m,j0,j1,j2);
         continue;
       }
-      int j3 = (j2+jinc)%jmax;
+      int j3 = jz+(j2-jz+jinc)%jmax;
 
       // Factor 4.
       if (ifac==4) {
         pfa4(z,mu,m,j0,j1,j2,j3);
         continue;
       }
-      int j4 = (j3+jinc)%jmax;
+      int j4 = jz+(j3-jz+jinc)%jmax;
 
       // Factor 5.
       if (ifac==5) {
         pfa5(z,mu,m,j0,j1,j2,j3,j4);
         continue;
       }
-      int j5 = (j4+jinc)%jmax;
-      int j6 = (j5+jinc)%jmax;
+      int j5 = jz+(j4-jz+jinc)%jmax;
+      int j6 = jz+(j5-jz+jinc)%jmax;
 
       // Factor 7.
       if (ifac==7) {
         pfa7(z,mu,m,j0,j1,j2,j3,j4,j5,j6);
         continue;
       }
-      int j7 = (j6+jinc)%jmax;
+      int j7 = jz+(j6-jz+jinc)%jmax;
 
       // Factor 8.
       if (ifac==8) {
         pfa8(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7);
         continue;
       }
-      int j8 = (j7+jinc)%jmax;
+      int j8 = jz+(j7-jz+jinc)%jmax;
 
       // Factor 9.
       if (ifac==9) {
         pfa9(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8);
         continue;
       }
-      int j9 = (j8+jinc)%jmax;
-      int j10 = (j9+jinc)%jmax;
+      int j9 = jz+(j8-jz+jinc)%jmax;
+      int j10 = jz+(j9-jz+jinc)%jmax;
 
       // Factor 11.
       if (ifac==11) {
         pfa11(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10);
         continue;
       }
-      int j11 = (j10+jinc)%jmax;
-      int j12 = (j11+jinc)%jmax;
+      int j11 = jz+(j10-jz+jinc)%jmax;
+      int j12 = jz+(j11-jz+jinc)%jmax;
 
       // Factor 13.
       if (ifac==13) {
         pfa13(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12);
         continue;
       }
-      int j13 = (j12+jinc)%jmax;
-      int j14 = (j13+jinc)%jmax;
-      int j15 = (j14+jinc)%jmax;
+      int j13 = jz+(j12-jz+jinc)%jmax;
+      int j14 = jz+(j13-jz+jinc)%jmax;
+      int j15 = jz+(j14-jz+jinc)%jmax;
 
       // Factor 16.
       if (ifac==16) {
@@ -1353,29 +1393,22 @@ class Pfacc {
    */
   static void transform2a(int sign, int n1, int nfft, float[][] z) {
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
-
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
+    // Power-of-two lengths not composed of mutually prime factors.
+    if (nfft>16 && Pow2cc.nfftValid(nfft)) {
+      Pow2cc.transform2a(sign,n1,nfft,z);
+      return;
+    }
 
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
+    // Loop over mutually prime factors of n, from largest to smallest.
+    int[] plan = plan(nfft);
+    for (int jplan=0; jplan<plan.length; jplan+=NPLAN) {
 
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
+      // The current factor, n divided by that factor (m), rotation 
+      // factor mu, and stride mm, all precomputed in the plan.
+      int ifac = plan[jplan  ];
+      int m    = plan[jplan+1];
+      int mu   = plan[jplan+2];
+      int mm   = plan[jplan+3];
       if (sign<0)
         mu = ifac-mu;
 
@@ -2720,29 +2753,22 @@ class Pfacc {
    */
   static void transform2b(int sign, int n1, int nfft, float[][] z) {
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
+    // Power-of-two lengths not composed of mutually prime factors.
+    if (nfft>16 && Pow2cc.nfftValid(nfft)) {
+      Pow2cc.transform2b(sign,n1,nfft,z);
+      return;
+    }
 
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
+    // Loop over mutually prime factors of n, from largest to smallest.
+    int[] plan = plan(nfft);
+    for (int jplan=0; jplan<plan.length; jplan+=NPLAN) {
 
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
-
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
+      // The current factor, n divided by that factor (m), rotation 
+      // factor mu, and stride mm, all precomputed in the plan.
+      int ifac = plan[jplan  ];
+      int m    = plan[jplan+1];
+      int mu   = plan[jplan+2];
+      int mm   = plan[jplan+3];
       if (sign<0)
         mu = ifac-mu;
 
@@ -4291,4 +4317,73 @@ class Pfacc {
     0.02201098901099, 0.02425301204819, 0.02849295774648, 0.03531578947368,
     0.04575000000000, 0.06190909090909, 0.10542105263158, 0.24033333333333,
   };
+
+  // FFT costs for power-of-two lengths 32, 64, ..., 1048576, which are not
+  // in the table above. These times were measured as for those above, but
+  // on a different processor, for the FFT in Pow2cc, and then scaled by the
+  // median ratio of costs above to times measured at the same time for 
+  // the prime-factor FFT, so that all costs may be compared. 
+  private static final double _c2table[] = {
+    0.00000698392870, 0.00000868334722, 0.00001576194973, 0.00003097761030,
+    0.00006428007790, 0.00016580560753, 0.00033774082437, 0.00065724517870,
+    0.00158152356679, 0.00337242147588, 0.00736057878446, 0.01555760754213,
+    0.03318371431312, 0.07038938688113, 0.17905757149053, 0.35477126523703,
+  };
+
+  // Returns the smallest power of two not less than n.
+  private static int nfftPow2(int n) {
+    return (n<=1)?1:Integer.highestOneBit(n-1)<<1;
+  }
+
+  // Returns the cost of an FFT with power-of-two length nfft.
+  private static double cost2(int nfft) {
+    if (nfft<=16)
+      return _ctable[binarySearch(_ntable,nfft)];
+    return _c2table[Integer.numberOfTrailingZeros(nfft)-5];
+  }
+
+  // Plans, one for each FFT length above. Each plan contains NPLAN 
+  // integers for each mutually prime factor of its FFT length.
+  private static final int NPLAN = 4;
+  private static final int[][] _ptable = makePlans();
+
+  private static int[][] makePlans() {
+    int[][] ptable = new int[NTABLE][];
+    for (int itable=0; itable<NTABLE; ++itable)
+      ptable[itable] = makePlan(_ntable[itable]);
+    return ptable;
+  }
+
+  private static int[] makePlan(int nfft) {
+
+    // Mutually prime factors of n, from largest to smallest.
+    int nplan = 0;
+    int[] plan = new int[NFAC*NPLAN];
+    int nleft = nfft;
+    for (int jfac=0; jfac<NFAC; ++jfac) {
+
+      // Skip the current factor, if not a mutually prime factor of n.
+      int ifac = _kfac[jfac];
+      int ndiv = nleft/ifac;
+      if (ndiv*ifac!=nleft)
+        continue;
+
+      // What is left of n (nleft), and n divided by the current factor (m).
+      nleft = ndiv;
+      int m = nfft/ifac;
+
+      // Rotation factor mu and stride mm.
+      int mu = 0;
+      int mm = 0;
+      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
+        mu = kfac;
+        mm = kfac*m;
+      }
+      plan[nplan++] = ifac;
+      plan[nplan++] = m;
+      plan[nplan++] = mu;
+      plan[nplan++] = mm;
+    }
+    return copy(nplan,plan);
+  }
 }
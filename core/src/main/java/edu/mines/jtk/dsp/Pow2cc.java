@@ -0,0 +1,816 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+/**
+ * Power-of-two complex-to-complex FFT. The FFT length nfft must be a
+ * power of two that does not exceed 1048576. This in-place decimation-
+ * in-time FFT first permutes its input into bit-reversed order, and then
+ * combines transforms in radix-8 passes. When log2(nfft) is not a
+ * multiple of three, the first pass is a radix-2 or radix-4 pass.
+ * Twiddle factors for each length are computed once in double precision
+ * and cached.
+ * <p>
+ * This FFT complements the prime-factor FFT in {@link Pfacc}, which
+ * cannot transform power-of-two lengths greater than 16. Methods here
+ * have the same arguments and compute the same transforms as those of
+ * that class.
+ * @version 2026.10.16
+ */
+class Pow2cc {
+
+  /**
+   * The maximum FFT length supported by this implementation.
+   */
+  static final int NFFT_MAX = 1048576;
+
+  /**
+   * Determines whether the specified FFT length is valid.
+   * @param nfft the FFT length.
+   * @return true, if valid; false, otherwise.
+   */
+  static boolean nfftValid(int nfft) {
+    return 0<nfft && nfft<=NFFT_MAX && (nfft&(nfft-1))==0;
+  }
+
+  /**
+   * Power-of-two complex-to-complex FFT for 1-D arrays, with offset.
+   * Transforms nfft packed complex numbers that begin at array index jz.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param nfft the FFT length.
+   * @param z array[jz+2*nfft] of nfft packed complex numbers.
+   * @param jz the index of the first float in z to transform.
+   */
+  static void transform(int sign, int nfft, float[] z, int jz) {
+    if (nfft<2)
+      return;
+    float s = (sign<0)?-1.0f:1.0f;
+    float[] w = twiddles(sign,nfft);
+    reorder(nfft,z,jz);
+    int l = first(nfft);
+    int jw = 0;
+    if (l==2) {
+      pass2(nfft,z,jz);
+    } else if (l==4) {
+      pass4(s,nfft,z,jz);
+    } else {
+      pass8(s,nfft,z,jz);
+      l = 8;
+      jw = 14;
+    }
+    for (; l<nfft; jw+=14*l,l*=8)
+      pass8(s,nfft,l,w,jw,z,jz);
+  }
+
+  /**
+   * Power-of-two complex-to-complex multiple FFT. Performs multiple
+   * transforms across the 2nd (slowest) dimension of a 2-D array.
+   * In this version, z[0:nfft-1][0,2,4,...] contains the real parts,
+   * and z[0:nfft-1][1,3,5,...] contains the imaginary parts.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param n1 the number of transforms (fast dimension).
+   * @param nfft the FFT length (slow dimension).
+   * @param z array[nfft][2*n1] of n1*nfft packed complex numbers.
+   */
+  static void transform2a(int sign, int n1, int nfft, float[][] z) {
+    if (nfft<2)
+      return;
+    float s = (sign<0)?-1.0f:1.0f;
+    float[] w = twiddles(sign,nfft);
+    reorder2a(n1,nfft,z);
+    int l = first(nfft);
+    if (l==2) {
+      pass2a(n1,nfft,z);
+    } else if (l==4) {
+      pass4a(s,n1,nfft,z);
+    } else {
+      l = 1;
+    }
+    for (int jw=0; l<nfft; jw+=14*l,l*=8)
+      pass8a(s,n1,nfft,l,w,jw,z);
+  }
+
+  /**
+   * Power-of-two complex-to-complex multiple FFT. Performs multiple
+   * transforms across the 2nd (slowest) dimension of a 2-D array.
+   * In this version, z[0,2,4,...]][0:n1-1] contains the real parts,
+   * an z[1,3,5,...][0:n1-1] contains the imaginary parts.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param n1 the number of transforms (fast dimension).
+   * @param nfft the FFT length (slow dimension).
+   * @param z array[nfft*2][n1] of nfft*n1 complex numbers.
+   */
+  static void transform2b(int sign, int n1, int nfft, float[][] z) {
+    if (nfft<2)
+      return;
+    float s = (sign<0)?-1.0f:1.0f;
+    float[] w = twiddles(sign,nfft);
+    reorder2b(n1,nfft,z);
+    int l = first(nfft);
+    if (l==2) {
+      pass2b(n1,nfft,z);
+    } else if (l==4) {
+      pass4b(s,n1,nfft,z);
+    } else {
+      l = 1;
+    }
+    for (int jw=0; l<nfft; jw+=14*l,l*=8)
+      pass8b(s,n1,nfft,l,w,jw,z);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Twiddle factors, cached by FFT length, shared by all FFTs. For each
+  // length, the cache holds one table for sign = -1 and one for sign = 1.
+  // The tables are never modified, so they may be used concurrently by
+  // many threads.
+  private static final ConcurrentHashMap<Integer,float[][]> _twiddles =
+    new ConcurrentHashMap<Integer,float[][]>();
+
+  private static float[] twiddles(int sign, int nfft) {
+    float[][] w = _twiddles.get(nfft);
+    if (w==null) {
+      w = new float[][]{makeTwiddles(-1,nfft),makeTwiddles(1,nfft)};
+      float[][] v = _twiddles.putIfAbsent(nfft,w);
+      if (v!=null)
+        w = v;
+    }
+    return (sign<0)?w[0]:w[1];
+  }
+
+  /**
+   * Makes a table of twiddle factors for all radix-8 passes. For each
+   * pass that combines eight transforms of length l, the table contains,
+   * for k = 0, 1, ..., l-1, the real and imaginary parts of w^(j*k) for
+   * j = 1, 2, ..., 7, where w = exp(sign*i*2*pi/(8*l)). The tables for 
+   * these passes are contiguous, in the order in which passes are done.
+   */
+  private static float[] makeTwiddles(int sign, int nfft) {
+    int nw = 0;
+    int lw = first(nfft);
+    if (lw==8)
+      lw = 1;
+    for (int l=lw; l<nfft; l*=8)
+      nw += 14*l;
+    float[] w = new float[nw];
+    for (int l=lw,jw=0; l<nfft; l*=8) {
+      double theta = sign*2.0*PI/(8*l);
+      for (int k=0; k<l; ++k) {
+        for (int j=1; j<8; ++j,jw+=2) {
+          w[jw  ] = (float)cos(theta*j*k);
+          w[jw+1] = (float)sin(theta*j*k);
+        }
+      }
+    }
+    return w;
+  }
+
+  // Returns the length 2, 4 or 8 of transforms computed by the first
+  // pass, so that all subsequent passes may be radix-8 passes.
+  private static int first(int nfft) {
+    return 1<<(1+(Integer.numberOfTrailingZeros(nfft)+2)%3);
+  }
+
+  // Permutes complex numbers into bit-reversed order.
+  private static void reorder(int nfft, float[] z, int jz) {
+    int shift = 1+Integer.numberOfLeadingZeros(nfft);
+    for (int i=1; i<nfft; ++i) {
+      int j = Integer.reverse(i)>>>shift;
+      if (i<j) {
+        int ji = jz+2*i;
+        int jj = jz+2*j;
+        float zr = z[ji  ];
+        float zi = z[ji+1];
+        z[ji  ] = z[jj  ];
+        z[ji+1] = z[jj+1];
+        z[jj  ] = zr;
+        z[jj+1] = zi;
+      }
+    }
+  }
+  private static void reorder2a(int n1, int nfft, float[][] z) {
+    int shift = 1+Integer.numberOfLeadingZeros(nfft);
+    for (int i=1; i<nfft; ++i) {
+      int j = Integer.reverse(i)>>>shift;
+      if (i<j)
+        swap(2*n1,z[i],z[j]);
+    }
+  }
+  private static void reorder2b(int n1, int nfft, float[][] z) {
+    int shift = 1+Integer.numberOfLeadingZeros(nfft);
+    for (int i=1; i<nfft; ++i) {
+      int j = Integer.reverse(i)>>>shift;
+      if (i<j) {
+        swap(n1,z[2*i  ],z[2*j  ]);
+        swap(n1,z[2*i+1],z[2*j+1]);
+      }
+    }
+  }
+  private static void swap(int n, float[] x, float[] y) {
+    for (int i=0; i<n; ++i) {
+      float t = x[i];
+      x[i] = y[i];
+      y[i] = t;
+    }
+  }
+
+  // Radix-2 passes that combine pairs of transforms of length 1.
+  private static void pass2(int nfft, float[] z, int jz) {
+    for (int j0=jz,jstop=jz+2*nfft; j0<jstop; j0+=4) {
+      int j1 = j0+2;
+      float z0r = z[j0  ];
+      float z0i = z[j0+1];
+      float z1r = z[j1  ];
+      float z1i = z[j1+1];
+      z[j0  ] = z0r+z1r;
+      z[j0+1] = z0i+z1i;
+      z[j1  ] = z0r-z1r;
+      z[j1+1] = z0i-z1i;
+    }
+  }
+  private static void pass2a(int n1, int nfft, float[][] z) {
+    int m1 = 2*n1;
+    for (int j0=0; j0<nfft; j0+=2) {
+      float[] z0 = z[j0  ];
+      float[] z1 = z[j0+1];
+      for (int i1=0; i1<m1; ++i1) {
+        float z0i = z0[i1];
+        float z1i = z1[i1];
+        z0[i1] = z0i+z1i;
+        z1[i1] = z0i-z1i;
+      }
+    }
+  }
+  private static void pass2b(int n1, int nfft, float[][] z) {
+    for (int j0=0; j0<2*nfft; j0+=4) {
+      for (int j=j0; j<j0+2; ++j) {
+        float[] z0 = z[j  ];
+        float[] z1 = z[j+2];
+        for (int i1=0; i1<n1; ++i1) {
+          float z0i = z0[i1];
+          float z1i = z1[i1];
+          z0[i1] = z0i+z1i;
+          z1[i1] = z0i-z1i;
+        }
+      }
+    }
+  }
+
+  // Radix-4 passes that combine four transforms of length 1. In bit-
+  // reversed order, the four transforms in each block are those of input
+  // samples with indices that are 0, 2, 1 and 3 modulo 4. For sign s, the
+  // factor s*i is the 4th root of unity used in the transform.
+  private static void pass4(float s, int nfft, float[] z, int jz) {
+    for (int j0=jz,jstop=jz+2*nfft; j0<jstop; j0+=8) {
+      float ar = z[j0  ];
+      float ai = z[j0+1];
+      float br = z[j0+2];
+      float bi = z[j0+3];
+      float cr = z[j0+4];
+      float ci = z[j0+5];
+      float dr = z[j0+6];
+      float di = z[j0+7];
+      float t0r = ar+br;
+      float t0i = ai+bi;
+      float t1r = ar-br;
+      float t1i = ai-bi;
+      float t2r = cr+dr;
+      float t2i = ci+di;
+      float t3r = -s*(ci-di);
+      float t3i =  s*(cr-dr);
+      z[j0  ] = t0r+t2r;
+      z[j0+1] = t0i+t2i;
+      z[j0+2] = t1r+t3r;
+      z[j0+3] = t1i+t3i;
+      z[j0+4] = t0r-t2r;
+      z[j0+5] = t0i-t2i;
+      z[j0+6] = t1r-t3r;
+      z[j0+7] = t1i-t3i;
+    }
+  }
+  private static void pass4a(float s, int n1, int nfft, float[][] z) {
+    int m1 = 2*n1;
+    for (int j0=0; j0<nfft; j0+=4) {
+      float[] z0 = z[j0  ];
+      float[] z1 = z[j0+1];
+      float[] z2 = z[j0+2];
+      float[] z3 = z[j0+3];
+      for (int i1=0; i1<m1; i1+=2) {
+        float ar = z0[i1  ];
+        float ai = z0[i1+1];
+        float br = z1[i1  ];
+        float bi = z1[i1+1];
+        float cr = z2[i1  ];
+        float ci = z2[i1+1];
+        float dr = z3[i1  ];
+        float di = z3[i1+1];
+        float t0r = ar+br;
+        float t0i = ai+bi;
+        float t1r = ar-br;
+        float t1i = ai-bi;
+        float t2r = cr+dr;
+        float t2i = ci+di;
+        float t3r = -s*(ci-di);
+        float t3i =  s*(cr-dr);
+        z0[i1  ] = t0r+t2r;
+        z0[i1+1] = t0i+t2i;
+        z1[i1  ] = t1r+t3r;
+        z1[i1+1] = t1i+t3i;
+        z2[i1  ] = t0r-t2r;
+        z2[i1+1] = t0i-t2i;
+        z3[i1  ] = t1r-t3r;
+        z3[i1+1] = t1i-t3i;
+      }
+    }
+  }
+  private static void pass4b(float s, int n1, int nfft, float[][] z) {
+    for (int j0=0; j0<2*nfft; j0+=8) {
+      float[] z0r = z[j0  ], z0i = z[j0+1];
+      float[] z1r = z[j0+2], z1i = z[j0+3];
+      float[] z2r = z[j0+4], z2i = z[j0+5];
+      float[] z3r = z[j0+6], z3i = z[j0+7];
+      for (int i1=0; i1<n1; ++i1) {
+        float ar = z0r[i1];
+        float ai = z0i[i1];
+        float br = z1r[i1];
+        float bi = z1i[i1];
+        float cr = z2r[i1];
+        float ci = z2i[i1];
+        float dr = z3r[i1];
+        float di = z3i[i1];
+        float t0r = ar+br;
+        float t0i = ai+bi;
+        float t1r = ar-br;
+        float t1i = ai-bi;
+        float t2r = cr+dr;
+        float t2i = ci+di;
+        float t3r = -s*(ci-di);
+        float t3i =  s*(cr-dr);
+        z0r[i1] = t0r+t2r;
+        z0i[i1] = t0i+t2i;
+        z1r[i1] = t1r+t3r;
+        z1i[i1] = t1i+t3i;
+        z2r[i1] = t0r-t2r;
+        z2i[i1] = t0i-t2i;
+        z3r[i1] = t1r-t3r;
+        z3i[i1] = t1i-t3i;
+      }
+    }
+  }
+
+  // Radix-8 pass that combines eight transforms of length 1, for which
+  // all twiddle factors are one.
+  private static void pass8(float s, int nfft, float[] z, int jz) {
+    float r = 0.70710677f; // sqrt(0.5)
+    for (int j0=jz,jstop=jz+2*nfft; j0<jstop; j0+=16) {
+      float y0r = z[j0+ 0];
+      float y0i = z[j0+ 1];
+      float y4r = z[j0+ 2];
+      float y4i = z[j0+ 3];
+      float y2r = z[j0+ 4];
+      float y2i = z[j0+ 5];
+      float y6r = z[j0+ 6];
+      float y6i = z[j0+ 7];
+      float y1r = z[j0+ 8];
+      float y1i = z[j0+ 9];
+      float y5r = z[j0+10];
+      float y5i = z[j0+11];
+      float y3r = z[j0+12];
+      float y3i = z[j0+13];
+      float y7r = z[j0+14];
+      float y7i = z[j0+15];
+      float e0r = y0r+y4r;
+      float e0i = y0i+y4i;
+      float e1r = y0r-y4r;
+      float e1i = y0i-y4i;
+      float e2r = y2r+y6r;
+      float e2i = y2i+y6i;
+      float e3r = -s*(y2i-y6i);
+      float e3i =  s*(y2r-y6r);
+      float o0r = y1r+y5r;
+      float o0i = y1i+y5i;
+      float o1r = y1r-y5r;
+      float o1i = y1i-y5i;
+      float o2r = y3r+y7r;
+      float o2i = y3i+y7i;
+      float o3r = -s*(y3i-y7i);
+      float o3i =  s*(y3r-y7r);
+      float t0r = e0r+e2r;
+      float t0i = e0i+e2i;
+      float t1r = e1r+e3r;
+      float t1i = e1i+e3i;
+      float t2r = e0r-e2r;
+      float t2i = e0i-e2i;
+      float t3r = e1r-e3r;
+      float t3i = e1i-e3i;
+      float u0r = o0r+o2r;
+      float u0i = o0i+o2i;
+      float u1r = o1r+o3r;
+      float u1i = o1i+o3i;
+      float u2r = o0r-o2r;
+      float u2i = o0i-o2i;
+      float u3r = o1r-o3r;
+      float u3i = o1i-o3i;
+      float v1r =  r*(u1r-s*u1i);
+      float v1i =  r*(u1i+s*u1r);
+      float v2r = -s*u2i;
+      float v2i =  s*u2r;
+      float v3r = -r*(u3r+s*u3i);
+      float v3i =  r*(s*u3r-u3i);
+      z[j0+ 0] = t0r+u0r;
+      z[j0+ 1] = t0i+u0i;
+      z[j0+ 2] = t1r+v1r;
+      z[j0+ 3] = t1i+v1i;
+      z[j0+ 4] = t2r+v2r;
+      z[j0+ 5] = t2i+v2i;
+      z[j0+ 6] = t3r+v3r;
+      z[j0+ 7] = t3i+v3i;
+      z[j0+ 8] = t0r-u0r;
+      z[j0+ 9] = t0i-u0i;
+      z[j0+10] = t1r-v1r;
+      z[j0+11] = t1i-v1i;
+      z[j0+12] = t2r-v2r;
+      z[j0+13] = t2i-v2i;
+      z[j0+14] = t3r-v3r;
+      z[j0+15] = t3i-v3i;
+    }
+  }
+
+  // Radix-8 passes that combine eight transforms of length l, for all
+  // blocks of length 8*l. In bit-reversed order, the eight transforms
+  // in each block are those of input samples with indices that are 0, 4,
+  // 2, 6, 1, 5, 3 and 7 modulo 8. After multiplication by twiddle factors
+  // that begin at index jw in the table w, each radix-8 butterfly is two
+  // radix-4 butterflies followed by one radix-2 butterfly.
+  private static void pass8(
+    float s, int nfft, int l, float[] w, int jw, float[] z, int jz)
+  {
+    float r = 0.70710677f; // sqrt(0.5)
+    int jl = 2*l;
+    int jstop = jz+2*nfft;
+    for (int jb=jz; jb<jstop; jb+=8*jl) {
+      for (int k=0,kw=jw,j0=jb; k<l; ++k,kw+=14,j0+=2) {
+        float w1r = w[kw   ];
+        float w1i = w[kw+ 1];
+        float w2r = w[kw+ 2];
+        float w2i = w[kw+ 3];
+        float w3r = w[kw+ 4];
+        float w3i = w[kw+ 5];
+        float w4r = w[kw+ 6];
+        float w4i = w[kw+ 7];
+        float w5r = w[kw+ 8];
+        float w5i = w[kw+ 9];
+        float w6r = w[kw+10];
+        float w6i = w[kw+11];
+        float w7r = w[kw+12];
+        float w7i = w[kw+13];
+        int j1 = j0+jl;
+        int j2 = j1+jl;
+        int j3 = j2+jl;
+        int j4 = j3+jl;
+        int j5 = j4+jl;
+        int j6 = j5+jl;
+        int j7 = j6+jl;
+        float y0r = z[j0  ];
+        float y0i = z[j0+1];
+        float xr = z[j1  ];
+        float xi = z[j1+1];
+        float y4r = w4r*xr-w4i*xi;
+        float y4i = w4r*xi+w4i*xr;
+        xr = z[j2  ];
+        xi = z[j2+1];
+        float y2r = w2r*xr-w2i*xi;
+        float y2i = w2r*xi+w2i*xr;
+        xr = z[j3  ];
+        xi = z[j3+1];
+        float y6r = w6r*xr-w6i*xi;
+        float y6i = w6r*xi+w6i*xr;
+        xr = z[j4  ];
+        xi = z[j4+1];
+        float y1r = w1r*xr-w1i*xi;
+        float y1i = w1r*xi+w1i*xr;
+        xr = z[j5  ];
+        xi = z[j5+1];
+        float y5r = w5r*xr-w5i*xi;
+        float y5i = w5r*xi+w5i*xr;
+        xr = z[j6  ];
+        xi = z[j6+1];
+        float y3r = w3r*xr-w3i*xi;
+        float y3i = w3r*xi+w3i*xr;
+        xr = z[j7  ];
+        xi = z[j7+1];
+        float y7r = w7r*xr-w7i*xi;
+        float y7i = w7r*xi+w7i*xr;
+        float e0r = y0r+y4r;
+        float e0i = y0i+y4i;
+        float e1r = y0r-y4r;
+        float e1i = y0i-y4i;
+        float e2r = y2r+y6r;
+        float e2i = y2i+y6i;
+        float e3r = -s*(y2i-y6i);
+        float e3i =  s*(y2r-y6r);
+        float o0r = y1r+y5r;
+        float o0i = y1i+y5i;
+        float o1r = y1r-y5r;
+        float o1i = y1i-y5i;
+        float o2r = y3r+y7r;
+        float o2i = y3i+y7i;
+        float o3r = -s*(y3i-y7i);
+        float o3i =  s*(y3r-y7r);
+        float t0r = e0r+e2r;
+        float t0i = e0i+e2i;
+        float t1r = e1r+e3r;
+        float t1i = e1i+e3i;
+        float t2r = e0r-e2r;
+        float t2i = e0i-e2i;
+        float t3r = e1r-e3r;
+        float t3i = e1i-e3i;
+        float u0r = o0r+o2r;
+        float u0i = o0i+o2i;
+        float u1r = o1r+o3r;
+        float u1i = o1i+o3i;
+        float u2r = o0r-o2r;
+        float u2i = o0i-o2i;
+        float u3r = o1r-o3r;
+        float u3i = o1i-o3i;
+        float v1r =  r*(u1r-s*u1i);
+        float v1i =  r*(u1i+s*u1r);
+        float v2r = -s*u2i;
+        float v2i =  s*u2r;
+        float v3r = -r*(u3r+s*u3i);
+        float v3i =  r*(s*u3r-u3i);
+        z[j0  ] = t0r+u0r;
+        z[j0+1] = t0i+u0i;
+        z[j1  ] = t1r+v1r;
+        z[j1+1] = t1i+v1i;
+        z[j2  ] = t2r+v2r;
+        z[j2+1] = t2i+v2i;
+        z[j3  ] = t3r+v3r;
+        z[j3+1] = t3i+v3i;
+        z[j4  ] = t0r-u0r;
+        z[j4+1] = t0i-u0i;
+        z[j5  ] = t1r-v1r;
+        z[j5+1] = t1i-v1i;
+        z[j6  ] = t2r-v2r;
+        z[j6+1] = t2i-v2i;
+        z[j7  ] = t3r-v3r;
+        z[j7+1] = t3i-v3i;
+      }
+    }
+  }
+  private static void pass8a(
+    float s, int n1, int nfft, int l, float[] w, int jw, float[][] z)
+  {
+    float r = 0.70710677f; // sqrt(0.5)
+    int m1 = 2*n1;
+    for (int jb=0; jb<nfft; jb+=8*l) {
+      for (int k=0,kw=jw,j0=jb; k<l; ++k,kw+=14,++j0) {
+        float w1r = w[kw   ];
+        float w1i = w[kw+ 1];
+        float w2r = w[kw+ 2];
+        float w2i = w[kw+ 3];
+        float w3r = w[kw+ 4];
+        float w3i = w[kw+ 5];
+        float w4r = w[kw+ 6];
+        float w4i = w[kw+ 7];
+        float w5r = w[kw+ 8];
+        float w5i = w[kw+ 9];
+        float w6r = w[kw+10];
+        float w6i = w[kw+11];
+        float w7r = w[kw+12];
+        float w7i = w[kw+13];
+        float[] z0 = z[j0    ];
+        float[] z1 = z[j0+  l];
+        float[] z2 = z[j0+2*l];
+        float[] z3 = z[j0+3*l];
+        float[] z4 = z[j0+4*l];
+        float[] z5 = z[j0+5*l];
+        float[] z6 = z[j0+6*l];
+        float[] z7 = z[j0+7*l];
+        for (int i1=0; i1<m1; i1+=2) {
+          float y0r = z0[i1  ];
+          float y0i = z0[i1+1];
+          float xr = z1[i1  ];
+          float xi = z1[i1+1];
+          float y4r = w4r*xr-w4i*xi;
+          float y4i = w4r*xi+w4i*xr;
+          xr = z2[i1  ];
+          xi = z2[i1+1];
+          float y2r = w2r*xr-w2i*xi;
+          float y2i = w2r*xi+w2i*xr;
+          xr = z3[i1  ];
+          xi = z3[i1+1];
+          float y6r = w6r*xr-w6i*xi;
+          float y6i = w6r*xi+w6i*xr;
+          xr = z4[i1  ];
+          xi = z4[i1+1];
+          float y1r = w1r*xr-w1i*xi;
+          float y1i = w1r*xi+w1i*xr;
+          xr = z5[i1  ];
+          xi = z5[i1+1];
+          float y5r = w5r*xr-w5i*xi;
+          float y5i = w5r*xi+w5i*xr;
+          xr = z6[i1  ];
+          xi = z6[i1+1];
+          float y3r = w3r*xr-w3i*xi;
+          float y3i = w3r*xi+w3i*xr;
+          xr = z7[i1  ];
+          xi = z7[i1+1];
+          float y7r = w7r*xr-w7i*xi;
+          float y7i = w7r*xi+w7i*xr;
+          float e0r = y0r+y4r;
+          float e0i = y0i+y4i;
+          float e1r = y0r-y4r;
+          float e1i = y0i-y4i;
+          float e2r = y2r+y6r;
+          float e2i = y2i+y6i;
+          float e3r = -s*(y2i-y6i);
+          float e3i =  s*(y2r-y6r);
+          float o0r = y1r+y5r;
+          float o0i = y1i+y5i;
+          float o1r = y1r-y5r;
+          float o1i = y1i-y5i;
+          float o2r = y3r+y7r;
+          float o2i = y3i+y7i;
+          float o3r = -s*(y3i-y7i);
+          float o3i =  s*(y3r-y7r);
+          float t0r = e0r+e2r;
+          float t0i = e0i+e2i;
+          float t1r = e1r+e3r;
+          float t1i = e1i+e3i;
+          float t2r = e0r-e2r;
+          float t2i = e0i-e2i;
+          float t3r = e1r-e3r;
+          float t3i = e1i-e3i;
+          float u0r = o0r+o2r;
+          float u0i = o0i+o2i;
+          float u1r = o1r+o3r;
+          float u1i = o1i+o3i;
+          float u2r = o0r-o2r;
+          float u2i = o0i-o2i;
+          float u3r = o1r-o3r;
+          float u3i = o1i-o3i;
+          float v1r =  r*(u1r-s*u1i);
+          float v1i =  r*(u1i+s*u1r);
+          float v2r = -s*u2i;
+          float v2i =  s*u2r;
+          float v3r = -r*(u3r+s*u3i);
+          float v3i =  r*(s*u3r-u3i);
+          z0[i1  ] = t0r+u0r;
+          z0[i1+1] = t0i+u0i;
+          z1[i1  ] = t1r+v1r;
+          z1[i1+1] = t1i+v1i;
+          z2[i1  ] = t2r+v2r;
+          z2[i1+1] = t2i+v2i;
+          z3[i1  ] = t3r+v3r;
+          z3[i1+1] = t3i+v3i;
+          z4[i1  ] = t0r-u0r;
+          z4[i1+1] = t0i-u0i;
+          z5[i1  ] = t1r-v1r;
+          z5[i1+1] = t1i-v1i;
+          z6[i1  ] = t2r-v2r;
+          z6[i1+1] = t2i-v2i;
+          z7[i1  ] = t3r-v3r;
+          z7[i1+1] = t3i-v3i;
+        }
+      }
+    }
+  }
+  private static void pass8b(
+    float s, int n1, int nfft, int l, float[] w, int jw, float[][] z)
+  {
+    float r = 0.70710677f; // sqrt(0.5)
+    int jl = 2*l;
+    for (int jb=0; jb<2*nfft; jb+=8*jl) {
+      for (int k=0,kw=jw,j0=jb; k<l; ++k,kw+=14,j0+=2) {
+        float w1r = w[kw   ];
+        float w1i = w[kw+ 1];
+        float w2r = w[kw+ 2];
+        float w2i = w[kw+ 3];
+        float w3r = w[kw+ 4];
+        float w3i = w[kw+ 5];
+        float w4r = w[kw+ 6];
+        float w4i = w[kw+ 7];
+        float w5r = w[kw+ 8];
+        float w5i = w[kw+ 9];
+        float w6r = w[kw+10];
+        float w6i = w[kw+11];
+        float w7r = w[kw+12];
+        float w7i = w[kw+13];
+        float[] z0r = z[j0     ], z0i = z[j0     +1];
+        float[] z1r = z[j0+  jl], z1i = z[j0+  jl+1];
+        float[] z2r = z[j0+2*jl], z2i = z[j0+2*jl+1];
+        float[] z3r = z[j0+3*jl], z3i = z[j0+3*jl+1];
+        float[] z4r = z[j0+4*jl], z4i = z[j0+4*jl+1];
+        float[] z5r = z[j0+5*jl], z5i = z[j0+5*jl+1];
+        float[] z6r = z[j0+6*jl], z6i = z[j0+6*jl+1];
+        float[] z7r = z[j0+7*jl], z7i = z[j0+7*jl+1];
+        for (int i1=0; i1<n1; ++i1) {
+          float y0r = z0r[i1];
+          float y0i = z0i[i1];
+          float xr = z1r[i1];
+          float xi = z1i[i1];
+          float y4r = w4r*xr-w4i*xi;
+          float y4i = w4r*xi+w4i*xr;
+          xr = z2r[i1];
+          xi = z2i[i1];
+          float y2r = w2r*xr-w2i*xi;
+          float y2i = w2r*xi+w2i*xr;
+          xr = z3r[i1];
+          xi = z3i[i1];
+          float y6r = w6r*xr-w6i*xi;
+          float y6i = w6r*xi+w6i*xr;
+          xr = z4r[i1];
+          xi = z4i[i1];
+          float y1r = w1r*xr-w1i*xi;
+          float y1i = w1r*xi+w1i*xr;
+          xr = z5r[i1];
+          xi = z5i[i1];
+          float y5r = w5r*xr-w5i*xi;
+          float y5i = w5r*xi+w5i*xr;
+          xr = z6r[i1];
+          xi = z6i[i1];
+          float y3r = w3r*xr-w3i*xi;
+          float y3i = w3r*xi+w3i*xr;
+          xr = z7r[i1];
+          xi = z7i[i1];
+          float y7r = w7r*xr-w7i*xi;
+          float y7i = w7r*xi+w7i*xr;
+          float e0r = y0r+y4r;
+          float e0i = y0i+y4i;
+          float e1r = y0r-y4r;
+          float e1i = y0i-y4i;
+          float e2r = y2r+y6r;
+          float e2i = y2i+y6i;
+          float e3r = -s*(y2i-y6i);
+          float e3i =  s*(y2r-y6r);
+          float o0r = y1r+y5r;
+          float o0i = y1i+y5i;
+          float o1r = y1r-y5r;
+          float o1i = y1i-y5i;
+          float o2r = y3r+y7r;
+          float o2i = y3i+y7i;
+          float o3r = -s*(y3i-y7i);
+          float o3i =  s*(y3r-y7r);
+          float t0r = e0r+e2r;
+          float t0i = e0i+e2i;
+          float t1r = e1r+e3r;
+          float t1i = e1i+e3i;
+          float t2r = e0r-e2r;
+          float t2i = e0i-e2i;
+          float t3r = e1r-e3r;
+          float t3i = e1i-e3i;
+          float u0r = o0r+o2r;
+          float u0i = o0i+o2i;
+          float u1r = o1r+o3r;
+          float u1i = o1i+o3i;
+          float u2r = o0r-o2r;
+          float u2i = o0i-o2i;
+          float u3r = o1r-o3r;
+          float u3i = o1i-o3i;
+          float v1r =  r*(u1r-s*u1i);
+          float v1i =  r*(u1i+s*u1r);
+          float v2r = -s*u2i;
+          float v2i =  s*u2r;
+          float v3r = -r*(u3r+s*u3i);
+          float v3i =  r*(s*u3r-u3i);
+          z0r[i1] = t0r+u0r;
+          z0i[i1] = t0i+u0i;
+          z1r[i1] = t1r+v1r;
+          z1i[i1] = t1i+v1i;
+          z2r[i1] = t2r+v2r;
+          z2i[i1] = t2i+v2i;
+          z3r[i1] = t3r+v3r;
+          z3i[i1] = t3i+v3i;
+          z4r[i1] = t0r-u0r;
+          z4i[i1] = t0i-u0i;
+          z5r[i1] = t1r-v1r;
+          z5i[i1] = t1i-v1i;
+          z6r[i1] = t2r-v2r;
+          z6i[i1] = t2i-v2i;
+          z7r[i1] = t3r-v3r;
+          z7i[i1] = t3i-v3i;
+        }
+      }
+    }
+  }
+}
@@ -1035,6 +1035,97 @@ public class Recursive2ndOrderFilter {
     }
   }
 
+  // Methods like those above that filter only m1 columns of 2-D arrays,
+  // beginning with column jx in x and column jy in y. Rows of x and y are
+  // copied to and from arrays indexed like those for filter state, so that
+  // loops over columns can be vectorized. Special cases are not handled 
+  // separately; terms with zero coefficients add only zeros, so that 
+  // results are the same as those computed by the methods above.
+
+  void apply2Forward(int m1, float[][] x, int jx, float[][] y, int jy) {
+    int n2 = y.length;
+    float[] yim2 = new float[m1];
+    float[] yim1 = new float[m1];
+    float[] yi = new float[m1];
+    float[] xim2 = new float[m1];
+    float[] xim1 = new float[m1];
+    float[] xi = new float[m1];
+    for (int i2=0; i2<n2; ++i2) {
+      System.arraycopy(x[i2],jx,xi,0,m1);
+      for (int i1=0; i1<m1; ++i1) {
+        yi[i1] = _b0*xi[i1]+_b1*xim1[i1]+_b2*xim2[i1]-
+                            _a1*yim1[i1]-_a2*yim2[i1];
+      }
+      System.arraycopy(yi,0,y[i2],jy,m1);
+      float[] yt = yim2;
+      yim2 = yim1;
+      yim1 = yi;
+      yi = yt;
+      float[] xt = xim2;
+      xim2 = xim1;
+      xim1 = xi;
+      xi = xt;
+    }
+  }
+
+  void accumulate2Forward(int m1, float[][] x, int jx, float[][] y, int jy) {
+    int n2 = y.length;
+    float[] ys = new float[m1];
+    float[] yim2 = new float[m1];
+    float[] yim1 = new float[m1];
+    float[] yi = new float[m1];
+    float[] xim2 = new float[m1];
+    float[] xim1 = new float[m1];
+    float[] xi = new float[m1];
+    for (int i2=0; i2<n2; ++i2) {
+      System.arraycopy(x[i2],jx,xi,0,m1);
+      System.arraycopy(y[i2],jy,ys,0,m1);
+      for (int i1=0; i1<m1; ++i1) {
+        yi[i1] = _b0*xi[i1]+_b1*xim1[i1]+_b2*xim2[i1]-
+                            _a1*yim1[i1]-_a2*yim2[i1];
+        ys[i1] += yi[i1];
+      }
+      System.arraycopy(ys,0,y[i2],jy,m1);
+      float[] yt = yim2;
+      yim2 = yim1;
+      yim1 = yi;
+      yi = yt;
+      float[] xt = xim2;
+      xim2 = xim1;
+      xim1 = xi;
+      xi = xt;
+    }
+  }
+
+  void accumulate2Reverse(int m1, float[][] x, int jx, float[][] y, int jy) {
+    int n2 = y.length;
+    float[] ys = new float[m1];
+    float[] yip2 = new float[m1];
+    float[] yip1 = new float[m1];
+    float[] yi = new float[m1];
+    float[] xip2 = new float[m1];
+    float[] xip1 = new float[m1];
+    float[] xi = new float[m1];
+    for (int i2=n2-1; i2>=0; --i2) {
+      System.arraycopy(x[i2],jx,xi,0,m1);
+      System.arraycopy(y[i2],jy,ys,0,m1);
+      for (int i1=0; i1<m1; ++i1) {
+        yi[i1] = _b0*xi[i1]+_b1*xip1[i1]+_b2*xip2[i1]-
+                            _a1*yip1[i1]-_a2*yip2[i1];
+        ys[i1] += yi[i1];
+      }
+      System.arraycopy(ys,0,y[i2],jy,m1);
+      float[] yt = yip2;
+      yip2 = yip1;
+      yip1 = yi;
+      yi = yt;
+      float[] xt = xip2;
+      xip2 = xip1;
+      xip1 = xi;
+      xi = xt;
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // 3-D
 
@@ -451,6 +451,12 @@ public class RecursiveGaussianFilter {
 
   private Filter _filter;
 
+  // Maximum and minimum numbers of columns in blocks filtered in parallel
+  // along the 2nd and 3rd dimensions. Rows of workspace for such blocks 
+  // fit easily in cache.
+  private static final int NBLOCK = 1024;
+  private static final int MBLOCK = 64;
+
   private static void checkArrays(float[] x, float[] y) {
     Check.argument(x.length==y.length,"x.length==y.length");
   }
@@ -492,28 +498,66 @@ public class RecursiveGaussianFilter {
 
     abstract void applyN(int nd, float[] x, float[] y);
 
-    abstract void applyXN(int nd, float[][] x, float[][] y);
+    // Applies along the 2nd dimension to m1 columns of 2D arrays, 
+    // beginning with column jx in x and column jy in y. Those columns 
+    // in x and y must not be the same. Rows of x and y are copied to and 
+    // from arrays indexed like those for filter state, so that loops over 
+    // columns can be vectorized.
+    abstract void applyXN(
+      int nd, int m1, float[][] x, int jx, float[][] y, int jy);
+
+    // Passes of 1D filters along one dimension of 2D and 3D arrays. All
+    // passes are split into independent parts that are computed in 
+    // parallel. Along the 2nd and 3rd dimensions, those parts are blocks 
+    // of columns, copied into small contiguous arrays so that they are 
+    // filtered in cache. The same floating-point operations are performed 
+    // for each sample, so that results do not depend on the number of 
+    // threads.
+
+    void applyNX(final int nd, final float[][] x, final float[][] y) {
+      final int m2 = y.length;
+      Parallel.loop(m2,new Parallel.LoopInt() {
+        public void compute(int i2) {
+          applyN(nd,x[i2],y[i2]);
+        }
+      });
+    }
 
-    void applyNX(int nd, float[][] x, float[][] y) {
-      int m2 = y.length;
-      for (int i2=0; i2<m2; ++i2)
-        applyN(nd,x[i2],y[i2]);
+    void applyXN(final int nd, final float[][] x, final float[][] y) {
+      checkArrays(x,y);
+      int m1 = y[0].length;
+      final int mb = blockWidth(m1,1);
+      int nb = (m1+mb-1)/mb;
+      Parallel.loop(nb,new Parallel.LoopInt() {
+        public void compute(int ib) {
+          applyXN(nd,ib,mb,x,y);
+        }
+      });
     }
 
     void applyNXX(final int nd, final float[][][] x, final float[][][] y) {
       final int m3 = y.length;
-      Parallel.loop(m3,new Parallel.LoopInt() {
-        public void compute(int i3) {
-          applyNX(nd,x[i3],y[i3]);
+      final int m2 = y[0].length;
+      Parallel.loop(m2*m3,new Parallel.LoopInt() {
+        public void compute(int i23) {
+          int i2 = i23%m2;
+          int i3 = i23/m2;
+          applyN(nd,x[i3][i2],y[i3][i2]);
         }
       });
     }
 
     void applyXNX(final int nd, final float[][][] x, final float[][][] y) {
-      final int m3 = y.length;
-      Parallel.loop(m3,new Parallel.LoopInt() {
-        public void compute(int i3) {
-          applyXN(nd,x[i3],y[i3]);
+      checkArrays(x,y);
+      int m3 = y.length;
+      int m1 = y[0][0].length;
+      final int mb = blockWidth(m1,m3);
+      final int nb = (m1+mb-1)/mb;
+      Parallel.loop(nb*m3,new Parallel.LoopInt() {
+        public void compute(int ib3) {
+          int ib = ib3%nb;
+          int i3 = ib3/nb;
+          applyXN(nd,ib,mb,x[i3],y[i3]);
         }
       });
     }
@@ -521,37 +565,69 @@ public class RecursiveGaussianFilter {
     void applyXXN(final int nd, final float[][][] x, final float[][][] y) {
       checkArrays(x,y);
       final int m3 = y.length;
-      final int m2 = y[0].length;
-      final float[][][] tx = new float[m2][m3][];
-      final float[][][] ty = new float[m2][m3][];
-      for (int i3=0; i3<m3; ++i3) {
-        for (int i2=0; i2<m2; ++i2) {
-          tx[i2][i3] = x[i3][i2];
-          ty[i2][i3] = y[i3][i2];
-        }
-      }
-      Parallel.loop(m2,new Parallel.LoopInt() {
-        public void compute(int i2) {
-          applyXN(nd,tx[i2],ty[i2]);
+      int m2 = y[0].length;
+      int m1 = y[0][0].length;
+      final int mb = blockWidth(m1,m2);
+      final int nb = (m1+mb-1)/mb;
+      Parallel.loop(nb*m2,new Parallel.LoopInt() {
+        public void compute(int ib2) {
+          int ib = ib2%nb;
+          int i2 = ib2/nb;
+          float[][] x2 = new float[m3][];
+          float[][] y2 = new float[m3][];
+          for (int i3=0; i3<m3; ++i3) {
+            x2[i3] = x[i3][i2];
+            y2[i3] = y[i3][i2];
+          }
+          applyXN(nd,ib,mb,x2,y2);
         }
       });
     }
-    /* Should be equivalent to the parallel version above.
-    void applyXXN(int nd, float[][][] x, float[][][] y) {
-      checkArrays(x,y);
-      int m3 = y.length;
-      int m2 = y[0].length;
-      float[][] x2 = new float[m3][];
-      float[][] y2 = new float[m3][];
-      for (int i2=0; i2<m2; ++i2) {
-        for (int i3=0; i3<m3; ++i3) {
-          x2[i3] = x[i3][i2];
-          y2[i3] = y[i3][i2];
-        }
-        applyXN(nd,x2,y2);
+
+    /**
+     * Applies along the 2nd dimension to one block of columns in 2D 
+     * arrays x and y. Columns in a block are filtered together, so that 
+     * recursions for all of them use only a few rows of workspace that 
+     * remain in cache. If x and y are the same array, columns of x in 
+     * the block are first copied to a workspace array that is reused 
+     * by the current thread.
+     */
+    private void applyXN(
+      int nd, int ib, int mb, float[][] x, float[][] y) 
+    {
+      int m2 = y.length;
+      int m1 = y[0].length;
+      int j1 = ib*mb;
+      int n1 = min(mb,m1-j1);
+      if (sameArrays(x,y)) {
+        float[][] xb = _xb.get();
+        if (xb==null || xb.length<m2 || xb[0].length<n1)
+          _xb.set(xb=new float[m2][mb]);
+        for (int i2=0; i2<m2; ++i2)
+          System.arraycopy(x[i2],j1,xb[i2],0,n1);
+        applyXN(nd,n1,xb,0,y,j1);
+      } else {
+        applyXN(nd,n1,x,j1,y,j1);
       }
     }
-    */
+
+    /**
+     * Returns the width of blocks of columns, for m1 columns in each of
+     * np independent parts of an array. Blocks are narrow enough to be 
+     * filtered in cache and, if possible, numerous enough to keep all
+     * threads busy. Because columns are filtered independently, results
+     * do not depend on this width.
+     */
+    private static int blockWidth(int m1, int np) {
+      int nb = (m1+NBLOCK-1)/NBLOCK;
+      int nt = Runtime.getRuntime().availableProcessors();
+      if (nb*np<nt)
+        nb = min((nt+np-1)/np,(m1+MBLOCK-1)/MBLOCK);
+      return (m1+nb-1)/nb;
+    }
+
+    private Parallel.Unsafe<float[][]> _xb = 
+      new Parallel.Unsafe<float[][]>();
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -597,12 +673,10 @@ public class RecursiveGaussianFilter {
       }
     }
 
-    void applyXN(int nd, float[][] x, float[][] y) {
-      checkArrays(x,y);
-      if (sameArrays(x,y))
-        x = copy(x);
+    void applyXN(
+      int nd, int m1, float[][] x, int jx, float[][] y, int jy) 
+    {
       int m2 = y.length;
-      int m1 = y[0].length;
       float n0 = _n0[nd],  n1 = _n1[nd],  n2 = _n2[nd],  n3 = _n3[nd];
       float d1 = _d1[nd],  d2 = _d2[nd],  d3 = _d3[nd],  d4 = _d4[nd];
       float[] yim4 = new float[m1];
@@ -615,15 +689,14 @@ public class RecursiveGaussianFilter {
       float[] xim1 = new float[m1];
       float[] yi = new float[m1];
       float[] xi = new float[m1];
+      float[] ys = new float[m1];
       for (int i2=0; i2<m2; ++i2) {
-        float[] x2 = x[i2];
-        float[] y2 = y[i2];
+        System.arraycopy(x[i2],jx,xi,0,m1);
         for (int i1=0; i1<m1; ++i1) {
-          xi[i1] = x2[i1];
           yi[i1] = n0*xi[i1]+n1*xim1[i1]+n2*xim2[i1]+n3*xim3[i1]
                             -d1*yim1[i1]-d2*yim2[i1]-d3*yim3[i1]-d4*yim4[i1];
-          y2[i1] = yi[i1];
         }
+        System.arraycopy(yi,0,y[i2],jy,m1);
         float[] yt = yim4;
         yim4 = yim3;
         yim3 = yim2;
@@ -662,14 +735,14 @@ public class RecursiveGaussianFilter {
         xip1[i1] = 0.0f;
       }
       for (int i2=m2-1; i2>=0; --i2) {
-        float[] x2 = x[i2];
-        float[] y2 = y[i2];
+        System.arraycopy(x[i2],jx,xi,0,m1);
+        System.arraycopy(y[i2],jy,ys,0,m1);
         for (int i1=0; i1<m1; ++i1) {
-          xi[i1] = x2[i1];
           yi[i1] = n1*xip1[i1]+n2*xip2[i1]+n3*xip3[i1]+n4*xip4[i1] -
                    d1*yip1[i1]-d2*yip2[i1]-d3*yip3[i1]-d4*yip4[i1];
-          y2[i1] += yi[i1];
+          ys[i1] += yi[i1];
         }
+        System.arraycopy(ys,0,y[i2],jy,m1);
         float[] yt = yip4;
         yip4 = yip3;
         yip3 = yip2;
@@ -849,14 +922,13 @@ public class RecursiveGaussianFilter {
       _g[nd][1][1].accumulateReverse(x,y);
     }
 
-    void applyXN(int nd, float[][] x, float[][] y) {
-      checkArrays(x,y);
-      if (sameArrays(x,y))
-        x = copy(x);
-      _g[nd][0][0].apply2Forward(x,y);
-      _g[nd][0][1].accumulate2Reverse(x,y);
-      _g[nd][1][0].accumulate2Forward(x,y);
-      _g[nd][1][1].accumulate2Reverse(x,y);
+    void applyXN(
+      int nd, int m1, float[][] x, int jx, float[][] y, int jy) 
+    {
+      _g[nd][0][0].apply2Forward(m1,x,jx,y,jy);
+      _g[nd][0][1].accumulate2Reverse(m1,x,jx,y,jy);
+      _g[nd][1][0].accumulate2Forward(m1,x,jx,y,jy);
+      _g[nd][1][1].accumulate2Reverse(m1,x,jx,y,jy);
     }
 
     // Poles (inverses) for 4th-order filters published by van Vliet, et al.
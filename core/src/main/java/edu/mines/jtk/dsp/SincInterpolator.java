@@ -19,6 +19,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * A sinc interpolator for bandlimited uniformly-sampled functions y(x). 
@@ -60,7 +61,9 @@ import edu.mines.jtk.util.Check;
  * When interpolating multiple values of y(x) from a single sequence of
  * uniformly sampled values, efficiency may be improved by using one of the
  * methods that enables specification of multiple x values at which to
- * interpolate.
+ * interpolate. And when interpolating many sequences at the same x
+ * values, a {@link Plan} made once for those x values may be applied to 
+ * all of the sequences.
  *
  * @author Dave Hale, Colorado School of Mines
  * @author Bill Harlan, Landmark Graphics
@@ -419,6 +422,71 @@ public class SincInterpolator {
       yu,x1i,x2i,x3i);
   }
 
+  /**
+   * Interpolates a 2-D array of real values y(x1,x2) onto a grid.
+   * Interpolation is separable; sinc approximations are applied in the 
+   * 1st dimension and then in the 2nd dimension. The cost per output 
+   * sample is proportional to 2*lsinc, instead of lsinc*lsinc for values 
+   * interpolated one at a time.
+   * @param sx1u sampling of input x in 1st dimension.
+   * @param sx2u sampling of input x in 2nd dimension.
+   * @param yu input array[nx2u][nx1u] of sampled values y(x).
+   * @param sx1i sampling of output x in 1st dimension.
+   * @param sx2i sampling of output x in 2nd dimension.
+   * @param yi output array[nx2i][nx1i] of interpolated values y(x).
+   */
+  public void interpolate(
+    Sampling sx1u, Sampling sx2u, float[][] yu,
+    Sampling sx1i, Sampling sx2i, float[][] yi)
+  {
+    Check.argument(sx1u.isUniform(),"input sampling of x1 is uniform");
+    Check.argument(sx2u.isUniform(),"input sampling of x2 is uniform");
+    int nx1i = sx1i.getCount();
+    int nx2u = sx2u.getCount();
+    float[][] t = new float[nx2u][nx1i];
+    makePlan(sx1u,sx1i).apply(yu,t);
+    interpolate2(sx2u,t,sx2i,yi);
+  }
+
+  /**
+   * Interpolates a 3-D array of real values y(x1,x2,x3) onto a grid.
+   * Interpolation is separable; sinc approximations are applied in the 
+   * 1st, 2nd and then 3rd dimensions. The cost per output sample is 
+   * proportional to 3*lsinc, instead of lsinc*lsinc*lsinc for values 
+   * interpolated one at a time.
+   * @param sx1u sampling of input x in 1st dimension.
+   * @param sx2u sampling of input x in 2nd dimension.
+   * @param sx3u sampling of input x in 3rd dimension.
+   * @param yu input array[nx3u][nx2u][nx1u] of sampled values y(x).
+   * @param sx1i sampling of output x in 1st dimension.
+   * @param sx2i sampling of output x in 2nd dimension.
+   * @param sx3i sampling of output x in 3rd dimension.
+   * @param yi output array[nx3i][nx2i][nx1i] of interpolated values y(x).
+   */
+  public void interpolate(
+    Sampling sx1u, Sampling sx2u, Sampling sx3u, float[][][] yu,
+    Sampling sx1i, Sampling sx2i, Sampling sx3i, float[][][] yi)
+  {
+    Check.argument(sx1u.isUniform(),"input sampling of x1 is uniform");
+    Check.argument(sx2u.isUniform(),"input sampling of x2 is uniform");
+    Check.argument(sx3u.isUniform(),"input sampling of x3 is uniform");
+    int nx1i = sx1i.getCount();
+    int nx2i = sx2i.getCount();
+    int nx2u = sx2u.getCount();
+    final int nx3u = sx3u.getCount();
+    final float[][][] t = new float[nx3u][nx2u][nx1i];
+    makePlan(sx1u,sx1i).apply(yu,t);
+    final float[][][] s = new float[nx3u][nx2i][nx1i];
+    final Sampling sx2uf = sx2u;
+    final Sampling sx2if = sx2i;
+    Parallel.loop(nx3u,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      interpolate2(sx2uf,t[i3],sx2if,s[i3]);
+      t[i3] = null;
+    }});
+    interpolate3(sx3u,s,sx3i,yi);
+  }
+
   /**
    * Interpolates multiple complex values y(x).
    * Complex output samples are packed in the specified output array as 
@@ -544,6 +612,180 @@ public class SincInterpolator {
       accumulate(xscale,xshift,nxum,xa[ixa],ya[ixa],nxu,yu);
   }
 
+  /**
+   * A plan for interpolating many sequences at the same x values.
+   * A plan caches, for each x value at which to interpolate, the index 
+   * of the first uniform sample used and the tabulated sinc approximation 
+   * applied to that sample and its neighbors. Plans are constructed by 
+   * an interpolator and may then be applied to any number of sequences, 
+   * without recomputing those indices and approximations.
+   * <p>
+   * A plan is immutable; it may be applied concurrently in multiple 
+   * threads. The extrapolation method of a plan is that of the 
+   * interpolator when the plan was made.
+   */
+  public static class Plan {
+
+    /**
+     * Interpolates one sequence. This plan must have been made for 
+     * only one sequence of x values.
+     * @param yu input array[nxu] of uniformly sampled values y(x).
+     * @param yi output array[nxi] of interpolated values y(x).
+     */
+    public void apply(float[] yu, float[] yi) {
+      Check.argument(_n2==1 && _n3==1,"plan has one sequence of x values");
+      Check.argument(yu.length==_nxu,"yu.length equals input sample count");
+      apply(_k[0][0],_a[0][0],yu,yi);
+    }
+
+    /**
+     * Interpolates all sequences (traces) in a 2-D array. If this plan was
+     * made for only one sequence of x values, those x values are used for 
+     * all traces. Otherwise, the plan must have been made for an array of
+     * x values with the same number of traces. Traces are interpolated in 
+     * parallel.
+     * @param yu input array[n2][nxu] of uniformly sampled values y(x).
+     * @param yi output array[n2][nxi] of interpolated values y(x).
+     */
+    public void apply(float[][] yu, float[][] yi) {
+      final int n2 = yu.length;
+      Check.argument(_n3==1,"plan has no more than 2-D array of x values");
+      Check.argument(_n2==1 || _n2==n2,"plan matches number of traces");
+      Check.argument(yu[0].length==_nxu,"yu[0].length equals input count");
+      final float[][] yuf = yu;
+      final float[][] yif = yi;
+      Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        int j2 = (_n2==1)?0:i2;
+        apply(_k[0][j2],_a[0][j2],yuf[i2],yif[i2]);
+      }});
+    }
+
+    /**
+     * Interpolates all sequences (traces) in a 3-D array. If this plan was
+     * made for a 1-D or 2-D array of x values, those x values are used for
+     * all traces or 2-D slices, respectively. Otherwise, the plan must have
+     * been made for a 3-D array of x values with the same numbers of traces.
+     * Traces are interpolated in parallel.
+     * @param yu input array[n3][n2][nxu] of uniformly sampled values y(x).
+     * @param yi output array[n3][n2][nxi] of interpolated values y(x).
+     */
+    public void apply(float[][][] yu, float[][][] yi) {
+      final int n2 = yu[0].length;
+      final int n3 = yu.length;
+      Check.argument(_n2==1 || _n2==n2,"plan matches number of traces");
+      Check.argument(_n3==1 || _n3==n3,"plan matches number of slices");
+      Check.argument(yu[0][0].length==_nxu,"yu[0][0].length equals count");
+      final float[][][] yuf = yu;
+      final float[][][] yif = yi;
+      Parallel.loop(n2*n3,new Parallel.LoopInt() {
+      public void compute(int i23) {
+        int i2 = i23%n2;
+        int i3 = i23/n2;
+        int j2 = (_n2==1)?0:i2;
+        int j3 = (_n3==1)?0:i3;
+        apply(_k[j3][j2],_a[j3][j2],yuf[i3][i2],yif[i3][i2]);
+      }});
+    }
+
+    private Extrapolation _extrap; // extrapolation method
+    private int _lsinc; // length of sinc approximations
+    private int _nxu,_nxum; // number of input samples, and nxu-lsinc
+    private int _n2,_n3; // numbers of sequences of x values
+    private int[][][] _k; // indices of first uniform samples used
+    private float[][][][] _a; // references to sinc approximations
+
+    private Plan(
+      Extrapolation extrap, int lsinc, int nxu, int n2, int n3) 
+    {
+      _extrap = extrap;
+      _lsinc = lsinc;
+      _nxu = nxu;
+      _nxum = nxu-lsinc;
+      _n2 = n2;
+      _n3 = n3;
+      _k = new int[n3][n2][];
+      _a = new float[n3][n2][][];
+    }
+
+    private void apply(int[] k, float[][] a, float[] yu, float[] yi) {
+      int nxi = k.length;
+      for (int ixi=0; ixi<nxi; ++ixi) {
+        int kyu = k[ixi];
+        float[] asinc = a[ixi];
+        float yr = 0.0f;
+        if (kyu>=0 && kyu<=_nxum) {
+          for (int isinc=0; isinc<_lsinc; ++isinc,++kyu)
+            yr += yu[kyu]*asinc[isinc];
+        } else if (_extrap==Extrapolation.ZERO) {
+          for (int isinc=0; isinc<_lsinc; ++isinc,++kyu) {
+            if (0<=kyu && kyu<_nxu)
+              yr += yu[kyu]*asinc[isinc];
+          }
+        } else if (_extrap==Extrapolation.CONSTANT) {
+          for (int isinc=0; isinc<_lsinc; ++isinc,++kyu) {
+            int jyu = (kyu<0)?0:(_nxu<=kyu)?_nxu-1:kyu;
+            yr += yu[jyu]*asinc[isinc];
+          }
+        }
+        yi[ixi] = yr;
+      }
+    }
+  }
+
+  /**
+   * Makes a plan for interpolating sequences at the same x values.
+   * The plan may be applied to one sequence or to all traces in 2-D 
+   * and 3-D arrays of uniformly sampled values.
+   * @param sxu sampling of input samples.
+   * @param xi array[nxi] of x values at which to interpolate.
+   * @return the plan.
+   */
+  public Plan makePlan(Sampling sxu, float[] xi) {
+    return makePlan(sxu,new float[][][]{{xi}});
+  }
+
+  /**
+   * Makes a plan for interpolating traces in 2-D arrays. The plan may be
+   * applied to 2-D arrays of uniformly sampled values, or to all 2-D 
+   * slices of 3-D arrays of such values.
+   * @param sxu sampling of input samples.
+   * @param xi array[n2][nxi] of x values at which to interpolate.
+   * @return the plan.
+   */
+  public Plan makePlan(Sampling sxu, float[][] xi) {
+    return makePlan(sxu,new float[][][]{xi});
+  }
+
+  /**
+   * Makes a plan for interpolating traces in 3-D arrays.
+   * @param sxu sampling of input samples.
+   * @param xi array[n3][n2][nxi] of x values at which to interpolate.
+   * @return the plan.
+   */
+  public Plan makePlan(Sampling sxu, float[][][] xi) {
+    Check.argument(sxu.isUniform(),"input sampling is uniform");
+    final int n2 = xi[0].length;
+    final int n3 = xi.length;
+    final int nxu = sxu.getCount();
+    final double xscale = 1.0/sxu.getDelta();
+    final double xshift = _lsinc-sxu.getFirst()*xscale;
+    final float[][][] xif = xi;
+    final Plan plan = new Plan(_extrap,_lsinc,nxu,n2,n3);
+    Parallel.loop(n2*n3,new Parallel.LoopInt() {
+    public void compute(int i23) {
+      int i2 = i23%n2;
+      int i3 = i23/n2;
+      float[] x = xif[i3][i2];
+      int nx = x.length;
+      int[] k = plan._k[i3][i2] = new int[nx];
+      float[][] a = plan._a[i3][i2] = new float[nx][];
+      for (int ix=0; ix<nx; ++ix)
+        index(xscale,xshift,x[ix],ix,k,a);
+    }});
+    return plan;
+  }
+
   /**
    * Get a copy of the interpolation table.  Returns a copy of this
    * interpolator's table of sinc interpolation coefficients.
@@ -886,6 +1128,96 @@ public class SincInterpolator {
     }
   }
 
+  // Computes the index of the first uniform sample used and the sinc 
+  // approximation used to interpolate at the specified value x.
+  private void index(
+    double xscale, double xshift, double x, int ix, int[] k, float[][] a)
+  {
+    double xn = xshift+x*xscale;
+    int ixn = (int)xn;
+    double frac = xn-ixn;
+    if (frac<0.0)
+      frac += 1.0;
+    k[ix] = _ishift+ixn;
+    a[ix] = _asinc[(int)(frac*_nsincm1+0.5)];
+  }
+  private void index(Sampling sxu, Sampling sxi, int[] k, float[][] a) {
+    int nxi = sxi.getCount();
+    double xscale = 1.0/sxu.getDelta();
+    double xshift = _lsinc-sxu.getFirst()*xscale;
+    for (int ixi=0; ixi<nxi; ++ixi)
+      index(xscale,xshift,sxi.getValue(ixi),ixi,k,a);
+  }
+
+  // Makes a plan for interpolating sequences at sampled values x.
+  private Plan makePlan(Sampling sxu, Sampling sxi) {
+    int nxi = sxi.getCount();
+    Plan plan = new Plan(_extrap,_lsinc,sxu.getCount(),1,1);
+    int[] k = plan._k[0][0] = new int[nxi];
+    float[][] a = plan._a[0][0] = new float[nxi][];
+    index(sxu,sxi,k,a);
+    return plan;
+  }
+
+  // Interpolates in the 2nd dimension, in parallel for output samples.
+  private void interpolate2(
+    Sampling sx2u, final float[][] yu, Sampling sx2i, final float[][] yi)
+  {
+    final int nx2u = sx2u.getCount();
+    int nx2i = sx2i.getCount();
+    final int[] k = new int[nx2i];
+    final float[][] a = new float[nx2i][];
+    index(sx2u,sx2i,k,a);
+    Parallel.loop(nx2i,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      zero(yi[i2]);
+      accumulate(k[i2],a[i2],nx2u,yu,yi[i2]);
+    }});
+  }
+
+  // Interpolates in the 3rd dimension, in parallel for output samples.
+  private void interpolate3(
+    Sampling sx3u, final float[][][] yu, Sampling sx3i, final float[][][] yi)
+  {
+    final int nx3u = sx3u.getCount();
+    int nx3i = sx3i.getCount();
+    final int[] k = new int[nx3i];
+    final float[][] a = new float[nx3i][];
+    index(sx3u,sx3i,k,a);
+    Parallel.loop(nx3i,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[][] yi3 = yi[i3];
+      int nx2 = yi3.length;
+      float[][] yu3 = new float[nx3u][];
+      for (int i2=0; i2<nx2; ++i2) {
+        for (int j3=0; j3<nx3u; ++j3)
+          yu3[j3] = yu[j3][i2];
+        zero(yi3[i2]);
+        accumulate(k[i3],a[i3],nx3u,yu3,yi3[i2]);
+      }
+    }});
+  }
+
+  // Accumulates into yi a weighted sum of sequences yu[k], ..., 
+  // yu[k+lsinc-1], with weights from the sinc approximation asinc. 
+  // Sequences outside the range [0,nxu) are extrapolated.
+  private void accumulate(
+    int kyu, float[] asinc, int nxu, float[][] yu, float[] yi) 
+  {
+    int n = yi.length;
+    for (int isinc=0; isinc<_lsinc; ++isinc,++kyu) {
+      int jyu = kyu;
+      if (jyu<0 || nxu<=jyu)
+        jyu = (_extrap==Extrapolation.ZERO)?-1:(jyu<0)?0:nxu-1;
+      if (jyu>=0) {
+        float a = asinc[isinc];
+        float[] y = yu[jyu];
+        for (int i=0; i<n; ++i)
+          yi[i] += a*y[i];
+      }
+    }
+  }
+
   private void accumulate(
     double xscale, double xshift, int nxum,
     double x, float y, int nxu, float[] yu) 
@@ -14,6 +14,7 @@ limitations under the License.
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -76,6 +77,12 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * <p>
  * The 3D steerable pyramid array is the same except that it is arrays of 
  * arrays of 3D, rather than 2D arrays.
+ * <p>
+ * Basis images for different orientations, and most other computations
+ * for 3D images, are performed in parallel. Because a 3D pyramid requires
+ * much more memory than the input image, 3D images may also be processed
+ * one pyramid level at a time, with a visitor that modifies the basis
+ * images for each level before they are summed.
  *
  * @author John Mathewson, Colorado School of Mines
  * @version 2008.12.01
@@ -104,6 +111,21 @@ public class SteerablePyramid {
     this.kb = kb;
   }
   
+  /**
+   * A visitor of the basis images for one level of a 3D steerable pyramid.
+   * @see #visitPyramid(boolean,float[][][],SteerablePyramid.Visitor3)
+   */
+  public interface Visitor3 {
+
+    /**
+     * Visits the basis images for one pyramid level. The basis images may
+     * be modified; after this method returns they are summed and discarded.
+     * @param lev the level number.
+     * @param q array[6][nl3][nl2][nl1] of basis images for the level.
+     */
+    public void visit(int lev, float[][][][] q);
+  }
+
   /**
    * Creates a steerable pyramid representation of an input 2D image.
    * @param x input 2D image.
@@ -168,38 +190,7 @@ public class SteerablePyramid {
    * 3D image.
    */
   public float[][][][][] makePyramid(float[][][] x) {
-    nx3 = x.length;
-    nx2 = x[0].length;
-    nx1 = x[0][0].length;
-    // Compute number of levels in pyramid from size of input image.  Also
-    // determine dimensions n1,n2,n3 for the finest-sampled pyramid level
-    // that will allow us to subsample each pyramid level without losing the
-    // last sample.  In our pyramid images we will carry this number of 
-    // samples and copy the original number of samples only for final output.
-    nlev = 1;
-    int nlev2 = 1;
-    int nlev3 = 1;
-    n1 = 9;
-    n2 = 9;
-    n3 = 9;
-    while (nx1>n1) {
-      n1 = (n1-1)*2+1;
-      nlev += 1;
-    }
-    while (nx2>n2) {
-      n2 = (n2-1)*2+1;
-      nlev2 += 1;
-    }
-    while (nx3>n3) {
-      n3 = (n3-1)*2+1;
-      nlev3 += 1;
-    }
-    if (nlev>nlev2) {
-      nlev = nlev2;
-    }
-    if (nlev>nlev3) {
-      nlev = nlev3;
-    }
+    initLevels(x);
     /**
      * Create output 5-dimensional array, consisting of:
      * Basis images: nlev*ndir 3D sub-arrays; for each pyramid level images
@@ -228,10 +219,61 @@ public class SteerablePyramid {
       if (lev>0) {
         cf = ftForward(lev,spyr[lev][0]);
       }
-      makePyramidLevel(lev,cf,spyr);
+      makePyramidLevel(lev,cf,spyr[lev],spyr[lev+1][0]);
     }
     return spyr;
   }
+
+  /**
+   * Creates the steerable pyramid for an input 3D image one level at a
+   * time, and sums basis images to create a filtered output image. For
+   * each level, the specified visitor may modify the basis images before
+   * they are summed; for example, it may estimate attributes and apply
+   * steering weights for that level. The residual low-wavenumber image is
+   * not visited.
+   * <p>
+   * Neither the complete pyramid nor attributes for all levels are stored.
+   * Only basis images for one level and the sums of basis images for
+   * finer levels are kept in memory. If the visitor modifies basis images
+   * in the same way, the output image is the same as that computed by
+   * {@link #sumPyramid(boolean,float[][][][][])} for the pyramid returned
+   * by {@link #makePyramid(float[][][])}.
+   * @param keeplow if true:keep low-wavenumber energy, if false: zero it.
+   * @param x input 3D image.
+   * @param visitor the visitor of basis images for each level.
+   * @return array containing output filtered 3D image.
+   */
+  public float[][][] visitPyramid(
+    boolean keeplow, float[][][] x, Visitor3 visitor)
+  {
+    initLevels(x);
+    float[][][][] s = new float[nlev][][][];
+    float[][][] lo = x;
+    float[][][] cf = ftForward(0,x);
+    applyRadial(ka,kb,cf);
+    for (int lev=0; lev<nlev; ++lev) {
+      if (lev>0) {
+        cf = ftForward(lev,lo);
+      }
+      int lfactor = (int)pow(2.0,(double)lev);
+      int nl3 = (n3-1)/lfactor+1;
+      int nl2 = (n2-1)/lfactor+1;
+      int nl1 = (n1-1)/lfactor+1;
+      float[][][][] q = new float[NDIR3][nl3][nl2][nl1];
+      lo = new float[(nl3-1)/2+1][(nl2-1)/2+1][(nl1-1)/2+1];
+      makePyramidLevel(lev,cf,q,lo);
+      cf = null;
+      visitor.visit(lev,q);
+      for (int dir=1; dir<NDIR3; ++dir) {
+        add(q[0],q[dir],q[0]);
+      }
+      s[lev] = q[0];
+    }
+    if (!keeplow) {
+      zero(lo);
+    }
+    return sumLevels(s,lo);
+  }
   
   /**
    * Sums all basis images from an input 2D steerable pyramid to create a
@@ -284,75 +326,19 @@ public class SteerablePyramid {
    * @return array containing output filtered 3D image.
    */
   public float[][][] sumPyramid(boolean keeplow,float[][][][][] spyr) {
-    int lev;
     // Optionally zero the low-wavenumber image.
     if (!keeplow) {
       zero(spyr[nlev][0]);
     }
-    // Sum basis images to create filtered image.  Sinc interpolation is
-    // performed on subsampled images prior to summing adjacent levels.
-    int lfactor = (int)pow(2.0,(double)(nlev-1));
-    int nl3 = (n3-1)/lfactor+1;
-    int nl2 = (n2-1)/lfactor+1;
-    int nl1 = (n1-1)/lfactor+1;
-    for (int i=0; i<nlev; ++i) {
-      lev = nlev-i-1;
+    // Sum basis images for each level, then sum levels.
+    float[][][][] s = new float[nlev][][][];
+    for (int lev=0; lev<nlev; ++lev) {
       for (int dir=1; dir<NDIR3; ++dir) {
         add(spyr[lev][0],spyr[lev][dir],spyr[lev][0]);
       }
-      int m3 = (nl3-1)/2+1;
-      int m2 = (nl2-1)/2+1;
-      int m1 = (nl1-1)/2+1;
-      int j1,j2,j3;
-      float[] lo11 = zerofloat(m1);
-      float[] lo12 = zerofloat(m2);
-      float[] lo13 = zerofloat(m3);
-      SincInterpolator si = SincInterpolator.fromErrorAndFrequency(0.001,0.4);
-      si.setExtrapolation(SincInterpolator.Extrapolation.CONSTANT);
-      for (int i3=0; i3<nl3; i3=i3+2) {
-        j3 = i3/2;
-        for (int i2=0; i2<nl2; i2=i2+2) {
-          j2 = i2/2;
-          for (int i1=0; i1<nl1; i1=i1+2) {
-            j1 = i1/2;
-            lo11[j1] = spyr[lev+1][0][j3][j2][j1];
-            spyr[lev][1][i3][i2][i1] = lo11[j1];
-          }
-          for (int i1=1; i1<nl1; i1=i1+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m1,2,0,lo11,i1);
-          }
-        }
-      }
-      for (int i3=0; i3<nl3; i3=i3+2) {
-        for (int i1=0; i1<nl1; ++i1) {
-          for (int i2=0; i2<nl2; i2=i2+2) {
-            j2 = i2/2;
-            lo12[j2] = spyr[lev][1][i3][i2][i1];
-          }
-          for (int i2=1; i2<nl2; i2=i2+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m2,2,0,lo12,i2);
-          }
-        }
-      }
-      for (int i2=0; i2<nl2; ++i2) {
-        for (int i1=0; i1<nl1; ++i1) {
-          for (int i3=0; i3<nl3; i3=i3+2) {
-            j3 = i3/2;
-            lo13[j3] = spyr[lev][1][i3][i2][i1];
-          }
-          for (int i3=1; i3<nl3; i3=i3+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m3,2,0,lo13,i3);
-          }
-        }
-      }
-      add(spyr[lev][0],spyr[lev][1],spyr[lev][0]);
-      nl3 = (nl3-1)*2+1;
-      nl2 = (nl2-1)*2+1;
-      nl1 = (nl1-1)*2+1;
+      s[lev] = spyr[lev][0];
     }
-    float[][][] y = zerofloat(nx1,nx2,nx3);
-    copy(nx1,nx2,nx3,spyr[0][0],y);
-    return y;
+    return sumLevels(s,spyr[nlev][0]);
   }
   
   /**
@@ -502,89 +488,73 @@ public class SteerablePyramid {
                                                       float[][][][][] spyr) {
     double sigmaa = 2.0*sigma;
     double sigmac = 0.5*sigma;
-    double[] f = zerodouble(NDIR3);
-    double[][] abcf = zerodouble(4,3);
-    int i1a,i2a,i3a,i1c,i2c,i3c;
-    // Parameters to select estimation for locally planar or linear features
-    int abcindx = 2;
-    int e0indx = 2;
-    int e1indx = 1;
     statelinear = forlinear;
-    if (forlinear) {
-      abcindx = 0;
-      e0indx = 1;
-      e1indx = 0;
-    }
     // Allocate output 5-dimensional array.
-    float[][][][][] attr = new float[nlev][4][1][1][1];
-    for (int lev=0; lev<nlev; ++lev) {
-      int lfactor = (int)pow(2.0,(double)lev);
-      int nl3 = (n3-1)/lfactor+1;
-      int nl2 = (n2-1)/lfactor+1;
-      int nl1 = (n1-1)/lfactor+1;
-      for (int j=0; j<4; ++j) {
-        attr[lev][j] = zerofloat(nl1,nl2,nl3);
-      }
-    }
+    float[][][][][] attr = new float[nlev][][][][];
     // Apply preprocessing to multiple levels and average adjacent scales.
-    // Write over level a preprocessed basis images after finishing with
-    // them to save memory.
     for (int levb=0; levb<nlev; ++levb) {
       int leva = levb-1;
       int levc = levb+1; 
-      float[][][][] pqjb = pqjShiftSmooth(sigma,levb,spyr);
-      int nl3 = pqjb[0].length;
-      int nl2 = pqjb[0][0].length;
-      int nl1 = pqjb[0][0][0].length;  
+      final float[][][][] pqjb = pqjShiftSmooth(sigma,spyr[levb]);
+      final int nl3 = pqjb[0].length;
+      final int nl2 = pqjb[0][0].length;
+      final int nl1 = pqjb[0][0][0].length;
       if (leva>=0) {
-        float[][][][] pqja = pqjShiftSmooth(sigmaa,leva,spyr);
-        for (int i3b=0; i3b<nl3; ++i3b) {
+        final float[][][][] pqja = pqjShiftSmooth(sigmaa,spyr[leva]);
+        Parallel.loop(nl3,new Parallel.LoopInt() {
+        public void compute(int i3b) {
+          int i3a = 2*i3b;
           for (int i2b=0; i2b<nl2; ++i2b) {
+            int i2a = 2*i2b;
             for (int i1b=0; i1b<nl1; ++i1b) {
-              i3a = 2*i3b;
-              i2a = 2*i2b;
-              i1a = 2*i1b;
+              int i1a = 2*i1b;
               for (int j=0; j<NDIR3; ++j) {
                 pqjb[j][i3b][i2b][i1b] += pqja[j][i3a][i2a][i1a];
               }
             }
           }
-        }
+        }});
       }
       if (levc<nlev) {
-        float[][][][] pqja = pqjShiftSmooth(sigmac,levc,spyr);
-        for (int i3b=0; i3b<nl3; ++i3b) {
+        final float[][][][] pqjc = pqjShiftSmooth(sigmac,spyr[levc]);
+        Parallel.loop(nl3,new Parallel.LoopInt() {
+        public void compute(int i3b) {
+          int i3c = (int)(round((double)i3b)*0.5);
           for (int i2b=0; i2b<nl2; ++i2b) {
+            int i2c = (int)(round((double)i2b)*0.5);
             for (int i1b=0; i1b<nl1; ++i1b) {
-              i3c = (int)(round((double)i3b)*0.5);
-              i2c = (int)(round((double)i2b)*0.5);
-              i1c = (int)(round((double)i1b)*0.5);
+              int i1c = (int)(round((double)i1b)*0.5);
               for (int j=0; j<NDIR3; ++j) {
-                pqjb[j][i3b][i2b][i1b] += pqja[j][i3c][i2c][i1c];
+                pqjb[j][i3b][i2b][i1b] += pqjc[j][i3c][i2c][i1c];
               }
             }
           }
-        }
+        }});
       }
       // Compute steering direction cosines and dimensionality attribute.
-      for (int i3b=0; i3b<nl3; ++i3b) {
-        for (int i2b=0; i2b<nl2; ++i2b) {
-          for (int i1b=0; i1b<nl1; ++i1b) {
-            for (int j=0; j<NDIR3; ++j) {
-              f[j] = pqjb[j][i3b][i2b][i1b];
-            }
-            findCriticalPoints(f,abcf);
-            attr[levb][0][i3b][i2b][i1b] = (float)(abcf[abcindx][0]);
-            attr[levb][1][i3b][i2b][i1b] = (float)(abcf[abcindx][1]);
-            attr[levb][2][i3b][i2b][i1b] = (float)(abcf[abcindx][2]);
-            attr[levb][3][i3b][i2b][i1b] = 
-                (float)((abcf[e0indx][3]-abcf[e1indx][3])/abcf[2][3]);
-          } 
-        }
-      }
+      attr[levb] = computeAttributes(pqjb);
     } 
     return attr;
   }
+
+  /**
+   * Estimation of local orientation and dimensionality attributes for a
+   * single level of a 3D steerable pyramid. This method is like
+   * {@link #estimateAttributes(boolean,double,float[][][][][])}, except
+   * that data from adjacent pyramid levels are not averaged. It may be
+   * used by a visitor that processes one pyramid level at a time.
+   * @param forlinear true: estimate for locally linear, false: for planar.
+   * @param sigma half-width of 3D Gaussian smoothing filter.
+   * @param q input array[6][nl3][nl2][nl1] of basis images for one level.
+   * @return array[4][nl3][nl2][nl1] containing direction cosines and
+   * dimensionality attribute for all sample locations in the level.
+   * @see #visitPyramid(boolean,float[][][],SteerablePyramid.Visitor3)
+   */
+  public float[][][][] estimateAttributes(boolean forlinear,double sigma,
+                                                      float[][][][] q) {
+    statelinear = forlinear;
+    return computeAttributes(pqjShiftSmooth(sigma,q));
+  }
   
   /**
    * Applies steering weights and scaling or thresholding based on linearity
@@ -607,30 +577,55 @@ public class SteerablePyramid {
    */
   public void steerScale(boolean forlinear,int linpowr,float k, float thresh,
                 float[][][][][] attr, float[][][][][] spyr) {
-    float ai,bi,ci,wi;
-    float scal = 0.0f;
-    int j0 = 0;
-    int j1 = 0;
-    int j2 = 0;
-    float signb = 1.0f;
     for (int lev=0; lev<nlev; ++lev) {
-      int lfactor = (int)pow(2.0,(double)lev);
-      int nl3 = (n3-1)/lfactor+1;
-      int nl2 = (n2-1)/lfactor+1;
-      int nl1 = (n1-1)/lfactor+1;
-      // Convert basis images to line-enhancing sin^2 if
-      // attributes have been estimated for linear features.
-      if (statelinear) {
-        float[][][] p = add(spyr[lev][0],spyr[lev][1]);
-        for (int dir=2; dir<NDIR3; ++dir) {
-          add(p,spyr[lev][dir],p);
-        }
-        mul(p,0.5f,p);
-        for (int dir=0; dir<NDIR3; ++dir) {
-          sub(p,spyr[lev][dir],spyr[lev][dir]);
-        }
+      steerScale(forlinear,linpowr,k,thresh,attr[lev],spyr[lev]);
+    }
+  }
+
+  /**
+   * Applies steering weights and scaling or thresholding based on linearity
+   * attribute to the basis images for a single level of a 3D steerable
+   * pyramid, with attributes estimated for that level. It may be used by a
+   * visitor that processes one pyramid level at a time.
+   * @param forlinear true: apply to enhance locally linear, false: apply 
+   * for planar.
+   * @param linpowr linearity power and scaling type switch.
+   * @param k sigmoidal thresholding steepness.
+   * @param thresh threshold.
+   * @param attr input array containing direction cosines and dimensionality
+   * for one level.
+   * @param q input/output array[6][nl3][nl2][nl1] of basis images for the
+   * same level.
+   * @see #visitPyramid(boolean,float[][][],SteerablePyramid.Visitor3)
+   */
+  public void steerScale(boolean forlinear,
+    final int linpowr, final float k, final float thresh,
+    final float[][][][] attr, final float[][][][] q)
+  {
+    int nl3 = q[0].length;
+    final int nl2 = q[0][0].length;
+    final int nl1 = q[0][0][0].length;
+    // Convert basis images to line-enhancing sin^2 if
+    // attributes have been estimated for linear features.
+    if (statelinear) {
+      float[][][] p = add(q[0],q[1]);
+      for (int dir=2; dir<NDIR3; ++dir) {
+        add(p,q[dir],p);
+      }
+      mul(p,0.5f,p);
+      for (int dir=0; dir<NDIR3; ++dir) {
+        sub(p,q[dir],q[dir]);
       }
-      // Compute and apply steering weights and scaling option
+    }
+    // Compute and apply steering weights and scaling option
+    Parallel.loop(nl3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float ai,bi,ci,wi;
+      float scal = 0.0f;
+      int j0 = 0;
+      int j1 = 0;
+      int j2 = 0;
+      float signb = 1.0f;
       for (int dir=0; dir<NDIR3; ++dir) {
         if      (dir==0) {j0=0; j1=1; j2=2; signb= 1.0f;}
         else if (dir==1) {j0=0; j1=1; j2=2; signb=-1.0f;}
@@ -638,31 +633,29 @@ public class SteerablePyramid {
         else if (dir==3) {j0=2; j1=0; j2=1; signb=-1.0f;}
         else if (dir==4) {j0=1; j1=2; j2=0; signb= 1.0f;}
         else if (dir==5) {j0=1; j1=2; j2=0; signb=-1.0f;}
-        for (int i3=0; i3<nl3; ++i3) {
-          for (int i2=0; i2<nl2; ++i2) {
-            for (int i1=0; i1<nl1; ++i1) {
-              ai = attr[lev][j0][i3][i2][i1];
-              bi = attr[lev][j1][i3][i2][i1]*signb;
-              ci = attr[lev][j2][i3][i2][i1];
-              wi = (ai+bi)*(ai+bi)-ci*ci;
-              if(linpowr==0) {
-                scal = 1.0f;
-              }
-              else if(linpowr==1) {
-                scal = attr[lev][3][i3][i2][i1];
-              }
-              else if(linpowr>1&&linpowr<99) {
-                scal = pow(attr[lev][3][i3][i2][i1],linpowr);
-              }
-              else if(linpowr==99) {
-                scal = 1.0f/(1.0f+exp(k*(thresh-attr[lev][3][i3][i2][i1])));
-              }
-              spyr[lev][dir][i3][i2][i1] *= scal*wi;
+        for (int i2=0; i2<nl2; ++i2) {
+          for (int i1=0; i1<nl1; ++i1) {
+            ai = attr[j0][i3][i2][i1];
+            bi = attr[j1][i3][i2][i1]*signb;
+            ci = attr[j2][i3][i2][i1];
+            wi = (ai+bi)*(ai+bi)-ci*ci;
+            if(linpowr==0) {
+              scal = 1.0f;
+            }
+            else if(linpowr==1) {
+              scal = attr[3][i3][i2][i1];
+            }
+            else if(linpowr>1&&linpowr<99) {
+              scal = pow(attr[3][i3][i2][i1],linpowr);
+            }
+            else if(linpowr==99) {
+              scal = 1.0f/(1.0f+exp(k*(thresh-attr[3][i3][i2][i1])));
             }
+            q[dir][i3][i2][i1] *= scal*wi;
           }
         }
       }
-    }
+    }});
   }
   
   /**
@@ -734,6 +727,45 @@ public class SteerablePyramid {
   private int nlev,nx1,nx2,nx3,n1,n2,n3;
   private boolean statelinear;
   double ka,kb;
+
+  /**
+   * Computes the number of levels in the pyramid from the size of an
+   * input 3D image. Also determines dimensions n1,n2,n3 for the
+   * finest-sampled pyramid level that will allow us to subsample each
+   * pyramid level without losing the last sample. In our pyramid images we
+   * will carry this number of samples and copy the original number of
+   * samples only for final output.
+   * @param x input 3D image.
+   */
+  private void initLevels(float[][][] x) {
+    nx3 = x.length;
+    nx2 = x[0].length;
+    nx1 = x[0][0].length;
+    nlev = 1;
+    int nlev2 = 1;
+    int nlev3 = 1;
+    n1 = 9;
+    n2 = 9;
+    n3 = 9;
+    while (nx1>n1) {
+      n1 = (n1-1)*2+1;
+      nlev += 1;
+    }
+    while (nx2>n2) {
+      n2 = (n2-1)*2+1;
+      nlev2 += 1;
+    }
+    while (nx3>n3) {
+      n3 = (n3-1)*2+1;
+      nlev3 += 1;
+    }
+    if (nlev>nlev2) {
+      nlev = nlev2;
+    }
+    if (nlev>nlev3) {
+      nlev = nlev3;
+    }
+  }
   
   /**
    * Make a single 2D pyramid level consisting of three directionally-filtered
@@ -744,7 +776,9 @@ public class SteerablePyramid {
    * @param cf input image in wavenumber domain (complex array).
    * @param spyr input/output 2D steerable pyramid.
    */
-  private void makePyramidLevel(int lev,float[][] cf,float[][][][] spyr) {
+  private void makePyramidLevel(
+    final int lev, final float[][] cf, final float[][][][] spyr)
+  {
     int lfactor = (int)pow(2.0,(double)lev);
     int nl2 = (n2-1)/lfactor+1;
     int nl1 = (n1-1)/lfactor+1;
@@ -755,40 +789,111 @@ public class SteerablePyramid {
     int ml2 = (nl2-1)/2+1;
     int ml1 = (nl1-1)/2+1;
     copy(ml1,ml2,0,0,2,2,spyr[lev][0],0,0,1,1,spyr[lev+1][0]);
-    for (int dir=0; dir<NDIR2; ++dir) {
-      applySteerableFilter(dir,cf,clo1);
-      ftInverse(lev,dir,clo1,spyr); 
-    }
+    final int nf2 = cf.length;
+    final int nf1 = cf[0].length;
+    final Parallel.Unsafe<float[][]> cfu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(NDIR2,new Parallel.LoopInt() {
+    public void compute(int dir) {
+      float[][] cfd = cfu.get();
+      if (cfd==null) cfu.set(cfd=new float[nf2][nf1]);
+      applySteerableFilter(dir,cf,cfd);
+      ftInverse(lev,dir,cfd,spyr);
+    }});
   }
   
-    /**
+  /**
    * Make a single 3D pyramid level consisting of six directionally-filtered
    * basis images and a subsampled lower-wavenumber image.  (The low-wavenumber
-   * image is the input for creation of the next level).  The output is 
-   * written into the appropriate part of the 3D steerable pyramid.
+   * image is the input for creation of the next level).  Basis images are
+   * computed one direction at a time, in a single wavenumber workspace;
+   * computations for each direction are parallel.
    * @param lev level number.
    * @param cf input image in wavenumber domain (complex array).
-   * @param spyr input/output 3D steerable pyramid.
+   * @param q output array of six basis images for the level.
+   * @param lo output subsampled low-wavenumber image.
    */
-  private void makePyramidLevel(int lev,float[][][] cf,float[][][][][] spyr) {
-    int lfactor = (int)pow(2.0,(double)lev);
-    int nl3 = (n3-1)/lfactor+1;
-    int nl2 = (n2-1)/lfactor+1;
-    int nl1 = (n1-1)/lfactor+1;
+  private void makePyramidLevel(
+    int lev, float[][][] cf, float[][][][] q, float[][][] lo)
+  {
     float[][][] clo1 = copy(cf);
     applyRadial(ka/2.0,kb/2.0,clo1);
     sub(cf,clo1,cf);
-    ftInverse(lev,0,clo1,spyr);
-    int ml3 = (nl3-1)/2+1;
-    int ml2 = (nl2-1)/2+1;
-    int ml1 = (nl1-1)/2+1;
-    copy(ml1,ml2,ml3,0,0,0,2,2,2,spyr[lev][0],
-        0,0,0,1,1,1,spyr[lev+1][0]);
+    ftInverse(lev,clo1,q[0]);
+    copy(lo[0][0].length,lo[0].length,lo.length,0,0,0,2,2,2,q[0],
+        0,0,0,1,1,1,lo);
     for (int dir=0; dir<NDIR3; ++dir) {
       applySteerableFilter(dir,cf,clo1);
-      ftInverse(lev,dir,clo1,spyr); 
+      ftInverse(lev,clo1,q[dir]);
     }
   }
+
+  /**
+   * Sums levels of a 3D steerable pyramid to create a filtered image.
+   * Sinc interpolation is performed on subsampled images prior to summing
+   * adjacent levels. The sums for each level are modified.
+   * @param s input/output array of sums of basis images for each level.
+   * @param lo input residual low-wavenumber image.
+   * @return array containing output filtered 3D image.
+   */
+  private float[][][] sumLevels(float[][][][] s, float[][][] lo) {
+    final SincInterpolator si =
+      SincInterpolator.fromErrorAndFrequency(0.001,0.4);
+    si.setExtrapolation(SincInterpolator.Extrapolation.CONSTANT);
+    for (int lev=nlev-1; lev>=0; --lev) {
+      final float[][][] sl = s[lev];
+      final float[][][] sc = (lev<nlev-1)?s[lev+1]:lo;
+      final int nl3 = sl.length;
+      final int nl2 = sl[0].length;
+      final int nl1 = sl[0][0].length;
+      final int m3 = (nl3-1)/2+1;
+      final int m2 = (nl2-1)/2+1;
+      final int m1 = (nl1-1)/2+1;
+      final float[][][] t = new float[nl3][nl2][nl1];
+      Parallel.loop(0,nl3,2,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        int j3 = i3/2;
+        float[] lo11 = new float[m1];
+        float[] lo12 = new float[m2];
+        for (int i2=0; i2<nl2; i2=i2+2) {
+          int j2 = i2/2;
+          for (int i1=0; i1<nl1; i1=i1+2) {
+            int j1 = i1/2;
+            lo11[j1] = sc[j3][j2][j1];
+            t[i3][i2][i1] = lo11[j1];
+          }
+          for (int i1=1; i1<nl1; i1=i1+2) {
+            t[i3][i2][i1] = si.interpolate(m1,2,0,lo11,i1);
+          }
+        }
+        for (int i1=0; i1<nl1; ++i1) {
+          for (int i2=0; i2<nl2; i2=i2+2) {
+            int j2 = i2/2;
+            lo12[j2] = t[i3][i2][i1];
+          }
+          for (int i2=1; i2<nl2; i2=i2+2) {
+            t[i3][i2][i1] = si.interpolate(m2,2,0,lo12,i2);
+          }
+        }
+      }});
+      Parallel.loop(nl2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        float[] lo13 = new float[m3];
+        for (int i1=0; i1<nl1; ++i1) {
+          for (int i3=0; i3<nl3; i3=i3+2) {
+            int j3 = i3/2;
+            lo13[j3] = t[i3][i2][i1];
+          }
+          for (int i3=1; i3<nl3; i3=i3+2) {
+            t[i3][i2][i1] = si.interpolate(m3,2,0,lo13,i3);
+          }
+        }
+      }});
+      add(sl,t,sl);
+    }
+    float[][][] y = zerofloat(nx1,nx2,nx3);
+    copy(nx1,nx2,nx3,s[0],y);
+    return y;
+  }
   
   /**
    * Apply radial low-pass filter in wavenumber domain.  Filter response is
@@ -920,52 +1025,49 @@ public class SteerablePyramid {
    * @param dir filter direction index.
    * @param cfout output 3D image in wavenumber domain (complex array).
    */
-  private void applySteerableFilter(int dir,float[][][] cfin,
-                                           float[][][] cfout) {
+  private void applySteerableFilter(int dir,final float[][][] cfin,
+                                           final float[][][] cfout) {
     int nf3 = cfin.length;
-    int nf2 = cfin[0].length;
-    int nf1 = cfin[0][0].length/2;
-    int ir,ii;
+    final int nf2 = cfin[0].length;
+    final int nf1 = cfin[0][0].length/2;
     //double m1 = (double)(nf1-1); // not used
-    double m2 = (double)(nf2-1)/2.0;
-    double m3 = (double)(nf3-1)/2.0;
+    final double m2 = (double)(nf2-1)/2.0;
+    final double m3 = (double)(nf3-1)/2.0;
     double v1=0.0,v2=0.0,v3=0.0;
-    double w1,w2,w3;
-    double flt1,flt2;
     double s = 1.0;
-    double s2 = 1.0 + s*s;
+    final double s2 = 1.0 + s*s;
     if      (dir==0) {v1=0.0; v2=1.0; v3=  s;}
     else if (dir==1) {v1=0.0; v2=1.0; v3= -s;}
     else if (dir==2) {v1=1.0; v2=  s; v3=0.0;}
     else if (dir==3) {v1=1.0; v2= -s; v3=0.0;}
     else if (dir==4) {v1=  s; v2=0.0; v3=1.0;}
     else if (dir==5) {v1= -s; v2=0.0; v3=1.0;}
-    for (int i3=0; i3<nf3; ++i3) {
+    final double u1 = v1, u2 = v2, u3 = v3;
+    Parallel.loop(nf3,new Parallel.LoopInt() {
+    public void compute(int i3) {
       for (int i2=0; i2<nf2; ++i2) {
         for (int i1=0; i1<nf1; ++i1) {
-          w1 = (double)i1;
-          w2 = (double)i2-m2;
-          w3 = (double)i3-m3;
-          ir = 2*i1;
-          ii = ir+1;
-          flt1 = w1*v1 + w2*v2 + w3*v3;
+          double w1 = (double)i1;
+          double w2 = (double)i2-m2;
+          double w3 = (double)i3-m3;
+          int ir = 2*i1;
+          int ii = ir+1;
+          double flt1 = w1*u1 + w2*u2 + w3*u3;
           flt1 = flt1*flt1;
-          flt2 = (w1*w1 + w2*w2 + w3*w3)*2.0*s2;
+          double flt2 = (w1*w1 + w2*w2 + w3*w3)*2.0*s2;
           flt1 = flt1/flt2;
           cfout[i3][i2][ir] = cfin[i3][i2][ir]*(float)flt1;
           cfout[i3][i2][ii] = cfin[i3][i2][ii]*(float)flt1;
         }      
       }
-    }
+    }});
     /**
      * Following section is to avoid divide-by-zero.
      * It sets amplitude to zero for zero wavenumber.
      */
-    if ((int)m2*2 == nf2 && (int)m3*2 == nf3) {
-      ir = 0;
-      ii = ir+1;
-      cfout[(int)m3][(int)m2][ir] = 0.0f;
-      cfout[(int)m3][(int)m2][ii] = 0.0f;
+    if (m2==(int)m2 && m3==(int)m3) {
+      cfout[(int)m3][(int)m2][0] = 0.0f;
+      cfout[(int)m3][(int)m2][1] = 0.0f;
     }
   }
   
@@ -1028,38 +1130,36 @@ public class SteerablePyramid {
    * After this step all samples are positive.  Gaussian smoothing is
    * then applied to the six preprocessed images.
    * @param sigma half-width of 3D Gaussian smoothing filter.
-   * @param lev level number.
-   * @param spyr input 3D steerable pyramid (3D array).
+   * @param q input basis images for a single pyramid level.
    * @return array containing preprocessed, smoothed versions of
    * directionally-filtered basis images for a single pyramid level.
    */
-  private float[][][][] pqjShiftSmooth(double sigma,int lev,
-                                       float[][][][][] spyr) {
+  private float[][][][] pqjShiftSmooth(double sigma,float[][][][] q) {
     RecursiveGaussianFilter rcg = new RecursiveGaussianFilter(sigma);
-    float [] test = zerofloat(NDIR3);
-    float testmin;
     // Allocate output array
-    float[][][][] pq = new float[NDIR3][1][1][1];
+    final float[][][][] pq = new float[NDIR3][][][];
     // Compute pqj from qj's
-    pq[0] = add(spyr[lev][0],spyr[lev][1]);
+    pq[0] = add(q[0],q[1]);
     for (int dir=2; dir<NDIR3; ++dir) {
-      add(pq[0],spyr[lev][dir],pq[0]);
+      add(pq[0],q[dir],pq[0]);
     }
     for (int dir=1; dir<NDIR3; ++dir) {
-      pq[dir] = mul(pq[0],spyr[lev][dir]);
+      pq[dir] = mul(pq[0],q[dir]);
     }
-    mul(pq[0],spyr[lev][0],pq[0]);
+    mul(pq[0],q[0],pq[0]);
     // Shift samples to avoid negative
     int nl3 = pq[0].length;
-    int nl2 = pq[0][0].length;
-    int nl1 = pq[0][0][0].length;
-    for (int i3=0; i3<nl3; ++i3) {
-     for (int i2=0; i2<nl2; ++i2) {
+    final int nl2 = pq[0][0].length;
+    final int nl1 = pq[0][0][0].length;
+    Parallel.loop(nl3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      float[] test = new float[NDIR3];
+      for (int i2=0; i2<nl2; ++i2) {
         for (int i1=0; i1<nl1; ++i1) {
           for (int dir=0; dir<NDIR3; ++dir) {
             test[dir] = pq[dir][i3][i2][i1];
           }
-          testmin = min(test);
+          float testmin = min(test);
           if (testmin<0.0f) {
             for (int dir=0; dir<NDIR3; ++dir) {
               pq[dir][i3][i2][i1] -= testmin;
@@ -1067,13 +1167,50 @@ public class SteerablePyramid {
           }
         }
       }
-    }
+    }});
     // Gaussian smoothing
     for (int dir=0; dir<NDIR3; ++dir) {
       rcg.apply000(pq[dir],pq[dir]);
     }
     return pq;
   }
+
+  /**
+   * Computes steering direction cosines and dimensionality attribute
+   * from preprocessed and smoothed basis images for one pyramid level.
+   * Critical points are computed in parallel.
+   * @param pqj input preprocessed, smoothed basis images.
+   * @return array containing direction cosines and dimensionality.
+   */
+  private float[][][][] computeAttributes(final float[][][][] pqj) {
+    // Parameters to select estimation for locally planar or linear features
+    final int abcindx = (statelinear)?0:2;
+    final int e0indx = (statelinear)?1:2;
+    final int e1indx = (statelinear)?0:1;
+    int nl3 = pqj[0].length;
+    final int nl2 = pqj[0][0].length;
+    final int nl1 = pqj[0][0][0].length;
+    final float[][][][] attr = new float[4][nl3][nl2][nl1];
+    Parallel.loop(nl3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      double[] f = zerodouble(NDIR3);
+      double[][] abcf = zerodouble(4,3);
+      for (int i2=0; i2<nl2; ++i2) {
+        for (int i1=0; i1<nl1; ++i1) {
+          for (int j=0; j<NDIR3; ++j) {
+            f[j] = pqj[j][i3][i2][i1];
+          }
+          findCriticalPoints(f,abcf);
+          attr[0][i3][i2][i1] = (float)(abcf[abcindx][0]);
+          attr[1][i3][i2][i1] = (float)(abcf[abcindx][1]);
+          attr[2][i3][i2][i1] = (float)(abcf[abcindx][2]);
+          attr[3][i3][i2][i1] =
+              (float)((abcf[e0indx][3]-abcf[e1indx][3])/abcf[2][3]);
+        } 
+      }
+    }});
+    return attr;
+  }
   
   /**
    * Finds extrema of output values for a 2nd-order steerable filter.
@@ -1493,40 +1630,43 @@ public class SteerablePyramid {
   
   /**
    * Applies inverse 3D Fourier transform to an input wavenumber-domain image.
-   * The output space-domain image is written to the appropriate part of the
-   * steerable pyramid array.
    * @param lev level number.
-   * @param dir basis filter orientation index for the input image.
    * @param cf input image in wavenumber domain (complex array).
-   * @param spyr input/output 3D steerable pyramid.
+   * @param y output space-domain image for the level.
    */
-  private void ftInverse(int lev,int dir,
-                         float[][][] cf,float spyr[][][][][]) {
-    FftReal fft1;
-    FftComplex fft2;
-    FftComplex fft3;
-    int nf3 = cf.length;
-    int nf2 = cf[0].length;
-    int nf1c = cf[0][0].length/2;
-    int nf1 = (nf1c-1)*2;
+  private void ftInverse(int lev,final float[][][] cf,float[][][] y) {
+    final int nf3 = cf.length;
+    final int nf2 = cf[0].length;
+    final int nf1c = cf[0][0].length/2;
+    final int nf1 = (nf1c-1)*2;
     int mpad = round(20.0f/(1.0f+(float)lev));
     int lfactor = (int)pow(2.0,(double)lev);
     int nl3 = (n3-1)/lfactor+1;
     int nl2 = (n2-1)/lfactor+1;
     int nl1 = (n1-1)/lfactor+1;
-    fft1 = new FftReal(nf1);
-    fft2 = new FftComplex(nf2);
-    fft3 = new FftComplex(nf3);
-    fft3.complexToComplex3(-1,nf1c,nf2,cf,cf);
-    flipSign(3, cf);
-    fft3.scale(nf1c,nf2,nf3,cf);
-    fft2.complexToComplex2(-1,nf1c,nf3,cf,cf);
-    flipSign(2, cf);
-    fft2.scale(nf1c,nf2,nf3,cf);
-    fft1.complexToReal1(-1,nf2,nf3,cf,cf);
-    fft1.scale(nf1,nf2,nf3,cf);
-    copy(nl1,nl2,nl3,mpad,mpad,mpad,1,1,1,cf,
-        0,0,0,1,1,1,spyr[lev][dir]);
+    final FftReal fft1 = new FftReal(nf1);
+    final FftComplex fft2 = new FftComplex(nf2);
+    final FftComplex fft3 = new FftComplex(nf3);
+    // Transform 3rd dimension, in parallel for slices i2.
+    Parallel.loop(nf2,new Parallel.LoopInt() {
+    public void compute(int i2) {
+      float[][] cf2 = new float[nf3][];
+      for (int i3=0; i3<nf3; ++i3)
+        cf2[i3] = cf[i3][i2];
+      fft3.complexToComplex2(-1,nf1c,cf2,cf2);
+      flipSign(2,cf2);
+      fft3.scale(nf1c,nf3,cf2);
+    }});
+    // Transform 2nd and 1st dimensions, in parallel for slices i3.
+    Parallel.loop(nf3,new Parallel.LoopInt() {
+    public void compute(int i3) {
+      fft2.complexToComplex2(-1,nf1c,cf[i3],cf[i3]);
+      flipSign(2,cf[i3]);
+      fft2.scale(nf1c,nf2,cf[i3]);
+      fft1.complexToReal1(-1,nf2,cf[i3],cf[i3]);
+      fft1.scale(nf1,nf2,cf[i3]);
+    }});
+    copy(nl1,nl2,nl3,mpad,mpad,mpad,1,1,1,cf,0,0,0,1,1,1,y);
   }
   
   /**
@@ -106,7 +106,7 @@ public class BlendedGridder3 implements Gridder3 {
   public void setTensors(Tensors3 tensors) {
     _tensors = tensors;
     if (_tensors==null) {
-      _tensors = new Tensors3() {
+      _tensors = new BulkTensors3() {
         public void getTensor(int i1, int i2, int i3, float[] d) {
           d[0] = 1.0f;
           d[1] = 0.0f;
@@ -115,6 +115,14 @@ public class BlendedGridder3 implements Gridder3 {
           d[4] = 0.0f;
           d[5] = 1.0f;
         }
+        public void getTensors(int i2, int i3, float[][] d) {
+          fill(1.0f,d[0]);
+          fill(0.0f,d[1]);
+          fill(0.0f,d[2]);
+          fill(1.0f,d[3]);
+          fill(0.0f,d[4]);
+          fill(1.0f,d[5]);
+        }
       };
     }
   }
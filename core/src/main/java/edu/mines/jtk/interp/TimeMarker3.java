@@ -19,6 +19,7 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import edu.mines.jtk.dsp.BulkTensors3;
 import edu.mines.jtk.dsp.Tensors3;
 import edu.mines.jtk.util.Parallel;
 import edu.mines.jtk.util.Stopwatch;
@@ -131,6 +132,10 @@ public class TimeMarker3 {
     // Array for the eikonal solution times.
     float[][][] t = new float[_n3][_n2][_n1];
 
+    // Tensor coefficients, which are used many times for each sample, 
+    // are got in bulk one row at a time, and cached for each thread.
+    _rows = new Parallel.Unsafe<TensorRows>();
+
     // Active list of samples used to compute times.
     ActiveList al = new ActiveList();
 
@@ -156,6 +161,9 @@ public class TimeMarker3 {
       solve(al,t,m,times,marks);
     }
 
+    // Release the cached tensor coefficients.
+    _rows = null;
+
     // Log elapsed time.
     sw.stop();
     log.fine("TimeMarker3.apply: end time="+(int)sw.time());
@@ -188,6 +196,7 @@ public class TimeMarker3 {
 
   private int _n1,_n2,_n3;
   private Tensors3 _tensors;
+  private Parallel.Unsafe<TensorRows> _rows; // per-thread cached tensors
   private Sample[][][] _s;
   private Concurrency _concurrency = Concurrency.PARALLEL;
 
@@ -203,6 +212,53 @@ public class TimeMarker3 {
           _s[i3][i2][i1] = new Sample(i1,i2,i3);
   }
 
+  // Tensor coefficients for a few rows of samples. For bulk tensors,
+  // coefficients are got one row at a time, and rows with indices
+  // (i2,i3) are cached in NROW*NROW slots indexed by i2%NROW and i3%NROW,
+  // so that rows for a sample and its neighbors are cached together.
+  // Other tensors are got one sample at a time. Each thread or task that
+  // computes times has its own rows.
+  private static final int NROW = 4;
+  private class TensorRows {
+    TensorRows() {
+      if (_tensors instanceof BulkTensors3) {
+        _bt = (BulkTensors3)_tensors;
+        _a = new float[NROW*NROW][][];
+        _k2 = new int[NROW*NROW];
+        _k3 = new int[NROW*NROW];
+      }
+    }
+    // Returns coefficients {d11,d12,d13,d22,d23,d33} for one sample.
+    float[] get(int i1, int i2, int i3) {
+      if (_bt==null) {
+        _tensors.getTensor(i1,i2,i3,_d);
+      } else {
+        int j = (i3%NROW)*NROW+i2%NROW;
+        float[][] a = _a[j];
+        if (a==null || _k2[j]!=i2 || _k3[j]!=i3) {
+          if (a==null) _a[j] = a = new float[6][_n1];
+          _bt.getTensors(i2,i3,a);
+          _k2[j] = i2;
+          _k3[j] = i3;
+        }
+        for (int k=0; k<6; ++k)
+          _d[k] = a[k][i1];
+      }
+      return _d;
+    }
+    private BulkTensors3 _bt; // bulk tensors, or null
+    private float[][][] _a; // cached rows of coefficients
+    private int[] _k2,_k3; // indices of cached rows
+    private float[] _d = new float[6]; // coefficients for one sample
+  }
+
+  // Returns tensor rows for the current thread.
+  private TensorRows rows() {
+    TensorRows r = _rows.get();
+    if (r==null) _rows.set(r=new TensorRows());
+    return r;
+  }
+
   // Sample index offsets for six neighbor samples.
   // Must be consistent with the neighbor sets below.
   private static final int[] K1 = {-1, 1, 0, 0, 0, 0};
@@ -438,7 +494,7 @@ public class TimeMarker3 {
     float[][][] t, int m, 
     float[][][] times, int[][][] marks) 
   {
-    float[] d = new float[6];
+    TensorRows d = rows();
     ActiveList bl = new ActiveList();
     int ntotal = 0;
     while (!al.isEmpty()) {
@@ -470,10 +526,10 @@ public class TimeMarker3 {
     ExecutorService es = Executors.newFixedThreadPool(nthread);
     CompletionService<Void> cs = new ExecutorCompletionService<Void>(es);
     ActiveList[] bl = new ActiveList[nthread];
-    float[][] d = new float[nthread][];
+    TensorRows[] d = new TensorRows[nthread];
     for (int ithread=0; ithread<nthread; ++ithread) {
       bl[ithread] = new ActiveList();
-      d[ithread] = new float[6];
+      d[ithread] = new TensorRows();
     }
     final AtomicInteger ai = new AtomicInteger();
     //int ntotal = 0;
@@ -487,7 +543,7 @@ public class TimeMarker3 {
       int ntask = min(nb,nthread); // number of tasks (threads to be used)
       for (int itask=0; itask<ntask; ++itask) { // for each task, ...
         final ActiveList bltask = bl[itask]; // task-specific B list 
-        final float[] dtask = d[itask]; // task-specific work array
+        final TensorRows dtask = d[itask]; // task-specific tensors
         cs.submit(new Callable<Void>() { // submit new task
           public Void call() {
             for (int ib=ai.getAndIncrement(); ib<nb; ib=ai.getAndIncrement()) {
@@ -535,7 +591,6 @@ public class TimeMarker3 {
   {
     int mbmin = 64; // target minimum number of samples per block
     int nbmax = 256; // maximum number of blocks
-    final float[][] dtask = new float[nbmax][];
     final ActiveList[] bltask = new ActiveList[nbmax];
     while (!al.isEmpty()) {
       final int n = al.size(); // number of samples in active (A) list
@@ -544,15 +599,14 @@ public class TimeMarker3 {
       final int mb = 1+(n-1)/nb; // evenly distribute samples per block
       Parallel.loop(nb,new Parallel.LoopInt() { // for all blocks, ...
         public void compute(int ib) {
-          if (bltask[ib]==null) { // if necessary for this block, make ...
-            dtask[ib] = new float[6]; // work array for tensor coefficients
-            bltask[ib] = new ActiveList(); // and an empty active list
-          }
+          if (bltask[ib]==null) // if necessary for this block, make ...
+            bltask[ib] = new ActiveList(); // an empty active list
+          TensorRows d = rows(); // tensors for this thread
           int i = ib*mb; // beginning of block
           int j = min(i+mb,n); // beginning of next block (or end)
           for (int k=i; k<j; ++k) { // for each sample in block, ...
             Sample s = al.get(k); // get k'th sample from A list
-            solveOne(t,m,times,marks,s,bltask[ib],dtask[ib]); // do sample
+            solveOne(t,m,times,marks,s,bltask[ib],d); // do sample
           }
           bltask[ib].setAllAbsent(); // needed when merging B lists below
         }
@@ -586,7 +640,7 @@ public class TimeMarker3 {
    */
   private void solveOne(
     float[][][] t, int m, float[][][] times, int[][][] marks,
-    Sample s, ActiveList bl, float[] d) 
+    Sample s, ActiveList bl, TensorRows d) 
   {
     // Sample indices.
     int i1 = s.i1;
@@ -695,9 +749,9 @@ public class TimeMarker3 {
    */
   private float computeTime(
     float[][][] t,
-    int i1, int i2, int i3, int[] k1s, int[] k2s, int[] k3s, float[] d) 
+    int i1, int i2, int i3, int[] k1s, int[] k2s, int[] k3s, TensorRows r) 
   {
-    _tensors.getTensor(i1,i2,i3,d);
+    float[] d = r.get(i1,i2,i3);
     float d11 = d[0];
     float d12 = d[1];
     float d13 = d[2];
@@ -16,6 +16,8 @@ package edu.mines.jtk.io;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * An array file expands the capabilities of {@link java.io.RandomAccessFile}. 
@@ -210,6 +212,28 @@ public class ArrayFile implements ArrayInput, ArrayOutput, Closeable {
     _raf.setLength(newLength);
   }
 
+  /**
+   * Maps a region of this file directly into memory. If the region 
+   * extends beyond the end of a file opened for writing, then the file
+   * length is increased. The mapping remains valid after this file is 
+   * closed.
+   * <p>
+   * The byte order of the returned buffer is the byte order for reading.
+   * Because one buffer is used for both reading and writing, files that
+   * are mapped should have the same byte orders for reading and writing.
+   * @param mode the map mode; READ_ONLY, READ_WRITE, or PRIVATE.
+   * @param off the offset in bytes of the region to map.
+   * @param len the length in bytes of the region; at most 2^31-1.
+   * @return the mapped byte buffer.
+   */
+  public MappedByteBuffer map(FileChannel.MapMode mode, long off, long len)
+    throws IOException
+  {
+    MappedByteBuffer mbb = _raf.getChannel().map(mode,off,len);
+    mbb.order(_bor);
+    return mbb;
+  }
+
   /**
    * Closes this data file, releasing any associated system resources.
    */
@@ -156,8 +156,190 @@ public class ConvTest {
     }
   }
 
+  @Test
+  public void test1Fft() {
+    for (int itest=0; itest<200; ++itest) {
+      int lmax = (itest%2==0)?8:800;
+      int kmax = (itest%2==0)?2:400;
+      int lx = 1+_random.nextInt(lmax);
+      int ly = 1+_random.nextInt(10*lmax);
+      int lz = 1+_random.nextInt(10*lmax);
+      int kx = _random.nextInt(1+2*kmax)-kmax;
+      int ky = _random.nextInt(1+2*kmax)-kmax;
+      int kz = _random.nextInt(1+2*kmax)-kmax;
+      float[] x = randfloat(lx);
+      float[] y = randfloat(ly);
+      float[] zs = zerofloat(lz);
+      float[] zf = zerofloat(lz);
+      if (_random.nextBoolean()) {
+        float[] t = x;  x = y;  y = t;
+        int lt = lx;  lx = ly;  ly = lt;
+      }
+
+      convSimple(lx,kx,x,ly,ky,y,lz,kz,zs);
+      Conv.conv(0.0,lx,kx,x,ly,ky,y,lz,kz,zf);
+      assertArrayEquals(zs,zf,tolerance(lx,ly));
+
+      xcorSimple(lx,kx,x,ly,ky,y,lz,kz,zs);
+      Conv.xcor(0.0,lx,kx,x,ly,ky,y,lz,kz,zf);
+      assertArrayEquals(zs,zf,tolerance(lx,ly));
+    }
+  }
+
+  @Test
+  public void test1FftLong() {
+    int lx = 301;
+    int ly = 100000;
+    float[] x = randfloat(lx);
+    float[] y = randfloat(ly);
+    float[] zs = zerofloat(ly);
+    float[] zf = zerofloat(ly);
+    convSimple(lx,-150,x,ly,0,y,ly,0,zs);
+    Conv.convFft(lx,-150,x,ly,0,y,ly,0,zf);
+    assertArrayEquals(zs,zf,tolerance(lx,ly));
+    xcorSimple(lx,-150,x,ly,0,y,ly,0,zs);
+    Conv.xcorFft(lx,-150,x,ly,0,y,ly,0,zf);
+    assertArrayEquals(zs,zf,tolerance(lx,ly));
+  }
+
+  @Test
+  public void test1FftCrossover() {
+    int lx = 11;
+    int ly = 1000;
+    float[] x = randfloat(lx);
+    float[] y = randfloat(ly);
+    float[] zs = zerofloat(ly);
+    float[] zf = zerofloat(ly);
+    Conv.conv(lx,-5,x,ly,0,y,ly,0,zs);
+    Conv.convFft(Double.MAX_VALUE,lx,-5,x,ly,0,y,ly,0,zf);
+    assertArrayEquals(zs,zf,0.0f);
+    Conv.convFft(0.0,lx,-5,x,ly,0,y,ly,0,zf);
+    assertArrayEquals(zs,zf,tolerance(lx,ly));
+    Conv.xcor(lx,-5,x,ly,0,y,ly,0,zs);
+    Conv.xcorFft(0.0,lx,-5,x,ly,0,y,ly,0,zf);
+    assertArrayEquals(zs,zf,tolerance(lx,ly));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeCrossover() {
+    float[] x = randfloat(3);
+    Conv.convFft(-1.0,3,0,x,3,0,x,5,0,zerofloat(5));
+  }
+
+  @Test
+  public void test2Fft() {
+    for (int itest=0; itest<200; ++itest) {
+      int lmax = (itest%2==0)?8:40;
+      int kmax = (itest%2==0)?2:20;
+      int lx1 = 1+_random.nextInt(lmax);
+      int lx2 = 1+_random.nextInt(lmax);
+      int ly1 = 1+_random.nextInt(lmax);
+      int ly2 = 1+_random.nextInt(lmax);
+      int lz1 = 1+_random.nextInt(lmax);
+      int lz2 = 1+_random.nextInt(lmax);
+      int kx1 = _random.nextInt(1+2*kmax)-kmax;
+      int kx2 = _random.nextInt(1+2*kmax)-kmax;
+      int ky1 = _random.nextInt(1+2*kmax)-kmax;
+      int ky2 = _random.nextInt(1+2*kmax)-kmax;
+      int kz1 = _random.nextInt(1+2*kmax)-kmax;
+      int kz2 = _random.nextInt(1+2*kmax)-kmax;
+      float[][] x = randfloat(lx1,lx2);
+      float[][] y = randfloat(ly1,ly2);
+      float[][] zs = zerofloat(lz1,lz2);
+      float[][] zf = zerofloat(lz1,lz2);
+      float tol = tolerance(lx1*lx2,ly1*ly2);
+
+      convSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zs);
+      Conv.conv(0.0,lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zf);
+      assertArrayEquals(zs,zf,tol);
+
+      xcorSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zs);
+      Conv.xcor(0.0,lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zf);
+      assertArrayEquals(zs,zf,tol);
+    }
+  }
+
+  @Test
+  public void test3Fft() {
+    for (int itest=0; itest<50; ++itest) {
+      int lmax = 8;
+      int kmax = 4;
+      int lx1 = 1+_random.nextInt(lmax);
+      int lx2 = 1+_random.nextInt(lmax);
+      int lx3 = 1+_random.nextInt(lmax);
+      int ly1 = 1+_random.nextInt(lmax);
+      int ly2 = 1+_random.nextInt(lmax);
+      int ly3 = 1+_random.nextInt(lmax);
+      int lz1 = 1+_random.nextInt(lmax);
+      int lz2 = 1+_random.nextInt(lmax);
+      int lz3 = 1+_random.nextInt(lmax);
+      int kx1 = _random.nextInt(1+2*kmax)-kmax;
+      int kx2 = _random.nextInt(1+2*kmax)-kmax;
+      int kx3 = _random.nextInt(1+2*kmax)-kmax;
+      int ky1 = _random.nextInt(1+2*kmax)-kmax;
+      int ky2 = _random.nextInt(1+2*kmax)-kmax;
+      int ky3 = _random.nextInt(1+2*kmax)-kmax;
+      int kz1 = _random.nextInt(1+2*kmax)-kmax;
+      int kz2 = _random.nextInt(1+2*kmax)-kmax;
+      int kz3 = _random.nextInt(1+2*kmax)-kmax;
+      float[][][] x = randfloat(lx1,lx2,lx3);
+      float[][][] y = randfloat(ly1,ly2,ly3);
+      float[][][] zs = zerofloat(lz1,lz2,lz3);
+      float[][][] zf = zerofloat(lz1,lz2,lz3);
+      float tol = tolerance(lx1*lx2*lx3,ly1*ly2*ly3);
+
+      convSimple(lx1,lx2,lx3,kx1,kx2,kx3,x,
+                 ly1,ly2,ly3,ky1,ky2,ky3,y,
+                 lz1,lz2,lz3,kz1,kz2,kz3,zs);
+      Conv.conv(0.0,lx1,lx2,lx3,kx1,kx2,kx3,x,
+                ly1,ly2,ly3,ky1,ky2,ky3,y,
+                lz1,lz2,lz3,kz1,kz2,kz3,zf);
+      assertArrayEquals(zs,zf,tol);
+
+      xcorSimple(lx1,lx2,lx3,kx1,kx2,kx3,x,
+                 ly1,ly2,ly3,ky1,ky2,ky3,y,
+                 lz1,lz2,lz3,kz1,kz2,kz3,zs);
+      Conv.xcor(0.0,lx1,lx2,lx3,kx1,kx2,kx3,x,
+                ly1,ly2,ly3,ky1,ky2,ky3,y,
+                lz1,lz2,lz3,kz1,kz2,kz3,zf);
+      assertArrayEquals(zs,zf,tol);
+    }
+  }
+
+  @Test
+  public void test2Direct() {
+    for (int itest=0; itest<10; ++itest) {
+      int lx1 = 1+_random.nextInt(12);
+      int lx2 = 1+_random.nextInt(5);
+      int ly1 = 256+_random.nextInt(300);
+      int ly2 = 1+_random.nextInt(40);
+      int lz1 = 256+_random.nextInt(300);
+      int lz2 = 1+_random.nextInt(40);
+      int kx1 = -lx1/2;
+      int kx2 = -lx2/2;
+      int kz1 = _random.nextInt(9)-4;
+      int kz2 = _random.nextInt(9)-4;
+      float[][] x = randfloat(lx1,lx2);
+      float[][] y = randfloat(ly1,ly2);
+      float[][] zs = zerofloat(lz1,lz2);
+      float[][] zf = zerofloat(lz1,lz2);
+      convSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,0,0,y,lz1,lz2,kz1,kz2,zs);
+      Conv.conv(lx1,lx2,kx1,kx2,x,ly1,ly2,0,0,y,lz1,lz2,kz1,kz2,zf);
+      assertArrayEquals(zs,zf);
+      xcorSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,0,0,y,lz1,lz2,kz1,kz2,zs);
+      Conv.xcor(lx1,lx2,kx1,kx2,x,ly1,ly2,0,0,y,lz1,lz2,kz1,kz2,zf);
+      assertArrayEquals(zs,zf);
+    }
+  }
+
   private Random _random = new Random();
 
+  // Tolerance for FFT methods, which have rounding errors proportional 
+  // to the largest output samples, here for random values in [0,1).
+  private static float tolerance(int lx, int ly) {
+    return 100.0f*FLT_EPSILON*max(1,min(lx,ly));
+  }
+
   private static void convSimple(
     int lx, int kx, float[] x,
     int ly, int ky, float[] y,
@@ -319,6 +501,26 @@ public class ConvTest {
       assertEquals(a[i],b[i],TOLERANCE);
     }
   }
+  private static void assertArrayEquals(float[] a, float[] b, float tol) {
+    int n = a.length;
+    for (int i=0; i<n; ++i) {
+      assertEquals(a[i],b[i],tol);
+    }
+  }
+  private static void assertArrayEquals(float[][] a, float[][] b, float tol) {
+    int n = a.length;
+    for (int i=0; i<n; ++i) {
+      assertArrayEquals(a[i],b[i],tol);
+    }
+  }
+  private static void assertArrayEquals(
+    float[][][] a, float[][][] b, float tol) 
+  {
+    int n = a.length;
+    for (int i=0; i<n; ++i) {
+      assertArrayEquals(a[i],b[i],tol);
+    }
+  }
   private static void assertArrayEquals(float[][] a, float[][] b) {
     int n = a.length;
     for (int i=0; i<n; ++i) {
@@ -0,0 +1,272 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.Dct}. The checks here are shared with
+ * {@link edu.mines.jtk.dsp.DstTest}.
+ * @version 2026.10.16
+ */
+public class DctTest {
+
+  @Test
+  public void test1() {
+    check1(transform());
+  }
+
+  @Test
+  public void test2() {
+    check2(transform());
+  }
+
+  @Test
+  public void test3() {
+    check3(transform());
+  }
+
+  @Test
+  public void testParallel() {
+    checkParallel(transform());
+  }
+
+  @Test
+  public void testLong() {
+    checkLong(transform());
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // package
+
+  // A transform of type II or III, with a direct computation of its 1-D
+  // transforms, so that the checks below apply to either a DCT or a DST.
+  interface Transform {
+    void setParallel(boolean parallel);
+    void applyII(float[] x, float[] y);
+    void applyII(float[][] x, float[][] y);
+    void applyII(float[][][] x, float[][][] y);
+    void applyIII(float[] x, float[] y);
+    void applyIII(float[][] x, float[][] y);
+    void applyIII(float[][][] x, float[][][] y);
+    void scale(float[] x);
+    void scale(float[][] x);
+    void scale(float[][][] x);
+    float[] directII(float[] x);
+    float[] directIII(float[] x);
+  }
+
+  static void check1(Transform t) {
+    for (int n=2; n<200; n+=3)
+      check1(t,FftReal.nfftSmall(n));
+    for (int n=1; n<40; ++n)
+      check1(t,n);
+    check1(t,125);
+    check1(t,1000);
+  }
+
+  // Lengths greater than the limit for chirp-z transforms are valid if
+  // they are valid FFT lengths.
+  static void checkLong(Transform t) {
+    int n = 1<<20;
+    float[] x = randfloat(n);
+    float[] y = zerofloat(n);
+    t.applyII(x,y);
+    t.applyIII(y,y);
+    t.scale(y);
+    assertNear(x,y);
+  }
+
+  static void check2(Transform t) {
+    check2(t,20,130);
+    check2(t,21,13);
+  }
+
+  static void check3(Transform t) {
+    check3(t,12,10,8);
+    check3(t,11,9,7);
+  }
+
+  static void checkParallel(Transform t) {
+    checkParallel(t,154,140,6);
+    checkParallel(t,75,70,5);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static Transform transform() {
+    final Dct dct = new Dct();
+    return new Transform() {
+      public void setParallel(boolean parallel) {
+        dct.setParallel(parallel);
+      }
+      public void applyII(float[] x, float[] y) {
+        dct.applyII(x,y);
+      }
+      public void applyII(float[][] x, float[][] y) {
+        dct.applyII(x,y);
+      }
+      public void applyII(float[][][] x, float[][][] y) {
+        dct.applyII(x,y);
+      }
+      public void applyIII(float[] x, float[] y) {
+        dct.applyIII(x,y);
+      }
+      public void applyIII(float[][] x, float[][] y) {
+        dct.applyIII(x,y);
+      }
+      public void applyIII(float[][][] x, float[][][] y) {
+        dct.applyIII(x,y);
+      }
+      public void scale(float[] x) {
+        dct.scale(x);
+      }
+      public void scale(float[][] x) {
+        dct.scale(x);
+      }
+      public void scale(float[][][] x) {
+        dct.scale(x);
+      }
+      public float[] directII(float[] x) {
+        return dct2(x);
+      }
+      public float[] directIII(float[] x) {
+        return dct3(x);
+      }
+    };
+  }
+
+  private static void check1(Transform t, int n) {
+    float[] x = randfloat(n);
+    float[] y = zerofloat(n);
+    t.applyII(x,y);
+    assertNear(t.directII(x),y);
+    float[] z = copy(y);
+    t.applyIII(z,z);
+    assertNear(t.directIII(y),z);
+    t.scale(z);
+    assertNear(x,z);
+  }
+
+  private static void check2(Transform t, int n1, int n2) {
+    float[][] x = randfloat(n1,n2);
+    float[][] y = copy(x);
+    t.applyII(y,y);
+    assertNear(directII(t,x),y);
+    float[][] z = zerofloat(n1,n2);
+    t.applyIII(y,z);
+    t.scale(z);
+    assertNear(x,z);
+  }
+
+  private static void check3(Transform t, int n1, int n2, int n3) {
+    float[][][] x = randfloat(n1,n2,n3);
+    float[][][] y = zerofloat(n1,n2,n3);
+    t.applyII(x,y);
+    float[][][] d = copy(x);
+    for (int i3=0; i3<n3; ++i3)
+      d[i3] = directII(t,d[i3]);
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        float[] d3 = new float[n3];
+        for (int i3=0; i3<n3; ++i3)
+          d3[i3] = d[i3][i2][i1];
+        d3 = t.directII(d3);
+        for (int i3=0; i3<n3; ++i3)
+          d[i3][i2][i1] = d3[i3];
+      }
+    }
+    assertNear(d,y);
+    t.applyIII(y,y);
+    t.scale(y);
+    assertNear(x,y);
+  }
+
+  private static void checkParallel(Transform t, int n1, int n2, int n3) {
+    float[][][] x = randfloat(n1,n2,n3);
+    float[][][] ys = zerofloat(n1,n2,n3);
+    float[][][] yp = zerofloat(n1,n2,n3);
+    t.setParallel(false);
+    t.applyII(x,ys);
+    t.applyIII(ys,ys);
+    t.setParallel(true);
+    t.applyII(x,yp);
+    t.applyIII(yp,yp);
+    assertTrue(equal(ys,yp));
+  }
+
+  // Direct computation of 1-D DCT-II.
+  private static float[] dct2(float[] x) {
+    int n = x.length;
+    float[] y = new float[n];
+    for (int k=0; k<n; ++k) {
+      double yk = 0.0;
+      for (int j=0; j<n; ++j)
+        yk += 2.0*x[j]*Math.cos(Math.PI*(j+0.5)*k/n);
+      y[k] = (float)yk;
+    }
+    return y;
+  }
+
+  // Direct computation of 1-D DCT-III.
+  private static float[] dct3(float[] x) {
+    int n = x.length;
+    float[] y = new float[n];
+    for (int k=0; k<n; ++k) {
+      double yk = x[0];
+      for (int j=1; j<n; ++j)
+        yk += 2.0*x[j]*Math.cos(Math.PI*j*(k+0.5)/n);
+      y[k] = (float)yk;
+    }
+    return y;
+  }
+
+  // Direct computation of a 2-D transform of type II.
+  private static float[][] directII(Transform t, float[][] x) {
+    int n1 = x[0].length;
+    int n2 = x.length;
+    float[][] y = new float[n2][];
+    for (int i2=0; i2<n2; ++i2)
+      y[i2] = t.directII(x[i2]);
+    float[] d = new float[n2];
+    for (int i1=0; i1<n1; ++i1) {
+      for (int i2=0; i2<n2; ++i2)
+        d[i2] = y[i2][i1];
+      d = t.directII(d);
+      for (int i2=0; i2<n2; ++i2)
+        y[i2][i1] = d[i2];
+    }
+    return y;
+  }
+
+  private static void assertNear(float[] x, float[] y) {
+    float tol = 100.0f*FLT_EPSILON*max(1.0f,max(abs(x)));
+    for (int i=0; i<x.length; ++i)
+      assertEquals(x[i],y[i],tol);
+  }
+  private static void assertNear(float[][] x, float[][] y) {
+    for (int i=0; i<x.length; ++i)
+      assertNear(x[i],y[i]);
+  }
+  private static void assertNear(float[][][] x, float[][][] y) {
+    for (int i=0; i<x.length; ++i)
+      assertNear(x[i],y[i]);
+  }
+}
@@ -0,0 +1,133 @@
+/****************************************************************************
+Copyright 2005, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+
+import static edu.mines.jtk.dsp.DctTest.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.Dst}, with the checks of
+ * {@link edu.mines.jtk.dsp.DctTest}.
+ * @version 2026.10.16
+ */
+public class DstTest {
+
+  @Test
+  public void test1() {
+    check1(transform());
+  }
+
+  @Test
+  public void test2() {
+    check2(transform());
+  }
+
+  @Test
+  public void test3() {
+    check3(transform());
+  }
+
+  @Test
+  public void testParallel() {
+    checkParallel(transform());
+  }
+
+  @Test
+  public void testLong() {
+    checkLong(transform());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testShorterOutput() {
+    new Dst().applyII(new float[10],new float[9]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testLongerOutput() {
+    new Dst().applyIII(new float[4][10],new float[4][11]);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static Transform transform() {
+    final Dst dst = new Dst();
+    return new Transform() {
+      public void setParallel(boolean parallel) {
+        dst.setParallel(parallel);
+      }
+      public void applyII(float[] x, float[] y) {
+        dst.applyII(x,y);
+      }
+      public void applyII(float[][] x, float[][] y) {
+        dst.applyII(x,y);
+      }
+      public void applyII(float[][][] x, float[][][] y) {
+        dst.applyII(x,y);
+      }
+      public void applyIII(float[] x, float[] y) {
+        dst.applyIII(x,y);
+      }
+      public void applyIII(float[][] x, float[][] y) {
+        dst.applyIII(x,y);
+      }
+      public void applyIII(float[][][] x, float[][][] y) {
+        dst.applyIII(x,y);
+      }
+      public void scale(float[] x) {
+        dst.scale(x);
+      }
+      public void scale(float[][] x) {
+        dst.scale(x);
+      }
+      public void scale(float[][][] x) {
+        dst.scale(x);
+      }
+      public float[] directII(float[] x) {
+        return dst2(x);
+      }
+      public float[] directIII(float[] x) {
+        return dst3(x);
+      }
+    };
+  }
+
+  // Direct computation of 1-D DST-II.
+  private static float[] dst2(float[] x) {
+    int n = x.length;
+    float[] y = new float[n];
+    for (int k=0; k<n; ++k) {
+      double yk = 0.0;
+      for (int j=0; j<n; ++j)
+        yk += 2.0*x[j]*Math.sin(Math.PI*(j+0.5)*(k+1)/n);
+      y[k] = (float)yk;
+    }
+    return y;
+  }
+
+  // Direct computation of 1-D DST-III.
+  private static float[] dst3(float[] x) {
+    int n = x.length;
+    float[] y = new float[n];
+    for (int k=0; k<n; ++k) {
+      double yk = (k%2==0)?x[n-1]:-x[n-1];
+      for (int j=0; j<n-1; ++j)
+        yk += 2.0*x[j]*Math.sin(Math.PI*(j+1)*(k+0.5)/n);
+      y[k] = (float)yk;
+    }
+    return y;
+  }
+}
@@ -0,0 +1,130 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+
+import edu.mines.jtk.util.Parallel;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.DynamicWarping}.
+ * @version 2026.10.16
+ */
+public class DynamicWarpingTest {
+
+  @Test
+  public void testConstantShift() {
+    int n1 = 201, n2 = 11, shift = 3;
+    float[][] f = sub(randfloat(n1+shift,n2),0.5f);
+    float[][] g = new float[n2][n1];
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1)
+        g[i2][i1] = f[i2][i1];
+      f[i2] = copy(n1,shift,f[i2]);
+    }
+    DynamicWarping dw = new DynamicWarping(-10,10);
+    float[][] u = dw.findShifts(f,g);
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=10; i1<n1-10; ++i1)
+        assertEquals(shift,u[i2][i1],0.0f);
+  }
+
+  @Test
+  public void testErrorPrecision() {
+    int n1 = 101, n2 = 12, n3 = 13, shift = 3;
+    float[][][] f = sub(randfloat(n1+shift,n2,n3),0.5f);
+    float[][][] g = new float[n3][n2][];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        g[i3][i2] = copy(n1,f[i3][i2]);
+        f[i3][i2] = copy(n1,shift,f[i3][i2]);
+      }
+    }
+    DynamicWarping dw = new DynamicWarping(-5,5);
+    dw.setStrainMax(0.5,0.5,0.5);
+    dw.setErrorSmoothing(2);
+    dw.setWindowSizeAndOverlap(8,9,0.5,0.5);
+    int[] nbits = {32,16,8};
+    for (int nb : nbits) {
+      dw.setErrorPrecision(nb);
+      float[][][] u = dw.findShifts(f,g);
+      float esum = 0.0f;
+      for (int i3=0; i3<n3; ++i3)
+        for (int i2=0; i2<n2; ++i2)
+          for (int i1=10; i1<n1-10; ++i1)
+            esum += abs(u[i3][i2][i1]-shift);
+      assertEquals(0.0f,esum/(n3*n2*(n1-20)),0.01f);
+    }
+  }
+
+  @Test
+  public void testMultiResolution() {
+    int n1 = 401, n2 = 5, lmax = 20;
+    float[][] g = sub(randfloat(n1+2*lmax,n2),0.5f);
+    new RecursiveGaussianFilter(2.0).apply00(g,g);
+    float[][] f = new float[n2][n1];
+    SincInterpolator si = new SincInterpolator();
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        double u = 0.5*lmax*sin(2.0*PI*i1/n1)+i2;
+        f[i2][i1] = si.interpolate(n1+2*lmax,1.0,0.0,g[i2],i1+u);
+      }
+    }
+    g = copy(n1,n2,g);
+    DynamicWarping dw = new DynamicWarping(-lmax,lmax);
+    dw.setStrainMax(0.5,0.5);
+    dw.setErrorSmoothing(2);
+    float[][] u = dw.findShifts(f,g);
+    dw.setMultiResolution(2,2);
+    float[][] v = dw.findShifts(f,g);
+    float esum = sum(abs(sub(u,v)));
+    assertEquals(0.0f,esum/(n1*n2),0.05f);
+  }
+
+  @Test
+  public void testParallel() {
+    int nl = 21, n1 = 101, n2 = 102;
+    for (int b=1; b<=3; ++b) {
+      DynamicWarping dw = new DynamicWarping(-10,10);
+      dw.setStrainMax(1.0/b,1.0/b);
+      float[][][] e = randfloat(nl,n1,n2);
+      float[][][] d1 = dw.accumulateForward1(e);
+      float[][][] d2 = dw.accumulateReverse2(e);
+      float[][] u1 = dw.backtrackReverse1(d1,e);
+      float[][] u2 = dw.backtrackReverse2(d2,e);
+      Parallel.setParallel(false);
+      try {
+        assertEqual(d1,dw.accumulateForward1(e));
+        assertEqual(d2,dw.accumulateReverse2(e));
+        assertEqual(u1,dw.backtrackReverse1(d1,e));
+        assertEqual(u2,dw.backtrackReverse2(d2,e));
+      } finally {
+        Parallel.setParallel(true);
+      }
+    }
+  }
+
+  private static void assertEqual(float[][] x, float[][] y) {
+    for (int i2=0; i2<x.length; ++i2)
+      for (int i1=0; i1<x[i2].length; ++i1)
+        assertEquals(x[i2][i1],y[i2][i1],0.0f);
+  }
+  private static void assertEqual(float[][][] x, float[][][] y) {
+    for (int i3=0; i3<x.length; ++i3)
+      assertEqual(x[i3],y[i3]);
+  }
+}
@@ -47,6 +47,28 @@ public class EigenTensors2Test {
     }
   }
 
+  @Test
+  public void testBulk() {
+    int n1 = 13, n2 = 14;
+    EigenTensors2 et = new EigenTensors2(n1,n2);
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        et.setEigenvalues(i1,i2,makeRandomEigenvalues());
+        et.setEigenvectorU(i1,i2,makeRandomEigenvector());
+      }
+    }
+    float[][] ar = new float[3][n1];
+    float[] ai = new float[3];
+    for (int i2=0; i2<n2; ++i2) {
+      et.getTensors(i2,ar);
+      for (int i1=0; i1<n1; ++i1) {
+        et.getTensor(i1,i2,ai);
+        for (int k=0; k<3; ++k)
+          assertEquals(ai[k],ar[k][i1],0.0);
+      }
+    }
+  }
+
   private void checkEigenvalues(float[] c, float[] a, double e) {
     assertEquals(c[0],a[0],e);
     assertEquals(c[1],a[1],e);
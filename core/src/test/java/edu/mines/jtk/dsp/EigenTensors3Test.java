@@ -62,6 +62,41 @@ public class EigenTensors3Test {
     }
   }
 
+  @Test
+  public void testBulk() {
+    testBulk(true);
+    testBulk(false);
+  }
+
+  private void testBulk(boolean compressed) {
+    int n1 = 19, n2 = 20, n3 = 21;
+    EigenTensors3 et = new EigenTensors3(n1,n2,n3,compressed);
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float[] a = makeRandomEigenvalues();
+          float[] u = makeRandomEigenvector();
+          float[] w = makeOrthogonalVector(u);
+          et.setEigenvalues(i1,i2,i3,a);
+          et.setEigenvectorU(i1,i2,i3,u);
+          et.setEigenvectorW(i1,i2,i3,w);
+        }
+      }
+    }
+    float[][] ar = new float[6][n1];
+    float[] ai = new float[6];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        et.getTensors(i2,i3,ar);
+        for (int i1=0; i1<n1; ++i1) {
+          et.getTensor(i1,i2,i3,ai);
+          for (int k=0; k<6; ++k)
+            assertEquals(ai[k],ar[k][i1],0.0);
+        }
+      }
+    }
+  }
+
   @Test
   public void testIO() throws IOException,ClassNotFoundException {
 
@@ -68,6 +68,58 @@ public class EigenTest {
     }
   }
 
+  @Test
+  public void testSymmetric33Batch() {
+    int nrand = 10000;
+    double[][][] as = new double[nrand+7][][];
+    for (int irand=0; irand<nrand; ++irand)
+      as[irand] = makeRandomSymmetric33();
+    as[nrand  ] = ASMALL;
+    as[nrand+1] = A100;
+    as[nrand+2] = A110;
+    as[nrand+3] = A111;
+    as[nrand+4] = ATEST1;
+    as[nrand+5] = new double[3][3];
+    double[] g = makeRandomEigenvector3(); // rank-one, as for structure
+    as[nrand+6] = new double[][]{
+      {g[0]*g[0],g[0]*g[1],g[0]*g[2]},
+      {g[1]*g[0],g[1]*g[1],g[1]*g[2]},
+      {g[2]*g[0],g[2]*g[1],g[2]*g[2]}};
+    int n = as.length;
+    float[][] a = new float[6][n];
+    for (int i=0; i<n; ++i) {
+      a[0][i] = (float)as[i][0][0];
+      a[1][i] = (float)as[i][0][1];
+      a[2][i] = (float)as[i][0][2];
+      a[3][i] = (float)as[i][1][1];
+      a[4][i] = (float)as[i][1][2];
+      a[5][i] = (float)as[i][2][2];
+    }
+    float[][][] v = new float[3][3][n];
+    float[][] d = new float[3][n];
+    Eigen.solveSymmetric33(a,v,d);
+    double[][] vi = new double[3][3];
+    double[] di = new double[3];
+    double[][] ai = new double[3][3];
+    for (int i=0; i<n; ++i) {
+      for (int k=0; k<3; ++k) {
+        di[k] = d[k][i];
+        for (int j=0; j<3; ++j)
+          vi[k][j] = v[k][j][i];
+      }
+      ai[0][0] = a[0][i]; ai[0][1] = a[1][i]; ai[0][2] = a[2][i];
+      ai[1][0] = a[1][i]; ai[1][1] = a[3][i]; ai[1][2] = a[4][i];
+      ai[2][0] = a[2][i]; ai[2][1] = a[4][i]; ai[2][2] = a[5][i];
+      check(ai,vi,di);
+      for (int k=0; k<3; ++k) {
+        for (int l=0; l<3; ++l) {
+          double vkl = vi[k][0]*vi[l][0]+vi[k][1]*vi[l][1]+vi[k][2]*vi[l][2];
+          assertEquals((k==l)?1.0:0.0,vkl,0.0001);
+        }
+      }
+    }
+  }
+
   private void check(double[][] a, double[][] v, double[] d) {
     int n = a.length;
     for (int k=0; k<n; ++k) {
@@ -144,6 +144,94 @@ public class FftComplexTest {
     assertNear(cr,cx);
   }
 
+  @Test
+  public void testBatch() {
+    int n2 = 101;
+    for (int n=2; n<300; n+=7) {
+      int nfft = FftComplex.nfftSmall(n);
+      FftComplex fft = new FftComplex(nfft);
+      int sx = 2*nfft+3;
+      float[] cx = randfloat(n2*sx);
+      float[] cy = zerofloat(n2*sx);
+      fft.complexToComplexBatch(1,n2,cx,sx,cy,sx);
+      fft.complexToComplexBatch(-1,n2,cy,sx,cy,sx);
+      for (int i2=0; i2<n2; ++i2) {
+        float[] ci = copy(2*nfft,i2*sx,cx);
+        float[] ce = copy(ci);
+        fft.complexToComplex(1,ci,ci);
+        fft.complexToComplex(-1,ci,ci);
+        float[] ca = copy(2*nfft,i2*sx,cy);
+        assertNear(ci,ca);
+        fft.scale(nfft,ca);
+        assertNear(ce,ca);
+      }
+    }
+  }
+
+  @Test
+  public void testPow2() {
+    for (int nfft=32; nfft<=65536; nfft*=2) {
+      FftComplex fft = new FftComplex(nfft);
+      float[] c1 = czerofloat(nfft);
+      c1[2] = 1.0f;
+      float[] cx = ccopy(c1);
+      fft.complexToComplex(1,cx,cx);
+      float rb = 2.0f*FLT_PI/(float)nfft;
+      float[] cc = polar(fillfloat(1.0f,nfft),rampfloat(0.0f,rb,nfft));
+      assertNear(cc,cx);
+      float[] cr = crandfloat(nfft);
+      cx = ccopy(cr);
+      fft.complexToComplex(-1,cx,cx);
+      fft.complexToComplex( 1,cx,cx);
+      fft.scale(nfft,cx);
+      assertNear(cr,cx);
+    }
+    for (int n2fft=32; n2fft<=1024; n2fft*=2) {
+      int n1fft = 15;
+      FftComplex fft1 = new FftComplex(n1fft);
+      FftComplex fft2 = new FftComplex(n2fft);
+      float[][] cr = crandfloat(n1fft,n2fft);
+      float[][] cx = ccopy(cr);
+      fft1.complexToComplex1( 1,n2fft,cx,cx);
+      fft2.complexToComplex2( 1,n1fft,cx,cx);
+      float[][] cy = ccopy(cr);
+      for (int i2=0; i2<n2fft; ++i2)
+        fft1.complexToComplex(1,cy[i2],cy[i2]);
+      float[] ct = czerofloat(n2fft);
+      for (int i1=0; i1<n1fft; ++i1) {
+        for (int i2=0; i2<n2fft; ++i2) {
+          ct[2*i2  ] = cy[i2][2*i1  ];
+          ct[2*i2+1] = cy[i2][2*i1+1];
+        }
+        fft2.complexToComplex(1,ct,ct);
+        for (int i2=0; i2<n2fft; ++i2) {
+          cy[i2][2*i1  ] = ct[2*i2  ];
+          cy[i2][2*i1+1] = ct[2*i2+1];
+        }
+      }
+      assertNear(cy,cx);
+      fft1.complexToComplex1(-1,n2fft,cx,cx);
+      fft2.complexToComplex2(-1,n1fft,cx,cx);
+      fft1.scale(n1fft,n2fft,cx);
+      fft2.scale(n1fft,n2fft,cx);
+      assertNear(cr,cx);
+    }
+  }
+
+  @Test
+  public void testNfftPow2() {
+    for (int n=2; n<=720720; n=n*3/2) {
+      int nsmall = FftComplex.nfftSmall(n);
+      int nfast = FftComplex.nfftFast(n);
+      assertTrue(n<=nsmall && nsmall<=nfast && nfast<2*nsmall);
+      new FftComplex(nfast);
+    }
+    assertTrue(FftComplex.nfftSmall(1000)==1001);
+    assertTrue(FftComplex.nfftSmall(1024)==1024);
+    assertTrue(FftComplex.nfftFast(400000)==524288);
+    assertTrue(FftReal.nfftFast(800000)==1048576);
+  }
+
   private void assertNear(float[] ca, float[] cb) {
     int n1 = ca.length/2;
     float tolerance = (float)(n1)*FLT_EPSILON;
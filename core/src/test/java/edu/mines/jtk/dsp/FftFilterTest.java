@@ -111,6 +111,111 @@ public class FftFilterTest {
     }
   }
 
+  @Test
+  public void test1Stream() {
+    for (int itest=0; itest<100; ++itest) {
+      int nh = 1+_random.nextInt(40);
+      int kh = _random.nextInt(nh);
+      int nx = 1+_random.nextInt(200);
+      int mx = 1+_random.nextInt(30);
+      float[] h = randfloat(nh);
+      float[] x = randfloat(nx);
+      FftFilter ff = new FftFilter(kh,h);
+      if (_random.nextBoolean())
+        ff.setExtrapolation(FftFilter.Extrapolation.ZERO_SLOPE);
+      float[] ye = ff.apply(x);
+      FftFilter.Stream fs = ff.stream(mx);
+      float[] xc = new float[mx];
+      float[] yc = new float[max(mx,fs.getLatency())];
+      float[] ys = new float[nx];
+      int jy = 0;
+      for (int jx=0; jx<nx; jx+=mx) {
+        int mc = min(mx,nx-jx);
+        copy(mc,jx,x,0,xc);
+        int ny = fs.apply(mc,xc,yc);
+        copy(ny,0,yc,jy,ys);
+        jy += ny;
+      }
+      int ny = fs.finish(yc);
+      copy(ny,0,yc,jy,ys);
+      assertEquals(nx,jy+ny);
+      assertArrayEquals(ye,ys);
+    }
+  }
+
+  @Test
+  public void test2Stream() {
+    for (int itest=0; itest<50; ++itest) {
+      int nh1 = 1+_random.nextInt(8);
+      int nh2 = 1+_random.nextInt(8);
+      int kh1 = _random.nextInt(nh1);
+      int kh2 = _random.nextInt(nh2);
+      int nx1 = 1+_random.nextInt(20);
+      int nx2 = 1+_random.nextInt(40);
+      int mx2 = 1+_random.nextInt(10);
+      float[][] h = randfloat(nh1,nh2);
+      float[][] x = randfloat(nx1,nx2);
+      FftFilter ff = new FftFilter(kh1,kh2,h);
+      if (_random.nextBoolean())
+        ff.setExtrapolation(FftFilter.Extrapolation.ZERO_SLOPE);
+      float[][] ye = ff.apply(x);
+      FftFilter.Stream fs = ff.stream(nx1,mx2);
+      float[][] yc = new float[max(mx2,fs.getLatency())][nx1];
+      float[][] ys = new float[nx2][];
+      int jy = 0;
+      for (int jx=0; jx<nx2; jx+=mx2) {
+        int mc = min(mx2,nx2-jx);
+        float[][] xc = copy(nx1,mc,0,jx,x);
+        int ny = fs.apply(mc,xc,xc);
+        for (int iy=0; iy<ny; ++iy)
+          ys[jy++] = xc[iy];
+      }
+      int ny = fs.finish(yc);
+      for (int iy=0; iy<ny; ++iy)
+        ys[jy++] = copy(yc[iy]);
+      assertEquals(nx2,jy);
+      assertArrayEquals(ye,ys);
+    }
+  }
+
+  @Test
+  public void test3Stream() {
+    for (int itest=0; itest<20; ++itest) {
+      int nh1 = 1+_random.nextInt(6);
+      int nh2 = 1+_random.nextInt(6);
+      int nh3 = 1+_random.nextInt(6);
+      int kh1 = _random.nextInt(nh1);
+      int kh2 = _random.nextInt(nh2);
+      int kh3 = _random.nextInt(nh3);
+      int nx1 = 1+_random.nextInt(10);
+      int nx2 = 1+_random.nextInt(10);
+      int nx3 = 1+_random.nextInt(20);
+      int mx3 = 1+_random.nextInt(6);
+      float[][][] h = randfloat(nh1,nh2,nh3);
+      float[][][] x = randfloat(nx1,nx2,nx3);
+      FftFilter ff = new FftFilter(kh1,kh2,kh3,h);
+      if (_random.nextBoolean())
+        ff.setExtrapolation(FftFilter.Extrapolation.ZERO_SLOPE);
+      float[][][] ye = ff.apply(x);
+      FftFilter.Stream fs = ff.stream(nx1,nx2,mx3);
+      float[][][] yc = new float[max(mx3,fs.getLatency())][nx2][nx1];
+      float[][][] ys = new float[nx3][][];
+      int jy = 0;
+      for (int jx=0; jx<nx3; jx+=mx3) {
+        int mc = min(mx3,nx3-jx);
+        float[][][] xc = copy(nx1,nx2,mc,0,0,jx,x);
+        int ny = fs.apply(mc,xc,xc);
+        for (int iy=0; iy<ny; ++iy)
+          ys[jy++] = xc[iy];
+      }
+      int ny = fs.finish(yc);
+      for (int iy=0; iy<ny; ++iy)
+        ys[jy++] = copy(yc[iy]);
+      assertEquals(nx3,jy);
+      assertArrayEquals(ye,ys);
+    }
+  }
+
   private Random _random = new Random();
 
   private static final float TOLERANCE = 1000.0f*FLT_EPSILON;
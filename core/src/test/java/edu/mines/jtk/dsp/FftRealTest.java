@@ -17,6 +17,7 @@ package edu.mines.jtk.dsp;
 import org.testng.annotations.Test;
 import static org.testng.Assert.assertEquals;
 
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -186,6 +187,81 @@ public class FftRealTest {
     }
   }
 
+  @Test
+  public void test1Shared() {
+    final int nfft = FftReal.nfftSmall(1000);
+    final int nw = nfft/2+1;
+    final FftReal fft = new FftReal(nfft);
+    final float[][] rr = randfloat(nfft,8);
+    final float[][] cy = czerofloat(nw,8);
+    Parallel.loop(8,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        FftReal fftc = new FftReal(nfft);
+        float[] cx = czerofloat(nw);
+        fftc.realToComplex(1,rr[i2],cx);
+        fft.realToComplex(1,rr[i2],cy[i2]);
+        assertEquals(cx,cy[i2]);
+      }
+    });
+    for (int i2=0; i2<8; ++i2) {
+      float[] rx = new float[nfft];
+      fft.complexToReal(-1,cy[i2],rx);
+      fft.scale(nfft,rx);
+      assertRealEqual(nfft,rr[i2],rx);
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    int n2 = 101;
+    for (int n=2; n<300; n+=7) {
+      int nfft = FftReal.nfftSmall(n);
+      FftReal fft = new FftReal(nfft);
+      int nw = nfft/2+1;
+      int sx = nfft+1;
+      int sy = nfft+4;
+      float[] rx = randfloat(n2*sx);
+      float[] cy = zerofloat(n2*sy);
+      fft.realToComplexBatch(1,n2,rx,sx,cy,sy);
+      for (int i2=0; i2<n2; ++i2) {
+        float[] ci = czerofloat(nw);
+        fft.realToComplex(1,copy(nfft,i2*sx,rx),ci);
+        assertComplexEqual(nw,ci,copy(2*nw,i2*sy,cy));
+      }
+      fft.complexToRealBatch(-1,n2,cy,sy,cy,sy);
+      for (int i2=0; i2<n2; ++i2) {
+        float[] ra = copy(nfft,i2*sy,cy);
+        fft.scale(nfft,ra);
+        assertRealEqual(nfft,copy(nfft,i2*sx,rx),ra);
+      }
+    }
+  }
+
+  @Test
+  public void testPow2() {
+    for (int nfft=64; nfft<=131072; nfft*=2) {
+      FftReal fft = new FftReal(nfft);
+      float[] r1 = randfloat(nfft);
+      float[] rx = zerofloat(nfft+2);
+      copy(r1,rx);
+      fft.realToComplex(-1,rx,rx);
+      fft.complexToReal( 1,rx,rx);
+      fft.scale(nfft,rx);
+      assertRealEqual(nfft,r1,rx);
+    }
+    for (int n2fft=32; n2fft<=1024; n2fft*=2) {
+      int n1 = 13;
+      FftReal fft2 = new FftReal(n2fft);
+      float[][] r1 = randfloat(n1,n2fft);
+      float[][] cx = zerofloat(2*n1,n2fft/2+1);
+      float[][] rx = zerofloat(n1,n2fft);
+      fft2.realToComplex2(-1,n1,r1,cx);
+      fft2.complexToReal2( 1,n1,cx,rx);
+      fft2.scale(n1,n2fft,rx);
+      assertRealEqual(n1,n2fft,r1,rx);
+    }
+  }
+
   private void assertRealEqual(int n1, float[] re, float[] ra) {
     float tolerance = (float)(n1)*FLT_EPSILON;
     for (int i1=0; i1<n1; ++i1)
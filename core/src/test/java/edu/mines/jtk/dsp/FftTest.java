@@ -103,6 +103,144 @@ public class FftTest {
     }
   }
 
+  @Test
+  public void testParallel2() {
+    for (boolean complex:_complex) {
+      Sampling s1 = new Sampling(150,1.0,1.0);
+      Sampling s2 = new Sampling(37,2.0,1.0);
+      float[][] f = (complex)?crandfloat(150,37):randfloat(150,37);
+      float[][][] g = new float[2][][];
+      float[][][] h = new float[2][][];
+      for (int ip=0; ip<2; ++ip) {
+        Fft fft = new Fft(s1,s2);
+        fft.setComplex(complex);
+        fft.setCenter(true);
+        fft.setParallel(ip==1);
+        g[ip] = fft.applyForward(f);
+        h[ip] = fft.applyInverse(g[ip]);
+      }
+      for (int i2=0; i2<g[0].length; ++i2)
+        assertEquals(g[1][i2],g[0][i2]);
+      for (int i2=0; i2<h[0].length; ++i2)
+        assertEquals(h[1][i2],h[0][i2]);
+    }
+  }
+
+  @Test
+  public void testParallel3() {
+    for (boolean complex:_complex) {
+      Sampling s1 = new Sampling(150,1.0,1.0);
+      Sampling s2 = new Sampling(13,2.0,1.0);
+      Sampling s3 = new Sampling(11,1.0,0.0);
+      float[][][] f = (complex)?crandfloat(150,13,11):randfloat(150,13,11);
+      float[][][][] g = new float[2][][][];
+      float[][][][] h = new float[2][][][];
+      for (int ip=0; ip<2; ++ip) {
+        Fft fft = new Fft(s1,s2,s3);
+        fft.setComplex(complex);
+        fft.setPadding(3);
+        fft.setParallel(ip==1);
+        g[ip] = fft.applyForward(f);
+        h[ip] = fft.applyInverse(g[ip]);
+      }
+      for (int i3=0; i3<g[0].length; ++i3)
+        for (int i2=0; i2<g[0][0].length; ++i2)
+          assertEquals(g[1][i3][i2],g[0][i3][i2]);
+      for (int i3=0; i3<h[0].length; ++i3)
+        for (int i2=0; i2<h[0][0].length; ++i2)
+          assertEquals(h[1][i3][i2],h[0][i3][i2]);
+    }
+  }
+
+  @Test
+  public void testOutput1() {
+    for (boolean complex:_complex) {
+      for (boolean center:_center) {
+        Sampling s1 = new Sampling(150,1.0,1.0);
+        float[] f = (complex)?crandfloat(150):randfloat(150);
+        Fft fft = new Fft(s1);
+        fft.setComplex(complex);
+        fft.setCenter(center);
+        fft.setPadding(2);
+        float[] ge = fft.applyForward(f);
+        float[] he = fft.applyInverse(ge);
+        float[] ga = randfloat(ge.length);
+        float[] ha = randfloat(he.length);
+        for (int it=0; it<2; ++it) {
+          fft.applyForward(f,ga);
+          fft.applyInverse(ga,ha);
+          assertEquals(ga,ge);
+          assertEquals(ha,he);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testOutput2() {
+    for (boolean complex:_complex) {
+      for (boolean center:_center) {
+        for (boolean parallel:_parallel) {
+          Sampling s1 = new Sampling(150,1.0,1.0);
+          Sampling s2 = new Sampling(37,2.0,1.0);
+          float[][] f = (complex)?crandfloat(150,37):randfloat(150,37);
+          Fft fft = new Fft(s1,s2);
+          fft.setComplex(complex);
+          fft.setCenter(center);
+          fft.setPadding(2);
+          fft.setParallel(parallel);
+          float[][] ge = fft.applyForward(f);
+          float[][] he = fft.applyInverse(ge);
+          float[][] ga = randfloat(ge[0].length,ge.length);
+          float[][] ha = randfloat(he[0].length,he.length);
+          for (int it=0; it<2; ++it) {
+            fft.applyForward(f,ga);
+            fft.applyInverse(ga,ha);
+            for (int i2=0; i2<ge.length; ++i2)
+              assertEquals(ga[i2],ge[i2]);
+            for (int i2=0; i2<he.length; ++i2)
+              assertEquals(ha[i2],he[i2]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testOutput3() {
+    for (boolean complex:_complex) {
+      for (boolean center:_center) {
+        for (boolean parallel:_parallel) {
+          Sampling s1 = new Sampling(150,1.0,1.0);
+          Sampling s2 = new Sampling(13,2.0,1.0);
+          Sampling s3 = new Sampling(11,1.0,0.0);
+          float[][][] f = (complex) ?
+            crandfloat(150,13,11) :
+            randfloat(150,13,11);
+          Fft fft = new Fft(s1,s2,s3);
+          fft.setComplex(complex);
+          fft.setCenter(center);
+          fft.setPadding(3);
+          fft.setParallel(parallel);
+          float[][][] ge = fft.applyForward(f);
+          float[][][] he = fft.applyInverse(ge);
+          float[][][] ga = randfloat(ge[0][0].length,ge[0].length,ge.length);
+          float[][][] ha = randfloat(he[0][0].length,he[0].length,he.length);
+          for (int it=0; it<2; ++it) {
+            fft.applyForward(f,ga);
+            fft.applyInverse(ga,ha);
+            for (int i3=0; i3<ge.length; ++i3)
+              for (int i2=0; i2<ge[0].length; ++i2)
+                assertEquals(ga[i3][i2],ge[i3][i2]);
+            for (int i3=0; i3<he.length; ++i3)
+              for (int i2=0; i2<he[0].length; ++i2)
+                assertEquals(ha[i3][i2],he[i3][i2]);
+          }
+        }
+      }
+    }
+  }
+
   @Test(enabled = false)
   public void xtest3() { // too long for routine testing
     for (boolean complex:_complex) {
@@ -143,6 +281,7 @@ public class FftTest {
   private static boolean[] _complex = {true,false};
   private static boolean[] _overwrite = {true};
   private static boolean[] _center = {true,false};
+  private static boolean[] _parallel = {false,true};
   private static int[] _padding = {0,4};
   private static int[] _count = {0,4,5};
   private static double[] _delta = {1.0,2.0};
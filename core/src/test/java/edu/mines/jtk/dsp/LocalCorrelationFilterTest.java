@@ -0,0 +1,104 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.LocalCorrelationFilter}.
+ * @version 2026.10.16
+ */
+public class LocalCorrelationFilterTest {
+
+  @Test
+  public void testLags() {
+    int n1 = 21, n2 = 22, n3 = 23;
+    int min = -3, max = 4, nlag = 1+max-min;
+    float[] f1 = sub(randfloat(n1),0.5f);
+    float[] g1 = sub(randfloat(n1),0.5f);
+    float[][] f2 = sub(randfloat(n1,n2),0.5f);
+    float[][] g2 = sub(randfloat(n1,n2),0.5f);
+    float[][][] f3 = sub(randfloat(n1,n2,n3),0.5f);
+    float[][][] g3 = sub(randfloat(n1,n2,n3),0.5f);
+    LocalCorrelationFilter.Type[] types =
+      LocalCorrelationFilter.Type.values();
+    LocalCorrelationFilter.Window[] windows =
+      LocalCorrelationFilter.Window.values();
+    for (LocalCorrelationFilter.Type type:types) {
+      for (LocalCorrelationFilter.Window window:windows) {
+        LocalCorrelationFilter lcf =
+          new LocalCorrelationFilter(type,window,4.0);
+
+        lcf.setInputs(f1,g1);
+        float[][] c1 = new float[nlag][n1];
+        float[] d1 = new float[n1];
+        lcf.correlateLags(min,max,c1);
+        for (int lag=min; lag<=max; ++lag) {
+          lcf.correlate(lag,d1);
+          lcf.normalize(lag,d1);
+          assertEqual(d1,c1[lag-min]);
+        }
+
+        lcf.setInputs(f2,g2);
+        float[][][] c2 = new float[nlag][n2][n1];
+        float[][] d2 = new float[n2][n1];
+        for (int dim=1; dim<=2; ++dim) {
+          if (dim==1) lcf.correlateLags1(min,max,c2);
+          if (dim==2) lcf.correlateLags2(min,max,c2);
+          for (int lag=min; lag<=max; ++lag) {
+            int lag1 = (dim==1)?lag:0;
+            int lag2 = (dim==2)?lag:0;
+            lcf.correlate(lag1,lag2,d2);
+            lcf.normalize(lag1,lag2,d2);
+            assertEqual(d2,c2[lag-min]);
+          }
+        }
+
+        lcf.setInputs(f3,g3);
+        float[][][][] c3 = new float[nlag][n3][n2][n1];
+        float[][][] d3 = new float[n3][n2][n1];
+        for (int dim=1; dim<=3; ++dim) {
+          if (dim==1) lcf.correlateLags1(min,max,c3);
+          if (dim==2) lcf.correlateLags2(min,max,c3);
+          if (dim==3) lcf.correlateLags3(min,max,c3);
+          for (int lag=min; lag<=max; ++lag) {
+            int lag1 = (dim==1)?lag:0;
+            int lag2 = (dim==2)?lag:0;
+            int lag3 = (dim==3)?lag:0;
+            lcf.correlate(lag1,lag2,lag3,d3);
+            lcf.normalize(lag1,lag2,lag3,d3);
+            assertEqual(d3,c3[lag-min]);
+          }
+        }
+      }
+    }
+  }
+
+  private static void assertEqual(float[] x, float[] y) {
+    for (int i1=0; i1<x.length; ++i1)
+      assertEquals(x[i1],y[i1],0.0f);
+  }
+  private static void assertEqual(float[][] x, float[][] y) {
+    for (int i2=0; i2<x.length; ++i2)
+      assertEqual(x[i2],y[i2]);
+  }
+  private static void assertEqual(float[][][] x, float[][][] y) {
+    for (int i3=0; i3<x.length; ++i3)
+      assertEqual(x[i3],y[i3]);
+  }
+}
@@ -17,6 +17,8 @@ package edu.mines.jtk.dsp;
 import org.testng.annotations.Test;
 import static org.testng.Assert.assertEquals;
 
+import edu.mines.jtk.util.Float3;
+import edu.mines.jtk.util.SimpleFloat3;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -170,6 +172,42 @@ public class LocalOrientFilterTest {
     }
   }
 
+  @Test
+  public void test3Slabs() {
+    int n1 = 21, n2 = 22, n3 = 71;
+    float[][][] x = sin(rampfloat(0.0f,0.3f,0.1f,0.05f,n1,n2,n3));
+    x = add(x,mul(0.2f,randfloat(n1,n2,n3)));
+    LocalOrientFilter lof = new LocalOrientFilter(4.0);
+    lof.setSlabSize(16);
+    float[][][] u1 = new float[n3][n2][n1];
+    float[][][] eu = new float[n3][n2][n1];
+    float[][][] ep = new float[n3][n2][n1];
+    lof.apply(x,
+      null,null,
+      u1,null,null,
+      null,null,null,
+      null,null,null,
+      eu,null,null,
+      ep,null);
+    Float3 su1 = new SimpleFloat3(n1,n2,n3);
+    Float3 seu = new SimpleFloat3(n1,n2,n3);
+    Float3 sep = new SimpleFloat3(n1,n2,n3);
+    lof.apply(new SimpleFloat3(x),
+      null,null,
+      su1,null,null,
+      null,null,null,
+      null,null,null,
+      seu,null,null,
+      sep,null);
+    float[][][] y = new float[n3][n2][n1];
+    su1.get123(n1,n2,n3,0,0,0,y);
+    assertEquals(0.0f,max(abs(sub(u1,y))),0.001);
+    seu.get123(n1,n2,n3,0,0,0,y);
+    assertEquals(0.0f,max(abs(sub(eu,y))),0.001*max(eu));
+    sep.get123(n1,n2,n3,0,0,0,y);
+    assertEquals(0.0f,max(abs(sub(ep,y))),0.001);
+  }
+
   private static void assertEqualsLocal(double e, float[][] a, double tol) {
     int n1 = a[0].length;
     int n2 = a.length;
@@ -0,0 +1,66 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertTrue;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.LocalPredictionFilter}.
+ * @version 2026.10.16
+ */
+public class LocalPredictionFilterTest {
+
+  @Test
+  public void testPlaneWave2() {
+    int n1 = 51, n2 = 52;
+    float[][] f = new float[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        f[i2][i1] = sin(0.3f*i1+0.2f*i2);
+    int[] lag1 = {1,2,0,1};
+    int[] lag2 = {0,0,1,1};
+    float[][] g = new float[n2][n1];
+    LocalPredictionFilter lpf = new LocalPredictionFilter(4.0);
+    lpf.applyPef(lag1,lag2,f,g);
+    assertTrue(rms(g)<0.1f*rms(f));
+  }
+
+  @Test
+  public void testPlaneWave3() {
+    int n1 = 21, n2 = 22, n3 = 23;
+    float[][][] f = new float[n3][n2][n1];
+    for (int i3=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2)
+        for (int i1=0; i1<n1; ++i1)
+          f[i3][i2][i1] = sin(0.3f*i1+0.2f*i2+0.1f*i3);
+    int[] lag1 = {1,2,0,1,0};
+    int[] lag2 = {0,0,1,1,0};
+    int[] lag3 = {0,0,0,0,1};
+    float[][][] g = new float[n3][n2][n1];
+    LocalPredictionFilter lpf = new LocalPredictionFilter(4.0);
+    lpf.applyPef(lag1,lag2,lag3,f,g);
+    assertTrue(rms(g)<0.1f*rms(f));
+  }
+
+  private static float rms(float[][] x) {
+    return sqrt(sum(mul(x,x))/x.length/x[0].length);
+  }
+  private static float rms(float[][][] x) {
+    return sqrt(sum(mul(x,x))/x.length/x[0].length/x[0][0].length);
+  }
+}
@@ -19,6 +19,8 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertEquals;
 
 import java.util.Random;
+
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -54,6 +56,64 @@ public class LocalSmoothingFilterTest {
     }
   }
 
+  @Test
+  public void testResiduals() {
+    int n1 = 31;
+    int n2 = 32;
+    int n3 = 33;
+    float c = 20.0f;
+    float small = 0.001f;
+    float[][][] s = add(0.5f,randfloat(n1,n2,n3));
+    float[][][] x = sub(randfloat(n1,n2,n3),0.5f);
+    for (int ipc=0; ipc<2; ++ipc) {
+      LocalSmoothingFilter lsf = new LocalSmoothingFilter(small,1000);
+      lsf.setPreconditioner(ipc==1);
+      float[][][] y = zerofloat(n1,n2,n3);
+      lsf.apply(c,s,x,y);
+      int niter = lsf.getIterationCount();
+      assertEquals(0,lsf.getResiduals().length);
+      lsf.setRecordResiduals(true);
+      y = zerofloat(n1,n2,n3);
+      lsf.apply(c,s,x,y);
+      assertEquals(niter,lsf.getIterationCount());
+      float[] r = lsf.getResiduals();
+      float[] t = lsf.getResidualTimes();
+      assertTrue(niter>0);
+      assertEquals(niter+1,r.length);
+      assertEquals(niter+1,t.length);
+      assertTrue(r[niter]<small);
+      assertTrue(r[niter-1]>=small);
+      for (int iter=1; iter<=niter; ++iter)
+        assertTrue(t[iter]>=t[iter-1]);
+
+      // Residual for the output y should be the last residual reported.
+      float[][][] ay = copy(y);
+      new LocalDiffusionKernel().apply(c,s,y,ay);
+      float rnorm = sqrt(dot(sub(x,ay),sub(x,ay))/dot(x,x));
+      assertEquals(r[niter],rnorm,0.01f*small);
+
+      // Output should not depend on the number of threads.
+      Parallel.setParallel(false);
+      try {
+        float[][][] z = zerofloat(n1,n2,n3);
+        lsf.apply(c,s,x,z);
+        assertEqual(z,y);
+      } finally {
+        Parallel.setParallel(true);
+      }
+    }
+  }
+
+  private static void assertEqual(float[][][] x, float[][][] y) {
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    for (int i3=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2)
+        for (int i1=0; i1<n1; ++i1)
+          assertEquals(x[i3][i2][i1],y[i3][i2][i1],0.0f);
+  }
+
   private static float dot(float[][] x, float[][] y) {
     return sum(mul(x,y));
   }
@@ -0,0 +1,145 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.io.*;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.Test;
+
+import edu.mines.jtk.util.SimpleFloat3;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.MappedEigenTensors3}.
+ * @version 2026.10.16
+ */
+public class MappedEigenTensors3Test {
+
+  @Test
+  public void testCompressed() throws IOException {
+    int n1 = 19, n2 = 20, n3 = 21;
+    File file = File.createTempFile("met3",".dat");
+    file.deleteOnExit();
+    EigenTensors3 et = new EigenTensors3(n1,n2,n3,true);
+    MappedEigenTensors3 mt = new MappedEigenTensors3(file,n1,n2,n3);
+    Random r = new Random();
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float[] a = randfloat(r,3);
+          float[] u = makeUnitVector(r);
+          float[] w = makeUnitVector(r);
+          et.setEigenvalues(i1,i2,i3,a);
+          et.setEigenvectorU(i1,i2,i3,u);
+          et.setEigenvectorW(i1,i2,i3,w);
+          mt.setEigenvalues(i1,i2,i3,a);
+          mt.setEigenvectorU(i1,i2,i3,u);
+          mt.setEigenvectorW(i1,i2,i3,w);
+        }
+      }
+    }
+    assertEqual(et,mt);
+    mt.close();
+    assertEqual(et,mt);
+
+    // Reopen the file; tensors should be the same.
+    mt = new MappedEigenTensors3(file,true);
+    assertEquals(n1,mt.getN1());
+    assertEquals(n2,mt.getN2());
+    assertEquals(n3,mt.getN3());
+    assertEqual(et,mt);
+    et.invertStructure(0.0,1.0,1.0);
+    mt.invertStructure(0.0,1.0,1.0);
+    assertEqual(et,mt);
+    mt.close();
+  }
+
+  @Test
+  public void testOrient() throws IOException {
+    int n1 = 21, n2 = 22, n3 = 23;
+    float[][][] x = randfloat(n1,n2,n3);
+    LocalOrientFilter lof = new LocalOrientFilter(2.0);
+    EigenTensors3 et = lof.applyForTensors(x,true);
+    File file = File.createTempFile("met3",".dat");
+    file.deleteOnExit();
+    MappedEigenTensors3 mt = new MappedEigenTensors3(file,n1,n2,n3);
+    lof.applyForTensors(x,mt);
+    mt.close();
+    assertEqual(et,mt,0.01f);
+
+    // Slab by slab, with an image not in memory.
+    mt = new MappedEigenTensors3(file,n1,n2,n3);
+    lof.setSlabSize(5);
+    lof.applyForTensors(new SimpleFloat3(x),mt);
+    mt.close();
+    assertEqual(et,mt,0.01f);
+  }
+
+  private static void assertEqual(
+    EigenTensors3 et, MappedEigenTensors3 mt, float tol) 
+  {
+    int n1 = et.getN1();
+    int n2 = et.getN2();
+    int n3 = et.getN3();
+    float[] ae = new float[6];
+    float[] am = new float[6];
+    float[] ee = new float[3];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          et.getTensor(i1,i2,i3,ae);
+          mt.getTensor(i1,i2,i3,am);
+          et.getEigenvalues(i1,i2,i3,ee);
+          float e = tol*(ee[0]+ee[1]+ee[2]);
+          for (int k=0; k<6; ++k)
+            assertEquals(ae[k],am[k],e);
+        }
+      }
+    }
+  }
+
+  private static void assertEqual(EigenTensors3 et, MappedEigenTensors3 mt) {
+    int n1 = et.getN1();
+    int n2 = et.getN2();
+    int n3 = et.getN3();
+    float[] ae = new float[6];
+    float[] am = new float[6];
+    float[][] ar = new float[6][n1];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        mt.getTensors(i2,i3,ar);
+        for (int i1=0; i1<n1; ++i1) {
+          et.getTensor(i1,i2,i3,ae);
+          mt.getTensor(i1,i2,i3,am);
+          for (int k=0; k<6; ++k) {
+            assertEquals(ae[k],am[k],0.0);
+            assertEquals(ae[k],ar[k][i1],0.0);
+          }
+          et.getEigenvalues(i1,i2,i3,ae);
+          mt.getEigenvalues(i1,i2,i3,am);
+          for (int k=0; k<3; ++k)
+            assertEquals(ae[k],am[k],0.0);
+        }
+      }
+    }
+  }
+
+  private static float[] makeUnitVector(Random r) {
+    float[] u = sub(randfloat(r,3),0.5f);
+    return div(u,sqrt(sum(mul(u,u))));
+  }
+}
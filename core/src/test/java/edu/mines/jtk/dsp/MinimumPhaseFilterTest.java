@@ -167,6 +167,40 @@ public class MinimumPhaseFilterTest {
     assertEquals(d1,d2,tiny);
   }
 
+  @Test
+  public void test3Wavefront() {
+    // Filter with large negative lag2, so that wavefronts are oblique.
+    int[] lag1 = { 0, 1, 2,-1, 0, 1, 0, 1,-2, 0};
+    int[] lag2 = { 0, 0, 0, 1, 1, 2,-3,-3, 0, 3};
+    int[] lag3 = { 0, 0, 0, 0, 0, 0, 1, 1, 1, 2};
+    float[] a = {
+      4.0f,-0.5f,-0.2f,-0.3f,-0.6f,-0.1f,-0.4f,-0.2f,-0.3f,-0.1f
+    };
+    MinimumPhaseFilter mpf = new MinimumPhaseFilter(lag1,lag2,lag3,a);
+    int[][] ns = {{13,14,15},{1,2,3},{7,3,9},{9,11,1}};
+    for (int[] n:ns) {
+      int n1 = n[0], n2 = n[1], n3 = n[2];
+      float[][][] x,y,z;
+      x = rands(n1,n2,n3);
+      y = zeros(n1,n2,n3);
+      z = zeros(n1,n2,n3);
+      mpf.apply(x,y);
+      mpf.applyInverse(y,z);
+      assertEqual(x,z);
+      mpf.applyTranspose(x,y);
+      mpf.applyInverseTranspose(y,z);
+      assertEqual(x,z);
+
+      // Inverse filters may be applied in place.
+      mpf.apply(x,y);
+      mpf.applyInverse(y,y);
+      assertEqual(x,y);
+      mpf.applyTranspose(x,y);
+      mpf.applyInverseTranspose(y,y);
+      assertEqual(x,y);
+    }
+  }
+
   @Test
   public void testFactorFomelExample() {
     float[] r = {24.0f,242.0f,867.0f,1334.0f,867.0f,242.0f,24.0f};
@@ -103,6 +103,56 @@ public class RecursiveGaussianFilterTest {
     }
   }
 
+  @Test
+  public void testColumns() {
+    int n1 = 150;
+    int n2 = 31;
+    int n3 = 7;
+    RecursiveGaussianFilter.Method[] methods = {
+      RecursiveGaussianFilter.Method.DERICHE,
+      RecursiveGaussianFilter.Method.VAN_VLIET
+    };
+    for (RecursiveGaussianFilter.Method method:methods) {
+      RecursiveGaussianFilter rf = new RecursiveGaussianFilter(3.0,method);
+      float[][] x2 = randfloat(n1,n2);
+      float[][] y2 = zerofloat(n1,n2);
+      rf.applyX1(x2,y2);
+      assertEqual(transpose(y2),apply1(rf,transpose(x2)));
+      rf.applyX1(x2,x2);
+      assertEqual(x2,y2);
+      float[][][] x3 = randfloat(n1,n2,n3);
+      float[][][] y3 = zerofloat(n1,n2,n3);
+      rf.applyX2X(x3,y3);
+      for (int i3=0; i3<n3; ++i3) {
+        float[][] z2 = zerofloat(n1,n2);
+        rf.applyX2(x3[i3],z2);
+        assertEqual(y3[i3],z2);
+      }
+      rf.applyXX1(x3,y3);
+      for (int i2=0; i2<n2; ++i2) {
+        float[][] x13 = new float[n3][];
+        float[][] y13 = new float[n3][];
+        for (int i3=0; i3<n3; ++i3) {
+          x13[i3] = x3[i3][i2];
+          y13[i3] = y3[i3][i2];
+        }
+        assertEqual(transpose(y13),apply1(rf,transpose(x13)));
+      }
+    }
+  }
+
+  private static float[][] apply1(RecursiveGaussianFilter rf, float[][] x) {
+    float[][] y = zerofloat(x[0].length,x.length);
+    for (int i=0; i<x.length; ++i)
+      rf.apply1(x[i],y[i]);
+    return y;
+  }
+
+  private static void assertEqual(float[][] x, float[][] y) {
+    for (int i=0; i<x.length; ++i)
+      assertEquals(x[i],y[i]);
+  }
+
   private static float gaussian(float s, float x) {
     float xx = x*x;
     float ss = s*s;
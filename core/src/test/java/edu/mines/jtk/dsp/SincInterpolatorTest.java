@@ -196,6 +196,117 @@ public class SincInterpolatorTest {
     }
   }
 
+  @Test
+  public void testPlan() {
+    Random random = new Random(314159);
+    int nxu = 101, nxi = 203, n2 = 4, n3 = 3;
+    double dxu = 0.7, fxu = 1.3;
+    Sampling sxu = new Sampling(nxu,dxu,fxu);
+    double xmin = fxu-5.0*dxu;
+    double xmax = fxu+(nxu+4)*dxu;
+    float[][][] yu = new float[n3][n2][nxu];
+    float[][][] xi = new float[n3][n2][nxi];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int ixu=0; ixu<nxu; ++ixu)
+          yu[i3][i2][ixu] = 2*random.nextFloat()-1;
+        for (int ixi=0; ixi<nxi; ++ixi)
+          xi[i3][i2][ixi] = (float)(xmin+random.nextFloat()*(xmax-xmin));
+      }
+    }
+    for (SincInterpolator.Extrapolation extrapolation:
+           SincInterpolator.Extrapolation.values()) {
+      SincInterpolator si = new SincInterpolator();
+      si.setExtrapolation(extrapolation);
+      float[] yr = new float[nxi];
+      float[][][] yi = new float[n3][n2][nxi];
+
+      // Same x values for one sequence and for all traces.
+      SincInterpolator.Plan plan1 = si.makePlan(sxu,xi[0][0]);
+      plan1.apply(yu[0][0],yi[0][0]);
+      si.interpolate(nxu,dxu,fxu,yu[0][0],nxi,xi[0][0],yr);
+      assertEqual(yr,yi[0][0]);
+      plan1.apply(yu,yi);
+      for (int i3=0; i3<n3; ++i3) {
+        for (int i2=0; i2<n2; ++i2) {
+          si.interpolate(nxu,dxu,fxu,yu[i3][i2],nxi,xi[0][0],yr);
+          assertEqual(yr,yi[i3][i2]);
+        }
+      }
+
+      // Different x values for traces in each 2-D slice.
+      SincInterpolator.Plan plan2 = si.makePlan(sxu,xi[0]);
+      plan2.apply(yu[1],yi[1]);
+      for (int i2=0; i2<n2; ++i2) {
+        si.interpolate(nxu,dxu,fxu,yu[1][i2],nxi,xi[0][i2],yr);
+        assertEqual(yr,yi[1][i2]);
+      }
+      plan2.apply(yu,yi);
+      for (int i3=0; i3<n3; ++i3) {
+        for (int i2=0; i2<n2; ++i2) {
+          si.interpolate(nxu,dxu,fxu,yu[i3][i2],nxi,xi[0][i2],yr);
+          assertEqual(yr,yi[i3][i2]);
+        }
+      }
+
+      // Different x values for all traces.
+      SincInterpolator.Plan plan3 = si.makePlan(sxu,xi);
+      plan3.apply(yu,yi);
+      for (int i3=0; i3<n3; ++i3) {
+        for (int i2=0; i2<n2; ++i2) {
+          si.interpolate(nxu,dxu,fxu,yu[i3][i2],nxi,xi[i3][i2],yr);
+          assertEqual(yr,yi[i3][i2]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testGrid() {
+    Random random = new Random(271828);
+    SincInterpolator si = new SincInterpolator();
+    int n1u = 21, n2u = 22, n3u = 23;
+    Sampling s1u = new Sampling(n1u,1.0,0.0);
+    Sampling s2u = new Sampling(n2u,0.5,1.0);
+    Sampling s3u = new Sampling(n3u,2.0,-1.0);
+    Sampling s1i = new Sampling(27,0.9,-2.1);
+    Sampling s2i = new Sampling(13,0.8,0.3);
+    Sampling s3i = new Sampling(19,2.7,-4.4);
+    int n1i = s1i.getCount();
+    int n2i = s2i.getCount();
+    int n3i = s3i.getCount();
+    float[][][] yu = new float[n3u][n2u][n1u];
+    for (int i3=0; i3<n3u; ++i3)
+      for (int i2=0; i2<n2u; ++i2)
+        for (int i1=0; i1<n1u; ++i1)
+          yu[i3][i2][i1] = 2*random.nextFloat()-1;
+
+    float[][] y2 = new float[n2i][n1i];
+    si.interpolate(s1u,s2u,yu[0],s1i,s2i,y2);
+    for (int i2=0; i2<n2i; ++i2) {
+      for (int i1=0; i1<n1i; ++i1) {
+        double x1 = s1i.getValue(i1);
+        double x2 = s2i.getValue(i2);
+        float yr = si.interpolate(s1u,s2u,yu[0],x1,x2);
+        assertEquals(yr,y2[i2][i1],1.0e-5);
+      }
+    }
+
+    float[][][] y3 = new float[n3i][n2i][n1i];
+    si.interpolate(s1u,s2u,s3u,yu,s1i,s2i,s3i,y3);
+    for (int i3=0; i3<n3i; ++i3) {
+      for (int i2=0; i2<n2i; ++i2) {
+        for (int i1=0; i1<n1i; ++i1) {
+          double x1 = s1i.getValue(i1);
+          double x2 = s2i.getValue(i2);
+          double x3 = s3i.getValue(i3);
+          float yr = si.interpolate(s1u,s2u,s3u,yu,x1,x2,x3);
+          assertEquals(yr,y3[i3][i2][i1],1.0e-5);
+        }
+      }
+    }
+  }
+
   private void testInterpolator(SincInterpolator si) {
     testInterpolatorWithSweep(si);
   }
@@ -275,6 +386,11 @@ public class SincInterpolatorTest {
     return cos(2.0*PI*nmax*cos(x*fmax/nmax));
   }
 
+  private static void assertEqual(float[] x, float[] y) {
+    for (int i=0; i<x.length; ++i)
+      assertEquals(x[i],y[i],0.0f);
+  }
+
   private static void trace(String s) {
     //System.out.println(s);
   }
@@ -0,0 +1,81 @@
+/****************************************************************************
+Copyright 2026, Colorado School of Mines and others.
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+
+import edu.mines.jtk.util.Parallel;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.SteerablePyramid}.
+ * @version 2026.10.16
+ */
+public class SteerablePyramidTest {
+
+  @Test
+  public void testVisit() {
+    float[][][] x = sub(randfloat(37,33,29),0.5f);
+    final SteerablePyramid sp = new SteerablePyramid();
+
+    // Identity visitor.
+    float[][][] y = sp.visitPyramid(true,x,new SteerablePyramid.Visitor3() {
+      public void visit(int lev, float[][][][] q) {
+      }
+    });
+    float[][][][][] spyr = sp.makePyramid(x);
+    assertEqual(sp.sumPyramid(true,spyr),y,0.0f);
+
+    // Visitor that estimates attributes and steers each level.
+    SteerablePyramid.Visitor3 steer = new SteerablePyramid.Visitor3() {
+      public void visit(int lev, float[][][][] q) {
+        float[][][][] attr = sp.estimateAttributes(true,2.0,q);
+        sp.steerScale(true,1,50.0f,0.5f,attr,q);
+      }
+    };
+    y = sp.visitPyramid(false,x,steer);
+    spyr = sp.makePyramid(x);
+    for (int lev=0; lev<spyr.length-1; ++lev)
+      steer.visit(lev,spyr[lev]);
+    assertEqual(sp.sumPyramid(false,spyr),y,0.0f);
+  }
+
+  @Test
+  public void testParallel() {
+    float[][][] x = sub(randfloat(31,32,33),0.5f);
+    SteerablePyramid sp = new SteerablePyramid();
+    float[][][][][] spyr = sp.makePyramid(x);
+    float[][][][][] attr = sp.estimateAttributes(false,2.0,spyr);
+    sp.steerScale(false,2,50.0f,0.5f,attr,spyr);
+    float[][][] y = sp.sumPyramid(false,spyr);
+    Parallel.setParallel(false);
+    try {
+      spyr = sp.makePyramid(x);
+      attr = sp.estimateAttributes(false,2.0,spyr);
+      sp.steerScale(false,2,50.0f,0.5f,attr,spyr);
+      assertEqual(y,sp.sumPyramid(false,spyr),0.0f);
+    } finally {
+      Parallel.setParallel(true);
+    }
+  }
+
+  private static void assertEqual(float[][][] x, float[][][] y, float tol) {
+    for (int i3=0; i3<x.length; ++i3)
+      for (int i2=0; i2<x[i3].length; ++i2)
+        for (int i1=0; i1<x[i3][i2].length; ++i1)
+          assertEquals(x[i3][i2][i1],y[i3][i2][i1],tol);
+  }
+}